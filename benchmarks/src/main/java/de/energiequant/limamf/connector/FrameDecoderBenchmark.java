@@ -0,0 +1,90 @@
+package de.energiequant.limamf.connector;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures splitting received bytes into frames ({@link FrameDecoder}) as done by the receiving side of
+ * {@link DeviceCommunicator}. Results are per frame.
+ * <p>
+ * {@code repeated} input consists of a single encoder detent frame over and over which should be served from the
+ * frame cache, {@code mixed} input cycles through multiplexer and encoder frames of varying content. The chunk size
+ * simulates how many bytes are returned per read from the device.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameDecoderBenchmark {
+    private static final int NUM_FRAMES = 256;
+
+    @Param({"repeated", "mixed"})
+    public String input;
+
+    @Param({"4096", "16"})
+    public int chunkSize;
+
+    private ByteBuffer buffer;
+    private FrameDecoder decoder;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            if ("repeated".equals(input)) {
+                sb.append("6,DCP_MENU-DATA_INNER,2;");
+            } else if ((i & 1) == 0) {
+                sb.append("30,MUX").append(i % 4).append(',').append(i % 16).append(',').append((i >> 1) & 1).append(';');
+            } else {
+                sb.append("6,ENC").append(i % 8).append(',').append(i % 4).append(';');
+            }
+
+            // firmware terminates each frame with a line break
+            sb.append("\r\n");
+        }
+
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+
+        decoder = new FrameDecoder(this::onFrame);
+    }
+
+    private boolean onFrame(String frame) {
+        blackhole.consume(frame);
+        return true;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_FRAMES)
+    public void decode() {
+        int end = buffer.capacity();
+        for (int offset = 0; offset < end; offset += chunkSize) {
+            buffer.limit(Math.min(end, offset + chunkSize));
+            buffer.position(offset);
+            decoder.decode(buffer);
+        }
+    }
+}
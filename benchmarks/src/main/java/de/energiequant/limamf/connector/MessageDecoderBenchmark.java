@@ -0,0 +1,43 @@
+package de.energiequant.limamf.connector;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.CommandMessageDecoder;
+
+/**
+ * Measures decoding a single frame to a {@link CommandMessage} as done by {@link DeviceCommunicator} for every frame
+ * received from a device.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageDecoderBenchmark {
+    @Param({
+        "6,DCP_MENU-DATA_INNER,2",
+        "30,MUX1,7,0",
+        "10,MobiFlight Mega,DCP CCP,SN-1234-567,2.5.1,1.0"
+    })
+    public String frame;
+
+    private final CommandMessageDecoder decoder = new CommandMessageDecoder();
+
+    @Benchmark
+    public CommandMessage deserialize() {
+        return decoder.deserialize(frame);
+    }
+}
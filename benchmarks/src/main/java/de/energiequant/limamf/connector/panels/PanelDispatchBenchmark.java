@@ -0,0 +1,99 @@
+package de.energiequant.limamf.connector.panels;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.CommandMessageDecoder;
+import de.energiequant.limamf.connector.CommunicationSettings;
+import de.energiequant.limamf.connector.DeviceCommunicator;
+import de.energiequant.limamf.connector.emulator.EmulatedDevice;
+
+/**
+ * Measures dispatching an already decoded input message through {@link DCPCCPPanel} up to the emitted
+ * {@link DCPCCPPanel.Event}. The panel is connected to an {@link EmulatedDevice}; inputs are indexed the same way
+ * as they would be from a MobiFlight configuration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PanelDispatchBenchmark {
+    private static final String PROTOCOL_VERSION = "1.0.0";
+
+    private static final String[] MULTIPLEXER_INPUTS = {
+        "L_DCP_MENU", "R_DCP_MENU", "L_DCP_ESC", "R_DCP_ESC", "CCP_SUMRY", "CCP_CAS", "CCP_JSTK_UP", "CCP_ZOOM+"
+    };
+
+    private static final String[] ENCODER_INPUTS = {
+        "L_DCP_MENU-DATA_INNER", "R_DCP_MENU-DATA_INNER", "CCP_MENU-DATA_OUTER", "CCP_RADIO-DATA_INNER"
+    };
+
+    @Param({"multiplexer", "encoder"})
+    public String input;
+
+    private EmulatedDevice device;
+    private DeviceCommunicator communicator;
+    private DCPCCPPanel panel;
+    private CommandMessage message;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+        device = EmulatedDevice.builder().build();
+        communicator = new DeviceCommunicator(
+            device.connect(),
+            PROTOCOL_VERSION,
+            CommunicationSettings.DEFAULT,
+            (x, msg) -> {
+                // messages are injected directly, device output is not of interest
+            }
+        );
+
+        panel = new DCPCCPPanel((event, nanos) -> blackhole.consume(event), communicator, PROTOCOL_VERSION);
+
+        for (int i = 0; i < MULTIPLEXER_INPUTS.length; i++) {
+            panel.indexInputMultiplexer(MULTIPLEXER_INPUTS[i], "MUX1", i);
+        }
+
+        for (int i = 0; i < ENCODER_INPUTS.length; i++) {
+            panel.indexEncoder(ENCODER_INPUTS[i], "ENC" + i);
+        }
+
+        panel.compileInputTable();
+
+        // L_DCP_ESC press and R_DCP_MENU-DATA_INNER clockwise; side-specific to include lookup by selected side
+        String frame = "multiplexer".equals(input) ? "30,MUX1,2,0" : "6,ENC1,2";
+        message = new CommandMessageDecoder().deserialize(frame);
+
+        panel.selectSide(DCPCCPPanel.Side.RIGHT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        communicator.shutdownAsync();
+        communicator.waitForShutdown(Duration.ofSeconds(5));
+        device.shutdown();
+    }
+
+    @Benchmark
+    public void dispatch() {
+        panel.onCommandMessage(communicator, message);
+    }
+}
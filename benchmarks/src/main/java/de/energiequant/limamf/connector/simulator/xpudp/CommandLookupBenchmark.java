@@ -0,0 +1,48 @@
+package de.energiequant.limamf.connector.simulator.xpudp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.energiequant.limamf.connector.panels.DCPCCPPanel;
+
+/**
+ * Measures resolving the X-Plane commands to send for a panel event as done by {@link XPlaneUDPClient} for every
+ * event. All commands are side-specific, so an event without a side measures a lookup that misses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandLookupBenchmark {
+    private DCPCCPPanel.Event mappedEvent;
+    private DCPCCPPanel.Event unmappedEvent;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mappedEvent = DCPCCPPanel.Event.of(DCPCCPPanel.Side.LEFT, DCPCCPPanel.Source.DCP1_ROTARY_DATA, DCPCCPPanel.Action.INCREMENT);
+        unmappedEvent = DCPCCPPanel.Event.of(DCPCCPPanel.Source.CCP4_SUMRY, DCPCCPPanel.Action.PUSH);
+    }
+
+    @Benchmark
+    public String[] lookupMapped() {
+        return XPlaneUDPClient.getCommandNames(mappedEvent);
+    }
+
+    @Benchmark
+    public String[] lookupUnmapped() {
+        return XPlaneUDPClient.getCommandNames(unmappedEvent);
+    }
+}
@@ -0,0 +1,329 @@
+package de.energiequant.limamf.connector;
+
+import static de.energiequant.limamf.connector.utils.Locks.withLock;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DeviceIO} based on NIO {@link FileChannel}s.
+ * <p>
+ * Reads block until at least one byte has been received. Unlike streams, {@link FileChannel}s are interruptible
+ * channels: closing the channel from another thread releases a blocked read (ending in a
+ * {@link java.nio.channels.AsynchronousCloseException}) which is what allows us to get rid of polling.
+ * </p>
+ * <p>
+ * Characters are mapped 1:1 to bytes, so only single-byte ISO-8859-1 encoding is supported (which is what the
+ * protocol uses).
+ * </p>
+ */
+class ChannelDeviceIO extends DeviceIO {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelDeviceIO.class);
+
+    private final FileInputStream fis;
+    private final FileChannel inputChannel;
+    private final ReentrantLock inputLock = new ReentrantLock();
+    private ByteBuffer inputBuffer = ByteBuffer.allocate(0);
+
+    private final FileOutputStream fos;
+    private final FileChannel outputChannel;
+    private final Writer writer;
+    private final ReentrantLock outputLock = new ReentrantLock();
+
+    ChannelDeviceIO(File deviceNode) {
+        super(deviceNode);
+
+        try {
+            fis = new FileInputStream(deviceNode);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        try {
+            fos = new FileOutputStream(deviceNode);
+        } catch (IOException ex) {
+            try {
+                fis.close();
+            } catch (IOException ex2) {
+                LOGGER.warn("{}failed to close FileInputStream while handling FileOutputStream error", logPrefix, ex2);
+            }
+
+            throw new UncheckedIOException(ex);
+        }
+
+        inputChannel = fis.getChannel();
+        outputChannel = fos.getChannel();
+
+        writer = new BufferedWriter(Channels.newWriter(outputChannel, DEFAULT_CHARACTER_SET.newEncoder(), -1));
+    }
+
+    @Override
+    public boolean tryClose() {
+        AtomicBoolean success = new AtomicBoolean(true);
+
+        closing.set(true);
+
+        // input channel needs to be closed first to release blocked reads
+        try {
+            inputChannel.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close input channel", logPrefix, ex);
+            success.set(false);
+        }
+
+        try {
+            writer.close();
+        } catch (IOException ex) {
+            LOGGER.debug("{}failed to close writer", logPrefix, ex);
+        }
+
+        try {
+            outputChannel.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close output channel", logPrefix, ex);
+            success.set(false);
+        }
+
+        try {
+            fos.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close FileOutputStream", logPrefix, ex);
+            success.set(false);
+        }
+
+        try {
+            fis.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close FileInputStream", logPrefix, ex);
+            success.set(false);
+        }
+
+        return success.get();
+    }
+
+    @Override
+    public void write(String s) {
+        withLock(
+            outputLock,
+            () -> {
+                try {
+                    writer.write(s);
+                } catch (IOException ex) {
+                    LOGGER.warn("{}failed writing to device, closing", logPrefix, ex);
+                    tryClose();
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        // called for every batch sent; locking explicitly instead of withLock avoids per-call lambda allocation
+        outputLock.lock();
+        try {
+            writer.flush();
+
+            while (buffer.hasRemaining()) {
+                outputChannel.write(buffer);
+            }
+        } catch (IOException ex) {
+            if (closing.get()) {
+                LOGGER.debug("{}failed writing to device, closing (expected due to marked as closing already)", logPrefix, ex);
+            } else {
+                LOGGER.warn("{}unexpectedly failed writing to device, closing", logPrefix, ex);
+            }
+            tryClose();
+            throw new UncheckedIOException(ex);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        withLock(
+            outputLock,
+            () -> {
+                try {
+                    writer.flush();
+                } catch (IOException ex) {
+                    if (closing.get()) {
+                        LOGGER.debug("{}failed flushing buffer to device, closing (expected due to marked as closing already)", logPrefix, ex);
+                    } else {
+                        LOGGER.warn("{}unexpectedly failed flushing buffer to device, closing", logPrefix, ex);
+                    }
+                    tryClose();
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+    }
+
+    @Override
+    public int readAvailableInto(char[] buffer) {
+        if (buffer.length == 0) {
+            throw new IllegalArgumentException("attempted to read into zero buffer");
+        }
+
+        AtomicInteger res = new AtomicInteger(0);
+
+        withLock(
+            inputLock,
+            () -> {
+                try {
+                    int available = fis.available();
+                    if (available < 1) {
+                        return;
+                    }
+
+                    res.set(readInto(buffer, Math.min(available, buffer.length)));
+                } catch (ClosedChannelException ex) {
+                    res.set(-1);
+                } catch (IOException ex) {
+                    LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+                    tryClose();
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+
+        return res.get();
+    }
+
+    @Override
+    public int readAtLeastOneInto(char[] buffer) {
+        if (buffer.length == 0) {
+            throw new IllegalArgumentException("attempted to read into zero buffer");
+        }
+
+        inputLock.lock();
+        try {
+            if (inputBuffer.capacity() < buffer.length) {
+                inputBuffer = ByteBuffer.allocate(buffer.length);
+            }
+
+            inputBuffer.clear();
+            inputBuffer.limit(buffer.length);
+
+            int read = readAtLeastOneInto(inputBuffer);
+
+            // ISO-8859-1 maps all bytes directly to the first 256 characters
+            byte[] bytes = inputBuffer.array();
+            for (int i = 0; i < read; i++) {
+                buffer[i] = (char) (bytes[i] & 0xFF);
+            }
+
+            return read;
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    @Override
+    public int readAtLeastOneInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        // called for every chunk received; locking explicitly instead of withLock avoids per-call lambda allocation
+        inputLock.lock();
+        try {
+            // a blocking read on the channel only returns once data has been received; it gets released
+            // with a ClosedChannelException if the channel is closed concurrently
+            int read = 0;
+            while (read == 0) {
+                read = inputChannel.read(buffer);
+            }
+            return read;
+        } catch (ClosedChannelException ex) {
+            // also covers AsynchronousCloseException and ClosedByInterruptException
+            if (!closing.get()) {
+                LOGGER.warn("{}channel has been closed unexpectedly", logPrefix, ex);
+                tryClose();
+            }
+            return -1;
+        } catch (IOException ex) {
+            if (closing.get()) {
+                return -1;
+            }
+
+            LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+            tryClose();
+            throw new UncheckedIOException(ex);
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    @Override
+    public int readAvailableInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        inputLock.lock();
+        try {
+            int available = fis.available();
+            if (available < 1) {
+                return 0;
+            }
+
+            // limit the read to what is available, so the channel does not block
+            int originalLimit = buffer.limit();
+            buffer.limit(Math.min(originalLimit, buffer.position() + available));
+            try {
+                return inputChannel.read(buffer);
+            } finally {
+                buffer.limit(originalLimit);
+            }
+        } catch (IOException ex) {
+            if (closing.get()) {
+                return -1;
+            }
+
+            LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+            tryClose();
+            throw new UncheckedIOException(ex);
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    private int readInto(char[] buffer, int maxLength) throws IOException {
+        if (inputBuffer.capacity() < maxLength) {
+            inputBuffer = ByteBuffer.allocate(maxLength);
+        }
+
+        inputBuffer.clear();
+        inputBuffer.limit(maxLength);
+
+        int read = inputChannel.read(inputBuffer);
+        if (read <= 0) {
+            return read;
+        }
+
+        // ISO-8859-1 maps all bytes directly to the first 256 characters
+        byte[] bytes = inputBuffer.array();
+        for (int i = 0; i < read; i++) {
+            buffer[i] = (char) (bytes[i] & 0xFF);
+        }
+
+        return read;
+    }
+}
@@ -0,0 +1,328 @@
+package de.energiequant.limamf.connector;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+
+/**
+ * Tuning options for communication with devices, see {@link DeviceCommunicator}.
+ */
+public class CommunicationSettings {
+    public static final int DEFAULT_SEND_QUEUE_CAPACITY = 256;
+
+    /**
+     * Messages are written as soon as possible by default; messages that got queued while the previous write was
+     * in progress are still combined. Waiting for further messages delays every write by the full window.
+     */
+    public static final Duration DEFAULT_WRITE_COALESCING_WINDOW = Duration.ZERO;
+    private static final Duration MAX_WRITE_COALESCING_WINDOW = Duration.ofMillis(100);
+
+    /**
+     * Output is not paced by default so write timing remains unchanged for existing setups. MobiFlight devices
+     * communicate at 115200 baud; with 8N1 that equals 11520 bytes per second, which can be configured if devices are
+     * losing data while being flooded.
+     */
+    public static final int DEFAULT_OUTPUT_BYTES_PER_SECOND = 0;
+
+    /**
+     * Receive buffers on common MobiFlight boards hold 64 bytes.
+     */
+    public static final int DEFAULT_OUTPUT_BURST_BYTES = 64;
+
+    public static final int DEFAULT_OUTPUT_MESSAGES_PER_SECOND = 0;
+    public static final int DEFAULT_OUTPUT_BURST_MESSAGES = 16;
+
+    public static final boolean DEFAULT_KEEP_PROBE_CONNECTION = false;
+    public static final boolean DEFAULT_USE_KNOWN_IDENTITIES = false;
+
+    public static final CommunicationSettings DEFAULT = builder().build();
+
+    private final DeviceIO.Implementation deviceIOImplementation;
+    private final DeviceCommunicator.ExecutionMode executionMode;
+    private final int sendQueueCapacity;
+    private final Duration writeCoalescingWindow;
+    private final int outputBytesPerSecond;
+    private final int outputBurstBytes;
+    private final int outputMessagesPerSecond;
+    private final int outputBurstMessages;
+    private final boolean keepProbeConnection;
+    private final boolean useKnownIdentities;
+    private final File trafficCaptureDirectory;
+
+    private CommunicationSettings(Builder builder) {
+        this.deviceIOImplementation = builder.deviceIOImplementation;
+        this.executionMode = builder.executionMode;
+        this.sendQueueCapacity = builder.sendQueueCapacity;
+        this.writeCoalescingWindow = builder.writeCoalescingWindow;
+        this.outputBytesPerSecond = builder.outputBytesPerSecond;
+        this.outputBurstBytes = builder.outputBurstBytes;
+        this.outputMessagesPerSecond = builder.outputMessagesPerSecond;
+        this.outputBurstMessages = builder.outputBurstMessages;
+        this.keepProbeConnection = builder.keepProbeConnection;
+        this.useKnownIdentities = builder.useKnownIdentities;
+        this.trafficCaptureDirectory = builder.trafficCaptureDirectory;
+    }
+
+    public DeviceIO.Implementation getDeviceIOImplementation() {
+        return deviceIOImplementation;
+    }
+
+    public DeviceCommunicator.ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Returns the maximum number of messages that can be waiting to be sent per device. Attempting to send further
+     * messages fails while the queue is full.
+     *
+     * @return maximum number of queued messages per device
+     */
+    public int getSendQueueCapacity() {
+        return sendQueueCapacity;
+    }
+
+    /**
+     * Returns for how long the send thread waits for further messages after it got woken up by a new message.
+     * All messages queued within that window are written to the device at once. {@link Duration#ZERO} disables
+     * waiting, in which case only messages that had already been queued get combined.
+     *
+     * @return time to wait for further messages before writing
+     */
+    public Duration getWriteCoalescingWindow() {
+        return writeCoalescingWindow;
+    }
+
+    /**
+     * Returns the average number of bytes that may be written to a device per second. Writes are delayed if they
+     * would exceed that rate after the allowed burst has been used up, see {@link #getOutputBurstBytes()}.
+     *
+     * @return bytes per second; 0 if unlimited
+     */
+    public int getOutputBytesPerSecond() {
+        return outputBytesPerSecond;
+    }
+
+    /**
+     * Returns the number of bytes that may be written at once without being delayed, as long as the average rate has
+     * not been exceeded before.
+     *
+     * @return number of bytes that may be written in a burst
+     */
+    public int getOutputBurstBytes() {
+        return outputBurstBytes;
+    }
+
+    /**
+     * Returns the average number of messages that may be written to a device per second, see
+     * {@link #getOutputBytesPerSecond()}.
+     *
+     * @return messages per second; 0 if unlimited
+     */
+    public int getOutputMessagesPerSecond() {
+        return outputMessagesPerSecond;
+    }
+
+    /**
+     * Returns the number of messages that may be written at once without being delayed, see
+     * {@link #getOutputBurstBytes()}.
+     *
+     * @return number of messages that may be written in a burst
+     */
+    public int getOutputBurstMessages() {
+        return outputBurstMessages;
+    }
+
+    /**
+     * Returns whether the connection used to identify a module should be kept open and handed over to the panel
+     * implementation instead of closing it and opening the device again. This saves a full reconnect per module.
+     *
+     * @return true if probe connections should be handed over, false if they should be closed after identification
+     */
+    public boolean shouldKeepProbeConnection() {
+        return keepProbeConnection;
+    }
+
+    /**
+     * Returns whether modules should be connected right away based on the identification they last reported on the
+     * same USB interface (see {@link Configuration#getKnownIdentity(USBDeviceId)}). The identity is then verified in
+     * background; modules are reconnected if it has changed.
+     *
+     * @return true if known identities should be used, false if modules always need to be probed before connecting
+     */
+    public boolean shouldUseKnownIdentities() {
+        return useKnownIdentities;
+    }
+
+    /**
+     * Returns the directory to record all traffic of each device to, see {@link TrafficCapture} for details.
+     * Connections only used to probe devices are not recorded, recording starts once the protocol version is known.
+     * Recording is disabled if not set.
+     *
+     * @return directory to write traffic captures to; empty if traffic should not be recorded
+     */
+    public Optional<File> getTrafficCaptureDirectory() {
+        return Optional.ofNullable(trafficCaptureDirectory);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CommunicationSettings)) {
+            return false;
+        }
+
+        CommunicationSettings other = (CommunicationSettings) obj;
+
+        return this.deviceIOImplementation == other.deviceIOImplementation
+            && this.executionMode == other.executionMode
+            && this.sendQueueCapacity == other.sendQueueCapacity
+            && this.writeCoalescingWindow.equals(other.writeCoalescingWindow)
+            && this.outputBytesPerSecond == other.outputBytesPerSecond
+            && this.outputBurstBytes == other.outputBurstBytes
+            && this.outputMessagesPerSecond == other.outputMessagesPerSecond
+            && this.outputBurstMessages == other.outputBurstMessages
+            && this.keepProbeConnection == other.keepProbeConnection
+            && this.useKnownIdentities == other.useKnownIdentities
+            && Objects.equals(this.trafficCaptureDirectory, other.trafficCaptureDirectory);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            deviceIOImplementation, executionMode, sendQueueCapacity, writeCoalescingWindow,
+            outputBytesPerSecond, outputBurstBytes, outputMessagesPerSecond, outputBurstMessages,
+            keepProbeConnection, useKnownIdentities, trafficCaptureDirectory
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "CommunicationSettings("
+            + "deviceIO=" + deviceIOImplementation
+            + ", executionMode=" + executionMode
+            + ", sendQueueCapacity=" + sendQueueCapacity
+            + ", writeCoalescingWindow=" + writeCoalescingWindow
+            + ", outputBytesPerSecond=" + outputBytesPerSecond
+            + ", outputBurstBytes=" + outputBurstBytes
+            + ", outputMessagesPerSecond=" + outputMessagesPerSecond
+            + ", outputBurstMessages=" + outputBurstMessages
+            + ", keepProbeConnection=" + keepProbeConnection
+            + ", useKnownIdentities=" + useKnownIdentities
+            + ", trafficCaptureDirectory=" + trafficCaptureDirectory
+            + ")";
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private DeviceIO.Implementation deviceIOImplementation = DeviceIO.DEFAULT_IMPLEMENTATION;
+        private DeviceCommunicator.ExecutionMode executionMode = DeviceCommunicator.DEFAULT_EXECUTION_MODE;
+        private int sendQueueCapacity = DEFAULT_SEND_QUEUE_CAPACITY;
+        private Duration writeCoalescingWindow = DEFAULT_WRITE_COALESCING_WINDOW;
+        private int outputBytesPerSecond = DEFAULT_OUTPUT_BYTES_PER_SECOND;
+        private int outputBurstBytes = DEFAULT_OUTPUT_BURST_BYTES;
+        private int outputMessagesPerSecond = DEFAULT_OUTPUT_MESSAGES_PER_SECOND;
+        private int outputBurstMessages = DEFAULT_OUTPUT_BURST_MESSAGES;
+        private boolean keepProbeConnection = DEFAULT_KEEP_PROBE_CONNECTION;
+        private boolean useKnownIdentities = DEFAULT_USE_KNOWN_IDENTITIES;
+        private File trafficCaptureDirectory = null;
+
+        public Builder setDeviceIOImplementation(DeviceIO.Implementation deviceIOImplementation) {
+            this.deviceIOImplementation = deviceIOImplementation;
+            return this;
+        }
+
+        public Builder setExecutionMode(DeviceCommunicator.ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        public Builder setSendQueueCapacity(int sendQueueCapacity) {
+            this.sendQueueCapacity = sendQueueCapacity;
+            return this;
+        }
+
+        public Builder setWriteCoalescingWindow(Duration writeCoalescingWindow) {
+            this.writeCoalescingWindow = writeCoalescingWindow;
+            return this;
+        }
+
+        public Builder setOutputBytesPerSecond(int outputBytesPerSecond) {
+            this.outputBytesPerSecond = outputBytesPerSecond;
+            return this;
+        }
+
+        public Builder setOutputBurstBytes(int outputBurstBytes) {
+            this.outputBurstBytes = outputBurstBytes;
+            return this;
+        }
+
+        public Builder setOutputMessagesPerSecond(int outputMessagesPerSecond) {
+            this.outputMessagesPerSecond = outputMessagesPerSecond;
+            return this;
+        }
+
+        public Builder setOutputBurstMessages(int outputBurstMessages) {
+            this.outputBurstMessages = outputBurstMessages;
+            return this;
+        }
+
+        public Builder setKeepProbeConnection(boolean keepProbeConnection) {
+            this.keepProbeConnection = keepProbeConnection;
+            return this;
+        }
+
+        public Builder setUseKnownIdentities(boolean useKnownIdentities) {
+            this.useKnownIdentities = useKnownIdentities;
+            return this;
+        }
+
+        public Builder setTrafficCaptureDirectory(File trafficCaptureDirectory) {
+            this.trafficCaptureDirectory = trafficCaptureDirectory;
+            return this;
+        }
+
+        public CommunicationSettings build() {
+            if (deviceIOImplementation == null) {
+                throw new IllegalArgumentException("missing device IO implementation");
+            }
+
+            if (executionMode == null) {
+                throw new IllegalArgumentException("missing execution mode");
+            }
+
+            if (sendQueueCapacity < 1) {
+                throw new IllegalArgumentException("send queue capacity must be positive, got " + sendQueueCapacity);
+            }
+
+            if (writeCoalescingWindow == null || writeCoalescingWindow.isNegative()) {
+                throw new IllegalArgumentException("write coalescing window must be zero or positive, got " + writeCoalescingWindow);
+            }
+
+            if (writeCoalescingWindow.compareTo(MAX_WRITE_COALESCING_WINDOW) > 0) {
+                throw new IllegalArgumentException("write coalescing window must not exceed " + MAX_WRITE_COALESCING_WINDOW + ", got " + writeCoalescingWindow);
+            }
+
+            if (outputBytesPerSecond < 0) {
+                throw new IllegalArgumentException("output bytes per second must not be negative, got " + outputBytesPerSecond);
+            }
+
+            if (outputBurstBytes < 1) {
+                throw new IllegalArgumentException("output burst bytes must be positive, got " + outputBurstBytes);
+            }
+
+            if (outputMessagesPerSecond < 0) {
+                throw new IllegalArgumentException("output messages per second must not be negative, got " + outputMessagesPerSecond);
+            }
+
+            if (outputBurstMessages < 1) {
+                throw new IllegalArgumentException("output burst messages must be positive, got " + outputBurstMessages);
+            }
+
+            return new CommunicationSettings(this);
+        }
+    }
+}
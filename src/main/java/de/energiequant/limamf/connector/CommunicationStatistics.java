@@ -0,0 +1,158 @@
+package de.energiequant.limamf.connector;
+
+/**
+ * Snapshot of counters collected by a {@link DeviceCommunicator}, see {@link DeviceCommunicator#getStatistics()}.
+ */
+public class CommunicationStatistics {
+    private final long flushCount;
+    private final long sentMessageCount;
+    private final long sentByteCount;
+    private final int maxMessagesPerFlush;
+    private final long replacedMessageCount;
+    private final long droppedMessageCount;
+    private final long throttleCount;
+    private final long throttledNanos;
+
+    private CommunicationStatistics(Builder builder) {
+        this.flushCount = builder.flushCount;
+        this.sentMessageCount = builder.sentMessageCount;
+        this.sentByteCount = builder.sentByteCount;
+        this.maxMessagesPerFlush = builder.maxMessagesPerFlush;
+        this.replacedMessageCount = builder.replacedMessageCount;
+        this.droppedMessageCount = builder.droppedMessageCount;
+        this.throttleCount = builder.throttleCount;
+        this.throttledNanos = builder.throttledNanos;
+    }
+
+    /**
+     * Returns how often data has been written to the device. Each flush is a single write call on the device.
+     *
+     * @return number of flushes
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public long getSentMessageCount() {
+        return sentMessageCount;
+    }
+
+    public long getSentByteCount() {
+        return sentByteCount;
+    }
+
+    public int getMaxMessagesPerFlush() {
+        return maxMessagesPerFlush;
+    }
+
+    public double getAverageMessagesPerFlush() {
+        return (flushCount == 0) ? 0.0 : (double) sentMessageCount / flushCount;
+    }
+
+    /**
+     * Returns the number of messages that got replaced by a newer message before they had been sent, see
+     * {@link DeviceCommunicator#sendReplacing(Object, de.energiequant.limamf.compat.protocol.CommandMessage)}.
+     *
+     * @return number of replaced messages
+     */
+    public long getReplacedMessageCount() {
+        return replacedMessageCount;
+    }
+
+    /**
+     * Returns the number of messages that have been dropped because the send queue was full, see
+     * {@link CommunicationSettings#getSendQueueCapacity()}.
+     *
+     * @return number of dropped messages
+     */
+    public long getDroppedMessageCount() {
+        return droppedMessageCount;
+    }
+
+    /**
+     * Returns how often sending had to be delayed to stay within configured output rates, see
+     * {@link CommunicationSettings#getOutputBytesPerSecond()}.
+     *
+     * @return number of delays
+     */
+    public long getThrottleCount() {
+        return throttleCount;
+    }
+
+    /**
+     * Returns the total time sending has been delayed to stay within configured output rates.
+     *
+     * @return total delay in nanoseconds
+     */
+    public long getThrottledNanos() {
+        return throttledNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "CommunicationStatistics(flushes=%d, messages=%d, bytes=%d, avgMessagesPerFlush=%.2f, maxMessagesPerFlush=%d, replaced=%d, dropped=%d, throttled=%d (%d us))",
+            flushCount, sentMessageCount, sentByteCount, getAverageMessagesPerFlush(), maxMessagesPerFlush,
+            replacedMessageCount, droppedMessageCount, throttleCount, throttledNanos / 1000
+        );
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static class Builder {
+        private long flushCount;
+        private long sentMessageCount;
+        private long sentByteCount;
+        private int maxMessagesPerFlush;
+        private long replacedMessageCount;
+        private long droppedMessageCount;
+        private long throttleCount;
+        private long throttledNanos;
+
+        Builder setFlushCount(long flushCount) {
+            this.flushCount = flushCount;
+            return this;
+        }
+
+        Builder setSentMessageCount(long sentMessageCount) {
+            this.sentMessageCount = sentMessageCount;
+            return this;
+        }
+
+        Builder setSentByteCount(long sentByteCount) {
+            this.sentByteCount = sentByteCount;
+            return this;
+        }
+
+        Builder setMaxMessagesPerFlush(int maxMessagesPerFlush) {
+            this.maxMessagesPerFlush = maxMessagesPerFlush;
+            return this;
+        }
+
+        Builder setReplacedMessageCount(long replacedMessageCount) {
+            this.replacedMessageCount = replacedMessageCount;
+            return this;
+        }
+
+        Builder setDroppedMessageCount(long droppedMessageCount) {
+            this.droppedMessageCount = droppedMessageCount;
+            return this;
+        }
+
+        Builder setThrottleCount(long throttleCount) {
+            this.throttleCount = throttleCount;
+            return this;
+        }
+
+        Builder setThrottledNanos(long throttledNanos) {
+            this.throttledNanos = throttledNanos;
+            return this;
+        }
+
+        CommunicationStatistics build() {
+            return new CommunicationStatistics(this);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
@@ -19,6 +21,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -45,12 +48,31 @@ public class Configuration {
     private static final String PROPERTY_MODULE_PANEL_FACTORY_ID = "panelFactoryId";
     private static final String PROPERTY_MODULE_CONNECTOR_CONFIG = "mcc";
     private static final String PROPERTY_MODULE_CONNECTOR_CONFIG_SERIAL = "mccSerial";
-
+    private static final String PROPERTY_KNOWN_IDENTITIES_PREFIX = "identities.usb.";
+    private static final String PROPERTY_KNOWN_IDENTITY_VERSION = "version";
+    private static final String PROPERTY_COMMUNICATION_PREFIX = "communication.";
+    private static final String PROPERTY_COMMUNICATION_DEVICE_IO = PROPERTY_COMMUNICATION_PREFIX + "deviceIO";
+    private static final String PROPERTY_COMMUNICATION_EXECUTION_MODE = PROPERTY_COMMUNICATION_PREFIX + "executionMode";
+    private static final String PROPERTY_COMMUNICATION_SEND_QUEUE_CAPACITY = PROPERTY_COMMUNICATION_PREFIX + "sendQueueCapacity";
+    private static final String PROPERTY_COMMUNICATION_WRITE_COALESCING_MICROS = PROPERTY_COMMUNICATION_PREFIX + "writeCoalescingMicros";
+    private static final String PROPERTY_COMMUNICATION_OUTPUT_BYTES_PER_SECOND = PROPERTY_COMMUNICATION_PREFIX + "output.bytesPerSecond";
+    private static final String PROPERTY_COMMUNICATION_OUTPUT_BURST_BYTES = PROPERTY_COMMUNICATION_PREFIX + "output.burstBytes";
+    private static final String PROPERTY_COMMUNICATION_OUTPUT_MESSAGES_PER_SECOND = PROPERTY_COMMUNICATION_PREFIX + "output.messagesPerSecond";
+    private static final String PROPERTY_COMMUNICATION_OUTPUT_BURST_MESSAGES = PROPERTY_COMMUNICATION_PREFIX + "output.burstMessages";
+    private static final String PROPERTY_COMMUNICATION_KEEP_PROBE_CONNECTION = PROPERTY_COMMUNICATION_PREFIX + "keepProbeConnection";
+    private static final String PROPERTY_COMMUNICATION_USE_KNOWN_IDENTITIES = PROPERTY_COMMUNICATION_PREFIX + "useKnownIdentities";
+    private static final String PROPERTY_COMMUNICATION_CAPTURE_DIRECTORY = PROPERTY_COMMUNICATION_PREFIX + "captureDirectory";
+    private static final String PROPERTY_INPUT_PREFIX = "input.";
+
+    // all state is guarded by this instance as configuration also gets saved from module discovery threads
     private File saveLocation;
 
     private String acceptedDisclaimer;
     private final ObservableCollectionProxy<USBDeviceId, Set<USBDeviceId>> usbInterfaceIds = new ObservableCollectionProxy<>(HashSet::new);
     private final Map<ModuleId, Module> modulesById = new HashMap<>();
+    private final Map<USBDeviceId, KnownIdentity> knownIdentities = new HashMap<>();
+    private CommunicationSettings communicationSettings;
+    private final Properties inputProperties = new Properties();
 
     private static final Charset PROPERTIES_CHARSET = StandardCharsets.ISO_8859_1;
     private static final String PROPERTIES_LINE_END = "\n";
@@ -184,6 +206,58 @@ public class Configuration {
         }
     }
 
+    /**
+     * Identification last reported by a module on a specific USB interface, see
+     * {@link #getKnownIdentity(USBDeviceId)}.
+     */
+    public static class KnownIdentity {
+        private final ModuleId moduleId;
+        private final String version;
+
+        public KnownIdentity(ModuleId moduleId, String version) {
+            if (moduleId == null) {
+                throw new IllegalArgumentException("missing module ID");
+            }
+
+            if (version == null || version.trim().isEmpty()) {
+                throw new IllegalArgumentException("missing version");
+            }
+
+            this.moduleId = moduleId;
+            this.version = version;
+        }
+
+        public ModuleId getModuleId() {
+            return moduleId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof KnownIdentity)) {
+                return false;
+            }
+
+            KnownIdentity other = (KnownIdentity) obj;
+
+            return Objects.equals(this.moduleId, other.moduleId)
+                && Objects.equals(this.version, other.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(moduleId, version);
+        }
+
+        @Override
+        public String toString() {
+            return "KnownIdentity(" + moduleId + ", version=\"" + version + "\")";
+        }
+    }
+
     private Configuration(Properties properties, DisclaimerState disclaimerState) {
         int version = Integer.parseUnsignedInt(getMandatoryString(properties, PROPERTY_VERSION));
         if (version != VERSION) {
@@ -217,22 +291,33 @@ public class Configuration {
                               .distinct()
                               .map(x -> new Module(properties, x))
                               .forEach(this::putModule);
+
+        streamKeys(properties).filter(x -> x.startsWith(PROPERTY_KNOWN_IDENTITIES_PREFIX))
+                              .map(x -> x.substring(0, x.indexOf(".", PROPERTY_KNOWN_IDENTITIES_PREFIX.length()) + 1))
+                              .distinct()
+                              .forEach(x -> parseKnownIdentity(properties, x));
+
+        communicationSettings = parseCommunicationSettings(properties);
+
+        // input settings are specific to panel implementations which interpret them on their own
+        streamKeys(properties).filter(x -> x.startsWith(PROPERTY_INPUT_PREFIX))
+                              .forEach(x -> inputProperties.setProperty(x.substring(PROPERTY_INPUT_PREFIX.length()), properties.getProperty(x)));
     }
 
-    public Configuration setSaveLocation(File saveLocation) {
+    public synchronized Configuration setSaveLocation(File saveLocation) {
         this.saveLocation = saveLocation;
         return this;
     }
 
-    public Optional<File> getSaveLocation() {
+    public synchronized Optional<File> getSaveLocation() {
         return Optional.ofNullable(saveLocation);
     }
 
-    public Optional<Module> getModule(ModuleId id) {
+    public synchronized Optional<Module> getModule(ModuleId id) {
         return Optional.ofNullable(modulesById.get(id));
     }
 
-    public void putModule(Module module) {
+    public synchronized void putModule(Module module) {
         Module previous = modulesById.put(module.getId(), module);
         if (previous == null) {
             LOGGER.debug("Added module configuration: {}", module);
@@ -241,7 +326,7 @@ public class Configuration {
         }
     }
 
-    public void removeModule(ModuleId id) {
+    public synchronized void removeModule(ModuleId id) {
         Module previous = modulesById.remove(id);
         if (previous == null) {
             LOGGER.debug("Tried to remove unconfigured module: {}", id);
@@ -250,23 +335,23 @@ public class Configuration {
         }
     }
 
-    public Optional<String> getAcceptedDisclaimer() {
+    public synchronized Optional<String> getAcceptedDisclaimer() {
         return Optional.ofNullable(acceptedDisclaimer);
     }
 
-    public void setAcceptedDisclaimer(String acceptedDisclaimer) {
+    public synchronized void setAcceptedDisclaimer(String acceptedDisclaimer) {
         this.acceptedDisclaimer = acceptedDisclaimer;
     }
 
-    public void unsetAcceptedDisclaimer() {
+    public synchronized void unsetAcceptedDisclaimer() {
         this.acceptedDisclaimer = null;
     }
 
-    public Set<Module> getModules() {
+    public synchronized Set<Module> getModules() {
         return new HashSet<>(modulesById.values());
     }
 
-    public void setModules(Collection<Module> modules) {
+    public synchronized void setModules(Collection<Module> modules) {
         Map<ModuleId, Module> tmp = new HashMap<>();
 
         for (Module module : modules) {
@@ -280,11 +365,95 @@ public class Configuration {
         modulesById.putAll(tmp);
     }
 
+    public synchronized CommunicationSettings getCommunicationSettings() {
+        return communicationSettings;
+    }
+
+    public synchronized void setCommunicationSettings(CommunicationSettings communicationSettings) {
+        this.communicationSettings = communicationSettings;
+    }
+
+    /**
+     * Returns the settings for handling input of panels. They are only interpreted by panel implementations, so they
+     * are provided as-is with keys stripped of their common {@code input.} prefix.
+     *
+     * @return copy of input settings
+     */
+    public synchronized Properties getInputProperties() {
+        Properties out = new Properties();
+        out.putAll(inputProperties);
+        return out;
+    }
+
+    public synchronized void setInputProperties(Properties inputProperties) {
+        this.inputProperties.clear();
+        this.inputProperties.putAll(inputProperties);
+    }
+
     public ObservableCollectionProxy<USBDeviceId, Set<USBDeviceId>> getUSBInterfaceIds() {
         return usbInterfaceIds;
     }
 
-    public boolean trySave() {
+    /**
+     * Returns the identification last reported by a module connected through the given USB interface. This allows
+     * modules to be connected without having to wait for identification first. As the module may have been
+     * reconfigured or updated in the meantime, the identity still needs to be verified.
+     * <p>
+     * Identities are only remembered for USB interfaces reporting a serial number, as other devices of the same type
+     * cannot be told apart.
+     * </p>
+     *
+     * @param usbDeviceId USB interface the module is connected through
+     * @return last known identity; empty if unknown or the USB interface has no serial number
+     */
+    public synchronized Optional<KnownIdentity> getKnownIdentity(USBDeviceId usbDeviceId) {
+        if (!hasSerial(usbDeviceId)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(knownIdentities.get(usbDeviceId));
+    }
+
+    /**
+     * Remembers the identification reported by a module connected through the given USB interface.
+     *
+     * @param usbDeviceId USB interface the module is connected through
+     * @param identity    identification reported by the module
+     * @return true if the identity was previously unknown or has changed, false if it was already known or cannot be
+     *     remembered because the USB interface has no serial number
+     */
+    public synchronized boolean putKnownIdentity(USBDeviceId usbDeviceId, KnownIdentity identity) {
+        if (!hasSerial(usbDeviceId)) {
+            LOGGER.debug("Not remembering identity for {} as it has no serial number: {}", usbDeviceId, identity);
+            return false;
+        }
+
+        KnownIdentity previous = knownIdentities.put(usbDeviceId, identity);
+        if (identity.equals(previous)) {
+            return false;
+        }
+
+        LOGGER.debug("Remembering identity for {}: {} (previously {})", usbDeviceId, identity, previous);
+        return true;
+    }
+
+    private static boolean hasSerial(USBDeviceId usbDeviceId) {
+        return usbDeviceId.getSerial()
+                          .filter(x -> !x.trim().isEmpty())
+                          .isPresent();
+    }
+
+    public synchronized boolean removeKnownIdentity(USBDeviceId usbDeviceId) {
+        KnownIdentity previous = knownIdentities.remove(usbDeviceId);
+        if (previous == null) {
+            return false;
+        }
+
+        LOGGER.debug("Forgot identity for {}: {}", usbDeviceId, previous);
+        return true;
+    }
+
+    public synchronized boolean trySave() {
         if (saveLocation == null) {
             LOGGER.warn("unable to save without file location");
             return false;
@@ -378,6 +547,73 @@ public class Configuration {
             i++;
         }
 
+        i = 0;
+        Comparator<KnownIdentity> knownIdentityComparator = Comparator.comparing(KnownIdentity::getModuleId);
+        List<Map.Entry<USBDeviceId, KnownIdentity>> sortedKnownIdentities = knownIdentities.entrySet()
+                                                                                           .stream()
+                                                                                           .sorted(Map.Entry.comparingByValue(knownIdentityComparator))
+                                                                                           .collect(Collectors.toList());
+        for (Map.Entry<USBDeviceId, KnownIdentity> entry : sortedKnownIdentities) {
+            USBDeviceId usbDeviceId = entry.getKey();
+            String usbSerial = usbDeviceId.getSerial().orElse(null);
+            if (usbSerial == null) {
+                // devices without serial cannot be told apart
+                continue;
+            }
+
+            KnownIdentity identity = entry.getValue();
+            ModuleId moduleId = identity.getModuleId();
+
+            String prefix = PROPERTY_KNOWN_IDENTITIES_PREFIX + i + ".";
+            out.setProperty(prefix + PROPERTY_USB_INTERFACES_VENDOR, String.format("%04X", usbDeviceId.getVendor()));
+            out.setProperty(prefix + PROPERTY_USB_INTERFACES_PRODUCT, String.format("%04X", usbDeviceId.getProduct()));
+            out.setProperty(prefix + PROPERTY_USB_INTERFACES_SERIAL, usbSerial);
+            out.setProperty(prefix + PROPERTY_MODULE_TYPE, moduleId.getType());
+            out.setProperty(prefix + PROPERTY_MODULE_NAME, moduleId.getName());
+            out.setProperty(prefix + PROPERTY_MODULE_DEVICE_SERIAL, moduleId.getSerial());
+            out.setProperty(prefix + PROPERTY_KNOWN_IDENTITY_VERSION, identity.getVersion());
+
+            i++;
+        }
+
+        // communication settings are only persisted if they deviate from defaults
+        CommunicationSettings defaults = CommunicationSettings.DEFAULT;
+        if (communicationSettings.getDeviceIOImplementation() != defaults.getDeviceIOImplementation()) {
+            out.setProperty(PROPERTY_COMMUNICATION_DEVICE_IO, communicationSettings.getDeviceIOImplementation().name());
+        }
+        if (communicationSettings.getExecutionMode() != defaults.getExecutionMode()) {
+            out.setProperty(PROPERTY_COMMUNICATION_EXECUTION_MODE, communicationSettings.getExecutionMode().name());
+        }
+        if (communicationSettings.getSendQueueCapacity() != defaults.getSendQueueCapacity()) {
+            out.setProperty(PROPERTY_COMMUNICATION_SEND_QUEUE_CAPACITY, Integer.toString(communicationSettings.getSendQueueCapacity()));
+        }
+        if (!communicationSettings.getWriteCoalescingWindow().equals(defaults.getWriteCoalescingWindow())) {
+            out.setProperty(PROPERTY_COMMUNICATION_WRITE_COALESCING_MICROS, Long.toString(TimeUnit.NANOSECONDS.toMicros(communicationSettings.getWriteCoalescingWindow().toNanos())));
+        }
+        if (communicationSettings.getOutputBytesPerSecond() != defaults.getOutputBytesPerSecond()) {
+            out.setProperty(PROPERTY_COMMUNICATION_OUTPUT_BYTES_PER_SECOND, Integer.toString(communicationSettings.getOutputBytesPerSecond()));
+        }
+        if (communicationSettings.getOutputBurstBytes() != defaults.getOutputBurstBytes()) {
+            out.setProperty(PROPERTY_COMMUNICATION_OUTPUT_BURST_BYTES, Integer.toString(communicationSettings.getOutputBurstBytes()));
+        }
+        if (communicationSettings.getOutputMessagesPerSecond() != defaults.getOutputMessagesPerSecond()) {
+            out.setProperty(PROPERTY_COMMUNICATION_OUTPUT_MESSAGES_PER_SECOND, Integer.toString(communicationSettings.getOutputMessagesPerSecond()));
+        }
+        if (communicationSettings.getOutputBurstMessages() != defaults.getOutputBurstMessages()) {
+            out.setProperty(PROPERTY_COMMUNICATION_OUTPUT_BURST_MESSAGES, Integer.toString(communicationSettings.getOutputBurstMessages()));
+        }
+        if (communicationSettings.shouldKeepProbeConnection() != defaults.shouldKeepProbeConnection()) {
+            out.setProperty(PROPERTY_COMMUNICATION_KEEP_PROBE_CONNECTION, Boolean.toString(communicationSettings.shouldKeepProbeConnection()));
+        }
+        if (communicationSettings.shouldUseKnownIdentities() != defaults.shouldUseKnownIdentities()) {
+            out.setProperty(PROPERTY_COMMUNICATION_USE_KNOWN_IDENTITIES, Boolean.toString(communicationSettings.shouldUseKnownIdentities()));
+        }
+        communicationSettings.getTrafficCaptureDirectory()
+                             .ifPresent(x -> out.setProperty(PROPERTY_COMMUNICATION_CAPTURE_DIRECTORY, x.getPath()));
+        for (String key : inputProperties.stringPropertyNames()) {
+            out.setProperty(PROPERTY_INPUT_PREFIX + key, inputProperties.getProperty(key));
+        }
+
         return out;
     }
 
@@ -389,6 +625,109 @@ public class Configuration {
                           .build();
     }
 
+    private void parseKnownIdentity(Properties properties, String prefix) {
+        // identities are only cached, so invalid entries are not critical; they will simply be probed again
+        try {
+            USBDeviceId usbDeviceId = parseUSBInterface(properties, prefix);
+            if (!hasSerial(usbDeviceId)) {
+                LOGGER.warn("Ignoring known identity {} as USB interface has no serial number", prefix);
+                return;
+            }
+
+            KnownIdentity identity = new KnownIdentity(
+                ModuleId.builder()
+                        .setType(getMandatoryString(properties, prefix + PROPERTY_MODULE_TYPE))
+                        .setName(getMandatoryString(properties, prefix + PROPERTY_MODULE_NAME))
+                        .setSerial(getMandatoryString(properties, prefix + PROPERTY_MODULE_DEVICE_SERIAL))
+                        .build(),
+                getMandatoryString(properties, prefix + PROPERTY_KNOWN_IDENTITY_VERSION)
+            );
+            knownIdentities.put(usbDeviceId, identity);
+        } catch (IllegalArgumentException ex) {
+            LOGGER.warn("Ignoring invalid known identity {}", prefix, ex);
+        }
+    }
+
+    private CommunicationSettings parseCommunicationSettings(Properties properties) {
+        CommunicationSettings.Builder builder = CommunicationSettings.builder();
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_DEVICE_IO)
+            .map(x -> parseEnum(DeviceIO.Implementation.class, PROPERTY_COMMUNICATION_DEVICE_IO, x))
+            .ifPresent(builder::setDeviceIOImplementation);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_EXECUTION_MODE)
+            .map(x -> parseEnum(DeviceCommunicator.ExecutionMode.class, PROPERTY_COMMUNICATION_EXECUTION_MODE, x))
+            .ifPresent(builder::setExecutionMode);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_SEND_QUEUE_CAPACITY)
+            .map(x -> parseInt(PROPERTY_COMMUNICATION_SEND_QUEUE_CAPACITY, x))
+            .ifPresent(builder::setSendQueueCapacity);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_WRITE_COALESCING_MICROS)
+            .map(x -> parseInt(PROPERTY_COMMUNICATION_WRITE_COALESCING_MICROS, x))
+            .map(x -> Duration.of(x, ChronoUnit.MICROS))
+            .ifPresent(builder::setWriteCoalescingWindow);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_OUTPUT_BYTES_PER_SECOND)
+            .map(x -> parseInt(PROPERTY_COMMUNICATION_OUTPUT_BYTES_PER_SECOND, x))
+            .ifPresent(builder::setOutputBytesPerSecond);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_OUTPUT_BURST_BYTES)
+            .map(x -> parseInt(PROPERTY_COMMUNICATION_OUTPUT_BURST_BYTES, x))
+            .ifPresent(builder::setOutputBurstBytes);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_OUTPUT_MESSAGES_PER_SECOND)
+            .map(x -> parseInt(PROPERTY_COMMUNICATION_OUTPUT_MESSAGES_PER_SECOND, x))
+            .ifPresent(builder::setOutputMessagesPerSecond);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_OUTPUT_BURST_MESSAGES)
+            .map(x -> parseInt(PROPERTY_COMMUNICATION_OUTPUT_BURST_MESSAGES, x))
+            .ifPresent(builder::setOutputBurstMessages);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_KEEP_PROBE_CONNECTION)
+            .map(x -> parseBoolean(PROPERTY_COMMUNICATION_KEEP_PROBE_CONNECTION, x))
+            .ifPresent(builder::setKeepProbeConnection);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_USE_KNOWN_IDENTITIES)
+            .map(x -> parseBoolean(PROPERTY_COMMUNICATION_USE_KNOWN_IDENTITIES, x))
+            .ifPresent(builder::setUseKnownIdentities);
+
+        getOptionalString(properties, PROPERTY_COMMUNICATION_CAPTURE_DIRECTORY)
+            .map(String::trim)
+            .filter(x -> !x.isEmpty())
+            .map(File::new)
+            .ifPresent(builder::setTrafficCaptureDirectory);
+
+        return builder.build();
+    }
+
+    private static <T extends Enum<T>> T parseEnum(Class<T> enumClass, String key, String value) {
+        try {
+            return Enum.valueOf(enumClass, value.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": \"" + value + "\"", ex);
+        }
+    }
+
+    private static int parseInt(String key, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": \"" + value + "\"", ex);
+        }
+    }
+
+    private static boolean parseBoolean(String key, String value) {
+        String normalized = value.trim().toLowerCase();
+        if ("true".equals(normalized)) {
+            return true;
+        } else if ("false".equals(normalized)) {
+            return false;
+        }
+
+        throw new IllegalArgumentException("Invalid value for " + key + ": \"" + value + "\"");
+    }
+
     private static Stream<String> streamKeys(Properties properties) {
         return properties.keySet()
                          .stream()
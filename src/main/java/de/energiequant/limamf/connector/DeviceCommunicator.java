@@ -1,20 +1,25 @@
 package de.energiequant.limamf.connector;
 
-import static de.energiequant.limamf.connector.utils.TimeUtils.millisRemaining;
-
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
 
 import org.slf4j.Logger;
@@ -24,25 +29,110 @@ import de.energiequant.limamf.compat.protocol.CommandMessage;
 import de.energiequant.limamf.compat.protocol.CommandMessageDecoder;
 import de.energiequant.limamf.compat.protocol.GetInfoMessage;
 import de.energiequant.limamf.compat.protocol.IdentificationInfoMessage;
+import de.energiequant.limamf.connector.utils.BoundedMpscQueue;
 import de.energiequant.limamf.connector.utils.OperatingSystem;
+import de.energiequant.limamf.connector.utils.Threads;
 
 public class DeviceCommunicator {
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceCommunicator.class);
 
+    /**
+     * Controls which threads perform I/O for a {@link DeviceCommunicator}.
+     */
+    public enum ExecutionMode {
+        /**
+         * Each communicator starts its own threads for sending and receiving.
+         */
+        DEDICATED_THREADS,
+
+        /**
+         * All communicators share the same threads, see {@link IOReactor}. Unless devices are accessed natively
+         * ({@link DeviceIO.Implementation#NATIVE}, opt-in, Java 22 or later on 64-bit Linux), received data is
+         * polled, so this mode trades a small increase in receive latency and periodic wake-ups while idle for a
+         * constant number of threads. Receive callbacks of all devices run on the same thread, so a slow callback
+         * delays all other devices.
+         */
+        SHARED_REACTOR;
+    }
+
+    public static final ExecutionMode DEFAULT_EXECUTION_MODE = ExecutionMode.DEDICATED_THREADS;
+
+    enum SendStepResult {
+        /**
+         * Nothing left to do until further messages are queued.
+         */
+        IDLE,
+
+        /**
+         * Step needs to be repeated at {@link #getSendWakeupNanos()}.
+         */
+        SCHEDULED,
+
+        /**
+         * Sending has terminated, step must not be repeated.
+         */
+        TERMINATED;
+    }
+
     private final String logPrefix;
-    private final String protocolVersion;
+    private volatile String protocolVersion;
 
     private final DeviceIO io;
-    private final BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback;
+    private final RecordingDeviceIO recordingIO;
+    private volatile BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback;
 
     private final AtomicBoolean shutdown = new AtomicBoolean();
-    private final Deque<String> sendQueue = new LinkedList<>();
+    private final BoundedMpscQueue<Outgoing> sendQueue;
+    private final ConcurrentMap<Object, Outgoing> pendingReplaceable = new ConcurrentHashMap<>();
+    private volatile boolean sendThreadWaiting = false;
+    private final long writeCoalescingWindowNanos;
+    private final OutputPacer pacer;
     private final AtomicInteger ioUsers = new AtomicInteger();
 
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong sentMessageCount = new AtomicLong();
+    private final AtomicLong sentByteCount = new AtomicLong();
+    private final AtomicInteger maxMessagesPerFlush = new AtomicInteger();
+    private final AtomicLong replacedMessageCount = new AtomicLong();
+    private final AtomicLong droppedMessageCount = new AtomicLong();
+    private final AtomicLong throttleCount = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    private final CommandMessageDecoder messageDecoder = new CommandMessageDecoder();
+    private long lastReadNanos;
+
+    private final FrameDecoder frameDecoder;
+    private volatile boolean receiveTerminated = false;
+    private final AtomicReference<CompletableFuture<IdentificationInfoMessage>> pendingIdentification = new AtomicReference<>();
+
+    // state of sending side, only accessed by the thread running it
+    private final FrameEncoder encoder = new FrameEncoder();
+    private final List<Outgoing> batch = new ArrayList<>();
+    private int batchMessages = 0;
+    private Outgoing coalescingOutgoing;
+    private long coalescingUntilNanos;
+    private Outgoing throttledOutgoing;
+    private String throttledPayload;
+    private long throttledUntilNanos;
+    private long sendWakeupNanos;
+    private volatile boolean sendTerminated = false;
+
+    /**
+     * Counted down once each by receiving and sending side when terminated.
+     */
+    private final CountDownLatch terminated = new CountDownLatch(2);
+
+    private final IOReactor reactor;
     private final Thread sendThread;
     private final Thread receiveThread;
 
-    private static final long CHECK_INTERVAL = 5000;
+    /**
+     * Set while queued for sending by {@link IOReactor}, see {@link IOReactor#scheduleSend(DeviceCommunicator)}.
+     */
+    final AtomicBoolean sendScheduled = new AtomicBoolean();
+
+    private static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
 
     private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
     private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
@@ -52,137 +142,703 @@ public class DeviceCommunicator {
     }
 
     public DeviceCommunicator(File deviceNode, String protocolVersion, BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback) {
-        this.logPrefix = "[" + deviceNode.getAbsolutePath() + "] ";
+        this(deviceNode, protocolVersion, CommunicationSettings.DEFAULT, receiveCallback);
+    }
+
+    public DeviceCommunicator(File deviceNode, String protocolVersion, CommunicationSettings settings, BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback) {
+        this(openDeviceNode(deviceNode, settings), protocolVersion, settings, receiveCallback);
+    }
+
+    /**
+     * Communicates through an already opened {@link DeviceIO}, for example one connected to an emulated device in
+     * tests and benchmarks (see {@code EmulatedDevice} in the test sources). The {@link DeviceIO} implementation
+     * configured in the settings is not used, traffic is still recorded if configured (see
+     * {@link CommunicationSettings#getTrafficCaptureDirectory()}). The {@link DeviceIO} will be closed when the
+     * communicator shuts down.
+     *
+     * @param io              opened device to communicate through
+     * @param protocolVersion protocol version of the device; null if not known yet
+     * @param settings        communication settings
+     * @param receiveCallback callback to handle received messages
+     */
+    public DeviceCommunicator(DeviceIO io, String protocolVersion, CommunicationSettings settings, BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback) {
+        this(io, protocolVersion, settings, receiveCallback, settings.getExecutionMode());
+    }
+
+    /**
+     * Creates a communicator without starting any threads or registering with a reactor; the execution mode
+     * configured in the settings is ignored. The sending and receiving side only proceed when
+     * {@link #sendStep(long)} and {@link #receiveStep(ByteBuffer)} are called.
+     * <p>
+     * Visible for testing only.
+     * </p>
+     *
+     * @param io              opened device to communicate through
+     * @param protocolVersion protocol version of the device; null if not known yet
+     * @param settings        communication settings
+     * @param receiveCallback callback to handle received messages
+     * @return communicator to be stepped manually
+     */
+    static DeviceCommunicator createStepped(DeviceIO io, String protocolVersion, CommunicationSettings settings, BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback) {
+        return new DeviceCommunicator(io, protocolVersion, settings, receiveCallback, null);
+    }
+
+    private DeviceCommunicator(DeviceIO io, String protocolVersion, CommunicationSettings settings, BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback, ExecutionMode executionMode) {
+        this.logPrefix = io.getLogPrefix();
 
         this.protocolVersion = protocolVersion;
         this.receiveCallback = receiveCallback;
+        this.sendQueue = new BoundedMpscQueue<>(settings.getSendQueueCapacity());
+        this.writeCoalescingWindowNanos = settings.getWriteCoalescingWindow().toNanos();
+        this.pacer = new OutputPacer(settings, System.nanoTime());
+        this.frameDecoder = new FrameDecoder(this::handleReceivedFrame);
+
+        this.recordingIO = settings.getTrafficCaptureDirectory()
+                                   .map(directory -> new RecordingDeviceIO(io, directory))
+                                   .orElse(null);
+        this.io = (recordingIO != null) ? recordingIO : io;
+
+        // probing connections are not recorded, see upgrade
+        if (protocolVersion != null) {
+            startTrafficCapture();
+        }
 
-        // serial echo needs to be disabled, otherwise Linux sends everything it received back to the device
-        OperatingSystem.disableSerialEcho(deviceNode);
+        ioUsers.set(2);
 
-        this.io = DeviceIO.openDeviceNode(deviceNode);
+        if (executionMode == null) {
+            reactor = null;
+            receiveThread = null;
+            sendThread = null;
+            return;
+        }
 
-        ioUsers.set(2);
+        switch (executionMode) {
+            case DEDICATED_THREADS:
+                reactor = null;
+
+                // reads block in system calls for as long as the device is idle which would occupy the carrier of a
+                // virtual thread for all implementations; writes also block in system calls for as long as the device
+                // does not accept further data
+                String threadNamePrefix = "DeviceCommunicator " + logPrefix.trim();
+                receiveThread = Threads.newPlatformThread(threadNamePrefix + " recv", this::receiveLoop);
+                sendThread = Threads.newPlatformThread(threadNamePrefix + " send", this::sendLoop);
+
+                receiveThread.start();
+                sendThread.start();
+                break;
 
-        receiveThread = new Thread(this::receiveLoop);
-        sendThread = new Thread(this::sendLoop);
+            case SHARED_REACTOR:
+                reactor = IOReactor.shared();
+                receiveThread = null;
+                sendThread = null;
 
-        receiveThread.start();
-        sendThread.start();
+                reactor.register(this);
+                break;
+
+            default:
+                throw new IllegalArgumentException("unsupported execution mode: " + executionMode);
+        }
+    }
+
+    private static DeviceIO openDeviceNode(File deviceNode, CommunicationSettings settings) {
+        OperatingSystem.configureSerialLine(deviceNode);
+
+        return DeviceIO.openDeviceNode(deviceNode, settings.getDeviceIOImplementation());
+    }
+
+    String getLogPrefix() {
+        return logPrefix;
+    }
+
+    DeviceIO getDeviceIO() {
+        return io;
+    }
+
+    /**
+     * Upgrades a communicator that has been opened without a protocol version (as used for probing) to full
+     * communication with the given protocol version. All messages received afterwards are handed to the new callback.
+     * <p>
+     * This allows a connection used to identify a device to be handed over instead of being closed and opened again,
+     * see {@link #probeAndKeepOpen(File, CommunicationSettings)}. Traffic is only recorded from then on (see
+     * {@link CommunicationSettings#getTrafficCaptureDirectory()}).
+     * </p>
+     *
+     * @param protocolVersion protocol version reported by the device
+     * @param receiveCallback callback to handle all further received messages
+     * @throws IllegalStateException if a protocol version has already been set
+     */
+    public synchronized void upgrade(String protocolVersion, BiConsumer<DeviceCommunicator, CommandMessage> receiveCallback) {
+        if (protocolVersion == null) {
+            throw new IllegalArgumentException("protocol version must not be null");
+        }
+
+        if (this.protocolVersion != null) {
+            throw new IllegalStateException("protocol version has already been set to " + this.protocolVersion);
+        }
+
+        LOGGER.debug("{}upgrading to protocol version {}", logPrefix, protocolVersion);
+
+        // callback needs to be replaced first so that it is in place by the time messages can be sent using the new version
+        this.receiveCallback = receiveCallback;
+        this.protocolVersion = protocolVersion;
+
+        startTrafficCapture();
+    }
+
+    private void startTrafficCapture() {
+        if (recordingIO != null) {
+            recordingIO.startRecording();
+        }
+    }
+
+    /**
+     * Checks if the communicator has been shut down, either by request or because the connection has been lost.
+     *
+     * @return true if shut down, false if still active
+     */
+    public boolean isShutdown() {
+        return shutdown.get();
     }
 
     private void receiveLoop() {
         LOGGER.debug("{}[recv] thread starting", logPrefix);
 
-        CommandMessageDecoder decoder = new CommandMessageDecoder();
+        // buffer is only allocated once per connection, no garbage is produced by framing received data
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
 
-        char[] tmp = new char[4096];
-        StringBuilder collector = new StringBuilder();
-        boolean escaped = false;
+        try {
+            while (!shutdown.get()) {
+                buffer.clear();
+                int res = io.readAtLeastOneInto(buffer);
+                lastReadNanos = System.nanoTime();
+                if (res == -1) {
+                    LOGGER.debug("{}[recv] stream has been closed", logPrefix);
+                    break;
+                }
+                if (res < 1) {
+                    LOGGER.warn("{}[recv] unexpected result on read attempt: {}", logPrefix, res);
+                    break;
+                }
 
-        while (!shutdown.get()) {
-            int res = io.readAtLeastOneInto(tmp);
-            if (res == -1) {
-                LOGGER.debug("{}[recv] stream has been closed", logPrefix);
-                break;
-            }
-            if (res < 1) {
-                LOGGER.warn("{}[recv] unexpected result on read attempt: {}", logPrefix, res);
-                break;
+                buffer.flip();
+                decodeReceived(buffer);
             }
+        } catch (Exception ex) {
+            LOGGER.warn("{}[recv] failed to read from device", logPrefix, ex);
+        } finally {
+            // waitForShutdown depends on termination being signaled, even if the thread dies unexpectedly
+            terminateReceive();
+        }
 
-            for (int i = 0; i < res; i++) {
-                char ch = tmp[i];
-
-                if (escaped) {
-                    escaped = false;
-                } else {
-                    if (ch == CommandMessage.ESCAPE_CHARACTER) {
-                        escaped = true;
-                    } else if (ch == CommandMessage.COMMAND_SEPARATOR) {
-                        String s = trimLeadingLineBreaks(collector.toString());
-                        collector = new StringBuilder();
-
-                        LOGGER.debug("{}[recv] received: \"{}\"", logPrefix, s);
-
-                        CommandMessage msg;
-                        try {
-                            msg = decoder.deserialize(s);
-                        } catch (Exception ex) {
-                            LOGGER.warn("{}[recv] failed to parse message \"{}\"", logPrefix, s, ex);
-                            break;
-                        }
-
-                        try {
-                            receiveCallback.accept(this, msg);
-                        } catch (Exception ex) {
-                            LOGGER.warn("{}[recv] failed to handle message {}", logPrefix, msg, ex);
-                            break;
-                        }
-
-                        continue;
-                    }
-                }
+        LOGGER.debug("{}[recv] thread terminated", logPrefix);
+    }
 
-                collector.append(ch);
-            }
+    /**
+     * Reads and handles all data currently available from the device without blocking. Used by {@link IOReactor};
+     * must always be called from the same thread.
+     *
+     * @param buffer buffer to read into; contents will be overwritten
+     * @return number of bytes read; -1 if the receiving side has terminated and must not be called again
+     */
+    int receiveStep(ByteBuffer buffer) {
+        if (receiveTerminated) {
+            return -1;
         }
 
+        if (shutdown.get()) {
+            terminateReceive();
+            return -1;
+        }
+
+        buffer.clear();
+
+        int res;
+        try {
+            res = io.readAvailableInto(buffer);
+        } catch (Exception ex) {
+            LOGGER.warn("{}[recv] failed to read from device", logPrefix, ex);
+            terminateReceive();
+            return -1;
+        }
+
+        if (res < 0) {
+            LOGGER.debug("{}[recv] stream has been closed", logPrefix);
+            terminateReceive();
+            return -1;
+        }
+
+        if (res > 0) {
+            lastReadNanos = System.nanoTime();
+            buffer.flip();
+            decodeReceived(buffer);
+        }
+
+        return res;
+    }
+
+    private void decodeReceived(ByteBuffer buffer) {
+        InputLatency.begin(lastReadNanos);
+        try {
+            frameDecoder.decode(buffer);
+        } finally {
+            InputLatency.end();
+        }
+    }
+
+    private void terminateReceive() {
         LOGGER.debug("{}[recv] shutdown", logPrefix);
+        receiveTerminated = true;
         shutdown.set(true);
         io.tryClose();
 
-        LOGGER.debug("{}[recv] thread terminated", logPrefix);
+        CompletableFuture<IdentificationInfoMessage> identification = pendingIdentification.getAndSet(null);
+        if (identification != null) {
+            identification.completeExceptionally(new NotReceived(logPrefix + "connection closed before identification was received"));
+        }
+
+        // sending side needs to notice the shutdown as well
+        wakeSender();
+
+        terminated.countDown();
+    }
+
+    private boolean handleReceivedFrame(String s) {
+        InputLatency.mark(InputLatency.Stage.FRAMED);
+        LOGGER.debug("{}[recv] received: \"{}\"", logPrefix, s);
+
+        CommandMessage msg;
+        try {
+            msg = messageDecoder.deserialize(s);
+        } catch (Exception ex) {
+            LOGGER.warn("{}[recv] failed to parse message \"{}\"", logPrefix, s, ex);
+            return false;
+        }
+        InputLatency.mark(InputLatency.Stage.DECODED);
+
+        if (msg instanceof IdentificationInfoMessage) {
+            CompletableFuture<IdentificationInfoMessage> identification = pendingIdentification.getAndSet(null);
+            if (identification != null) {
+                // requested through requestIdentification, not meant for the callback
+                identification.complete((IdentificationInfoMessage) msg);
+                return true;
+            }
+        }
+
+        try {
+            receiveCallback.accept(this, msg);
+        } catch (Exception ex) {
+            LOGGER.warn("{}[recv] failed to handle message {}", logPrefix, msg, ex);
+            return false;
+        }
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{}[recv] message handled {}us after read", logPrefix, (System.nanoTime() - lastReadNanos) / 1000);
+        }
+
+        return true;
     }
 
     private void sendLoop() {
         LOGGER.debug("{}[send] thread starting", logPrefix);
 
-        Deque<String> processing = new LinkedList<>();
-        while (!shutdown.get()) {
-            synchronized (sendQueue) {
-                if (!sendQueue.isEmpty()) {
-                    processing.addAll(sendQueue);
-                    sendQueue.clear();
-                }
+        while (true) {
+            SendStepResult result = sendStep(System.nanoTime());
+
+            if (result == SendStepResult.TERMINATED) {
+                break;
             }
 
-            if (!processing.isEmpty()) {
-                try {
-                    while (!shutdown.get() && !processing.isEmpty()) {
-                        String s = processing.removeFirst();
+            if (result == SendStepResult.SCHEDULED) {
+                // coalescing or throttling; there is no need to indicate that we are waiting as early wake-ups would
+                // only result in the same deadline to be returned again
+                LockSupport.parkNanos(this, sendWakeupNanos - System.nanoTime());
+                continue;
+            }
 
-                        LOGGER.debug("{}[send] sending: \"{}\"", logPrefix, s);
-                        io.write(s);
-                    }
+            // Producers only unpark us if we indicated to be waiting. The queue needs to be checked again after
+            // setting the flag as something may have been queued in between.
+            sendThreadWaiting = true;
+            if (!sendQueue.isEmpty()) {
+                // a producer has claimed a slot but not finished writing it yet
+                Thread.yield();
+            } else if (!shutdown.get()) {
+                LockSupport.parkNanos(this, CHECK_INTERVAL_NANOS);
+            }
+            sendThreadWaiting = false;
+        }
 
-                    io.flush();
-                } catch (Exception ex) {
-                    LOGGER.warn("{}[send] failed to send queue to device", logPrefix, ex);
-                    break;
-                }
+        LOGGER.debug("{}[send] thread terminated", logPrefix);
+    }
+
+    /**
+     * Processes the send queue as far as possible without blocking. Must always be called from the same thread.
+     * <p>
+     * If the result is {@link SendStepResult#SCHEDULED}, the step should be repeated at {@link #sendWakeupNanos}
+     * (e.g. to wait for the coalescing window to pass or output to be no longer throttled). If the result is
+     * {@link SendStepResult#IDLE}, the step only needs to be repeated when new messages have been queued.
+     * </p>
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return how to proceed
+     */
+    SendStepResult sendStep(long nowNanos) {
+        if (sendTerminated) {
+            return SendStepResult.TERMINATED;
+        }
+
+        if (shutdown.get()) {
+            terminateSend();
+            return SendStepResult.TERMINATED;
+        }
+
+        try {
+            return processSendQueue(nowNanos);
+        } catch (Exception ex) {
+            LOGGER.warn("{}[send] failed to send queue to device", logPrefix, ex);
+            for (Outgoing failed : batch) {
+                failed.fail(ex);
             }
+            batch.clear();
 
-            synchronized (sendQueue) {
-                if (!shutdown.get() && sendQueue.isEmpty()) {
-                    try {
-                        sendQueue.wait(CHECK_INTERVAL);
-                    } catch (InterruptedException ex) {
-                        LOGGER.warn("{}[send] interrupted while waiting on queue", logPrefix, ex);
-                        break;
-                    }
+            terminateSend();
+            return SendStepResult.TERMINATED;
+        }
+    }
+
+    long getSendWakeupNanos() {
+        return sendWakeupNanos;
+    }
+
+    private SendStepResult processSendQueue(long nowNanos) {
+        if (throttledOutgoing != null) {
+            // resume a batch that had to be interrupted to throttle output
+            if (nowNanos - throttledUntilNanos < 0) {
+                sendWakeupNanos = throttledUntilNanos;
+                return SendStepResult.SCHEDULED;
+            }
+
+            Outgoing outgoing = throttledOutgoing;
+            String payload = throttledPayload;
+            throttledOutgoing = null;
+            throttledPayload = null;
+
+            appendToBatch(outgoing, payload);
+        } else {
+            if (coalescingOutgoing == null) {
+                coalescingOutgoing = sendQueue.poll();
+                if (coalescingOutgoing == null) {
+                    return SendStepResult.IDLE;
                 }
+
+                // give producers a chance to queue related messages so they can be written all at once
+                coalescingUntilNanos = coalescingOutgoing.isFlushMarker() ? nowNanos : nowNanos + writeCoalescingWindowNanos;
+            }
+
+            if (nowNanos - coalescingUntilNanos < 0) {
+                sendWakeupNanos = coalescingUntilNanos;
+                return SendStepResult.SCHEDULED;
+            }
+
+            Outgoing outgoing = coalescingOutgoing;
+            coalescingOutgoing = null;
+
+            if (!processOutgoing(outgoing, nowNanos)) {
+                return SendStepResult.SCHEDULED;
+            }
+        }
+
+        // all pending messages are encoded into a single buffer and written at once unless we need to throttle output
+        Outgoing outgoing;
+        while (!shutdown.get() && (outgoing = sendQueue.poll()) != null) {
+            if (!processOutgoing(outgoing, nowNanos)) {
+                return SendStepResult.SCHEDULED;
             }
         }
 
-        LOGGER.debug("{}[send] shutdown", logPrefix);
+        writeBatch();
+
+        return SendStepResult.IDLE;
+    }
+
+    /**
+     * Takes the payload of the given entry and appends it to the current batch, unless output needs to be throttled.
+     *
+     * @param outgoing entry taken from send queue
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return true if appended, false if throttled (batch has been written, entry is held back until
+     *     {@link #sendWakeupNanos})
+     */
+    private boolean processOutgoing(Outgoing outgoing, long nowNanos) {
+        String payload = outgoing.take(pendingReplaceable);
+        if (payload == Outgoing.SUPERSEDED) {
+            // replacement is queued further down, anyone waiting gets notified through it
+            return true;
+        }
+
+        // flush markers have no payload, they only need to be completed with the batch
+        if (payload != null && pacer.isEnabled()) {
+            long delay = pacer.reserve(payload.length() + 1, nowNanos);
+            if (delay > 0) {
+                // send what we have so far, then wait until the next message is allowed to be sent
+                writeBatch();
+                recordThrottle(delay);
+
+                throttledOutgoing = outgoing;
+                throttledPayload = payload;
+                throttledUntilNanos = nowNanos + delay;
+                sendWakeupNanos = throttledUntilNanos;
+
+                return false;
+            }
+        }
+
+        appendToBatch(outgoing, payload);
+
+        return true;
+    }
+
+    private void appendToBatch(Outgoing outgoing, String payload) {
+        if (payload != null) {
+            LOGGER.debug("{}[send] sending: \"{}\"", logPrefix, payload);
+            encoder.append(payload);
+            batchMessages++;
+        }
+
+        batch.add(outgoing);
+    }
+
+    private void writeBatch() {
+        int numBytes = encoder.size();
+        if (numBytes > 0) {
+            io.write(encoder.flip());
+            recordFlush(batchMessages, numBytes);
+        }
+
+        for (Outgoing sent : batch) {
+            sent.complete();
+        }
+
+        encoder.clear();
+        batch.clear();
+        batchMessages = 0;
+    }
+
+    private void terminateSend() {
+        LOGGER.debug("{}[send] shutdown, {}", logPrefix, getStatistics());
+        sendTerminated = true;
         shutdown.set(true);
         io.tryClose();
 
-        LOGGER.debug("{}[send] thread terminated", logPrefix);
+        // nothing will be sent anymore, anyone waiting for remaining messages needs to be notified
+        NotSent cause = new NotSent(logPrefix + "communicator has been shut down");
+        for (Outgoing outgoing : batch) {
+            outgoing.fail(cause);
+        }
+        batch.clear();
+
+        if (coalescingOutgoing != null) {
+            coalescingOutgoing.fail(cause);
+            coalescingOutgoing = null;
+        }
+
+        if (throttledOutgoing != null) {
+            throttledOutgoing.fail(cause);
+            throttledOutgoing = null;
+        }
+
+        Outgoing outgoing;
+        while ((outgoing = sendQueue.poll()) != null) {
+            outgoing.fail(cause);
+        }
+
+        terminated.countDown();
     }
 
+    private void recordThrottle(long delayNanos) {
+        LOGGER.trace("{}[send] throttling output for {}us", logPrefix, delayNanos / 1000);
+
+        throttleCount.incrementAndGet();
+        throttledNanos.addAndGet(delayNanos);
+    }
+
+    private void recordFlush(int numMessages, int numBytes) {
+        LOGGER.trace("{}[send] flushed {} messages, {} bytes", logPrefix, numMessages, numBytes);
+
+        // only updated by send thread
+        flushCount.incrementAndGet();
+        sentMessageCount.addAndGet(numMessages);
+        sentByteCount.addAndGet(numBytes);
+        if (numMessages > maxMessagesPerFlush.get()) {
+            maxMessagesPerFlush.set(numMessages);
+        }
+    }
+
+    /**
+     * Returns a snapshot of counters collected since the communicator was created.
+     *
+     * @return current statistics
+     */
+    public CommunicationStatistics getStatistics() {
+        return CommunicationStatistics.builder()
+                                      .setFlushCount(flushCount.get())
+                                      .setSentMessageCount(sentMessageCount.get())
+                                      .setSentByteCount(sentByteCount.get())
+                                      .setMaxMessagesPerFlush(maxMessagesPerFlush.get())
+                                      .setReplacedMessageCount(replacedMessageCount.get())
+                                      .setDroppedMessageCount(droppedMessageCount.get())
+                                      .setThrottleCount(throttleCount.get())
+                                      .setThrottledNanos(throttledNanos.get())
+                                      .build();
+    }
+
+    /**
+     * Queues a message to be sent to the device.
+     * <p>
+     * If the send queue is full (see {@link CommunicationSettings#getSendQueueCapacity()}), the message is dropped.
+     * Dropped messages are logged and counted in {@link CommunicationStatistics#getDroppedMessageCount()}; use
+     * {@link #sendTracked(CommandMessage)} to get notified about individual messages.
+     * </p>
+     *
+     * @param msg message to send
+     */
     public void send(CommandMessage msg) {
+        checkSendable(msg);
+
+        // separator gets appended when encoding
+        enqueue(new Outgoing(null, msg.serialize()), msg);
+    }
+
+    /**
+     * Sends a message like {@link #send(CommandMessage)} but allows to track when it has been written to the device.
+     *
+     * @param msg message to send
+     * @return completes when the message has been written to the device; completes exceptionally if the message
+     *     cannot be sent, including when it has been dropped due to a full send queue
+     */
+    public CompletableFuture<Void> sendTracked(CommandMessage msg) {
+        checkSendable(msg);
+
+        Outgoing outgoing = new Outgoing(null, msg.serialize());
+        CompletableFuture<Void> future = outgoing.completion();
+        enqueue(outgoing, msg);
+
+        return future;
+    }
+
+    /**
+     * Requests the device to identify itself. The response is not handed to the receive callback but completes the
+     * returned future instead. This allows the identity of a device to be verified on an established connection
+     * without interfering with regular communication.
+     *
+     * @return completes with the identification received from the device; fails if the connection is closed before
+     * @throws IllegalStateException if an identification is already pending
+     */
+    public CompletableFuture<IdentificationInfoMessage> requestIdentification() {
+        CompletableFuture<IdentificationInfoMessage> future = new CompletableFuture<>();
+        if (!pendingIdentification.compareAndSet(null, future)) {
+            throw new IllegalStateException("identification has already been requested");
+        }
+
+        sendTracked(new GetInfoMessage()).whenComplete((x, ex) -> {
+            if (ex != null && pendingIdentification.compareAndSet(future, null)) {
+                future.completeExceptionally(ex);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Sends a message like {@link #sendReplacing(Object, CommandMessage)} but allows to track when it has been
+     * written to the device. If the message is replaced before being sent, the future completes when the replacement
+     * has been written.
+     *
+     * @param key identifies what is being manipulated by the message, e.g. the pin number
+     * @param msg message to send
+     * @return completes when the message (or its replacement) has been written to the device; completes exceptionally
+     *     if the message cannot be sent
+     */
+    public CompletableFuture<Void> sendReplacingTracked(Object key, CommandMessage msg) {
+        return enqueueReplacing(key, msg).completion();
+    }
+
+    /**
+     * Waits until all messages that have been queued before this call have been written to the device.
+     *
+     * @param timeout maximum time to wait
+     * @return true if all messages have been written, false if timed out or messages could not be sent
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        if (shutdown.get()) {
+            LOGGER.debug("{}unable to flush, communicator has been shut down", logPrefix);
+            return false;
+        }
+
+        Outgoing marker = new Outgoing(null, null);
+        CompletableFuture<Void> future = marker.completion();
+        enqueue(marker, null);
+
+        try {
+            future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            LOGGER.debug("{}flush timed out after {}", logPrefix, timeout);
+            return false;
+        } catch (ExecutionException ex) {
+            LOGGER.debug("{}flush failed", logPrefix, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Sends a message that supersedes any previous message sent for the same key.
+     * <p>
+     * If a message for the same key is still waiting to be sent, it gets dropped and the new message is queued at the
+     * end instead. This way only the latest state is being transmitted (e.g. an output pin's brightness) while all
+     * messages that actually get sent remain in the order they have been requested. Sending A, B, A' (A' replacing A)
+     * results in B, A' being sent.
+     * </p>
+     *
+     * @param key identifies what is being manipulated by the message, e.g. the pin number; must implement
+     *            {@link Object#equals(Object)} and {@link Object#hashCode()}
+     * @param msg message to send
+     */
+    public void sendReplacing(Object key, CommandMessage msg) {
+        enqueueReplacing(key, msg);
+    }
+
+    private Outgoing enqueueReplacing(Object key, CommandMessage msg) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+
+        checkSendable(msg);
+
+        // separator gets appended when encoding
+        Outgoing outgoing = new Outgoing(key, msg.serialize());
+        Outgoing previous = pendingReplaceable.put(key, outgoing);
+
+        if (!enqueue(outgoing, msg)) {
+            // previous message (if any) remains queued and will be sent, so it must still be possible to supersede it
+            if (previous != null) {
+                pendingReplaceable.replace(key, outgoing, previous);
+            } else {
+                pendingReplaceable.remove(key, outgoing);
+            }
+            return outgoing;
+        }
+
+        // previous message is only dropped once its replacement has been queued behind it
+        if ((previous != null) && previous.supersede(outgoing)) {
+            LOGGER.trace("{}replaced pending message for {}", logPrefix, key);
+            replacedMessageCount.incrementAndGet();
+        }
+
+        return outgoing;
+    }
+
+    private void checkSendable(CommandMessage msg) {
         if (protocolVersion == null) {
             if (!(msg instanceof GetInfoMessage)) {
                 LOGGER.warn("Only device identification must be requested from device while version is unknown, got: {}", msg);
@@ -196,50 +852,69 @@ public class DeviceCommunicator {
 
             LOGGER.debug("Non-critical message has not been tested for {}: {}", protocolVersion, msg);
         }
+    }
 
-        String serialized = msg.serialize() + CommandMessage.COMMAND_SEPARATOR;
+    private boolean enqueue(Outgoing outgoing, CommandMessage msg) {
+        if (!sendQueue.offer(outgoing)) {
+            long dropped = droppedMessageCount.incrementAndGet();
+            LOGGER.warn("{}send queue is full, dropping message ({} dropped in total): {}", logPrefix, dropped, msg);
+            outgoing.fail(new SendQueueFull(sendQueue.getCapacity()));
+            return false;
+        }
 
-        synchronized (sendQueue) {
-            sendQueue.add(serialized);
-            sendQueue.notifyAll();
+        if (shutdown.get()) {
+            // send thread may already have terminated and not drain the queue anymore
+            outgoing.fail(new NotSent(logPrefix + "communicator has been shut down"));
+            return true;
         }
-    }
 
-    public void shutdownAsync() {
-        LOGGER.debug("{}requesting shutdown", logPrefix);
-        shutdown.set(true);
+        wakeSender();
+        return true;
+    }
 
-        // wake up send thread which will close streams when terminating which unblocks receive thread
-        synchronized (sendQueue) {
-            sendQueue.notifyAll();
+    private void wakeSender() {
+        if (reactor != null) {
+            reactor.scheduleSend(this);
+        } else if (sendThreadWaiting) {
+            LockSupport.unpark(sendThread);
         }
     }
 
-    public boolean waitForShutdown(Duration timeout) throws InterruptedException {
-        Instant deadline = Instant.now().plus(timeout);
-
-        shutdownAsync();
-
-        boolean success = true;
-        success &= joinUntil(receiveThread, deadline);
-        success &= joinUntil(sendThread, deadline);
+    /**
+     * Returns the number of messages currently waiting to be sent.
+     *
+     * @return number of queued messages
+     */
+    public int getSendQueueDepth() {
+        return sendQueue.size();
+    }
 
-        return success;
+    /**
+     * Returns the maximum number of messages that have been waiting to be sent at the same time since the
+     * communicator was created.
+     *
+     * @return maximum number of queued messages
+     */
+    public int getSendQueueHighWaterMark() {
+        return sendQueue.getHighWaterMark();
     }
 
-    private boolean joinUntil(Thread thread, Instant deadline) throws InterruptedException {
-        if (!thread.isAlive()) {
-            return true;
-        }
+    public void shutdownAsync() {
+        LOGGER.debug("{}requesting shutdown", logPrefix);
+        shutdown.set(true);
 
-        Optional<Long> remaining = millisRemaining(deadline);
-        if (!remaining.isPresent()) {
-            return false;
+        // wake up sending side which will close streams when terminating which unblocks receiving side
+        if (reactor != null) {
+            reactor.scheduleSend(this);
+        } else {
+            LockSupport.unpark(sendThread);
         }
+    }
 
-        thread.join(remaining.get());
+    public boolean waitForShutdown(Duration timeout) throws InterruptedException {
+        shutdownAsync();
 
-        return true;
+        return terminated.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
     }
 
     private void releaseIO() {
@@ -252,28 +927,40 @@ public class DeviceCommunicator {
         io.tryClose();
     }
 
-    private String trimLeadingLineBreaks(String s) {
-        int start = 0;
-
-        for (char ch : s.toCharArray()) {
-            if (ch != '\r' && ch != '\n') {
-                break;
-            }
+    public static Optional<IdentificationInfoMessage> probe(File deviceNode) throws InterruptedException {
+        return probe(deviceNode, CommunicationSettings.DEFAULT);
+    }
 
-            start++;
-        }
+    public static Optional<IdentificationInfoMessage> probe(File deviceNode, CommunicationSettings settings) throws InterruptedException {
+        return probe(deviceNode, settings, PROBE_TIMEOUT);
+    }
 
-        return (start == 0) ? s : s.substring(start);
+    public static Optional<IdentificationInfoMessage> probe(File deviceNode, CommunicationSettings settings, Duration timeout) throws InterruptedException {
+        return probe(deviceNode, settings, timeout, false).map(ProbeResult::getIdentification);
     }
 
-    public static Optional<IdentificationInfoMessage> probe(File deviceNode) throws InterruptedException {
-        return probe(deviceNode, PROBE_TIMEOUT);
+    /**
+     * Identifies the device like {@link #probe(File, CommunicationSettings)} but keeps the connection open if the
+     * probe was successful. The returned communicator needs to be either upgraded using
+     * {@link #upgrade(String, BiConsumer)} or shut down by the caller. Messages received before the upgrade are
+     * ignored.
+     *
+     * @param deviceNode device to probe
+     * @param settings   settings to use for communication
+     * @return identification and open communicator; empty if probe failed
+     * @throws InterruptedException if interrupted while waiting for the device
+     */
+    public static Optional<ProbeResult> probeAndKeepOpen(File deviceNode, CommunicationSettings settings) throws InterruptedException {
+        return probe(deviceNode, settings, PROBE_TIMEOUT, true);
     }
 
-    public static Optional<IdentificationInfoMessage> probe(File deviceNode, Duration timeout) throws InterruptedException {
+    private static Optional<ProbeResult> probe(File deviceNode, CommunicationSettings settings, Duration timeout, boolean keepOpen) throws InterruptedException {
         CompletableFuture<IdentificationInfoMessage> future = new CompletableFuture<>();
-        DeviceCommunicator communicator = new DeviceCommunicator(deviceNode, (c, msg) -> {
-            if (msg instanceof IdentificationInfoMessage) {
+        DeviceCommunicator communicator = new DeviceCommunicator(deviceNode, null, settings, (c, msg) -> {
+            if (future.isDone()) {
+                // connection has been kept open but not been upgraded yet
+                LOGGER.debug("Ignoring message received after probing {}: {}", deviceNode, msg);
+            } else if (msg instanceof IdentificationInfoMessage) {
                 LOGGER.debug("Probe for {} completed: {}", deviceNode, msg);
                 future.complete((IdentificationInfoMessage) msg);
             } else {
@@ -294,11 +981,191 @@ public class DeviceCommunicator {
             LOGGER.warn("Probe on {} failed unexpectedly", deviceNode, ex);
         }
 
+        if (keepOpen && result != null && !communicator.isShutdown()) {
+            return Optional.of(new ProbeResult(result, communicator));
+        }
+
         if (!communicator.waitForShutdown(SHUTDOWN_TIMEOUT)) {
             throw new ShutdownFailed(deviceNode);
         }
 
-        return Optional.ofNullable(result);
+        return Optional.ofNullable(result).map(ProbeResult::of);
+    }
+
+    /**
+     * Result of a successful probe, see {@link #probeAndKeepOpen(File, CommunicationSettings)}.
+     */
+    public static class ProbeResult {
+        private final IdentificationInfoMessage identification;
+        private final DeviceCommunicator communicator;
+
+        private ProbeResult(IdentificationInfoMessage identification, DeviceCommunicator communicator) {
+            this.identification = identification;
+            this.communicator = communicator;
+        }
+
+        static ProbeResult of(IdentificationInfoMessage identification) {
+            return new ProbeResult(identification, null);
+        }
+
+        public IdentificationInfoMessage getIdentification() {
+            return identification;
+        }
+
+        /**
+         * Returns the communicator that was used for probing if it has been kept open.
+         *
+         * @return communicator kept open after probing; empty if the connection has been closed
+         */
+        public Optional<DeviceCommunicator> getCommunicator() {
+            return Optional.ofNullable(communicator);
+        }
+    }
+
+    /**
+     * A serialized message waiting in the send queue.
+     * <p>
+     * Messages sent with a key can be superseded by a newer entry queued behind them. A superseded entry keeps its
+     * slot in the queue but is skipped by the send thread. Once the send thread takes the payload, the entry is marked
+     * as {@link #TAKEN} so that it cannot be superseded anymore and both entries get sent.
+     * </p>
+     * <p>
+     * A future to track completion is only created on demand. Once the entry has been processed, any future requested
+     * afterwards is already completed. Futures of superseded entries are forwarded to their successor.
+     * </p>
+     * <p>
+     * Entries without a payload are only used as markers to flush the queue.
+     * </p>
+     */
+    private static class Outgoing {
+        private static final String TAKEN = new String("TAKEN");
+        static final String SUPERSEDED = new String("SUPERSEDED");
+        private static final AtomicReferenceFieldUpdater<Outgoing, String> PAYLOAD = AtomicReferenceFieldUpdater.newUpdater(Outgoing.class, String.class, "payload");
+
+        private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+        private static final CompletableFuture<Void> FORWARDED = new CompletableFuture<>();
+
+        private final Object key;
+        private final boolean flushMarker;
+        private volatile String payload;
+        private final AtomicReference<CompletableFuture<Void>> completion = new AtomicReference<>();
+        private volatile Outgoing successor;
+
+        Outgoing(Object key, String payload) {
+            this.key = key;
+            this.payload = payload;
+            this.flushMarker = (payload == null);
+        }
+
+        boolean isFlushMarker() {
+            return flushMarker;
+        }
+
+        CompletableFuture<Void> completion() {
+            while (true) {
+                CompletableFuture<Void> current = completion.get();
+                if (current == FORWARDED) {
+                    return successor.completion();
+                }
+                if (current != null) {
+                    return current;
+                }
+
+                CompletableFuture<Void> created = new CompletableFuture<>();
+                if (completion.compareAndSet(null, created)) {
+                    return created;
+                }
+            }
+        }
+
+        void complete() {
+            CompletableFuture<Void> future = completion.getAndSet(COMPLETED);
+            if ((future != null) && (future != FORWARDED)) {
+                future.complete(null);
+            }
+        }
+
+        void fail(Throwable cause) {
+            while (true) {
+                CompletableFuture<Void> current = completion.get();
+                if (current == FORWARDED) {
+                    // successor is responsible for completion
+                    return;
+                }
+                if (current != null) {
+                    // no effect if already completed
+                    current.completeExceptionally(cause);
+                    return;
+                }
+
+                CompletableFuture<Void> failed = new CompletableFuture<>();
+                failed.completeExceptionally(cause);
+                if (completion.compareAndSet(null, failed)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Drops the payload of this entry in favor of the given entry, unless it has already been taken for sending.
+         * Futures of this entry (including those requested afterwards) complete together with the successor.
+         *
+         * @param successor entry replacing this one, queued after this entry
+         * @return true if superseded, false if already taken for sending
+         */
+        boolean supersede(Outgoing successor) {
+            // needs to be visible before anyone can see the completion being forwarded
+            this.successor = successor;
+
+            String current = payload;
+            while (current != TAKEN) {
+                if (PAYLOAD.compareAndSet(this, current, SUPERSEDED)) {
+                    CompletableFuture<Void> waiting = completion.getAndSet(FORWARDED);
+                    if (waiting != null) {
+                        successor.completion().whenComplete((x, ex) -> {
+                            if (ex != null) {
+                                waiting.completeExceptionally(ex);
+                            } else {
+                                waiting.complete(null);
+                            }
+                        });
+                    }
+                    return true;
+                }
+                current = payload;
+            }
+
+            return false;
+        }
+
+        String take(ConcurrentMap<Object, Outgoing> pendingReplaceable) {
+            if (key == null) {
+                return payload;
+            }
+
+            // needs to be removed before taking the payload, see sendReplacing
+            pendingReplaceable.remove(key, this);
+
+            return PAYLOAD.getAndSet(this, TAKEN);
+        }
+    }
+
+    private static class SendQueueFull extends RuntimeException {
+        SendQueueFull(int capacity) {
+            super("Send queue is full (capacity " + capacity + ")");
+        }
+    }
+
+    private static class NotSent extends RuntimeException {
+        NotSent(String message) {
+            super(message);
+        }
+    }
+
+    private static class NotReceived extends RuntimeException {
+        NotReceived(String message) {
+            super(message);
+        }
     }
 
     private static class ShutdownFailed extends RuntimeException {
@@ -1,183 +1,138 @@
 package de.energiequant.limamf.connector;
 
-import static de.energiequant.limamf.connector.utils.Locks.withLock;
-
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DeviceIO implements Closeable, AutoCloseable {
-    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceIO.class);
-
-    private static final Charset DEFAULT_CHARACTER_SET = StandardCharsets.ISO_8859_1;
-
-    private final String logPrefix;
+import de.energiequant.limamf.connector.utils.NativeSerialPort;
 
-    private final AtomicBoolean closing = new AtomicBoolean(false);
-
-    private final FileInputStream fis;
-    private final InputStreamReader isr;
-    private final ReentrantLock inputLock = new ReentrantLock();
+/**
+ * Character- or byte-based access to a serial device node.
+ * <p>
+ * Multiple implementations are available, see {@link Implementation}. All of them provide the same API so that
+ * {@link DeviceCommunicator} does not need to care about which one is being used.
+ * </p>
+ */
+public abstract class DeviceIO implements Closeable, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceIO.class);
 
-    private final FileOutputStream fos;
-    private final OutputStreamWriter osw;
-    private final BufferedWriter bw;
-    private final ReentrantLock outputLock = new ReentrantLock();
+    static final Charset DEFAULT_CHARACTER_SET = StandardCharsets.ISO_8859_1;
 
-    private final long POLLING_INTERVAL_MILLIS = 10;
+    private final String name;
+    protected final String logPrefix;
 
-    private DeviceIO(File deviceNode, Charset characterSet) {
-        logPrefix = "[" + deviceNode.getAbsolutePath() + "] ";
+    protected final AtomicBoolean closing = new AtomicBoolean(false);
 
-        /*
-        RandomAccessFile raf;
-        FileChannel channel;
-        try {
-            raf = new RandomAccessFile(deviceNode, "rw");
-            channel = raf.getChannel();
-        } catch (IOException ex) {
-            LOGGER.warn("{}failed to open device node", logPrefix, ex);
-            throw new UncheckedIOException(ex);
-        }
+    public enum Implementation {
+        /**
+         * Classic {@link java.io} streams; blocking reads are emulated by polling because reads cannot be unblocked
+         * on shutdown.
+         */
+        STREAM,
 
-        try {
-            channel.lock();
-        } catch (IOException ex) {
-            LOGGER.warn("{}failed to gain file lock", logPrefix, ex);
-            throw new UncheckedIOException(ex);
-        }
-        */
+        /**
+         * NIO {@link java.nio.channels.FileChannel}s; reads block until data arrives and get unblocked when the
+         * channel is closed.
+         */
+        CHANNEL,
 
-        try {
-            fis = new FileInputStream(deviceNode);
-        } catch (IOException ex) {
-            throw new UncheckedIOException(ex);
-        }
+        /**
+         * Native file descriptors accessed through the Foreign Function &amp; Memory API; reads wait in
+         * {@code poll(2)} and get released without closing the device. Requires Java 22 or later on 64-bit Linux, falls
+         * back to {@link #CHANNEL} if not available.
+         */
+        NATIVE;
+    }
 
-        try {
-            fos = new FileOutputStream(deviceNode);
-        } catch (IOException ex) {
-            try {
-                fis.close();
-            } catch (IOException ex2) {
-                LOGGER.warn("{}failed to close FileInputStream while handling FileOutputStream error", logPrefix, ex2);
-            }
+    public static final Implementation DEFAULT_IMPLEMENTATION = Implementation.CHANNEL;
 
-            throw new UncheckedIOException(ex);
-        }
+    protected DeviceIO(File deviceNode) {
+        this(deviceNode.getAbsolutePath());
+    }
 
-        isr = new InputStreamReader(fis, characterSet);
-        osw = new OutputStreamWriter(fos, characterSet);
+    /**
+     * Creates a {@link DeviceIO} not backed by a device node, such as an emulated device.
+     *
+     * @param name name to identify the device by in logs
+     */
+    protected DeviceIO(String name) {
+        this.name = name;
+        logPrefix = "[" + name + "] ";
+    }
 
-        bw = new BufferedWriter(osw);
+    String getName() {
+        return name;
     }
 
-    public static DeviceIO openDeviceNode(File deviceNode) {
-        return new DeviceIO(deviceNode, DEFAULT_CHARACTER_SET);
+    String getLogPrefix() {
+        return logPrefix;
     }
 
-    @Override
-    public void close() throws IOException {
-        if (!tryClose()) {
-            throw new IOException("failed to close");
-        }
+    /**
+     * Returns the native port if the device is accessed natively, see {@link Implementation#NATIVE}.
+     *
+     * @return native port; null if not accessed natively
+     */
+    NativeSerialPort getNativePort() {
+        return null;
     }
 
-    public boolean tryClose() {
-        AtomicBoolean success = new AtomicBoolean(true);
+    public static DeviceIO openDeviceNode(File deviceNode) {
+        return openDeviceNode(deviceNode, DEFAULT_IMPLEMENTATION);
+    }
 
-        closing.set(true);
+    public static DeviceIO openDeviceNode(File deviceNode, Implementation implementation) {
+        switch (implementation) {
+            case STREAM:
+                return new StreamDeviceIO(deviceNode, DEFAULT_CHARACTER_SET);
 
-        //withLocks(
-        //    inputLock, outputLock,
-        //    () -> {
-        try {
-            bw.close();
-        } catch (IOException ex) {
-            LOGGER.warn("{}failed to close BufferedWriter", logPrefix, ex);
-            success.set(false);
-        }
+            case CHANNEL:
+                return new ChannelDeviceIO(deviceNode);
 
-        try {
-            osw.close();
-        } catch (IOException ex) {
-            LOGGER.warn("{}failed to close OutputStreamWriter", logPrefix, ex);
-            success.set(false);
-        }
+            case NATIVE:
+                if (!NativeSerialPort.isAvailable()) {
+                    LOGGER.warn("native device IO is not available, falling back to {}", Implementation.CHANNEL);
+                    return new ChannelDeviceIO(deviceNode);
+                }
+                return new NativeDeviceIO(deviceNode);
 
-        try {
-            isr.close();
-        } catch (IOException ex) {
-            LOGGER.warn("{}failed to close InputStreamReader", logPrefix, ex);
-            success.set(false);
+            default:
+                throw new IllegalArgumentException("unsupported implementation: " + implementation);
         }
+    }
 
-        try {
-            fos.close();
-        } catch (IOException ex) {
-            LOGGER.warn("{}failed to close FileOutputStream", logPrefix, ex);
-            success.set(false);
+    @Override
+    public void close() throws IOException {
+        if (!tryClose()) {
+            throw new IOException("failed to close");
         }
+    }
 
-        try {
-            fis.close();
-        } catch (IOException ex) {
-            LOGGER.warn("{}failed to close FileInputStream", logPrefix, ex);
-            success.set(false);
-        }
-        //    }
-        //);
+    /**
+     * Closes all underlying resources. Blocked reads will be released.
+     *
+     * @return true if everything was closed successfully, false if any error occurred
+     */
+    public abstract boolean tryClose();
 
-        return success.get();
-    }
+    public abstract void write(String s);
 
-    public void write(String s) {
-        withLock(
-            outputLock,
-            () -> {
-                try {
-                    bw.write(s);
-                } catch (IOException ex) {
-                    LOGGER.warn("{}failed writing to device, closing", logPrefix, ex);
-                    tryClose();
-                    throw new UncheckedIOException(ex);
-                }
-            }
-        );
-    }
+    /**
+     * Writes all remaining bytes of the given buffer to the device, bypassing any character encoding. Any previously
+     * buffered output from {@link #write(String)} is flushed first; the bytes do not need to be flushed separately.
+     *
+     * @param buffer bytes to write; will be fully consumed
+     */
+    public abstract void write(ByteBuffer buffer);
 
-    public void flush() {
-        withLock(
-            outputLock,
-            () -> {
-                try {
-                    bw.flush();
-                } catch (IOException ex) {
-                    if (closing.get()) {
-                        LOGGER.debug("{}failed flushing buffer to device, closing (expected due to marked as closing already)", logPrefix, ex);
-                    } else {
-                        LOGGER.warn("{}unexpectedly failed flushing buffer to device, closing", logPrefix, ex);
-                    }
-                    tryClose();
-                    throw new UncheckedIOException(ex);
-                }
-            }
-        );
-    }
+    public abstract void flush();
 
     /**
      * Attempts to read characters into the given buffer, non-blocking.
@@ -186,32 +141,7 @@ public class DeviceIO implements Closeable, AutoCloseable {
      * @param buffer buffer to read into
      * @return number of characters read
      */
-    public int readAvailableInto(char[] buffer) {
-        if (buffer.length == 0) {
-            throw new IllegalArgumentException("attempted to read into zero buffer");
-        }
-
-        AtomicInteger res = new AtomicInteger(0);
-
-        withLock(
-            inputLock,
-            () -> {
-                try {
-                    if (!isr.ready()) {
-                        return;
-                    }
-
-                    res.set(isr.read(buffer));
-                } catch (IOException ex) {
-                    LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
-                    tryClose();
-                    throw new UncheckedIOException(ex);
-                }
-            }
-        );
-
-        return res.get();
-    }
+    public abstract int readAvailableInto(char[] buffer);
 
     /**
      * Reads at least one character into the given buffer, blocking.
@@ -220,36 +150,33 @@ public class DeviceIO implements Closeable, AutoCloseable {
      * @param buffer buffer to read into
      * @return number of characters read
      */
-    public int readAtLeastOneInto(char[] buffer) {
-        if (buffer.length == 0) {
-            throw new IllegalArgumentException("attempted to read into zero buffer");
-        }
+    public abstract int readAtLeastOneInto(char[] buffer);
 
-        AtomicInteger res = new AtomicInteger(0);
-
-        withLock(
-            inputLock,
-            () -> {
-                try {
-                    // We are polling as a workaround for not being able to close the reader on shutdown while we are
-                    // waiting for blocking read to complete which in turn means we can't unblock on shutdown.
-                    // TODO: try with NIO (also has no timed read but is supposed to be closable while waiting)
-                    while (!isr.ready()) {
-                        Thread.sleep(POLLING_INTERVAL_MILLIS);
-                    }
-                    res.set(isr.read(buffer));
-                } catch (IOException ex) {
-                    if (closing.get()) {
-                        res.set(-1);
-                    } else {
-                        LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
-                        tryClose();
-                        throw new UncheckedIOException(ex);
-                    }
-                }
-            }
-        );
+    /**
+     * Reads at least one byte into the remaining space of the given buffer, blocking. The buffer's position is
+     * advanced by the number of bytes read.
+     * Returns -1 on EOF.
+     * <p>
+     * Byte-based reads bypass any character decoding and must not be mixed with character-based reads on the same
+     * instance.
+     * </p>
+     *
+     * @param buffer buffer to read into; must have space remaining
+     * @return number of bytes read
+     */
+    public abstract int readAtLeastOneInto(ByteBuffer buffer);
 
-        return res.get();
-    }
+    /**
+     * Attempts to read bytes into the remaining space of the given buffer, non-blocking. The buffer's position is
+     * advanced by the number of bytes read.
+     * Returns 0 if nothing is ready to be read, -1 on EOF.
+     * <p>
+     * Byte-based reads bypass any character decoding and must not be mixed with character-based reads on the same
+     * instance.
+     * </p>
+     *
+     * @param buffer buffer to read into; must have space remaining
+     * @return number of bytes read
+     */
+    public abstract int readAvailableInto(ByteBuffer buffer);
 }
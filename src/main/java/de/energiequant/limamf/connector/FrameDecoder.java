@@ -0,0 +1,167 @@
+package de.energiequant.limamf.connector;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+
+/**
+ * Splits received bytes into frames terminated by {@link CommandMessage#COMMAND_SEPARATOR}.
+ * <p>
+ * Escaped characters ({@link CommandMessage#ESCAPE_CHARACTER} followed by any character) are retained as-is in the
+ * frame, unescaping is left to {@link de.energiequant.limamf.compat.protocol.CommandMessageDecoder}. Line breaks
+ * preceding a frame are omitted.
+ * </p>
+ * <p>
+ * The decoder reuses its internal buffer for all frames. Devices tend to repeat the same short frames over and over
+ * (e.g. encoder detents), so frame strings are additionally cached by content: a frame that has been seen recently is
+ * handed out as the same {@link String} instance again, without any allocation.
+ * </p>
+ * <p>
+ * Instances are not thread-safe, each receiving thread needs its own decoder.
+ * </p>
+ */
+class FrameDecoder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FrameDecoder.class);
+
+    private static final byte COMMAND_SEPARATOR = (byte) CommandMessage.COMMAND_SEPARATOR;
+    private static final byte ESCAPE_CHARACTER = (byte) CommandMessage.ESCAPE_CHARACTER;
+
+    private static final int INITIAL_FRAME_CAPACITY = 256;
+    static final int MAX_FRAME_LENGTH = 256 * 1024;
+
+    private final FrameHandler handler;
+    private final FrameCache cache = new FrameCache();
+
+    private byte[] frame = new byte[INITIAL_FRAME_CAPACITY];
+    private int length = 0;
+    private boolean escaped = false;
+    private boolean discarding = false;
+
+    @FunctionalInterface
+    interface FrameHandler {
+        /**
+         * Called for each complete frame.
+         *
+         * @param frame frame content, excluding separator
+         * @return true to continue processing, false to discard all remaining input of the current call to
+         *     {@link #decode(ByteBuffer)}
+         */
+        boolean onFrame(String frame);
+    }
+
+    FrameDecoder(FrameHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Consumes all remaining bytes of the given buffer, calling the handler for each completed frame.
+     * Incomplete frames are retained until completed by a later call.
+     *
+     * @param input bytes to decode; will be fully consumed
+     */
+    void decode(ByteBuffer input) {
+        while (input.hasRemaining()) {
+            byte b = input.get();
+
+            if (escaped) {
+                escaped = false;
+            } else if (b == ESCAPE_CHARACTER) {
+                escaped = true;
+            } else if (b == COMMAND_SEPARATOR) {
+                boolean wasDiscarding = discarding;
+                String s = wasDiscarding ? null : cache.get(frame, length);
+                length = 0;
+                discarding = false;
+
+                if (!wasDiscarding && !handler.onFrame(s)) {
+                    input.position(input.limit());
+                    return;
+                }
+
+                continue;
+            } else if (length == 0 && (b == '\r' || b == '\n')) {
+                // skip line breaks preceding the frame
+                continue;
+            }
+
+            append(b);
+        }
+    }
+
+    /**
+     * Drops any incomplete frame.
+     */
+    void reset() {
+        length = 0;
+        escaped = false;
+        discarding = false;
+    }
+
+    private void append(byte b) {
+        if (discarding) {
+            return;
+        }
+
+        if (length == frame.length) {
+            if (length >= MAX_FRAME_LENGTH) {
+                LOGGER.warn("frame exceeds {} bytes, discarding until next separator", MAX_FRAME_LENGTH);
+                discarding = true;
+                length = 0;
+                return;
+            }
+
+            frame = Arrays.copyOf(frame, Math.min(frame.length * 2, MAX_FRAME_LENGTH));
+        }
+
+        frame[length++] = b;
+    }
+
+    /**
+     * Direct-mapped cache of recently decoded short frames.
+     */
+    private static class FrameCache {
+        private static final int NUM_SLOTS = 64; // must be a power of 2
+        private static final int MAX_CACHED_LENGTH = 64;
+
+        private final byte[][] contents = new byte[NUM_SLOTS][];
+        private final String[] strings = new String[NUM_SLOTS];
+
+        String get(byte[] bytes, int length) {
+            if (length > MAX_CACHED_LENGTH) {
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (NUM_SLOTS - 1);
+
+            byte[] cached = contents[slot];
+            if (cached != null && cached.length == length && equalsRange(cached, bytes, length)) {
+                return strings[slot];
+            }
+
+            String s = new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            contents[slot] = Arrays.copyOf(bytes, length);
+            strings[slot] = s;
+
+            return s;
+        }
+
+        private static boolean equalsRange(byte[] a, byte[] b, int length) {
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package de.energiequant.limamf.connector;
+
+import java.nio.ByteBuffer;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+
+/**
+ * Encodes serialized {@link CommandMessage}s into a reusable direct {@link ByteBuffer}, appending
+ * {@link CommandMessage#COMMAND_SEPARATOR} to each frame.
+ * <p>
+ * The protocol uses ISO-8859-1 which maps the first 256 characters 1:1 to bytes, so no {@link java.nio.charset}
+ * encoder is needed. Characters outside that range cannot be represented and are replaced by {@code ?}, same as a
+ * regular encoder would do.
+ * </p>
+ * <p>
+ * Multiple frames can be appended to write them out as one batch. The buffer grows if needed but is retained
+ * afterwards, so encoding does not allocate once the buffer has reached the size needed for regular operation.
+ * </p>
+ * <p>
+ * Instances are not thread-safe, each sending thread needs its own encoder.
+ * </p>
+ */
+class FrameEncoder {
+    private static final byte COMMAND_SEPARATOR = (byte) CommandMessage.COMMAND_SEPARATOR;
+    private static final byte REPLACEMENT = (byte) '?';
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+
+    /**
+     * Appends the given serialized message followed by {@link CommandMessage#COMMAND_SEPARATOR}.
+     *
+     * @param serialized serialized message, see {@link CommandMessage#serialize()}
+     */
+    void append(String serialized) {
+        int length = serialized.length();
+        ensureRemaining(length + 1);
+
+        for (int i = 0; i < length; i++) {
+            char ch = serialized.charAt(i);
+            buffer.put((ch <= 0xFF) ? (byte) ch : REPLACEMENT);
+        }
+
+        buffer.put(COMMAND_SEPARATOR);
+    }
+
+    /**
+     * @return number of bytes appended since last {@link #clear()}
+     */
+    int size() {
+        return buffer.position();
+    }
+
+    boolean isEmpty() {
+        return buffer.position() == 0;
+    }
+
+    /**
+     * Prepares the buffer for writing. The returned buffer holds all appended frames between its position and limit.
+     * No more frames must be appended until {@link #clear()} has been called.
+     *
+     * @return buffer holding all appended frames
+     */
+    ByteBuffer flip() {
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Drops all appended frames.
+     */
+    void clear() {
+        buffer.clear();
+    }
+
+    private void ensureRemaining(int wanted) {
+        if (buffer.remaining() >= wanted) {
+            return;
+        }
+
+        int newCapacity = buffer.capacity();
+        while (newCapacity - buffer.position() < wanted) {
+            newCapacity *= 2;
+        }
+
+        ByteBuffer grown = ByteBuffer.allocateDirect(newCapacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+}
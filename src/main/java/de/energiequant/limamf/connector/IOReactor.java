@@ -0,0 +1,414 @@
+package de.energiequant.limamf.connector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.connector.utils.NativeSelector;
+import de.energiequant.limamf.connector.utils.NativeSerialPort;
+
+/**
+ * Performs I/O for multiple {@link DeviceCommunicator}s on just two shared threads, see
+ * {@link DeviceCommunicator.ExecutionMode#SHARED_REACTOR}.
+ * <p>
+ * The writer thread runs the sending side of communicators when they got messages queued or asked to be called
+ * again at a specific time (coalescing window, throttling). The reader thread polls all communicators for received
+ * data; polling backs off while all devices are idle but still wakes up every 2ms (about 500 times per second) for as
+ * long as any polled device is connected. As each communicator is only ever handled by the same reader thread,
+ * received messages are still handled in order per device.
+ * </p>
+ * <p>
+ * Received messages are handed to the receive callbacks directly on the reader thread. A callback that takes long
+ * to return therefore delays received data of all other devices (head-of-line blocking); callbacks need to return
+ * quickly and hand off anything expensive to other threads.
+ * </p>
+ * <p>
+ * Devices accessed natively ({@link DeviceIO.Implementation#NATIVE}) are not polled if a {@link NativeSelector} is
+ * available: the reader thread instead waits on all of them at once and only reads from those that actually became
+ * ready, so no CPU is used while idle regardless of the number of devices. This requires Java 22 or later on 64-bit
+ * Linux and is opt-in: neither the shared reactor nor native device access are used by default.
+ * </p>
+ * <p>
+ * Threads are started when a communicator registers and terminate once all communicators have shut down. They are
+ * daemon threads so they do not block application shutdown.
+ * </p>
+ */
+class IOReactor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IOReactor.class);
+
+    private static final IOReactor SHARED = new IOReactor("shared");
+
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+    private static final long MIN_POLL_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long IDLE_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int MAX_SELECTED_KEYS = 64;
+
+    private final String name;
+
+    /**
+     * Communicators whose sending side has not terminated yet; the writer thread terminates when empty.
+     */
+    private final Set<DeviceCommunicator> senders = ConcurrentHashMap.newKeySet();
+    private final Queue<DeviceCommunicator> sendReady = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<ScheduledSend> sendSchedule = new PriorityQueue<>((a, b) -> Long.signum(a.deadlineNanos - b.deadlineNanos));
+    private volatile boolean writerWaiting = false;
+
+    private final List<DeviceCommunicator> receivers = new CopyOnWriteArrayList<>();
+    private final Map<Integer, SelectedReceiver> selectedReceivers = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSelectionKey = new AtomicInteger();
+
+    /**
+     * Used to wait for natively accessed devices; null if not available. Set before threads are started and kept open
+     * when threads terminate.
+     */
+    private NativeSelector selector;
+    private boolean selectorOpened = false;
+
+    // only changed while synchronized on this instance; a terminating thread clears its reference before exiting
+    private volatile Thread writerThread;
+    private volatile Thread readerThread;
+
+    private IOReactor(String name) {
+        this.name = name;
+    }
+
+    static IOReactor shared() {
+        return SHARED;
+    }
+
+    void register(DeviceCommunicator communicator) {
+        LOGGER.debug("{}registering with {} reactor", communicator.getLogPrefix(), name);
+
+        synchronized (this) {
+            openSelector();
+
+            senders.add(communicator);
+            if (!registerSelected(communicator)) {
+                receivers.add(communicator);
+            }
+
+            startThreads();
+        }
+        wakeReader();
+
+        scheduleSend(communicator);
+    }
+
+    /**
+     * Checks if any threads of this reactor are currently running.
+     *
+     * @return true if threads are running, false if all have terminated
+     */
+    boolean hasThreads() {
+        return (writerThread != null) || (readerThread != null);
+    }
+
+    /**
+     * Checks if the given communicator waits for received data through the {@link NativeSelector} instead of being
+     * polled. Visible for testing only.
+     *
+     * @param communicator communicator to check
+     * @return true if waited for through the selector, false if polled or not registered
+     */
+    boolean isSelected(DeviceCommunicator communicator) {
+        for (SelectedReceiver receiver : selectedReceivers.values()) {
+            if (receiver.communicator == communicator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean registerSelected(DeviceCommunicator communicator) {
+        if (selector == null) {
+            return false;
+        }
+
+        NativeSerialPort port = communicator.getDeviceIO().getNativePort();
+        if (port == null) {
+            return false;
+        }
+
+        int key = nextSelectionKey.getAndIncrement() & Integer.MAX_VALUE;
+        selectedReceivers.put(key, new SelectedReceiver(communicator, port));
+        try {
+            selector.register(port, key);
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to register with selector, falling back to polling", communicator.getLogPrefix(), ex);
+            selectedReceivers.remove(key);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void wakeReader() {
+        if (selector != null) {
+            selector.wakeup();
+        }
+        LockSupport.unpark(readerThread);
+    }
+
+    private synchronized void openSelector() {
+        if (selectorOpened) {
+            return;
+        }
+        selectorOpened = true;
+
+        if (NativeSelector.isAvailable()) {
+            try {
+                selector = NativeSelector.open();
+            } catch (IOException ex) {
+                LOGGER.warn("[{}] failed to open native selector, all devices will be polled", name, ex);
+            }
+        }
+    }
+
+    private synchronized void startThreads() {
+        if (writerThread == null) {
+            writerThread = new Thread(this::writerLoop, "IOReactor-" + name + "-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+
+        if (readerThread == null) {
+            readerThread = new Thread(this::readerLoop, "IOReactor-" + name + "-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+    }
+
+    /**
+     * Terminates the writer thread if all communicators have terminated their sending side. Must only be called by
+     * the writer thread.
+     *
+     * @return true if the writer thread must exit, false if it needs to continue
+     */
+    private synchronized boolean stopWriterIfUnused() {
+        if (!senders.isEmpty() || !sendReady.isEmpty()) {
+            return false;
+        }
+
+        LOGGER.debug("[{}] no communicators left to send for, writer thread terminating", name);
+        writerThread = null;
+        return true;
+    }
+
+    /**
+     * Terminates the reader thread if all communicators have terminated their receiving side. Must only be called by
+     * the reader thread.
+     *
+     * @return true if the reader thread must exit, false if it needs to continue
+     */
+    private synchronized boolean stopReaderIfUnused() {
+        if (!receivers.isEmpty() || !selectedReceivers.isEmpty()) {
+            return false;
+        }
+
+        LOGGER.debug("[{}] no communicators left to receive for, reader thread terminating", name);
+        readerThread = null;
+        return true;
+    }
+
+    /**
+     * Requests the sending side of the given communicator to be run as soon as possible.
+     *
+     * @param communicator communicator to run
+     */
+    void scheduleSend(DeviceCommunicator communicator) {
+        // only queue once until the writer has picked the communicator up
+        if (!communicator.sendScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        sendReady.offer(communicator);
+
+        if (writerWaiting) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void writerLoop() {
+        LOGGER.debug("[{}] writer thread starting", name);
+
+        while (true) {
+            long now = System.nanoTime();
+
+            ScheduledSend scheduled;
+            while ((scheduled = sendSchedule.peek()) != null && scheduled.deadlineNanos - now <= 0) {
+                sendSchedule.poll();
+                runSend(scheduled.communicator, now);
+            }
+
+            DeviceCommunicator communicator;
+            while ((communicator = sendReady.poll()) != null) {
+                // cleared before running so that new messages queued while running schedule the communicator again
+                communicator.sendScheduled.set(false);
+                runSend(communicator, now);
+            }
+
+            // Producers only unpark us if we indicated to be waiting. The queue needs to be checked again after
+            // setting the flag as something may have been queued in between.
+            writerWaiting = true;
+            if (sendReady.isEmpty()) {
+                if (senders.isEmpty() && stopWriterIfUnused()) {
+                    return;
+                }
+
+                scheduled = sendSchedule.peek();
+                long waitNanos = (scheduled == null) ? IDLE_CHECK_INTERVAL_NANOS : scheduled.deadlineNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(this, waitNanos);
+                }
+            }
+            writerWaiting = false;
+        }
+    }
+
+    private void runSend(DeviceCommunicator communicator, long now) {
+        DeviceCommunicator.SendStepResult result;
+        try {
+            result = communicator.sendStep(now);
+        } catch (Exception ex) {
+            // should not happen as communicators handle their own errors; we must not let the shared thread die
+            LOGGER.warn("{}unhandled exception while sending", communicator.getLogPrefix(), ex);
+            return;
+        }
+
+        if (result == DeviceCommunicator.SendStepResult.SCHEDULED) {
+            sendSchedule.add(new ScheduledSend(communicator.getSendWakeupNanos(), communicator));
+        } else if (result == DeviceCommunicator.SendStepResult.TERMINATED) {
+            senders.remove(communicator);
+        }
+    }
+
+    private void readerLoop() {
+        LOGGER.debug("[{}] reader thread starting", name);
+
+        // one buffer is sufficient as data is handled completely before reading from the next device
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+        int[] readyKeys = new int[MAX_SELECTED_KEYS];
+
+        long pollIntervalNanos = MIN_POLL_INTERVAL_NANOS;
+        while (true) {
+            if (receivers.isEmpty() && selectedReceivers.isEmpty() && stopReaderIfUnused()) {
+                return;
+            }
+
+            boolean received = pollReceivers(buffer);
+
+            if (selector != null) {
+                // polled devices limit how long we may wait for natively accessed devices
+                int timeoutMillis = -1;
+                if (received) {
+                    timeoutMillis = 0;
+                } else if (!receivers.isEmpty()) {
+                    timeoutMillis = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(pollIntervalNanos));
+                }
+
+                selectReceivers(buffer, readyKeys, timeoutMillis);
+            } else if (receivers.isEmpty()) {
+                // all polled devices have terminated
+                continue;
+            }
+
+            // poll quickly while data is flowing, back off exponentially while idle
+            if (received) {
+                pollIntervalNanos = MIN_POLL_INTERVAL_NANOS;
+                continue;
+            }
+
+            if (selector == null) {
+                LockSupport.parkNanos(this, pollIntervalNanos);
+            }
+            pollIntervalNanos = Math.min(pollIntervalNanos * 2, MAX_POLL_INTERVAL_NANOS);
+        }
+    }
+
+    private boolean pollReceivers(ByteBuffer buffer) {
+        boolean received = false;
+        for (DeviceCommunicator communicator : receivers) {
+            int res = receive(communicator, buffer);
+            if (res < 0) {
+                LOGGER.debug("{}unregistering from {} reactor", communicator.getLogPrefix(), name);
+                receivers.remove(communicator);
+            } else if (res > 0) {
+                received = true;
+            }
+        }
+
+        return received;
+    }
+
+    private void selectReceivers(ByteBuffer buffer, int[] readyKeys, int timeoutMillis) {
+        int numReady;
+        try {
+            numReady = selector.select(readyKeys, timeoutMillis);
+        } catch (IOException ex) {
+            // should not happen; back off so we do not spin if the selector keeps failing
+            LOGGER.warn("[{}] failed to wait for devices", name, ex);
+            LockSupport.parkNanos(this, MAX_POLL_INTERVAL_NANOS);
+            return;
+        }
+
+        for (int i = 0; i < numReady; i++) {
+            int key = readyKeys[i];
+
+            // same device may be reported multiple times and already have been unregistered
+            SelectedReceiver receiver = selectedReceivers.get(key);
+            if (receiver == null) {
+                continue;
+            }
+
+            if (receive(receiver.communicator, buffer) < 0) {
+                LOGGER.debug("{}unregistering from {} reactor", receiver.communicator.getLogPrefix(), name);
+                selectedReceivers.remove(key);
+                selector.unregister(receiver.port);
+            }
+        }
+    }
+
+    private int receive(DeviceCommunicator communicator, ByteBuffer buffer) {
+        try {
+            return communicator.receiveStep(buffer);
+        } catch (Exception ex) {
+            // should not happen as communicators handle their own errors; we must not let the shared thread die
+            LOGGER.warn("{}unhandled exception while receiving", communicator.getLogPrefix(), ex);
+            return 0;
+        }
+    }
+
+    private static class SelectedReceiver {
+        final DeviceCommunicator communicator;
+        final NativeSerialPort port;
+
+        SelectedReceiver(DeviceCommunicator communicator, NativeSerialPort port) {
+            this.communicator = communicator;
+            this.port = port;
+        }
+    }
+
+    private static class ScheduledSend {
+        final long deadlineNanos;
+        final DeviceCommunicator communicator;
+
+        ScheduledSend(long deadlineNanos, DeviceCommunicator communicator) {
+            this.deadlineNanos = deadlineNanos;
+            this.communicator = communicator;
+        }
+    }
+}
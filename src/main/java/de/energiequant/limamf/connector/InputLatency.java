@@ -0,0 +1,145 @@
+package de.energiequant.limamf.connector;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.energiequant.limamf.connector.utils.LatencyHistogram;
+
+/**
+ * Measures how long input takes from being read from a device until it has been handled by each stage up to the
+ * simulator, see {@link Stage}. Latencies are collected in histograms across all devices, see {@link #getSnapshots()}.
+ * <p>
+ * All stages are handled synchronously on the thread that read the data, so a measurement is started per read and
+ * tracked per thread; stages just mark when they are reached. Marks on threads not currently handling received data
+ * (for example events not caused by device input) are ignored. Frames completed by a read are all measured from that
+ * read, so latencies of later frames include the time spent on earlier ones.
+ * </p>
+ * <p>
+ * Events emitted later than the read that caused them are not measured as they are handled on another thread. This
+ * applies to encoder detents held back for aggregation (only the first detent of a window is forwarded immediately)
+ * and to events repeated while a button is held, so latencies only cover input forwarded directly.
+ * </p>
+ * <p>
+ * Latencies are logged by {@link Linker} when stopping and, with debug logging enabled, once per minute while running.
+ * </p>
+ */
+public class InputLatency {
+    private static final ThreadLocal<Trace> TRACE = ThreadLocal.withInitial(Trace::new);
+
+    private static final Map<Stage, LatencyHistogram> HISTOGRAMS = new EnumMap<>(Stage.class);
+
+    static {
+        for (Stage stage : Stage.values()) {
+            HISTOGRAMS.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Stages of input handling, in order; each is measured from the time data has been read from the device.
+     */
+    public enum Stage {
+        /**
+         * A complete frame has been split from received data.
+         */
+        FRAMED,
+
+        /**
+         * The frame has been decoded to a message.
+         */
+        DECODED,
+
+        /**
+         * A panel has emitted an event for the message.
+         */
+        PANEL_EVENT,
+
+        /**
+         * The event is being dispatched to the simulator.
+         */
+        DISPATCHED,
+
+        /**
+         * A command has been sent to the simulator.
+         */
+        COMMAND_SENT;
+    }
+
+    private static class Trace {
+        long readNanos;
+        boolean active;
+    }
+
+    private InputLatency() {
+        // utility class; hide constructor
+    }
+
+    /**
+     * Starts measuring for data that has just been read on the current thread.
+     *
+     * @param readNanos {@link System#nanoTime()} at time of read
+     */
+    static void begin(long readNanos) {
+        Trace trace = TRACE.get();
+        trace.readNanos = readNanos;
+        trace.active = true;
+    }
+
+    /**
+     * Stops measuring on the current thread after all data of a read has been handled.
+     */
+    static void end() {
+        TRACE.get().active = false;
+    }
+
+    /**
+     * Records that the given stage has been reached for the data currently being handled on this thread.
+     *
+     * @param stage stage that has been reached
+     */
+    public static void mark(Stage stage) {
+        Trace trace = TRACE.get();
+        if (!trace.active) {
+            return;
+        }
+
+        HISTOGRAMS.get(stage).record(System.nanoTime() - trace.readNanos);
+    }
+
+    /**
+     * Returns the latencies recorded per stage.
+     *
+     * @return snapshots of latency histograms per stage, in order of stages
+     */
+    public static Map<Stage, LatencyHistogram.Snapshot> getSnapshots() {
+        Map<Stage, LatencyHistogram.Snapshot> out = new EnumMap<>(Stage.class);
+        for (Map.Entry<Stage, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            out.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return out;
+    }
+
+    /**
+     * Discards all recorded latencies.
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Summarizes recorded latencies of all stages in a single line, suitable for logging.
+     *
+     * @return summary of recorded latencies
+     */
+    public static String summarize() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Stage, LatencyHistogram.Snapshot> entry : getSnapshots().entrySet()) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
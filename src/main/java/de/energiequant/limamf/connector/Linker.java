@@ -1,6 +1,7 @@
 package de.energiequant.limamf.connector;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -8,6 +9,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -21,6 +23,7 @@ import de.energiequant.limamf.connector.panels.Panel;
 import de.energiequant.limamf.connector.panels.PanelEventListener;
 import de.energiequant.limamf.connector.simulator.SimulatorClient;
 import de.energiequant.limamf.connector.simulator.SimulatorEventListener;
+import de.energiequant.limamf.connector.utils.HashedTimerWheel;
 
 public class Linker {
     private static final Logger LOGGER = LoggerFactory.getLogger(Linker.class);
@@ -28,6 +31,7 @@ public class Linker {
     private final Map<String, Panel.Factory> panelFactories;
     private final DisclaimerState disclaimerState;
     private final Map<ModuleId, Configuration.Module> configuredModules = new HashMap<>();
+    private final Properties inputProperties = new Properties();
     private final ObservableCollectionProxy<ModuleDiscovery.ConnectedModule, ?> connectedModules;
     private final ObservableCollectionProxy.Listener<ModuleDiscovery.ConnectedModule> connectedModulesListener;
     private final Map<ModuleId, Panel> activePanels = new HashMap<>();
@@ -40,6 +44,9 @@ public class Linker {
 
     private final AtomicBoolean running = new AtomicBoolean();
 
+    private static final Duration LATENCY_LOG_INTERVAL = Duration.ofMinutes(1);
+    private LatencyLog latencyLog;
+
     public Linker(Map<String, Panel.Factory> panelFactories, ObservableCollectionProxy<ModuleDiscovery.ConnectedModule, ?> connectedModules, DisclaimerState disclaimerState) {
         this.panelFactories = panelFactories;
         this.connectedModules = connectedModules;
@@ -68,6 +75,15 @@ public class Linker {
     }
 
     private void onModuleConnected(ModuleDiscovery.ConnectedModule module) {
+        try {
+            startPanel(module);
+        } finally {
+            // connection kept from probing is no longer needed if it has not been taken over by the panel
+            module.releaseCommunicator();
+        }
+    }
+
+    private void startPanel(ModuleDiscovery.ConnectedModule module) {
         ModuleId moduleId = module.getModuleId();
         Configuration.Module moduleConfig = configuredModules.get(moduleId);
         if (moduleConfig == null) {
@@ -136,7 +152,7 @@ public class Linker {
 
             Panel panel;
             try {
-                panel = panelFactory.create(panelEventProxy, module, connectorConfiguration, wantedConnectorSerial);
+                panel = panelFactory.create(panelEventProxy, module, connectorConfiguration, wantedConnectorSerial, inputProperties);
             } catch (Exception ex) {
                 LOGGER.warn("failed to start \"{}\" (\"{}\") for {}", panelFactory.getName(), panelFactoryId, module, ex);
                 return;
@@ -189,7 +205,7 @@ public class Linker {
         }
     }
 
-    public void enable(SimulatorClient.Factory simulatorClientFactory, Collection<Configuration.Module> configuredModules) {
+    public void enable(SimulatorClient.Factory simulatorClientFactory, Collection<Configuration.Module> configuredModules, Properties inputProperties) {
         Map<ModuleId, Configuration.Module> configuredModuleIndex = new HashMap<>();
         for (Configuration.Module configuredModule : configuredModules) {
             Configuration.Module previous = configuredModuleIndex.put(configuredModule.getId(), configuredModule);
@@ -228,7 +244,15 @@ public class Linker {
             this.configuredModules.clear();
             this.configuredModules.putAll(configuredModuleIndex);
 
+            this.inputProperties.clear();
+            this.inputProperties.putAll(inputProperties);
+
             connectedModules.attach(true, connectedModulesListener);
+
+            if (LOGGER.isDebugEnabled()) {
+                latencyLog = new LatencyLog();
+                latencyLog.schedule();
+            }
         }
     }
 
@@ -263,6 +287,12 @@ public class Linker {
 
             running.set(false);
 
+            if (latencyLog != null) {
+                latencyLog.cancel();
+                latencyLog = null;
+            }
+
+            LOGGER.info("Input latency since read from device: {}", InputLatency.summarize());
             LOGGER.info("Stopped.");
         }
 
@@ -277,6 +307,37 @@ public class Linker {
         return numActivePanels.get();
     }
 
+    /**
+     * Logs input latency recorded so far at debug level in regular intervals while running, see {@link InputLatency}.
+     */
+    private static class LatencyLog implements Runnable {
+        private volatile boolean cancelled = false;
+        private volatile HashedTimerWheel.Timeout timeout;
+
+        private void schedule() {
+            timeout = HashedTimerWheel.getShared().schedule(this, LATENCY_LOG_INTERVAL.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        private void cancel() {
+            cancelled = true;
+
+            HashedTimerWheel.Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            LOGGER.debug("Input latency since read from device: {}", InputLatency.summarize());
+            schedule();
+        }
+    }
+
     private static class SimulatorEventProxy extends EventProxy<SimulatorEventListener> implements SimulatorEventListener {
         @Override
         public void onSimStatusChanged(SimulatorStatus status, String msg) {
@@ -303,15 +364,28 @@ public class Linker {
 
     private static class PanelEventProxy extends EventProxy<PanelEventListener> implements PanelEventListener {
         @Override
-        public void onPanelEvent(DCPCCPPanel.Event event) {
+        public void onPanelEvent(DCPCCPPanel.Event event, long nanos) {
+            InputLatency.mark(InputLatency.Stage.DISPATCHED);
             for (PanelEventListener listener : copyTargets()) {
                 try {
-                    listener.onPanelEvent(event);
+                    listener.onPanelEvent(event, nanos);
                 } catch (Exception ex) {
                     LOGGER.warn("onPanelEvent: failed to notify listener {}", listener, ex);
                 }
             }
         }
+
+        @Override
+        public void onRepeatedPanelEvent(DCPCCPPanel.Event event, int count, long nanos) {
+            InputLatency.mark(InputLatency.Stage.DISPATCHED);
+            for (PanelEventListener listener : copyTargets()) {
+                try {
+                    listener.onRepeatedPanelEvent(event, count, nanos);
+                } catch (Exception ex) {
+                    LOGGER.warn("onRepeatedPanelEvent: failed to notify listener {}", listener, ex);
+                }
+            }
+        }
     }
 
     private abstract static class EventProxy<T> {
@@ -20,6 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.energiequant.limamf.connector.MacOSLogWrapper.LogStreamMonitor;
+import de.energiequant.limamf.connector.utils.Threads;
 import de.energiequant.limamf.connector.utils.TimeUtils;
 
 public class MacOSDeviceDiscovery extends DeviceDiscovery {
@@ -240,7 +241,7 @@ public class MacOSDeviceDiscovery extends DeviceDiscovery {
             this.ttyNameFilter = ttyNameFilter;
 
             collectionProxy = getCollectionProxy();
-            scanThread = new Thread(this::scanLoop);
+            scanThread = Threads.newThread("USBSerialMonitor", this::scanLoop);
         }
 
         @Override
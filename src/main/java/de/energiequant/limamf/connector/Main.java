@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -57,6 +58,8 @@ public class Main {
     private final Map<String, Panel.Factory> panelFactories;
     private final Linker linker;
 
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
     private static final String APPLICATION_JAR_NAME = "lima-mf.jar";
 
     private static final String OPTION_NAME_HELP = "help";
@@ -167,7 +170,7 @@ public class Main {
             return false;
         }
 
-        linker.enable(simulatorClientFactory, config.getModules());
+        linker.enable(simulatorClientFactory, config.getModules(), config.getInputProperties());
         return true;
     }
 
@@ -375,6 +378,12 @@ public class Main {
                 LOGGER.error("Error during startup, not recoverable without GUI.");
                 System.exit(1);
             }
+
+            if (shouldRunHeadless) {
+                // background threads may all be daemon threads (virtual threads on Java 21+), so nothing else keeps
+                // the application running without GUI
+                main.awaitTermination();
+            }
         } catch (Exception ex) {
             LOGGER.error("application startup failed", ex);
             moduleDiscovery.shutdown();
@@ -395,6 +404,17 @@ public class Main {
         if (usbSerialDeviceMonitor != null) {
             usbSerialDeviceMonitor.shutdown();
         }
+
+        terminated.countDown();
+    }
+
+    private void awaitTermination() {
+        try {
+            terminated.await();
+        } catch (InterruptedException ex) {
+            LOGGER.warn("interrupted while waiting for termination", ex);
+            Thread.currentThread().interrupt();
+        }
     }
 
     public ApplicationInfo getApplicationInfo() {
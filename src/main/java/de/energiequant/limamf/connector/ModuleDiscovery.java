@@ -2,23 +2,33 @@ package de.energiequant.limamf.connector;
 
 import java.io.File;
 import java.time.Duration;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.energiequant.apputils.misc.DisclaimerState;
 import de.energiequant.limamf.compat.protocol.IdentificationInfoMessage;
+import de.energiequant.limamf.connector.utils.Threads;
 
 public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModule, Set<ModuleDiscovery.ConnectedModule>> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ModuleDiscovery.class);
 
     private final DisclaimerState disclaimerState;
+    private final Configuration config;
+    private final CommunicationSettings communicationSettings;
     private final ObservableCollectionProxy<USBDeviceId, Set<USBDeviceId>> wantedUSBInterfaceIds;
     private final ObservableCollectionProxy.Listener<USBDeviceId> wantedUSBInterfaceIdListener;
 
@@ -30,19 +40,33 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
     private final Set<USBDeviceId> blockedUSBInterfaceIds = new HashSet<>();
 
     private final Thread probeThread;
+    private final ExecutorService probeExecutor;
     private final Set<USBDevice> probeQueue = new LinkedHashSet<>();
+    private final Set<USBDeviceId> probesInFlight = new HashSet<>();
     private static final Duration PROBE_CHECK_INTERVAL = Duration.ofSeconds(5);
     private static final Duration PROBE_THREAD_JOIN_TIMEOUT = Duration.ofMinutes(1);
 
+    /**
+     * Maximum number of devices to probe at the same time. Probes mostly wait for the device to respond, so running
+     * them concurrently keeps startup time close to a single probe timeout even with many devices being connected.
+     */
+    private static final int MAX_CONCURRENT_PROBES = 8;
+
+    private static final Duration VERIFICATION_TIMEOUT = Duration.ofSeconds(5);
+
     public static class ConnectedModule {
         private final ModuleId moduleId;
         private final USBDevice usbDevice;
         private final String version;
+        private final CommunicationSettings communicationSettings;
+        private final AtomicReference<DeviceCommunicator> communicator;
 
-        private ConnectedModule(ModuleId moduleId, USBDevice usbDevice, String version) {
+        private ConnectedModule(ModuleId moduleId, USBDevice usbDevice, String version, CommunicationSettings communicationSettings, DeviceCommunicator communicator) {
             this.moduleId = moduleId;
             this.usbDevice = usbDevice;
             this.version = version;
+            this.communicationSettings = communicationSettings;
+            this.communicator = new AtomicReference<>(communicator);
         }
 
         public ModuleId getModuleId() {
@@ -57,6 +81,43 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
             return version;
         }
 
+        public CommunicationSettings getCommunicationSettings() {
+            return communicationSettings;
+        }
+
+        /**
+         * Takes over the connection that has been used to identify the module, if it has been kept open (see
+         * {@link CommunicationSettings#shouldKeepProbeConnection()}). The connection can only be taken once; the caller
+         * becomes responsible for upgrading it to the module's protocol version (see
+         * {@link DeviceCommunicator#upgrade(String, java.util.function.BiConsumer)}) and shutting it down.
+         *
+         * @return open connection to the module; empty if not available (already taken, closed or lost)
+         */
+        public Optional<DeviceCommunicator> takeCommunicator() {
+            DeviceCommunicator taken = communicator.getAndSet(null);
+            if (taken == null) {
+                return Optional.empty();
+            }
+
+            if (taken.isShutdown()) {
+                LOGGER.debug("connection kept from probing has already been closed: {}", this);
+                return Optional.empty();
+            }
+
+            return Optional.of(taken);
+        }
+
+        /**
+         * Closes the connection kept from probing unless it has been taken.
+         */
+        public void releaseCommunicator() {
+            DeviceCommunicator released = communicator.getAndSet(null);
+            if (released != null) {
+                LOGGER.debug("closing unused connection kept from probing: {}", this);
+                released.shutdownAsync();
+            }
+        }
+
         @Override
         public String toString() {
             return "ConnectedModule(" + moduleId + ", version=\"" + version + "\", " + usbDevice + ")";
@@ -67,6 +128,8 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
         super(HashSet::new);
 
         this.disclaimerState = disclaimerState;
+        this.config = config;
+        this.communicationSettings = config.getCommunicationSettings();
         this.connectedDevices = connectedDevices;
         this.connectedModules = getCollectionProxy();
         this.wantedUSBInterfaceIds = config.getUSBInterfaceIds();
@@ -95,7 +158,8 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
             }
         };
 
-        probeThread = new Thread(this::probeLoop);
+        probeThread = Threads.newThread("ModuleDiscovery", this::probeLoop);
+        probeExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_PROBES, Threads.newThreadFactory("ModuleDiscovery-probe-"));
 
         disclaimerState.addListener(this::onDisclaimerStateChanged);
     }
@@ -134,6 +198,22 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
         if (probeThread.isAlive()) {
             LOGGER.warn("probe thread did not shutdown within timeout");
         }
+
+        probeExecutor.shutdown();
+        try {
+            LOGGER.debug("waiting for probes to complete");
+            if (!probeExecutor.awaitTermination(PROBE_THREAD_JOIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("probes did not complete within timeout");
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.error("interrupted while waiting for probes to complete", ex);
+            System.exit(1);
+        }
+
+        // connections kept from probing would otherwise remain open if modules have not been taken over by a panel
+        for (ConnectedModule module : connectedModules.getAllPresent()) {
+            module.releaseCommunicator();
+        }
     }
 
     private void onDeviceWanted(USBDeviceId deviceId) {
@@ -188,13 +268,19 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
         long probeCheckMillis = PROBE_CHECK_INTERVAL.toMillis();
 
         while (true) {
-            USBDevice device = null;
+            USBDevice device;
             synchronized (this) {
                 if (shouldShutdown()) {
                     break;
                 }
 
-                if (probeQueue.isEmpty() || !disclaimerState.isAccepted()) {
+                device = null;
+                if (disclaimerState.isAccepted() && probesInFlight.size() < MAX_CONCURRENT_PROBES) {
+                    device = removeFirstProbeable().orElse(null);
+                }
+
+                if (device == null) {
+                    // woken up when requests are queued, probes complete or the disclaimer state changes
                     try {
                         wait(probeCheckMillis);
                     } catch (InterruptedException ex) {
@@ -204,131 +290,355 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
                     continue;
                 }
 
-                device = removeFirst(probeQueue).orElse(null);
-                if (device == null) {
-                    LOGGER.warn("non-empty queue contained probe request for null device");
-                    continue;
-                }
-
                 if (blockedUSBInterfaceIds.contains(device.getId())) {
                     LOGGER.warn("device is blocked, not probing: {}", device);
                     continue;
                 }
+
+                probesInFlight.add(device.getId());
             }
 
-            // probe queue may hold requests for devices that have already been probed; only probe once while connected
-            boolean alreadyConnected = false;
-            for (ConnectedModule connectedModule : connectedModules.getAllPresent()) {
-                if (device.equals(connectedModule.getUSBDevice())) {
-                    alreadyConnected = true;
-                    break;
+            USBDevice probedDevice = device;
+            probeExecutor.execute(() -> {
+                try {
+                    probeAndConnect(probedDevice);
+                } catch (Exception ex) {
+                    LOGGER.warn("unexpected exception while probing {}", probedDevice, ex);
+                } finally {
+                    synchronized (this) {
+                        probesInFlight.remove(probedDevice.getId());
+                        notifyAll();
+                    }
+                }
+            });
+        }
+
+        LOGGER.debug("probe thread terminates");
+    }
+
+    /**
+     * Removes the first queued device that is not currently being probed. Requests for devices that are already being
+     * probed remain queued until that probe has completed, so each device is only probed once at a time.
+     *
+     * @return first device that can be probed now, empty if none
+     */
+    private Optional<USBDevice> removeFirstProbeable() {
+        synchronized (this) {
+            Iterator<USBDevice> it = probeQueue.iterator();
+            while (it.hasNext()) {
+                USBDevice device = it.next();
+                if (device == null) {
+                    LOGGER.warn("queue contained probe request for null device");
+                    it.remove();
+                    continue;
+                }
+
+                if (!probesInFlight.contains(device.getId())) {
+                    it.remove();
+                    return Optional.of(device);
                 }
             }
-            if (alreadyConnected) {
-                LOGGER.debug("module is already connected; not probing again: {}", device);
-                continue;
+
+            return Optional.empty();
+        }
+    }
+
+    private void probeAndConnect(USBDevice device) {
+        // probe queue may hold requests for devices that have already been probed; only probe once while connected
+        boolean alreadyConnected = false;
+        for (ConnectedModule connectedModule : connectedModules.getAllPresent()) {
+            if (device.equals(connectedModule.getUSBDevice())) {
+                alreadyConnected = true;
+                break;
             }
+        }
+        if (alreadyConnected) {
+            LOGGER.debug("module is already connected; not probing again: {}", device);
+            return;
+        }
 
-            // probe requests may be outdated if devices get disconnected or ignored concurrently
-            USBDeviceId deviceId = device.getId();
-            boolean wanted = wantedUSBInterfaceIds.contains(deviceId);
-            boolean connected = connectedDevices.contains(device);
-            if (!(wanted && connected)) {
-                LOGGER.debug("ignoring outdated probe request, wanted={}, connected={}: {}", wanted, connected, device);
-                continue;
+        // probe requests may be outdated if devices get disconnected or ignored concurrently
+        USBDeviceId deviceId = device.getId();
+        boolean wanted = wantedUSBInterfaceIds.contains(deviceId);
+        boolean connected = connectedDevices.contains(device);
+        if (!(wanted && connected)) {
+            LOGGER.debug("ignoring outdated probe request, wanted={}, connected={}: {}", wanted, connected, device);
+            return;
+        }
+
+        File deviceNode = device.getDeviceNode().orElse(null);
+        if (deviceNode == null) {
+            LOGGER.warn("probe requested for device without node; ignoring: {}", device);
+            return;
+        }
+
+        Configuration.KnownIdentity knownIdentity = null;
+        if (communicationSettings.shouldUseKnownIdentities()) {
+            knownIdentity = config.getKnownIdentity(deviceId).orElse(null);
+        }
+        if (knownIdentity != null) {
+            connectKnown(device, deviceNode, knownIdentity);
+            return;
+        }
+
+        DeviceCommunicator.ProbeResult probeResult = probeModule(deviceNode, communicationSettings).orElse(null);
+        if (probeResult == null) {
+            LOGGER.warn("Module cannot be added (probe failed): {}", device);
+            block(device);
+            return;
+        }
+
+        IdentificationInfoMessage identification = probeResult.getIdentification();
+        DeviceCommunicator communicator = probeResult.getCommunicator().orElse(null);
+
+        boolean added = false;
+        try {
+            Configuration.KnownIdentity identity = toKnownIdentity(identification).orElse(null);
+            if (identity == null) {
+                LOGGER.warn("Module cannot be added (probed data is invalid): {}, {}", device, identification);
+                block(device);
+                return;
             }
 
-            File deviceNode = device.getDeviceNode().orElse(null);
-            if (deviceNode == null) {
-                LOGGER.warn("probe requested for device without node; ignoring: {}", device);
-                continue;
+            rememberIdentity(deviceId, identity);
+
+            added = addModule(device, identity, communicator);
+        } finally {
+            if (!added && communicator != null) {
+                communicator.shutdownAsync();
             }
+        }
+    }
 
-            IdentificationInfoMessage identification = probe(deviceNode).orElse(null);
-            if (identification == null) {
-                LOGGER.warn("Module cannot be added (probe failed): {}", device);
-                block(device);
-                continue;
+    /**
+     * Connects a module based on the identity it last reported, without waiting for it to be probed first. The
+     * identity is requested through the same connection, which gets handed over to the panel implementation. If the
+     * module does not confirm its identity in time, it is disconnected again and queued to be probed.
+     *
+     * @param device        device to connect
+     * @param deviceNode    node of the device
+     * @param knownIdentity identity the module is expected to have
+     */
+    private void connectKnown(USBDevice device, File deviceNode, Configuration.KnownIdentity knownIdentity) {
+        LOGGER.debug("connecting module with known identity, verifying in background: {}, {}", device, knownIdentity);
+
+        DeviceCommunicator communicator = new DeviceCommunicator(deviceNode, null, communicationSettings, (c, msg) -> {
+            LOGGER.debug("ignoring message received before connection has been handed over: {}", msg);
+        });
+        CompletableFuture<IdentificationInfoMessage> verification = communicator.requestIdentification();
+
+        boolean added = false;
+        try {
+            added = addModule(device, knownIdentity, communicator);
+        } finally {
+            if (!added) {
+                communicator.shutdownAsync();
             }
+        }
+        if (!added) {
+            return;
+        }
 
-            synchronized (this) {
-                // probe queue may hold duplicates; remove them
-                probeQueue.removeIf(x -> deviceId.equals(x.getId()));
-
-                // device may be no longer wanted or could have been disconnected since we started processing the probe
-                // request; only connect modules that are still relevant
-                boolean blocked = blockedUSBInterfaceIds.contains(deviceId);
-                wanted = wantedUSBInterfaceIds.contains(deviceId);
-                connected = connectedDevices.contains(device);
-                boolean disclaimerAccepted = disclaimerState.isAccepted();
-                if (shouldShutdown() || blocked || !(wanted && connected) || !disclaimerAccepted) {
-                    LOGGER.debug("probe is no longer valid, shutdown={}, wanted={}, connected={}, blocked={}, disclaimerAccepted={}: {}", shouldShutdown(), wanted, connected, blocked, disclaimerAccepted, device);
-                    continue;
-                }
+        IdentificationInfoMessage identification = null;
+        try {
+            identification = verification.get(VERIFICATION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            LOGGER.warn("Module did not confirm its identity in time: {}", device);
+        } catch (CancellationException | ExecutionException ex) {
+            if (communicator.isShutdown()) {
+                // module has been disconnected, verification is no longer relevant
+                LOGGER.debug("identity could not be verified as connection has been closed: {}", device, ex);
+                return;
+            }
 
-                ConnectedModule module;
-                try {
-                    module = new ConnectedModule(
-                        ModuleId.builder()
-                                .setType(identification.getMobiflightType())
-                                .setName(identification.getName())
-                                .setSerial(identification.getSerial())
-                                .build(),
-                        device,
-                        identification.getVersion()
-                    );
-                } catch (IllegalArgumentException ex) {
-                    LOGGER.warn("Module cannot be added (probed data is invalid): {}, {}", device, identification, ex);
-                    block(device);
-                    continue;
-                }
+            LOGGER.warn("Failed to verify identity of module: {}", device, ex);
+        } catch (InterruptedException ex) {
+            LOGGER.error("interrupted while verifying identity; exiting: {}", deviceNode, ex);
+            System.exit(1);
+            return;
+        }
+
+        Configuration.KnownIdentity identity = null;
+        if (identification != null && isValidIdentification(deviceNode, identification)) {
+            identity = toKnownIdentity(identification).orElse(null);
+        }
+
+        if (knownIdentity.equals(identity)) {
+            LOGGER.debug("identity has been verified: {}, {}", device, identity);
+            return;
+        }
+
+        LOGGER.warn("Module identity has changed, reconnecting: {}, expected {}, got {}", device, knownIdentity, identity);
+        if (identity != null) {
+            rememberIdentity(device.getId(), identity);
+        } else if (config.removeKnownIdentity(device.getId())) {
+            saveConfig();
+        }
 
-                LOGGER.debug("Module is available: {}", module);
-                connectedModules.add(module);
+        removeModules(device.getId());
+
+        // the device should not be opened again before the previous connection has been closed
+        try {
+            if (!communicator.waitForShutdown(VERIFICATION_TIMEOUT)) {
+                LOGGER.warn("connection did not shut down in time, not reconnecting: {}", device);
+                return;
             }
+        } catch (InterruptedException ex) {
+            LOGGER.error("interrupted while waiting for connection to shut down; exiting: {}", deviceNode, ex);
+            System.exit(1);
+            return;
         }
 
-        LOGGER.debug("probe thread terminates");
+        queueProbe(device);
+    }
+
+    private static Optional<Configuration.KnownIdentity> toKnownIdentity(IdentificationInfoMessage identification) {
+        try {
+            return Optional.of(new Configuration.KnownIdentity(
+                ModuleId.builder()
+                        .setType(identification.getMobiflightType())
+                        .setName(identification.getName())
+                        .setSerial(identification.getSerial())
+                        .build(),
+                identification.getVersion()
+            ));
+        } catch (IllegalArgumentException ex) {
+            LOGGER.debug("invalid identification: {}", identification, ex);
+            return Optional.empty();
+        }
+    }
+
+    private void rememberIdentity(USBDeviceId deviceId, Configuration.KnownIdentity identity) {
+        if (config.putKnownIdentity(deviceId, identity)) {
+            saveConfig();
+        }
+    }
+
+    private void saveConfig() {
+        if (config.getSaveLocation().isPresent()) {
+            config.trySave();
+        }
+    }
+
+    private boolean addModule(USBDevice device, Configuration.KnownIdentity identity, DeviceCommunicator communicator) {
+        USBDeviceId deviceId = device.getId();
+
+        synchronized (this) {
+            // probe queue may hold duplicates; remove them
+            probeQueue.removeIf(x -> deviceId.equals(x.getId()));
+
+            // device may be no longer wanted or could have been disconnected since we started processing the probe
+            // request; only connect modules that are still relevant
+            boolean blocked = blockedUSBInterfaceIds.contains(deviceId);
+            boolean wanted = wantedUSBInterfaceIds.contains(deviceId);
+            boolean connected = connectedDevices.contains(device);
+            boolean disclaimerAccepted = disclaimerState.isAccepted();
+            if (shouldShutdown() || blocked || !(wanted && connected) || !disclaimerAccepted) {
+                LOGGER.debug("probe is no longer valid, shutdown={}, wanted={}, connected={}, blocked={}, disclaimerAccepted={}: {}", shouldShutdown(), wanted, connected, blocked, disclaimerAccepted, device);
+                return false;
+            }
+
+            ConnectedModule module = new ConnectedModule(
+                identity.getModuleId(),
+                device,
+                identity.getVersion(),
+                communicationSettings,
+                communicator
+            );
+
+            LOGGER.debug("Module is available: {}", module);
+            connectedModules.add(module);
+            return true;
+        }
     }
 
     public static Optional<IdentificationInfoMessage> probe(File deviceNode) {
+        return probe(deviceNode, CommunicationSettings.DEFAULT);
+    }
+
+    public static Optional<IdentificationInfoMessage> probe(File deviceNode, CommunicationSettings communicationSettings) {
         LOGGER.debug("probing {}", deviceNode);
         IdentificationInfoMessage identification;
         try {
-            identification = DeviceCommunicator.probe(deviceNode).orElse(null);
+            identification = DeviceCommunicator.probe(deviceNode, communicationSettings).orElse(null);
         } catch (InterruptedException ex) {
             LOGGER.error("interrupted while probing; exiting: {}", deviceNode, ex);
             System.exit(1);
             return Optional.empty();
         }
 
-        if (identification == null) {
+        if (!isValidIdentification(deviceNode, identification)) {
+            return Optional.empty();
+        }
+
+        LOGGER.debug("probe successful for {}", deviceNode);
+        return Optional.of(identification);
+    }
+
+    /**
+     * Probes a module like {@link #probe(File, CommunicationSettings)} but keeps the connection open if configured
+     * through {@link CommunicationSettings#shouldKeepProbeConnection()}.
+     *
+     * @param deviceNode            device to probe
+     * @param communicationSettings settings to use for communication
+     * @return identification and optionally the open connection; empty if probe failed
+     */
+    private static Optional<DeviceCommunicator.ProbeResult> probeModule(File deviceNode, CommunicationSettings communicationSettings) {
+        if (!communicationSettings.shouldKeepProbeConnection()) {
+            return probe(deviceNode, communicationSettings).map(DeviceCommunicator.ProbeResult::of);
+        }
+
+        LOGGER.debug("probing {}, keeping connection", deviceNode);
+        DeviceCommunicator.ProbeResult result;
+        try {
+            result = DeviceCommunicator.probeAndKeepOpen(deviceNode, communicationSettings).orElse(null);
+        } catch (InterruptedException ex) {
+            LOGGER.error("interrupted while probing; exiting: {}", deviceNode, ex);
+            System.exit(1);
+            return Optional.empty();
+        }
+
+        if (result == null) {
             LOGGER.warn("Probe failed: {}", deviceNode);
             return Optional.empty();
         }
 
+        if (!isValidIdentification(deviceNode, result.getIdentification())) {
+            result.getCommunicator().ifPresent(DeviceCommunicator::shutdownAsync);
+            return Optional.empty();
+        }
+
+        LOGGER.debug("probe successful for {}", deviceNode);
+        return Optional.of(result);
+    }
+
+    private static boolean isValidIdentification(File deviceNode, IdentificationInfoMessage identification) {
+        if (identification == null) {
+            LOGGER.warn("Probe failed: {}", deviceNode);
+            return false;
+        }
+
         if (!identification.getMobiflightType().toLowerCase().contains("mobiflight")) {
             LOGGER.warn("Interface does not indicate to be running MobiFlight firmware, probe failed: {}, {}", deviceNode, identification);
-            return Optional.empty();
+            return false;
         }
 
         if (!identification.getVersion().equals(identification.getCoreVersion())) {
             LOGGER.warn("Interface reports inconsistent versions, probe failed: {}, {}", deviceNode, identification);
-            return Optional.empty();
+            return false;
         }
 
         if (identification.getName().trim().isEmpty()) {
             LOGGER.warn("Interface reports no module name, probe failed: {}, {}", deviceNode, identification);
-            return Optional.empty();
+            return false;
         }
 
         if (identification.getSerial().trim().isEmpty()) {
             LOGGER.warn("Interface reports no serial, probe failed: {}, {}", deviceNode, identification);
-            return Optional.empty();
+            return false;
         }
 
-        LOGGER.debug("probe successful for {}", deviceNode);
-        return Optional.of(identification);
+        return true;
     }
 
     private void removeModules(USBDeviceId deviceId) {
@@ -341,6 +651,7 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
                 if (deviceId.equals(module.getUSBDevice().getId())) {
                     LOGGER.warn("Module has become unavailable: {} {} {} ({})", module.getModuleId().getType(), module.getModuleId().getName(), module.getModuleId().getSerial(), module.getUSBDevice().getDeviceNode().orElse(null));
                     connectedModules.remove(module);
+                    module.releaseCommunicator();
                 }
             }
         }
@@ -358,16 +669,4 @@ public class ModuleDiscovery extends AsyncMonitor<ModuleDiscovery.ConnectedModul
             removeModules(deviceId);
         }
     }
-
-    private static <T> Optional<T> removeFirst(Collection<T> collection) {
-        Iterator<T> it = collection.iterator();
-        if (!it.hasNext()) {
-            return Optional.empty();
-        }
-
-        T item = it.next();
-        it.remove();
-
-        return Optional.ofNullable(item);
-    }
 }
@@ -0,0 +1,223 @@
+package de.energiequant.limamf.connector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.connector.utils.NativeSerialPort;
+
+/**
+ * {@link DeviceIO} based on native file descriptors, see {@link NativeSerialPort}.
+ * <p>
+ * Reads wait for data in {@code poll(2)}, so they wake up as soon as the first byte has been received and do not
+ * consume any CPU while idle. Blocked reads are released through {@link NativeSerialPort#release()} instead of
+ * having to close the device while still in use. Only available on Java 22 or later, see
+ * {@link NativeSerialPort#isAvailable()}.
+ * </p>
+ * <p>
+ * Characters are mapped 1:1 to bytes, so only single-byte ISO-8859-1 encoding is supported (which is what the
+ * protocol uses).
+ * </p>
+ */
+class NativeDeviceIO extends DeviceIO {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeDeviceIO.class);
+
+    private static final int INITIAL_OUTPUT_BUFFER_SIZE = 256;
+
+    private final NativeSerialPort port;
+
+    private final ReentrantLock inputLock = new ReentrantLock();
+    private ByteBuffer inputBuffer = ByteBuffer.allocateDirect(0);
+
+    private final ReentrantLock outputLock = new ReentrantLock();
+    private ByteBuffer outputBuffer = ByteBuffer.allocateDirect(INITIAL_OUTPUT_BUFFER_SIZE);
+
+    NativeDeviceIO(File deviceNode) {
+        super(deviceNode);
+
+        try {
+            port = NativeSerialPort.open(deviceNode);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    NativeSerialPort getNativePort() {
+        return port;
+    }
+
+    @Override
+    public boolean tryClose() {
+        closing.set(true);
+
+        // releases blocked reads; descriptors are closed once all pending operations have completed
+        return port.close();
+    }
+
+    @Override
+    public void write(String s) {
+        outputLock.lock();
+        try {
+            int length = s.length();
+            if (outputBuffer.remaining() < length) {
+                int required = outputBuffer.position() + length;
+                ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(required, outputBuffer.capacity() * 2));
+                outputBuffer.flip();
+                grown.put(outputBuffer);
+                outputBuffer = grown;
+            }
+
+            // ISO-8859-1 maps the first 256 characters directly to bytes
+            for (int i = 0; i < length; i++) {
+                char ch = s.charAt(i);
+                outputBuffer.put((ch <= 0xFF) ? (byte) ch : (byte) '?');
+            }
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        // called for every batch sent; locking explicitly instead of withLock avoids per-call lambda allocation
+        outputLock.lock();
+        try {
+            flushOutputBuffer();
+            port.write(buffer);
+        } catch (IOException ex) {
+            handleWriteFailure(ex);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        outputLock.lock();
+        try {
+            flushOutputBuffer();
+        } catch (IOException ex) {
+            handleWriteFailure(ex);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    private void flushOutputBuffer() throws IOException {
+        if (outputBuffer.position() == 0) {
+            return;
+        }
+
+        outputBuffer.flip();
+        try {
+            port.write(outputBuffer);
+        } finally {
+            outputBuffer.clear();
+        }
+    }
+
+    private void handleWriteFailure(IOException ex) {
+        if (closing.get()) {
+            LOGGER.debug("{}failed writing to device, closing (expected due to marked as closing already)", logPrefix, ex);
+        } else {
+            LOGGER.warn("{}unexpectedly failed writing to device, closing", logPrefix, ex);
+        }
+        tryClose();
+        throw new UncheckedIOException(ex);
+    }
+
+    @Override
+    public int readAvailableInto(char[] buffer) {
+        return readInto(buffer, 0);
+    }
+
+    @Override
+    public int readAtLeastOneInto(char[] buffer) {
+        return readInto(buffer, -1);
+    }
+
+    private int readInto(char[] buffer, int timeoutMillis) {
+        if (buffer.length == 0) {
+            throw new IllegalArgumentException("attempted to read into zero buffer");
+        }
+
+        inputLock.lock();
+        try {
+            if (inputBuffer.capacity() < buffer.length) {
+                inputBuffer = ByteBuffer.allocateDirect(buffer.length);
+            }
+
+            inputBuffer.clear();
+            inputBuffer.limit(buffer.length);
+
+            int read = read(inputBuffer, timeoutMillis);
+
+            // ISO-8859-1 maps all bytes directly to the first 256 characters
+            for (int i = 0; i < read; i++) {
+                buffer[i] = (char) (inputBuffer.get(i) & 0xFF);
+            }
+
+            return read;
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    @Override
+    public int readAtLeastOneInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        inputLock.lock();
+        try {
+            return read(buffer, -1);
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    @Override
+    public int readAvailableInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        inputLock.lock();
+        try {
+            return read(buffer, 0);
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    private int read(ByteBuffer buffer, int timeoutMillis) {
+        try {
+            int read;
+            do {
+                read = port.read(buffer, timeoutMillis);
+            } while (read == 0 && timeoutMillis < 0);
+
+            if (read < 0 && !closing.get()) {
+                LOGGER.warn("{}device has been closed unexpectedly", logPrefix);
+                tryClose();
+            }
+
+            return read;
+        } catch (IOException ex) {
+            if (closing.get()) {
+                return -1;
+            }
+
+            LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+            tryClose();
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
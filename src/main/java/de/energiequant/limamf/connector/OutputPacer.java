@@ -0,0 +1,86 @@
+package de.energiequant.limamf.connector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets limiting how many bytes and messages may be written to a device per second.
+ * <p>
+ * Each bucket holds up to a configured burst and refills continuously at the configured rate. As long as enough
+ * tokens are available, messages can be sent immediately which keeps latency low for single messages. Bursts exceeding
+ * the bucket size get delayed instead, so slow devices with small receive buffers do not get overrun.
+ * </p>
+ * <p>
+ * Sending is never refused: {@link #reserve(int, long)} always takes the tokens, even if that results in a deficit,
+ * and returns how long the caller needs to wait until the deficit has been refilled. This way messages larger than
+ * the burst size can still be sent.
+ * </p>
+ * <p>
+ * Instances are not thread-safe and only meant to be used by the sending thread.
+ * </p>
+ */
+class OutputPacer {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Bucket bytes;
+    private final Bucket messages;
+
+    OutputPacer(CommunicationSettings settings, long nowNanos) {
+        bytes = Bucket.create(settings.getOutputBytesPerSecond(), settings.getOutputBurstBytes(), nowNanos);
+        messages = Bucket.create(settings.getOutputMessagesPerSecond(), settings.getOutputBurstMessages(), nowNanos);
+    }
+
+    /**
+     * Takes tokens for a message of given length.
+     *
+     * @param numBytes  number of bytes to be written
+     * @param nowNanos  current {@link System#nanoTime()}
+     * @return nanoseconds to wait before the message may be written; zero or negative if it can be written immediately
+     */
+    long reserve(int numBytes, long nowNanos) {
+        long byteDelay = (bytes == null) ? 0 : bytes.take(numBytes, nowNanos);
+        long messageDelay = (messages == null) ? 0 : messages.take(1, nowNanos);
+
+        return Math.max(byteDelay, messageDelay);
+    }
+
+    boolean isEnabled() {
+        return bytes != null || messages != null;
+    }
+
+    private static class Bucket {
+        private final long capacityNanos;
+        private final long nanosPerToken;
+
+        /**
+         * Point in time at which the bucket is (or was) empty. The bucket is full once this is {@link #capacityNanos}
+         * in the past. Tracking time instead of a token count avoids fractional tokens.
+         */
+        private long emptyAtNanos;
+
+        private Bucket(int tokensPerSecond, int capacity, long nowNanos) {
+            this.nanosPerToken = NANOS_PER_SECOND / tokensPerSecond;
+            this.capacityNanos = nanosPerToken * capacity;
+            this.emptyAtNanos = nowNanos - capacityNanos;
+        }
+
+        static Bucket create(int tokensPerSecond, int capacity, long nowNanos) {
+            if (tokensPerSecond <= 0) {
+                return null;
+            }
+
+            return new Bucket(tokensPerSecond, capacity, nowNanos);
+        }
+
+        long take(int numTokens, long nowNanos) {
+            // bucket cannot hold more than its capacity
+            long fullAtNanos = nowNanos - capacityNanos;
+            if (emptyAtNanos - fullAtNanos < 0) {
+                emptyAtNanos = fullAtNanos;
+            }
+
+            emptyAtNanos += numTokens * nanosPerToken;
+
+            return emptyAtNanos - nowNanos;
+        }
+    }
+}
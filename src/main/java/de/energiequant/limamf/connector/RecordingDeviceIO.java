@@ -0,0 +1,146 @@
+package de.energiequant.limamf.connector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.connector.utils.NativeSerialPort;
+
+/**
+ * Wraps another {@link DeviceIO} to record all data read and written by it to a {@link TrafficRecorder}.
+ * <p>
+ * Recording only starts when requested by {@link #startRecording()}, so connections that are only opened to probe a
+ * device do not leave captures behind. Data is recorded after it has been passed to or returned by the wrapped
+ * {@link DeviceIO}, so recording does not delay writes.
+ * </p>
+ */
+class RecordingDeviceIO extends DeviceIO {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordingDeviceIO.class);
+
+    private final DeviceIO delegate;
+    private final File directory;
+    private volatile TrafficRecorder recorder;
+
+    /**
+     * Wraps the given {@link DeviceIO}; recording needs to be started separately using {@link #startRecording()}.
+     *
+     * @param delegate  {@link DeviceIO} to record
+     * @param directory directory to write the capture to
+     */
+    RecordingDeviceIO(DeviceIO delegate, File directory) {
+        super(delegate.getName());
+
+        this.delegate = delegate;
+        this.directory = directory;
+    }
+
+    /**
+     * Starts recording traffic to a new file. Communication continues without recording if the file cannot be
+     * created. Has no effect if recording has already been started or the {@link DeviceIO} is being closed.
+     */
+    synchronized void startRecording() {
+        if ((recorder != null) || closing.get()) {
+            return;
+        }
+
+        try {
+            recorder = TrafficRecorder.create(directory, delegate.getName(), delegate.getLogPrefix());
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to start traffic capture in {}, continuing without recording", delegate.getLogPrefix(), directory, ex);
+            return;
+        }
+
+        LOGGER.info("{}recording traffic to {}", delegate.getLogPrefix(), recorder.getFile());
+    }
+
+    private synchronized void stopRecording() {
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    @Override
+    NativeSerialPort getNativePort() {
+        return delegate.getNativePort();
+    }
+
+    @Override
+    public boolean tryClose() {
+        closing.set(true);
+
+        boolean success = delegate.tryClose();
+        stopRecording();
+
+        return success;
+    }
+
+    @Override
+    public void write(String s) {
+        delegate.write(s);
+
+        TrafficRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.record(TrafficCapture.Direction.SENT, s);
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        // consumed bytes remain in the buffer
+        int start = buffer.position();
+        delegate.write(buffer);
+
+        TrafficRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.record(TrafficCapture.Direction.SENT, buffer, start, buffer.position());
+        }
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public int readAvailableInto(char[] buffer) {
+        return recordReceived(buffer, delegate.readAvailableInto(buffer));
+    }
+
+    @Override
+    public int readAtLeastOneInto(char[] buffer) {
+        return recordReceived(buffer, delegate.readAtLeastOneInto(buffer));
+    }
+
+    private int recordReceived(char[] buffer, int read) {
+        TrafficRecorder recorder = this.recorder;
+        if ((read > 0) && (recorder != null)) {
+            recorder.record(TrafficCapture.Direction.RECEIVED, buffer, 0, read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public int readAtLeastOneInto(ByteBuffer buffer) {
+        int start = buffer.position();
+        return recordReceived(buffer, start, delegate.readAtLeastOneInto(buffer));
+    }
+
+    @Override
+    public int readAvailableInto(ByteBuffer buffer) {
+        int start = buffer.position();
+        return recordReceived(buffer, start, delegate.readAvailableInto(buffer));
+    }
+
+    private int recordReceived(ByteBuffer buffer, int start, int read) {
+        TrafficRecorder recorder = this.recorder;
+        if ((read > 0) && (recorder != null)) {
+            recorder.record(TrafficCapture.Direction.RECEIVED, buffer, start, start + read);
+        }
+
+        return read;
+    }
+}
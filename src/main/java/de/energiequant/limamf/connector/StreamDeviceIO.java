@@ -0,0 +1,325 @@
+package de.energiequant.limamf.connector;
+
+import static de.energiequant.limamf.connector.utils.Locks.withLock;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DeviceIO} based on classic {@link java.io} streams. Blocking reads have to be emulated by polling.
+ */
+class StreamDeviceIO extends DeviceIO {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamDeviceIO.class);
+
+    private final FileInputStream fis;
+    private final InputStreamReader isr;
+    private final ReentrantLock inputLock = new ReentrantLock();
+    private byte[] inputBytes = new byte[0];
+
+    private final FileOutputStream fos;
+    private final OutputStreamWriter osw;
+    private final BufferedWriter bw;
+    private final ReentrantLock outputLock = new ReentrantLock();
+    private byte[] outputBytes = new byte[0];
+
+    private final long POLLING_INTERVAL_MILLIS = 10;
+
+    StreamDeviceIO(File deviceNode, Charset characterSet) {
+        super(deviceNode);
+
+        try {
+            fis = new FileInputStream(deviceNode);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        try {
+            fos = new FileOutputStream(deviceNode);
+        } catch (IOException ex) {
+            try {
+                fis.close();
+            } catch (IOException ex2) {
+                LOGGER.warn("{}failed to close FileInputStream while handling FileOutputStream error", logPrefix, ex2);
+            }
+
+            throw new UncheckedIOException(ex);
+        }
+
+        isr = new InputStreamReader(fis, characterSet);
+        osw = new OutputStreamWriter(fos, characterSet);
+
+        bw = new BufferedWriter(osw);
+    }
+
+    @Override
+    public boolean tryClose() {
+        AtomicBoolean success = new AtomicBoolean(true);
+
+        closing.set(true);
+
+        //withLocks(
+        //    inputLock, outputLock,
+        //    () -> {
+        try {
+            bw.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close BufferedWriter", logPrefix, ex);
+            success.set(false);
+        }
+
+        try {
+            osw.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close OutputStreamWriter", logPrefix, ex);
+            success.set(false);
+        }
+
+        try {
+            isr.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close InputStreamReader", logPrefix, ex);
+            success.set(false);
+        }
+
+        try {
+            fos.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close FileOutputStream", logPrefix, ex);
+            success.set(false);
+        }
+
+        try {
+            fis.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close FileInputStream", logPrefix, ex);
+            success.set(false);
+        }
+        //    }
+        //);
+
+        return success.get();
+    }
+
+    @Override
+    public void write(String s) {
+        withLock(
+            outputLock,
+            () -> {
+                try {
+                    bw.write(s);
+                } catch (IOException ex) {
+                    LOGGER.warn("{}failed writing to device, closing", logPrefix, ex);
+                    tryClose();
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        outputLock.lock();
+        try {
+            bw.flush();
+
+            int length = buffer.remaining();
+            if (buffer.hasArray()) {
+                fos.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                buffer.position(buffer.limit());
+            } else {
+                if (outputBytes.length < length) {
+                    outputBytes = new byte[length];
+                }
+                buffer.get(outputBytes, 0, length);
+                fos.write(outputBytes, 0, length);
+            }
+
+            fos.flush();
+        } catch (IOException ex) {
+            if (closing.get()) {
+                LOGGER.debug("{}failed writing to device, closing (expected due to marked as closing already)", logPrefix, ex);
+            } else {
+                LOGGER.warn("{}unexpectedly failed writing to device, closing", logPrefix, ex);
+            }
+            tryClose();
+            throw new UncheckedIOException(ex);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        withLock(
+            outputLock,
+            () -> {
+                try {
+                    bw.flush();
+                } catch (IOException ex) {
+                    if (closing.get()) {
+                        LOGGER.debug("{}failed flushing buffer to device, closing (expected due to marked as closing already)", logPrefix, ex);
+                    } else {
+                        LOGGER.warn("{}unexpectedly failed flushing buffer to device, closing", logPrefix, ex);
+                    }
+                    tryClose();
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+    }
+
+    @Override
+    public int readAvailableInto(char[] buffer) {
+        if (buffer.length == 0) {
+            throw new IllegalArgumentException("attempted to read into zero buffer");
+        }
+
+        AtomicInteger res = new AtomicInteger(0);
+
+        withLock(
+            inputLock,
+            () -> {
+                try {
+                    if (!isr.ready()) {
+                        return;
+                    }
+
+                    res.set(isr.read(buffer));
+                } catch (IOException ex) {
+                    LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+                    tryClose();
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        );
+
+        return res.get();
+    }
+
+    @Override
+    public int readAtLeastOneInto(char[] buffer) {
+        if (buffer.length == 0) {
+            throw new IllegalArgumentException("attempted to read into zero buffer");
+        }
+
+        AtomicInteger res = new AtomicInteger(0);
+
+        withLock(
+            inputLock,
+            () -> {
+                try {
+                    // We are polling as a workaround for not being able to close the reader on shutdown while we are
+                    // waiting for blocking read to complete which in turn means we can't unblock on shutdown.
+                    // ChannelDeviceIO does not have that issue and should be preferred.
+                    while (!isr.ready()) {
+                        Thread.sleep(POLLING_INTERVAL_MILLIS);
+                    }
+                    res.set(isr.read(buffer));
+                } catch (IOException ex) {
+                    if (closing.get()) {
+                        res.set(-1);
+                    } else {
+                        LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+                        tryClose();
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            }
+        );
+
+        return res.get();
+    }
+
+    @Override
+    public int readAtLeastOneInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        inputLock.lock();
+        try {
+            // same polling workaround as for character-based reads but on the raw stream
+            int available;
+            while ((available = fis.available()) < 1) {
+                Thread.sleep(POLLING_INTERVAL_MILLIS);
+            }
+
+            return readInto(buffer, available);
+        } catch (IOException ex) {
+            if (closing.get()) {
+                return -1;
+            }
+
+            LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+            tryClose();
+            throw new UncheckedIOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    @Override
+    public int readAvailableInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        inputLock.lock();
+        try {
+            int available = fis.available();
+            if (available < 1) {
+                return 0;
+            }
+
+            return readInto(buffer, available);
+        } catch (IOException ex) {
+            if (closing.get()) {
+                return -1;
+            }
+
+            LOGGER.warn("{}failed to read from device, closing", logPrefix, ex);
+            tryClose();
+            throw new UncheckedIOException(ex);
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    private int readInto(ByteBuffer buffer, int available) throws IOException {
+        int maxLength = Math.min(available, buffer.remaining());
+        if (buffer.hasArray()) {
+            int read = fis.read(buffer.array(), buffer.arrayOffset() + buffer.position(), maxLength);
+            if (read > 0) {
+                buffer.position(buffer.position() + read);
+            }
+            return read;
+        }
+
+        if (inputBytes.length < maxLength) {
+            inputBytes = new byte[buffer.capacity()];
+        }
+
+        int read = fis.read(inputBytes, 0, maxLength);
+        if (read > 0) {
+            buffer.put(inputBytes, 0, read);
+        }
+        return read;
+    }
+}
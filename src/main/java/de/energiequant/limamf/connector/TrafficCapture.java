@@ -0,0 +1,215 @@
+package de.energiequant.limamf.connector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads traffic recorded from a device (see {@link CommunicationSettings#getTrafficCaptureDirectory()}).
+ * <p>
+ * Captures are binary files consisting of a header followed by one record per read from or write to the device, all
+ * numbers are big-endian:
+ * </p>
+ * <pre>
+ * header:
+ *   int   magic ("LMFC")
+ *   short format version
+ *   short reserved
+ *   long  start of capture, milliseconds since epoch
+ * record:
+ *   long  nanoseconds since start of capture
+ *   byte  direction (see {@link Direction}); 0 marks the end of the capture
+ *   int   number of bytes
+ *   byte[] data as transferred
+ * </pre>
+ * <p>
+ * Files are extended in large steps while recording and remaining space is zero-filled, so a capture ends at the
+ * first record with a direction of 0 or at the end of file, whichever comes first. This also keeps captures readable
+ * if the application was terminated without closing them.
+ * </p>
+ */
+public class TrafficCapture {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficCapture.class);
+
+    static final int MAGIC = 0x4C4D4643; // "LMFC"
+    static final short FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 13;
+    static final byte END_OF_CAPTURE = 0;
+
+    /**
+     * Files are mapped as a whole for reading which is limited to 2 GiB.
+     */
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final Instant startTime;
+
+    public enum Direction {
+        /**
+         * Data read from the device.
+         */
+        RECEIVED((byte) 1),
+
+        /**
+         * Data written to the device.
+         */
+        SENT((byte) 2);
+
+        private final byte code;
+
+        Direction(byte code) {
+            this.code = code;
+        }
+
+        byte getCode() {
+            return code;
+        }
+
+        private static Optional<Direction> fromCode(byte code) {
+            for (Direction direction : values()) {
+                if (direction.code == code) {
+                    return Optional.of(direction);
+                }
+            }
+
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A single read from or write to the device.
+     */
+    public static class Record {
+        private final long nanos;
+        private final Direction direction;
+        private final byte[] data;
+
+        private Record(long nanos, Direction direction, byte[] data) {
+            this.nanos = nanos;
+            this.direction = direction;
+            this.data = data;
+        }
+
+        /**
+         * Returns the time of transfer relative to the start of capture.
+         *
+         * @return nanoseconds since start of capture
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public Direction getDirection() {
+            return direction;
+        }
+
+        /**
+         * Returns the transferred data; the array must not be modified.
+         *
+         * @return transferred data
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        @Override
+        public String toString() {
+            return "Record(" + nanos + "ns, " + direction + ", " + data.length + " bytes)";
+        }
+    }
+
+    private TrafficCapture(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("not a traffic capture: " + file);
+        }
+
+        short version = buffer.getShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported traffic capture format version " + version + ": " + file);
+        }
+
+        buffer.getShort(); // reserved
+        startTime = Instant.ofEpochMilli(buffer.getLong());
+    }
+
+    /**
+     * Opens the given capture for reading.
+     *
+     * @param file capture to read
+     * @return capture positioned at the first record
+     * @throws IOException if the file cannot be read or is not a traffic capture
+     */
+    public static TrafficCapture open(File file) throws IOException {
+        try (
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel()
+        ) {
+            long size = channel.size();
+            if (size > MAX_FILE_SIZE) {
+                throw new IOException("traffic capture is too large (" + size + " bytes): " + file);
+            }
+
+            // mapping remains valid after the channel has been closed
+            return new TrafficCapture(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return next record; empty at end of capture
+     * @throws IOException if the capture is corrupted
+     */
+    public Optional<Record> nextRecord() throws IOException {
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return Optional.empty();
+        }
+
+        int start = buffer.position();
+        long nanos = buffer.getLong();
+        byte directionCode = buffer.get();
+        int length = buffer.getInt();
+
+        if (directionCode == END_OF_CAPTURE) {
+            buffer.position(start);
+            return Optional.empty();
+        }
+
+        Direction direction = Direction.fromCode(directionCode).orElseThrow(
+            () -> new IOException("invalid direction " + directionCode + " at offset " + start + ": " + file)
+        );
+
+        if (length < 0) {
+            throw new IOException("invalid length " + length + " at offset " + start + ": " + file);
+        }
+
+        if (length > buffer.remaining()) {
+            // only happens if recording was interrupted while writing the record
+            LOGGER.warn("last record of traffic capture is incomplete, ignoring: {}", file);
+            buffer.position(start);
+            buffer.limit(start);
+            return Optional.empty();
+        }
+
+        byte[] data = new byte[length];
+        buffer.get(data);
+
+        return Optional.of(new Record(nanos, direction, data));
+    }
+}
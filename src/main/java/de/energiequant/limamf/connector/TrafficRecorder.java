@@ -0,0 +1,351 @@
+package de.energiequant.limamf.connector;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends records to a traffic capture file, see {@link TrafficCapture} for the format.
+ * <p>
+ * Recording happens on the threads performing I/O, so it must not slow them down: records are copied directly into a
+ * memory-mapped region of the file without any allocation, writing the data to disk is left to the operating system.
+ * Only when a region is full, the file gets extended and the next region mapped. Any error just stops recording, it
+ * never affects communication with the device.
+ * </p>
+ * <p>
+ * Instances are thread-safe without locking on the recording path: each record atomically reserves its space in the
+ * file, so receiving and sending side only synchronize when the next region needs to be mapped. Timestamps are taken
+ * before space is reserved, so records of different threads may end up slightly out of chronological order.
+ * </p>
+ */
+class TrafficRecorder implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private static final int REGION_SIZE = 1024 * 1024;
+
+    static final String FILE_NAME_EXTENSION = ".lmfcap";
+    private static final DateTimeFormatter FILE_NAME_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+                                                                                  .withZone(ZoneId.systemDefault());
+
+    private final File file;
+    private final String logPrefix;
+    private final FileChannel channel;
+    private final long startNanos;
+
+    /**
+     * Offset in file at which the next record will be written.
+     */
+    private final AtomicLong nextOffset = new AtomicLong(TrafficCapture.HEADER_SIZE);
+
+    /**
+     * Most recently mapped region; only replaced while holding {@link #mapLock}.
+     */
+    private volatile Region region;
+    private final Object mapLock = new Object();
+
+    /**
+     * Number of records being written; {@link #CLOSE_REQUESTED} is set once recording should stop.
+     */
+    private final AtomicInteger usage = new AtomicInteger();
+    private static final int CLOSE_REQUESTED = 1 << 30;
+    private static final int CLOSED = 1 << 29;
+
+    private volatile boolean failed = false;
+
+    /**
+     * Part of the file mapped to memory. Position and limit of the buffer are never changed, all access is absolute.
+     */
+    private static class Region {
+        private final long offset;
+        private final MappedByteBuffer buffer;
+
+        private Region(long offset, MappedByteBuffer buffer) {
+            this.offset = offset;
+            this.buffer = buffer;
+        }
+
+        private boolean covers(long start, long end) {
+            return (start >= offset) && (end <= offset + buffer.capacity());
+        }
+    }
+
+    private TrafficRecorder(File file, String logPrefix) throws IOException {
+        this.file = file;
+        this.logPrefix = logPrefix;
+
+        // mapping for writing requires the channel to also be readable
+        channel = FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+
+        startNanos = System.nanoTime();
+        long startMillis = System.currentTimeMillis();
+
+        try {
+            region = mapRegion(0, TrafficCapture.HEADER_SIZE);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+
+        region.buffer.putInt(0, TrafficCapture.MAGIC)
+                     .putShort(4, TrafficCapture.FORMAT_VERSION)
+                     .putShort(6, (short) 0)
+                     .putLong(8, startMillis);
+    }
+
+    /**
+     * Starts recording to a new file in the given directory.
+     *
+     * @param directory  directory to create the file in; will be created if missing
+     * @param deviceName name of the recorded device, used for the file name
+     * @param logPrefix  prefix to use for log messages
+     * @return recorder writing to a new file
+     * @throws IOException if the file could not be created
+     */
+    static TrafficRecorder create(File directory, String deviceName, String logPrefix) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("failed to create directory " + directory);
+        }
+
+        String baseName = "capture-" + FILE_NAME_TIMESTAMP.format(Instant.now()) + "-" + deviceName.replaceAll("[^A-Za-z0-9._-]", "_");
+        File file = new File(directory, baseName + FILE_NAME_EXTENSION);
+        for (int i = 2; file.exists(); i++) {
+            file = new File(directory, baseName + "-" + i + FILE_NAME_EXTENSION);
+        }
+
+        return new TrafficRecorder(file, logPrefix);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Records the given range of a buffer. Position and limit of the buffer remain unchanged.
+     *
+     * @param direction direction of transfer
+     * @param data      buffer holding the transferred bytes
+     * @param from      index of first transferred byte
+     * @param to        index after last transferred byte
+     */
+    void record(TrafficCapture.Direction direction, ByteBuffer data, int from, int to) {
+        if (!acquire()) {
+            return;
+        }
+
+        try {
+            int length = to - from;
+            long start = nextOffset.getAndAdd(TrafficCapture.RECORD_HEADER_SIZE + length);
+            Region target = startRecord(start, direction, length);
+            if (target == null) {
+                return;
+            }
+
+            int index = (int) (start - target.offset) + TrafficCapture.RECORD_HEADER_SIZE;
+            for (int i = from; i < to; i++) {
+                target.buffer.put(index++, data.get(i));
+            }
+        } finally {
+            releaseUsage();
+        }
+    }
+
+    /**
+     * Records the given characters, encoded as ISO-8859-1.
+     *
+     * @param direction direction of transfer
+     * @param chars     transferred characters
+     * @param offset    index of first transferred character
+     * @param length    number of transferred characters
+     */
+    void record(TrafficCapture.Direction direction, char[] chars, int offset, int length) {
+        if (!acquire()) {
+            return;
+        }
+
+        try {
+            long start = nextOffset.getAndAdd(TrafficCapture.RECORD_HEADER_SIZE + length);
+            Region target = startRecord(start, direction, length);
+            if (target == null) {
+                return;
+            }
+
+            int index = (int) (start - target.offset) + TrafficCapture.RECORD_HEADER_SIZE;
+            for (int i = offset; i < offset + length; i++) {
+                target.buffer.put(index++, toByte(chars[i]));
+            }
+        } finally {
+            releaseUsage();
+        }
+    }
+
+    /**
+     * Records the given characters, encoded as ISO-8859-1.
+     *
+     * @param direction direction of transfer
+     * @param s         transferred characters
+     */
+    void record(TrafficCapture.Direction direction, String s) {
+        if (!acquire()) {
+            return;
+        }
+
+        try {
+            long start = nextOffset.getAndAdd(TrafficCapture.RECORD_HEADER_SIZE + s.length());
+            Region target = startRecord(start, direction, s.length());
+            if (target == null) {
+                return;
+            }
+
+            int index = (int) (start - target.offset) + TrafficCapture.RECORD_HEADER_SIZE;
+            for (int i = 0; i < s.length(); i++) {
+                target.buffer.put(index++, toByte(s.charAt(i)));
+            }
+        } finally {
+            releaseUsage();
+        }
+    }
+
+    private static byte toByte(char ch) {
+        // ISO-8859-1 maps the first 256 characters directly to bytes
+        return (ch <= 0xFF) ? (byte) ch : (byte) '?';
+    }
+
+    /**
+     * Writes the header of a record to the space reserved for it.
+     *
+     * @param start     offset of the reserved space in file
+     * @param direction direction of transfer
+     * @param length    number of transferred bytes
+     * @return region covering the whole record; null if recording has failed
+     */
+    private Region startRecord(long start, TrafficCapture.Direction direction, int length) {
+        long nanos = System.nanoTime() - startNanos;
+
+        Region target = getRegion(start, start + TrafficCapture.RECORD_HEADER_SIZE + length);
+        if (target == null) {
+            return null;
+        }
+
+        int index = (int) (start - target.offset);
+        target.buffer.putLong(index, nanos)
+                     .put(index + 8, direction.getCode())
+                     .putInt(index + 9, length);
+
+        return target;
+    }
+
+    private Region getRegion(long start, long end) {
+        Region current = region;
+        if (current.covers(start, end)) {
+            return current;
+        }
+
+        synchronized (mapLock) {
+            current = region;
+            if (current.covers(start, end)) {
+                return current;
+            }
+
+            Region mapped;
+            try {
+                mapped = mapRegion(start, (int) (end - start));
+            } catch (IOException ex) {
+                LOGGER.warn("{}failed to extend traffic capture {}, recording stopped", logPrefix, file, ex);
+                failed = true;
+                requestClose();
+                return null;
+            }
+
+            // records reserved before the current region may still need to be mapped late, only move forward
+            if (mapped.offset > current.offset) {
+                region = mapped;
+            }
+
+            return mapped;
+        }
+    }
+
+    private Region mapRegion(long offset, int minSize) throws IOException {
+        // mapping beyond the end extends the file, the extension is zero-filled which marks the end of capture
+        return new Region(offset, channel.map(FileChannel.MapMode.READ_WRITE, offset, Math.max(REGION_SIZE, minSize)));
+    }
+
+    private boolean acquire() {
+        while (true) {
+            int current = usage.get();
+            if ((current & CLOSE_REQUESTED) != 0) {
+                return false;
+            }
+
+            if (usage.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseUsage() {
+        int remaining = usage.decrementAndGet();
+        if (remaining == CLOSE_REQUESTED) {
+            // last record completed after recording should have stopped
+            stop();
+        }
+    }
+
+    private void requestClose() {
+        int previous = usage.getAndUpdate(x -> x | CLOSE_REQUESTED);
+        if (previous == 0) {
+            stop();
+        }
+    }
+
+    /**
+     * Stops recording and closes the file as soon as all records currently being written have been completed.
+     * Records submitted afterwards are discarded.
+     */
+    @Override
+    public void close() {
+        requestClose();
+    }
+
+    private void stop() {
+        if (!usage.compareAndSet(CLOSE_REQUESTED, CLOSE_REQUESTED | CLOSED)) {
+            // already stopped
+            return;
+        }
+
+        region = null;
+
+        if (!failed) {
+            try {
+                channel.truncate(nextOffset.get());
+            } catch (IOException ex) {
+                // some platforms do not allow truncating mapped files, remaining space just stays zero-filled
+                LOGGER.debug("{}failed to truncate traffic capture {}", logPrefix, file, ex);
+            }
+        }
+
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOGGER.warn("{}failed to close traffic capture {}", logPrefix, file, ex);
+            return;
+        }
+
+        LOGGER.debug("{}traffic capture completed: {}", logPrefix, file);
+    }
+}
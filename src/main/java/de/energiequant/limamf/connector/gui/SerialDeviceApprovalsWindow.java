@@ -410,7 +410,7 @@ public class SerialDeviceApprovalsWindow extends JDialog {
                 SerialDeviceApprovalsWindow.this.repaint(); // workaround for blocking UI thread; only works sometimes, needs decoupling
 
                 LOGGER.info("Probing {} for approval ({}/{} {})", device.getDeviceNode().orElse(null), asHexUSBId(deviceId.getProduct()), asHexUSBId(deviceId.getVendor()), deviceId.getSerial().orElse("no serial"));
-                IdentificationInfoMessage identification = ModuleDiscovery.probe(deviceNode).orElse(null);
+                IdentificationInfoMessage identification = ModuleDiscovery.probe(deviceNode, config.getCommunicationSettings()).orElse(null);
 
                 SerialDeviceApprovalsWindow.this.setCursor(Cursor.getDefaultCursor());
 
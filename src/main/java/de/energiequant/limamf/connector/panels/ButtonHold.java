@@ -0,0 +1,125 @@
+package de.energiequant.limamf.connector.panels;
+
+import java.util.concurrent.TimeUnit;
+
+import de.energiequant.limamf.connector.utils.HashedTimerWheel;
+
+/**
+ * Tracks whether a button is being held and triggers actions while it is still down: either once after it has been
+ * held for a threshold (long press) or repeatedly after an initial delay (auto-repeat). Timing is driven by a
+ * {@link HashedTimerWheel}, so buttons do not need any threads of their own.
+ * <p>
+ * Actions are run on the timer thread and must return quickly.
+ * </p>
+ */
+class ButtonHold {
+    private final HashedTimerWheel wheel;
+
+    private volatile boolean held = false;
+
+    // guarded by this
+    private Hold currentHold;
+
+    private class Hold implements Runnable {
+        private final Runnable action;
+        private final long intervalNanos;
+        private boolean triggered = false;
+        private HashedTimerWheel.Timeout timeout;
+
+        private Hold(Runnable action, long intervalNanos) {
+            this.action = action;
+            this.intervalNanos = intervalNanos;
+        }
+
+        @Override
+        public void run() {
+            synchronized (ButtonHold.this) {
+                if (currentHold != this) {
+                    return;
+                }
+
+                triggered = true;
+
+                if (intervalNanos > 0) {
+                    timeout = wheel.schedule(this, intervalNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    ButtonHold(HashedTimerWheel wheel) {
+        this.wheel = wheel;
+    }
+
+    /**
+     * Marks the button as pressed. The given action is run once if the button is still held after the given time.
+     *
+     * @param longPressNanos time after which a press is considered long, in nanoseconds
+     * @param onLongPress    action to run on long press; may be null if a long press should only be detected
+     */
+    void press(long longPressNanos, Runnable onLongPress) {
+        press(new Hold(onLongPress, 0), longPressNanos);
+    }
+
+    /**
+     * Marks the button as pressed. The given action is run repeatedly while the button is held, starting after an
+     * initial delay.
+     *
+     * @param delayNanos    time until the action is run for the first time, in nanoseconds
+     * @param intervalNanos time between repetitions, in nanoseconds; must be positive
+     * @param onRepeat      action to run on each repetition
+     */
+    void pressRepeating(long delayNanos, long intervalNanos, Runnable onRepeat) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("repeat interval must be positive, got " + intervalNanos);
+        }
+
+        press(new Hold(onRepeat, intervalNanos), delayNanos);
+    }
+
+    private synchronized void press(Hold hold, long delayNanos) {
+        cancel();
+
+        held = true;
+        currentHold = hold;
+        hold.timeout = wheel.schedule(hold, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Marks the button as released and stops any further actions. Has no effect if the button is not held.
+     *
+     * @return true if the button had been held long enough to trigger an action, false on short press or if not held
+     */
+    synchronized boolean release() {
+        if (!held) {
+            return false;
+        }
+
+        boolean triggered = currentHold.triggered;
+        cancel();
+
+        return triggered;
+    }
+
+    private void cancel() {
+        if (currentHold != null) {
+            currentHold.timeout.cancel();
+            currentHold = null;
+        }
+
+        held = false;
+    }
+
+    /**
+     * Checks if the button is currently held.
+     *
+     * @return true while held, false if released
+     */
+    boolean isHeld() {
+        return held;
+    }
+}
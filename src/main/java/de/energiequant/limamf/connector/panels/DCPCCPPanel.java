@@ -2,7 +2,6 @@ package de.energiequant.limamf.connector.panels;
 
 import java.io.File;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -10,9 +9,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
@@ -42,32 +43,39 @@ import de.energiequant.limamf.compat.protocol.SetPinMessage;
 import de.energiequant.limamf.compat.utils.Maps;
 import de.energiequant.limamf.compat.utils.Numbers;
 import de.energiequant.limamf.connector.DeviceCommunicator;
+import de.energiequant.limamf.connector.InputLatency;
 import de.energiequant.limamf.connector.ModuleDiscovery;
 import de.energiequant.limamf.connector.ModuleId;
 import de.energiequant.limamf.connector.USBDevice;
 import de.energiequant.limamf.connector.simulator.SimulatorEventListener;
+import de.energiequant.limamf.connector.utils.HashedTimerWheel;
 
 public class DCPCCPPanel implements Panel {
     private static Logger LOGGER = LoggerFactory.getLogger(DCPCCPPanel.class);
 
     private final PanelEventListener recipient;
+    private final EncoderAggregator encoderAggregator;
+    private final Set<Source> autoRepeatSources;
+    private final long autoRepeatDelayNanos;
+    private final long autoRepeatIntervalNanos;
     private final SimulatorEventListener simulatorEventListener;
 
     private final String protocolVersion;
 
     private final DeviceCommunicator communicator;
 
-    private final Map<String, Map<Integer, Set<Usage>>> digInMuxUsagesByNameAndPin = new HashMap<>();
-    private final Map<String, Set<Usage>> encoderUsagesByName = new HashMap<>();
+    private InputIndex inputIndex = new InputIndex(); // discarded once compiled to inputTable
+    private volatile InputTable inputTable = InputTable.EMPTY;
     private final Map<OutputUsage, Collection<OutputDisplay>> displayConfigurations = new HashMap<>();
     private final Map<OutputUsage, OutputPin> outputPins = new HashMap<>();
 
     private final AtomicReference<Side> selectedSide = new AtomicReference<>(Side.LEFT);
 
-    private final AtomicReference<Instant> leftButtonPushed = new AtomicReference<>();
-    private final AtomicReference<Instant> rightButtonPushed = new AtomicReference<>();
+    private final ButtonHold leftButton = new ButtonHold(HashedTimerWheel.getShared());
+    private final ButtonHold rightButton = new ButtonHold(HashedTimerWheel.getShared());
 
     private static final Duration LONG_PRESS_DURATION = Duration.ofMillis(250);
+    private static final Duration DISCONNECT_FLUSH_TIMEOUT = Duration.ofSeconds(1);
 
     private boolean useSimulatorBrightness = true;
     private int simulatorBrightness = 0;
@@ -213,39 +221,79 @@ public class DCPCCPPanel implements Panel {
         DOWN;
     }
 
-    private enum HoldDuration {
-        NOT_PRESSED,
-        SHORT_PRESS,
-        LONG_PRESS;
-    }
-
+    /**
+     * An input event emitted by the panel. Events only consist of side, source and action, so there is exactly one
+     * canonical instance per combination which can be obtained using {@link #of(Side, Source, Action)} and compared by
+     * identity. Each canonical event also has a unique index, see {@link #getIndex()}. The time an event occurred at is
+     * passed separately, see {@link PanelEventListener}.
+     */
     public static class Event {
-        private final Instant timestamp;
-        private final Side side;
-        private final Source source;
-        private final Action action;
+        private static final Side[] SIDES = Side.values();
+        private static final Source[] SOURCES = Source.values();
+        private static final Action[] ACTIONS = Action.values();
 
-        public Event(Source source, Action action) {
-            this(null, null, source, action);
-        }
+        /**
+         * Number of canonical events; all indices are below this number, see {@link #getIndex()}.
+         */
+        public static final int NUM_EVENTS = (SIDES.length + 1) * SOURCES.length * ACTIONS.length;
 
-        public Event(Instant timestamp, Source source, Action action) {
-            this(timestamp, null, source, action);
-        }
+        // indexed by side (no side last), source and action
+        private static final Event[][][] CANONICAL_EVENTS = createCanonicalEvents();
 
-        public Event(Side side, Source source, Action action) {
-            this(null, side, source, action);
-        }
+        private final Side side;
+        private final Source source;
+        private final Action action;
+        private final int index;
 
-        public Event(Instant timestamp, Side side, Source source, Action action) {
-            this.timestamp = timestamp;
+        private Event(Side side, Source source, Action action, int index) {
             this.side = side;
             this.source = source;
             this.action = action;
+            this.index = index;
         }
 
-        public Instant getTimestamp() {
-            return timestamp;
+        private static Event[][][] createCanonicalEvents() {
+            Event[][][] out = new Event[SIDES.length + 1][SOURCES.length][ACTIONS.length];
+
+            int index = 0;
+            for (int sideIndex = 0; sideIndex <= SIDES.length; sideIndex++) {
+                Side side = (sideIndex < SIDES.length) ? SIDES[sideIndex] : null;
+                for (Source source : SOURCES) {
+                    for (Action action : ACTIONS) {
+                        out[sideIndex][source.ordinal()][action.ordinal()] = new Event(side, source, action, index++);
+                    }
+                }
+            }
+
+            return out;
+        }
+
+        /**
+         * Returns the canonical event for the given source and action, not associated with any side.
+         *
+         * @param source source of event
+         * @param action action of event
+         * @return canonical event instance
+         */
+        public static Event of(Source source, Action action) {
+            return of(null, source, action);
+        }
+
+        /**
+         * Returns the canonical event for the given combination.
+         *
+         * @param side side of event; null if not associated with any side
+         * @param source source of event
+         * @param action action of event
+         * @return canonical event instance
+         */
+        public static Event of(Side side, Source source, Action action) {
+            if (source == null || action == null) {
+                throw new IllegalArgumentException("source and action are required");
+            }
+
+            int sideIndex = (side == null) ? SIDES.length : side.ordinal();
+            return CANONICAL_EVENTS[sideIndex][source.ordinal()][action.ordinal()];
         }
 
         public Optional<Side> getSide() {
@@ -260,22 +308,25 @@ public class DCPCCPPanel implements Panel {
             return action;
         }
 
-        public Event withoutTimestamp() {
-            return new Event(null, side, source, action);
+        /**
+         * Returns the index of this event, unique among all canonical events and less than {@link #NUM_EVENTS}.
+         * Can be used to look up data by event in arrays.
+         *
+         * @return index of this event
+         */
+        public int getIndex() {
+            return index;
         }
 
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder("Event(");
 
-            sb.append(timestamp);
-
             if (side != null) {
-                sb.append(", ");
                 sb.append(side);
+                sb.append(", ");
             }
 
-            sb.append(", ");
             sb.append(source);
 
             sb.append(", ");
@@ -285,24 +336,96 @@ public class DCPCCPPanel implements Panel {
 
             return sb.toString();
         }
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof Event)) {
-                return false;
+    /**
+     * Input usages indexed from configuration, only needed until compiled to an {@link InputTable}.
+     */
+    private static class InputIndex {
+        private final Map<String, Map<Integer, Set<Usage>>> digInMuxUsagesByNameAndPin = new HashMap<>();
+        private final Map<String, Set<Usage>> encoderUsagesByName = new HashMap<>();
+    }
+
+    /**
+     * Input usages compiled from configuration, resolved in advance for each selectable side, so that dispatching
+     * an input neither needs to filter nor allocate. Inputs that are ambiguous for a side are left unmapped.
+     */
+    private static class InputTable {
+        private static final Side[] SIDES = Side.values();
+        private static final int NO_SIDE_INDEX = SIDES.length;
+        private static final int NUM_SIDE_INDICES = SIDES.length + 1;
+
+        private static final InputTable EMPTY = new InputTable(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+        /**
+         * Usages by multiplexer name, side index and channel.
+         */
+        private final Map<String, Usage[][]> multiplexers;
+
+        /**
+         * Holds of auto-repeating buttons by multiplexer name and channel; null for other channels.
+         */
+        private final Map<String, ButtonHold[]> multiplexerHolds;
+
+        /**
+         * Usages by encoder name and side index.
+         */
+        private final Map<String, Usage[]> encoders;
+
+        private InputTable(Map<String, Usage[][]> multiplexers, Map<String, ButtonHold[]> multiplexerHolds, Map<String, Usage[]> encoders) {
+            this.multiplexers = multiplexers;
+            this.multiplexerHolds = multiplexerHolds;
+            this.encoders = encoders;
+        }
+
+        private static int sideIndex(Side side) {
+            return (side == null) ? NO_SIDE_INDEX : side.ordinal();
+        }
+
+        private static Side sideOf(int sideIndex) {
+            return (sideIndex == NO_SIDE_INDEX) ? null : SIDES[sideIndex];
+        }
+
+        private Usage getMultiplexerUsage(String name, int channel, Side side) {
+            Usage[][] usagesBySide = multiplexers.get(name);
+            if (usagesBySide == null) {
+                return null;
             }
 
-            Event other = (Event) obj;
+            Usage[] usagesByChannel = usagesBySide[sideIndex(side)];
+            if (channel < 0 || channel >= usagesByChannel.length) {
+                return null;
+            }
 
-            return this.source == other.source
-                && this.side == other.side
-                && this.action == other.action
-                && Objects.equals(this.timestamp, other.timestamp);
+            return usagesByChannel[channel];
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(timestamp, side, source, action);
+        private ButtonHold getMultiplexerHold(String name, int channel) {
+            ButtonHold[] holdsByChannel = multiplexerHolds.get(name);
+            if (holdsByChannel == null || channel < 0 || channel >= holdsByChannel.length) {
+                return null;
+            }
+
+            return holdsByChannel[channel];
+        }
+
+        private void releaseAll() {
+            for (ButtonHold[] holdsByChannel : multiplexerHolds.values()) {
+                for (ButtonHold hold : holdsByChannel) {
+                    if (hold != null) {
+                        hold.release();
+                    }
+                }
+            }
+        }
+
+        private Usage getEncoderUsage(String name, Side side) {
+            Usage[] usagesBySide = encoders.get(name);
+            if (usagesBySide == null) {
+                return null;
+            }
+
+            return usagesBySide[sideIndex(side)];
         }
     }
 
@@ -470,10 +593,20 @@ public class DCPCCPPanel implements Panel {
         }
     }
 
-    private DCPCCPPanel(PanelEventListener recipient, ModuleDiscovery.ConnectedModule module, ConnectorConfiguration connectorConfiguration, String connectorConfigurationSerial) {
+    private DCPCCPPanel(PanelEventListener recipient, ModuleDiscovery.ConnectedModule module, ConnectorConfiguration connectorConfiguration, String connectorConfigurationSerial, InputSettings inputSettings) {
         this.recipient = recipient;
         this.protocolVersion = module.getVersion();
 
+        this.encoderAggregator = new EncoderAggregator(
+            recipient,
+            HashedTimerWheel.getShared(),
+            inputSettings.getEncoderAggregationWindow(),
+            inputSettings.getEncoderAcceleration()
+        );
+        this.autoRepeatSources = inputSettings.getAutoRepeatSources();
+        this.autoRepeatDelayNanos = inputSettings.getAutoRepeatDelay().toNanos();
+        this.autoRepeatIntervalNanos = inputSettings.getAutoRepeatInterval().toNanos();
+
         USBDevice usbDevice = module.getUSBDevice();
 
         simulatorEventListener = new SimulatorEventListener.Adapter() {
@@ -510,15 +643,51 @@ public class DCPCCPPanel implements Panel {
             throw new IllegalArgumentException("invalid display configuration");
         }
 
+        compileInputTable();
+
         ModuleId moduleId = module.getModuleId();
         LOGGER.debug("Connecting to {} ({}, serial {}, protocol {})", usbDevice, moduleId.getName(), moduleId.getSerial(), protocolVersion);
 
-        File deviceNode = usbDevice.getDeviceNode().orElseThrow(() -> new IllegalArgumentException("no device node"));
-        communicator = new DeviceCommunicator(deviceNode, protocolVersion, this::onCommandMessage);
+        DeviceCommunicator probeCommunicator = module.takeCommunicator().orElse(null);
+        if (probeCommunicator != null) {
+            LOGGER.debug("Taking over connection from probe");
+            probeCommunicator.upgrade(protocolVersion, this::onCommandMessage);
+            communicator = probeCommunicator;
+        } else {
+            File deviceNode = usbDevice.getDeviceNode().orElseThrow(() -> new IllegalArgumentException("no device node"));
+            communicator = new DeviceCommunicator(deviceNode, protocolVersion, module.getCommunicationSettings(), this::onCommandMessage);
+        }
 
         communicator.send(new GetConfigMessage());
     }
 
+    /**
+     * Creates a panel without reading any configuration or connecting to a module. Inputs need to be indexed
+     * manually using {@link #indexInputMultiplexer(String, String, int)} and {@link #indexEncoder(String, String)},
+     * followed by {@link #compileInputTable()}. Encoder detents are not aggregated and buttons do not auto-repeat.
+     * Visible for testing only; also used by benchmarks.
+     *
+     * @param recipient       receives all panel events
+     * @param communicator    communicator to send output to
+     * @param protocolVersion protocol version of the module
+     */
+    DCPCCPPanel(PanelEventListener recipient, DeviceCommunicator communicator, String protocolVersion) {
+        this.recipient = recipient;
+        this.encoderAggregator = new EncoderAggregator(recipient, HashedTimerWheel.getShared(), Duration.ZERO, EncoderAcceleration.NONE);
+        this.autoRepeatSources = Collections.emptySet();
+        this.autoRepeatDelayNanos = 0;
+        this.autoRepeatIntervalNanos = 0;
+        this.communicator = communicator;
+        this.protocolVersion = protocolVersion;
+
+        simulatorEventListener = new SimulatorEventListener.Adapter() {
+            @Override
+            public void onSimPanelBrightnessChanged(double fraction) {
+                setSimulatorBrightness(fraction);
+            }
+        };
+    }
+
     private boolean checkConsistentDisplayConfigurations() {
         for (Map.Entry<OutputUsage, Collection<OutputDisplay>> entry : displayConfigurations.entrySet()) {
             OutputUsage usage = entry.getKey();
@@ -570,6 +739,11 @@ public class DCPCCPPanel implements Panel {
 
     @Override
     public void disconnect() {
+        encoderAggregator.shutdown();
+        inputTable.releaseAll();
+        leftButton.release();
+        rightButton.release();
+
         try {
             synchronized (this) {
                 brightness = MIN_BRIGHTNESS;
@@ -580,9 +754,9 @@ public class DCPCCPPanel implements Panel {
             selectedSide.set(null);
             submitIndication();
 
-            // wait a short moment for messages to get sent
-            // TODO: add capability to flush queue with a timeout instead of just waiting here
-            Thread.sleep(20);
+            if (!communicator.flush(DISCONNECT_FLUSH_TIMEOUT)) {
+                LOGGER.warn("LEDs may not have been turned off on panel, messages were not sent in time");
+            }
         } catch (Exception ex) {
             LOGGER.warn("failed to turn off LEDs on panel", ex);
         }
@@ -656,16 +830,21 @@ public class DCPCCPPanel implements Panel {
             return;
         }
 
-        String description = input.getDescription().orElse(null);
+        indexInputMultiplexer(input.getDescription().orElse(null), settings.getMultiplexerName(), settings.getDataPin());
+    }
+
+    void indexInputMultiplexer(String description, String multiplexerName, int channel) {
+        InputIndex inputIndex = getInputIndex();
+
         Usage usage = resolveUsage(description);
         if (usage == null) {
             LOGGER.debug("ignoring unhandled config item description: \"{}\"", description);
             return;
         }
 
-        digInMuxUsagesByNameAndPin.computeIfAbsent(settings.getMultiplexerName(), x -> new HashMap<>())
-                                  .computeIfAbsent(settings.getDataPin(), x -> new HashSet<>())
-                                  .add(usage);
+        inputIndex.digInMuxUsagesByNameAndPin.computeIfAbsent(multiplexerName, x -> new HashMap<>())
+                                             .computeIfAbsent(channel, x -> new HashSet<>())
+                                             .add(usage);
     }
 
     private void indexConfigItem(ConfigItem input, String interfaceSerialId, EncoderSettings settings) {
@@ -673,18 +852,110 @@ public class DCPCCPPanel implements Panel {
             return;
         }
 
-        String description = input.getDescription().orElse(null);
+        indexEncoder(input.getDescription().orElse(null), settings.getEncoderName());
+    }
+
+    void indexEncoder(String description, String encoderName) {
+        InputIndex inputIndex = getInputIndex();
+
         Usage usage = resolveUsage(description);
         if (usage == null) {
             LOGGER.debug("ignoring unhandled config item description: \"{}\"", description);
             return;
         }
 
-        encoderUsagesByName.computeIfAbsent(settings.getEncoderName(), x -> new HashSet<>())
-                           .add(usage);
+        inputIndex.encoderUsagesByName.computeIfAbsent(encoderName, x -> new HashSet<>())
+                                      .add(usage);
+    }
+
+    private InputIndex getInputIndex() {
+        if (inputIndex == null) {
+            throw new IllegalStateException("inputs have already been compiled");
+        }
+
+        return inputIndex;
+    }
+
+    /**
+     * Compiles all indexed inputs to the table used for dispatching. Needs to be called once after all inputs have
+     * been indexed, before any messages are received. The index is discarded afterwards, so no further inputs can be
+     * indexed.
+     *
+     * @throws IllegalStateException if inputs have already been compiled
+     */
+    void compileInputTable() {
+        InputIndex inputIndex = getInputIndex();
+
+        Map<String, Usage[][]> multiplexers = new HashMap<>();
+        Map<String, ButtonHold[]> multiplexerHolds = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, Set<Usage>>> multiplexerEntry : inputIndex.digInMuxUsagesByNameAndPin.entrySet()) {
+            String multiplexerName = multiplexerEntry.getKey();
+            Map<Integer, Set<Usage>> usagesByChannel = multiplexerEntry.getValue();
+
+            int numChannels = usagesByChannel.keySet()
+                                             .stream()
+                                             .mapToInt(Integer::intValue)
+                                             .max()
+                                             .orElse(-1) + 1;
+
+            Usage[][] usagesBySide = new Usage[InputTable.NUM_SIDE_INDICES][Math.max(0, numChannels)];
+            ButtonHold[] holdsByChannel = null;
+            for (Map.Entry<Integer, Set<Usage>> channelEntry : usagesByChannel.entrySet()) {
+                int channel = channelEntry.getKey();
+                if (channel < 0) {
+                    LOGGER.warn("ignoring invalid channel {} of input multiplexer \"{}\"", channel, multiplexerName);
+                    continue;
+                }
+
+                for (int sideIndex = 0; sideIndex < InputTable.NUM_SIDE_INDICES; sideIndex++) {
+                    usagesBySide[sideIndex][channel] = selectUsage(channelEntry.getValue(), InputTable.sideOf(sideIndex));
+                }
+
+                boolean autoRepeat = channelEntry.getValue()
+                                                 .stream()
+                                                 .anyMatch(x -> (x.source != null) && autoRepeatSources.contains(x.source));
+                if (autoRepeat) {
+                    if (holdsByChannel == null) {
+                        holdsByChannel = new ButtonHold[numChannels];
+                    }
+                    holdsByChannel[channel] = new ButtonHold(HashedTimerWheel.getShared());
+                }
+            }
+
+            multiplexers.put(multiplexerName, usagesBySide);
+            if (holdsByChannel != null) {
+                multiplexerHolds.put(multiplexerName, holdsByChannel);
+            }
+        }
+
+        Map<String, Usage[]> encoders = new HashMap<>();
+        for (Map.Entry<String, Set<Usage>> encoderEntry : inputIndex.encoderUsagesByName.entrySet()) {
+            Usage[] usagesBySide = new Usage[InputTable.NUM_SIDE_INDICES];
+            for (int sideIndex = 0; sideIndex < InputTable.NUM_SIDE_INDICES; sideIndex++) {
+                usagesBySide[sideIndex] = selectUsage(encoderEntry.getValue(), InputTable.sideOf(sideIndex));
+            }
+
+            encoders.put(encoderEntry.getKey(), usagesBySide);
+        }
+
+        inputTable = new InputTable(multiplexers, multiplexerHolds, encoders);
+        this.inputIndex = null;
+    }
+
+    private static Usage selectUsage(Collection<Usage> usages, Side side) {
+        List<Usage> candidates = usages.stream()
+                                       .filter(x -> (x.side == null) || (x.side == side))
+                                       .collect(Collectors.toList());
+
+        if (candidates.size() > 1) {
+            LOGGER.debug("input is ambiguous for side {} and will be ignored: {}", side, candidates);
+            return null;
+        }
+
+        return candidates.isEmpty() ? null : candidates.get(0);
     }
 
-    private void onCommandMessage(DeviceCommunicator communicator, CommandMessage msg) {
+    void onCommandMessage(DeviceCommunicator communicator, CommandMessage msg) {
         LOGGER.debug("onCommandMessage {}", msg);
 
         if (msg instanceof ConfigurationInfoMessage) {
@@ -764,24 +1035,18 @@ public class DCPCCPPanel implements Panel {
 
         Side side = selectedSide.get();
 
-        Collection<Usage> usages = digInMuxUsagesByNameAndPin.getOrDefault(msg.getName(), Collections.emptyMap())
-                                                             .getOrDefault(msg.getChannel(), Collections.emptySet())
-                                                             .stream()
-                                                             .filter(x -> (x.side == null) || (x.side == side))
-                                                             .collect(Collectors.toList());
-
-        if (usages.isEmpty()) {
-            LOGGER.debug("ignoring unmapped input: {} {}", muxEvent, msg);
-            return;
+        // always stop repetition on release, even if the input has a different usage after changing sides meanwhile
+        ButtonHold hold = inputTable.getMultiplexerHold(msg.getName(), msg.getChannel());
+        if (hold != null && !muxEvent.isActive()) {
+            hold.release();
         }
 
-        if (usages.size() > 1) {
-            LOGGER.debug("ignoring ambiguous input: {} {}", muxEvent, usages, msg);
+        Usage usage = inputTable.getMultiplexerUsage(msg.getName(), msg.getChannel(), side);
+        if (usage == null) {
+            LOGGER.debug("ignoring unmapped or ambiguous input: {} {}", muxEvent, msg);
             return;
         }
 
-        Usage usage = usages.iterator().next();
-
         Action action = null;
         if (!muxEvent.isActive()) {
             action = Action.NEUTRAL;
@@ -794,15 +1059,15 @@ public class DCPCCPPanel implements Panel {
             return;
         }
 
-        Event event = null;
-        if (usage.side == null) {
-            event = new Event(Instant.now(), usage.source, action);
-        } else {
-            event = new Event(Instant.now(), side, usage.source, action);
-        }
+        Event event = Event.of((usage.side == null) ? null : side, usage.source, action);
 
         LOGGER.debug("event: {}", event);
-        recipient.onPanelEvent(event);
+        InputLatency.mark(InputLatency.Stage.PANEL_EVENT);
+        recipient.onPanelEvent(event, System.nanoTime());
+
+        if (hold != null && muxEvent.isActive() && autoRepeatSources.contains(usage.source)) {
+            hold.pressRepeating(autoRepeatDelayNanos, autoRepeatIntervalNanos, () -> recipient.onPanelEvent(event, System.nanoTime()));
+        }
     }
 
     private void onCommandMessage(EncoderChangeMessage msg) {
@@ -810,23 +1075,12 @@ public class DCPCCPPanel implements Panel {
 
         Side side = selectedSide.get();
 
-        Collection<Usage> usages = encoderUsagesByName.getOrDefault(msg.getName(), Collections.emptySet())
-                                                      .stream()
-                                                      .filter(x -> (x.side == null) || (x.side == side))
-                                                      .collect(Collectors.toList());
-
-        if (usages.isEmpty()) {
-            LOGGER.debug("ignoring unmapped input: {}", msg);
-            return;
-        }
-
-        if (usages.size() > 1) {
-            LOGGER.debug("ignoring ambiguous input: {} {}", usages, msg);
+        Usage usage = inputTable.getEncoderUsage(msg.getName(), side);
+        if (usage == null) {
+            LOGGER.debug("ignoring unmapped or ambiguous input: {}", msg);
             return;
         }
 
-        Usage usage = usages.iterator().next();
-
         if (usage.action != null) {
             LOGGER.warn("encoder usage cannot have predefined action, ignoring: {}", usage, msg);
             return;
@@ -840,30 +1094,18 @@ public class DCPCCPPanel implements Panel {
         }
 
         // while left button is held divert encoder used for manual brightness control to internal handling
-        if (usage.source == MANUAL_BRIGHTNESS_ENCODER && leftButtonPushed.get() != null) {
+        if (usage.source == MANUAL_BRIGHTNESS_ENCODER && leftButton.isHeld()) {
             handleInternalEvent(usage.source, action);
             return;
         }
 
-        Event event = null;
-        if (usage.side == null) {
-            event = new Event(Instant.now(), usage.source, action);
-        } else {
-            event = new Event(Instant.now(), side, usage.source, action);
-        }
+        Side eventSide = (usage.side == null) ? null : side;
+        Event event = Event.of(eventSide, usage.source, action);
+        Event reverse = Event.of(eventSide, usage.source, (action == Action.INCREMENT) ? Action.DECREMENT : Action.INCREMENT);
 
         LOGGER.debug("event: {}", event);
-        recipient.onPanelEvent(event);
-    }
-
-    private HoldDuration getHoldDuration(AtomicReference<Instant> pushed) {
-        Instant heldSince = pushed.get();
-        if (heldSince == null) {
-            return HoldDuration.NOT_PRESSED;
-        }
-
-        Duration duration = Duration.between(heldSince, Instant.now());
-        return duration.compareTo(LONG_PRESS_DURATION) > 0 ? HoldDuration.LONG_PRESS : HoldDuration.SHORT_PRESS;
+        InputLatency.mark(InputLatency.Stage.PANEL_EVENT);
+        encoderAggregator.onDetent(event, reverse, System.nanoTime());
     }
 
     private void handleInternalEvent(InternalSource internalSource, Action action) {
@@ -871,43 +1113,40 @@ public class DCPCCPPanel implements Panel {
 
         if (internalSource == InternalSource.SELECT_LEFT) {
             if (action == Action.PUSH) {
-                leftButtonPushed.set(Instant.now());
+                // long press only keeps the button held to control brightness
+                leftButton.press(LONG_PRESS_DURATION.toNanos(), null);
             } else if (action == Action.NEUTRAL) {
-                HoldDuration holdDuration = getHoldDuration(leftButtonPushed);
-                leftButtonPushed.set(null);
-
-                if (holdDuration == HoldDuration.SHORT_PRESS) {
+                if (leftButton.isHeld() && !leftButton.release()) {
                     LOGGER.debug("emitting events for left-side panels");
                     selectSide(Side.LEFT);
                 }
             }
         } else if (internalSource == InternalSource.SELECT_RIGHT) {
             if (action == Action.PUSH) {
-                rightButtonPushed.set(Instant.now());
+                // long press returns to simulator brightness control right away, without waiting for release
+                rightButton.press(LONG_PRESS_DURATION.toNanos(), this::restoreSimulatorBrightness);
             } else if (action == Action.NEUTRAL) {
-                HoldDuration holdDuration = getHoldDuration(rightButtonPushed);
-                rightButtonPushed.set(null);
-
-                if (holdDuration == HoldDuration.SHORT_PRESS) {
+                if (rightButton.isHeld() && !rightButton.release()) {
                     LOGGER.debug("emitting events for right-side panels");
                     selectSide(Side.RIGHT);
-                } else if (holdDuration == HoldDuration.LONG_PRESS) {
-                    // return to simulator brightness control
-                    synchronized (this) {
-                        LOGGER.debug("restore simulator brightness control: {}", simulatorBrightness);
-                        useSimulatorBrightness = true;
-                        brightness = simulatorBrightness;
-                        submitBrightness();
-                    }
                 }
             }
         }
     }
 
+    private void restoreSimulatorBrightness() {
+        synchronized (this) {
+            LOGGER.debug("restore simulator brightness control: {}", simulatorBrightness);
+            useSimulatorBrightness = true;
+            brightness = simulatorBrightness;
+            submitBrightness();
+        }
+    }
+
     private void handleInternalEvent(Source source, Action action) {
         LOGGER.debug("internal event: {} {}", action, source);
 
-        if (source == MANUAL_BRIGHTNESS_ENCODER && leftButtonPushed.get() != null) {
+        if (source == MANUAL_BRIGHTNESS_ENCODER && leftButton.isHeld()) {
             synchronized (this) {
                 // take control from simulator
                 useSimulatorBrightness = false;
@@ -947,7 +1186,7 @@ public class DCPCCPPanel implements Panel {
                                          .build();
 
         LOGGER.debug("Manipulating output {} => {}: {}", usage, state, msg);
-        communicator.send(msg);
+        communicator.sendReplacing(pin.pin, msg);
     }
 
     private void setPin(OutputUsage usage, int value) {
@@ -975,7 +1214,9 @@ public class DCPCCPPanel implements Panel {
                                          .build();
 
         LOGGER.debug("Manipulating output {} => {}: {}", usage, value, msg);
-        communicator.send(msg);
+
+        // only the latest value for each pin needs to be sent, intermediate values still waiting in queue are obsolete
+        communicator.sendReplacing(pin.pin, msg);
     }
 
     private void submitBrightness() {
@@ -985,6 +1226,16 @@ public class DCPCCPPanel implements Panel {
         }
     }
 
+    /**
+     * Returns the backlight brightness currently requested for the panel, either following the simulator or set
+     * manually. Visible for testing only.
+     *
+     * @return backlight brightness
+     */
+    synchronized int getBrightness() {
+        return brightness;
+    }
+
     public void setSimulatorBrightness(double fraction) {
         int value = Numbers.limit(Math.round((fraction * (MAX_BRIGHTNESS - MIN_BRIGHTNESS)) + MIN_BRIGHTNESS), MIN_BRIGHTNESS, MAX_BRIGHTNESS);
 
@@ -1012,8 +1263,9 @@ public class DCPCCPPanel implements Panel {
         }
 
         @Override
-        public Panel create(PanelEventListener eventListener, ModuleDiscovery.ConnectedModule module, ConnectorConfiguration connectorConfiguration, String connectorConfigurationSerial) {
-            return new DCPCCPPanel(eventListener, module, connectorConfiguration, connectorConfigurationSerial);
+        public Panel create(PanelEventListener eventListener, ModuleDiscovery.ConnectedModule module, ConnectorConfiguration connectorConfiguration, String connectorConfigurationSerial, Properties inputConfig) {
+            InputSettings inputSettings = InputSettings.fromProperties(inputConfig);
+            return new DCPCCPPanel(eventListener, module, connectorConfiguration, connectorConfigurationSerial, inputSettings);
         }
     }
 }
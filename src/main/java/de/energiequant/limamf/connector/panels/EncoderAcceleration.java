@@ -0,0 +1,150 @@
+package de.energiequant.limamf.connector.panels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Acceleration curve for encoders, scaling the number of detents depending on how fast an encoder is being turned.
+ * <p>
+ * The curve consists of steps, each defining the minimum rate in detents per second from which on its factor applies.
+ * Below the lowest step detents are not scaled. Curves are written as comma-separated {@code rate:factor} pairs in
+ * ascending order of rates, for example {@code 15:2, 30:4} doubles detents when turning at 15 detents per second or
+ * faster and quadruples them from 30 detents per second on.
+ * </p>
+ */
+public class EncoderAcceleration {
+    /**
+     * Does not scale any detents.
+     */
+    public static final EncoderAcceleration NONE = new EncoderAcceleration(new double[0], new double[0]);
+
+    private final double[] minRates;
+    private final double[] factors;
+
+    private EncoderAcceleration(double[] minRates, double[] factors) {
+        this.minRates = minRates;
+        this.factors = factors;
+    }
+
+    /**
+     * Parses an acceleration curve, see class description for syntax. An empty string results in {@link #NONE}.
+     *
+     * @param s curve to parse
+     * @return parsed curve
+     * @throws IllegalArgumentException if the curve is invalid
+     */
+    public static EncoderAcceleration parse(String s) {
+        if (s.trim().isEmpty()) {
+            return NONE;
+        }
+
+        List<double[]> steps = new ArrayList<>();
+        for (String step : s.split(",")) {
+            String[] parts = step.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("acceleration steps must be written as rate:factor, got \"" + step.trim() + "\"");
+            }
+
+            double minRate = parseNumber(parts[0]);
+            double factor = parseNumber(parts[1]);
+
+            if (!(minRate > 0) || Double.isInfinite(minRate)) {
+                throw new IllegalArgumentException("acceleration rate must be a positive finite number, got \"" + parts[0].trim() + "\"");
+            }
+
+            if (!(factor >= 1) || Double.isInfinite(factor)) {
+                throw new IllegalArgumentException("acceleration factor must be a finite number of at least 1, got \"" + parts[1].trim() + "\"");
+            }
+
+            if (!steps.isEmpty() && minRate <= steps.get(steps.size() - 1)[0]) {
+                throw new IllegalArgumentException("acceleration rates must be strictly ascending, got \"" + s + "\"");
+            }
+
+            steps.add(new double[]{minRate, factor});
+        }
+
+        double[] minRates = new double[steps.size()];
+        double[] factors = new double[steps.size()];
+        for (int i = 0; i < steps.size(); i++) {
+            minRates[i] = steps.get(i)[0];
+            factors[i] = steps.get(i)[1];
+        }
+
+        return new EncoderAcceleration(minRates, factors);
+    }
+
+    private static double parseNumber(String s) {
+        try {
+            return Double.parseDouble(s.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("not a number: \"" + s.trim() + "\"", ex);
+        }
+    }
+
+    /**
+     * Scales the given number of detents that have been turned within the given time.
+     *
+     * @param detents number of detents
+     * @param nanos   time the detents have been turned in, in nanoseconds
+     * @return scaled number of detents; never less than given
+     */
+    public int apply(int detents, long nanos) {
+        if (detents <= 0 || nanos <= 0 || minRates.length == 0) {
+            return detents;
+        }
+
+        double rate = detents * 1_000_000_000.0 / nanos;
+
+        double factor = 1.0;
+        for (int i = 0; i < minRates.length && rate >= minRates[i]; i++) {
+            factor = factors[i];
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(detents * factor));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof EncoderAcceleration)) {
+            return false;
+        }
+
+        EncoderAcceleration other = (EncoderAcceleration) obj;
+
+        return Arrays.equals(this.minRates, other.minRates)
+            && Arrays.equals(this.factors, other.factors);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(minRates) + Arrays.hashCode(factors);
+    }
+
+    /**
+     * Returns the curve in the same syntax as accepted by {@link #parse(String)}.
+     *
+     * @return curve as string; empty for {@link #NONE}
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < minRates.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(formatNumber(minRates[i]));
+            sb.append(":");
+            sb.append(formatNumber(factors[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String formatNumber(double d) {
+        if (d == Math.rint(d)) {
+            return Long.toString((long) d);
+        }
+
+        return Double.toString(d);
+    }
+}
@@ -0,0 +1,148 @@
+package de.energiequant.limamf.connector.panels;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.connector.utils.HashedTimerWheel;
+
+/**
+ * Aggregates encoder detents to reduce the number of events forwarded to the simulator while encoders are turned fast.
+ * <p>
+ * The first detent is forwarded immediately and opens an aggregation window for its event. Further detents of the
+ * same event during that window are only counted and forwarded at once as a repeated event when the window ends,
+ * scaled by the configured {@link EncoderAcceleration}. A new window follows as long as the encoder keeps turning.
+ * Turning the encoder in reverse direction forwards all detents counted so far right away, so order is retained.
+ * Windows are timed by a {@link HashedTimerWheel}, so aggregation does not need any threads of its own.
+ * </p>
+ * <p>
+ * Aggregation is opt-in: it only takes place if an acceleration curve has been configured, as it otherwise just
+ * delays detents without any benefit for the user. Simulators may not be able to take a repeated event as a single
+ * request (X-Plane needs a separate command per repetition), so the number of requests sent to the simulator is not
+ * reduced by aggregation alone. Without acceleration or for a window of {@link Duration#ZERO}, all detents are
+ * forwarded immediately.
+ * </p>
+ * <p>
+ * Aggregated detents are forwarded from the timer thread (or with a detent in reverse direction), so they are not
+ * covered by {@link de.energiequant.limamf.connector.InputLatency}; only the first detent of each window is measured.
+ * </p>
+ */
+class EncoderAggregator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EncoderAggregator.class);
+
+    private final PanelEventListener recipient;
+    private final long windowNanos;
+    private final EncoderAcceleration acceleration;
+    private final HashedTimerWheel wheel;
+
+    // indexed by DCPCCPPanel.Event#getIndex(), created on first use
+    private final Window[] windows = new Window[DCPCCPPanel.Event.NUM_EVENTS];
+
+    private boolean shutdown = false;
+
+    private class Window {
+        private final DCPCCPPanel.Event event;
+        private final Runnable endTask = () -> onWindowEnd(this);
+
+        private boolean open = false;
+        private int detents = 0;
+        private long lastNanos;
+
+        private Window(DCPCCPPanel.Event event) {
+            this.event = event;
+        }
+    }
+
+    EncoderAggregator(PanelEventListener recipient, HashedTimerWheel wheel, Duration window, EncoderAcceleration acceleration) {
+        this.recipient = recipient;
+        this.wheel = wheel;
+        // aggregation is pointless without acceleration, see class description
+        this.windowNanos = acceleration.equals(EncoderAcceleration.NONE) ? 0 : window.toNanos();
+        this.acceleration = acceleration;
+    }
+
+    /**
+     * Handles a single detent.
+     *
+     * @param event   event of the detent
+     * @param reverse event of a detent in reverse direction on the same encoder
+     * @param nanos   time the detent occurred at, as provided by {@link System#nanoTime()}
+     */
+    void onDetent(DCPCCPPanel.Event event, DCPCCPPanel.Event reverse, long nanos) {
+        if (windowNanos <= 0) {
+            recipient.onPanelEvent(event, nanos);
+            return;
+        }
+
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+
+            Window reverseWindow = windows[reverse.getIndex()];
+            if (reverseWindow != null) {
+                forward(reverseWindow);
+            }
+
+            Window window = windows[event.getIndex()];
+            if (window == null) {
+                window = new Window(event);
+                windows[event.getIndex()] = window;
+            }
+
+            if (window.open) {
+                window.detents++;
+                window.lastNanos = nanos;
+                return;
+            }
+
+            window.open = true;
+            wheel.schedule(window.endTask, windowNanos, TimeUnit.NANOSECONDS);
+
+            recipient.onPanelEvent(event, nanos);
+        }
+    }
+
+    private void onWindowEnd(Window window) {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+
+            if (window.detents == 0) {
+                window.open = false;
+                return;
+            }
+
+            try {
+                forward(window);
+            } catch (Exception ex) {
+                LOGGER.warn("failed to forward aggregated detents for {}", window.event, ex);
+            }
+
+            // keep aggregating while the encoder is being turned
+            wheel.schedule(window.endTask, windowNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void forward(Window window) {
+        if (window.detents == 0) {
+            return;
+        }
+
+        int count = acceleration.apply(window.detents, windowNanos);
+        LOGGER.debug("aggregated {} detents to {}", window.detents, count);
+        window.detents = 0;
+
+        recipient.onRepeatedPanelEvent(window.event, count, window.lastNanos);
+    }
+
+    /**
+     * Stops aggregation; detents which have not been forwarded yet are discarded.
+     */
+    synchronized void shutdown() {
+        shutdown = true;
+    }
+}
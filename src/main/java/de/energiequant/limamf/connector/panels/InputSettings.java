@@ -0,0 +1,272 @@
+package de.energiequant.limamf.connector.panels;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Options for handling input of panels. Read from the {@code input.*} sub-properties of the application configuration,
+ * which are passed through to the panel implementation without being interpreted, see {@link #fromProperties(Properties)}.
+ */
+public class InputSettings {
+    private static final String PROPERTY_ENCODER_AGGREGATION_MILLIS = "encoder.aggregationMillis";
+    private static final String PROPERTY_ENCODER_ACCELERATION = "encoder.acceleration";
+    private static final String PROPERTY_AUTO_REPEAT = "autoRepeat";
+    private static final String PROPERTY_AUTO_REPEAT_DELAY_MILLIS = "autoRepeatDelayMillis";
+    private static final String PROPERTY_AUTO_REPEAT_INTERVAL_MILLIS = "autoRepeatIntervalMillis";
+
+    public static final Duration DEFAULT_ENCODER_AGGREGATION_WINDOW = Duration.ofMillis(30);
+    private static final Duration MAX_ENCODER_AGGREGATION_WINDOW = Duration.ofMillis(500);
+
+    public static final Duration DEFAULT_AUTO_REPEAT_DELAY = Duration.ofMillis(500);
+    public static final Duration DEFAULT_AUTO_REPEAT_INTERVAL = Duration.ofMillis(100);
+    private static final Duration MIN_AUTO_REPEAT_INTERVAL = Duration.ofMillis(20);
+
+    public static final InputSettings DEFAULT = builder().build();
+
+    private final Duration encoderAggregationWindow;
+    private final EncoderAcceleration encoderAcceleration;
+    private final Set<DCPCCPPanel.Source> autoRepeatSources;
+    private final Duration autoRepeatDelay;
+    private final Duration autoRepeatInterval;
+
+    private InputSettings(Builder builder) {
+        this.encoderAggregationWindow = builder.encoderAggregationWindow;
+        this.encoderAcceleration = builder.encoderAcceleration;
+
+        Set<DCPCCPPanel.Source> autoRepeatSources = EnumSet.noneOf(DCPCCPPanel.Source.class);
+        autoRepeatSources.addAll(builder.autoRepeatSources);
+        this.autoRepeatSources = Collections.unmodifiableSet(autoRepeatSources);
+
+        this.autoRepeatDelay = builder.autoRepeatDelay;
+        this.autoRepeatInterval = builder.autoRepeatInterval;
+    }
+
+    /**
+     * Parses the settings from the given properties. Keys are expected without the {@code input.} prefix used in the
+     * application configuration. Missing keys are set to defaults.
+     *
+     * @param properties input sub-properties of the application configuration
+     * @return settings
+     * @throws IllegalArgumentException if any value is invalid
+     */
+    public static InputSettings fromProperties(Properties properties) {
+        Builder builder = builder();
+
+        getOptionalString(properties, PROPERTY_ENCODER_AGGREGATION_MILLIS)
+            .map(x -> parseInt(PROPERTY_ENCODER_AGGREGATION_MILLIS, x))
+            .map(Duration::ofMillis)
+            .ifPresent(builder::setEncoderAggregationWindow);
+
+        getOptionalString(properties, PROPERTY_ENCODER_ACCELERATION)
+            .map(x -> parseEncoderAcceleration(PROPERTY_ENCODER_ACCELERATION, x))
+            .ifPresent(builder::setEncoderAcceleration);
+
+        getOptionalString(properties, PROPERTY_AUTO_REPEAT)
+            .map(x -> parseSources(PROPERTY_AUTO_REPEAT, x))
+            .ifPresent(builder::setAutoRepeatSources);
+
+        getOptionalString(properties, PROPERTY_AUTO_REPEAT_DELAY_MILLIS)
+            .map(x -> parseInt(PROPERTY_AUTO_REPEAT_DELAY_MILLIS, x))
+            .map(Duration::ofMillis)
+            .ifPresent(builder::setAutoRepeatDelay);
+
+        getOptionalString(properties, PROPERTY_AUTO_REPEAT_INTERVAL_MILLIS)
+            .map(x -> parseInt(PROPERTY_AUTO_REPEAT_INTERVAL_MILLIS, x))
+            .map(Duration::ofMillis)
+            .ifPresent(builder::setAutoRepeatInterval);
+
+        return builder.build();
+    }
+
+    private static int parseInt(String key, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid value for input." + key + ": \"" + value + "\"", ex);
+        }
+    }
+
+    private static EncoderAcceleration parseEncoderAcceleration(String key, String value) {
+        try {
+            return EncoderAcceleration.parse(value);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid value for input." + key + ": \"" + value + "\"", ex);
+        }
+    }
+
+    private static Set<DCPCCPPanel.Source> parseSources(String key, String value) {
+        return Arrays.stream(value.split(","))
+                     .map(String::trim)
+                     .filter(x -> !x.isEmpty())
+                     .map(x -> parseSource(key, x))
+                     .collect(Collectors.toSet());
+    }
+
+    private static DCPCCPPanel.Source parseSource(String key, String value) {
+        try {
+            return DCPCCPPanel.Source.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid value for input." + key + ": \"" + value + "\"", ex);
+        }
+    }
+
+    private static Optional<String> getOptionalString(Properties properties, String key) {
+        return Optional.ofNullable(properties.getProperty(key));
+    }
+
+    /**
+     * Returns for how long detents of an encoder are aggregated after the first one has been forwarded immediately.
+     * Detents turned within that window are forwarded at once, scaled by {@link #getEncoderAcceleration()}.
+     * Aggregation only takes place if an acceleration curve is configured; {@link Duration#ZERO} disables it.
+     *
+     * @return time to aggregate encoder detents for
+     */
+    public Duration getEncoderAggregationWindow() {
+        return encoderAggregationWindow;
+    }
+
+    /**
+     * Returns the acceleration applied to encoder detents aggregated within a window, see
+     * {@link #getEncoderAggregationWindow()}. Detents are only aggregated if acceleration is configured, so
+     * {@link EncoderAcceleration#NONE} forwards all detents immediately.
+     *
+     * @return acceleration of aggregated encoder detents
+     */
+    public EncoderAcceleration getEncoderAcceleration() {
+        return encoderAcceleration;
+    }
+
+    /**
+     * Returns the panel buttons which repeat their events while being held, see {@link #getAutoRepeatDelay()} and
+     * {@link #getAutoRepeatInterval()}. Buttons not listed only emit a single event per press.
+     *
+     * @return sources of buttons to auto-repeat; empty if auto-repeat is disabled
+     */
+    public Set<DCPCCPPanel.Source> getAutoRepeatSources() {
+        return autoRepeatSources;
+    }
+
+    /**
+     * Returns for how long a button needs to be held before its event starts being repeated.
+     *
+     * @return time to hold a button before auto-repeat starts
+     */
+    public Duration getAutoRepeatDelay() {
+        return autoRepeatDelay;
+    }
+
+    /**
+     * Returns the time between repetitions while a button is being held after auto-repeat has started.
+     *
+     * @return time between repeated events
+     */
+    public Duration getAutoRepeatInterval() {
+        return autoRepeatInterval;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof InputSettings)) {
+            return false;
+        }
+
+        InputSettings other = (InputSettings) obj;
+
+        return this.encoderAggregationWindow.equals(other.encoderAggregationWindow)
+            && this.encoderAcceleration.equals(other.encoderAcceleration)
+            && this.autoRepeatSources.equals(other.autoRepeatSources)
+            && this.autoRepeatDelay.equals(other.autoRepeatDelay)
+            && this.autoRepeatInterval.equals(other.autoRepeatInterval);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+            encoderAggregationWindow, encoderAcceleration,
+            autoRepeatSources, autoRepeatDelay, autoRepeatInterval
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "InputSettings("
+            + "encoderAggregationWindow=" + encoderAggregationWindow
+            + ", encoderAcceleration=" + encoderAcceleration
+            + ", autoRepeatSources=" + autoRepeatSources
+            + ", autoRepeatDelay=" + autoRepeatDelay
+            + ", autoRepeatInterval=" + autoRepeatInterval
+            + ")";
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Duration encoderAggregationWindow = DEFAULT_ENCODER_AGGREGATION_WINDOW;
+        private EncoderAcceleration encoderAcceleration = EncoderAcceleration.NONE;
+        private Set<DCPCCPPanel.Source> autoRepeatSources = Collections.emptySet();
+        private Duration autoRepeatDelay = DEFAULT_AUTO_REPEAT_DELAY;
+        private Duration autoRepeatInterval = DEFAULT_AUTO_REPEAT_INTERVAL;
+
+        public Builder setEncoderAggregationWindow(Duration encoderAggregationWindow) {
+            this.encoderAggregationWindow = encoderAggregationWindow;
+            return this;
+        }
+
+        public Builder setEncoderAcceleration(EncoderAcceleration encoderAcceleration) {
+            this.encoderAcceleration = encoderAcceleration;
+            return this;
+        }
+
+        public Builder setAutoRepeatSources(Set<DCPCCPPanel.Source> autoRepeatSources) {
+            this.autoRepeatSources = autoRepeatSources;
+            return this;
+        }
+
+        public Builder setAutoRepeatDelay(Duration autoRepeatDelay) {
+            this.autoRepeatDelay = autoRepeatDelay;
+            return this;
+        }
+
+        public Builder setAutoRepeatInterval(Duration autoRepeatInterval) {
+            this.autoRepeatInterval = autoRepeatInterval;
+            return this;
+        }
+
+        public InputSettings build() {
+            if (encoderAggregationWindow == null || encoderAggregationWindow.isNegative()) {
+                throw new IllegalArgumentException("encoder aggregation window must be zero or positive, got " + encoderAggregationWindow);
+            }
+
+            if (encoderAggregationWindow.compareTo(MAX_ENCODER_AGGREGATION_WINDOW) > 0) {
+                throw new IllegalArgumentException("encoder aggregation window must not exceed " + MAX_ENCODER_AGGREGATION_WINDOW + ", got " + encoderAggregationWindow);
+            }
+
+            if (encoderAcceleration == null) {
+                throw new IllegalArgumentException("missing encoder acceleration");
+            }
+
+            if (autoRepeatSources == null) {
+                throw new IllegalArgumentException("missing auto-repeat sources");
+            }
+
+            if (autoRepeatDelay == null || autoRepeatDelay.isNegative()) {
+                throw new IllegalArgumentException("auto-repeat delay must be zero or positive, got " + autoRepeatDelay);
+            }
+
+            if (autoRepeatInterval == null || autoRepeatInterval.compareTo(MIN_AUTO_REPEAT_INTERVAL) < 0) {
+                throw new IllegalArgumentException("auto-repeat interval must be at least " + MIN_AUTO_REPEAT_INTERVAL + ", got " + autoRepeatInterval);
+            }
+
+            return new InputSettings(this);
+        }
+    }
+}
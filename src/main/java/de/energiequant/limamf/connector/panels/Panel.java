@@ -1,6 +1,7 @@
 package de.energiequant.limamf.connector.panels;
 
 import java.util.Optional;
+import java.util.Properties;
 
 import de.energiequant.limamf.compat.config.connector.ConnectorConfiguration;
 import de.energiequant.limamf.connector.ModuleDiscovery;
@@ -16,6 +17,16 @@ public interface Panel {
 
         String getName();
 
-        Panel create(PanelEventListener eventListener, ModuleDiscovery.ConnectedModule module, ConnectorConfiguration connectorConfiguration, String connectorConfigurationSerial);
+        /**
+         * Creates a new panel implementation for the given module.
+         *
+         * @param eventListener                receives all events generated by the panel
+         * @param module                       module to connect to
+         * @param connectorConfiguration       MobiFlight connector configuration to use for the module
+         * @param connectorConfigurationSerial serial of the module as used in the connector configuration
+         * @param inputConfig                  input settings from application configuration, keys without {@code input.} prefix
+         * @return panel implementation
+         */
+        Panel create(PanelEventListener eventListener, ModuleDiscovery.ConnectedModule module, ConnectorConfiguration connectorConfiguration, String connectorConfigurationSerial, Properties inputConfig);
     }
 }
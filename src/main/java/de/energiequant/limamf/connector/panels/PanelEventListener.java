@@ -1,11 +1,38 @@
 package de.energiequant.limamf.connector.panels;
 
 public interface PanelEventListener {
-    void onPanelEvent(DCPCCPPanel.Event event);
+    /**
+     * Called for every event emitted by a panel.
+     *
+     * @param event canonical event, see {@link DCPCCPPanel.Event#of(DCPCCPPanel.Side, DCPCCPPanel.Source, DCPCCPPanel.Action)}
+     * @param nanos time the event occurred at, as provided by {@link System#nanoTime()}
+     */
+    void onPanelEvent(DCPCCPPanel.Event event, long nanos);
+
+    /**
+     * Called for events which have been aggregated because they repeated within a short time, for example detents of
+     * an encoder being turned fast. Listeners able to handle repetitions more efficiently than individual events
+     * should override this method; by default {@link #onPanelEvent(DCPCCPPanel.Event, long)} is called once for each
+     * repetition.
+     *
+     * @param event canonical event
+     * @param count number of repetitions, always positive
+     * @param nanos time the last repetition occurred at, as provided by {@link System#nanoTime()}
+     */
+    default void onRepeatedPanelEvent(DCPCCPPanel.Event event, int count, long nanos) {
+        for (int i = 0; i < count; i++) {
+            onPanelEvent(event, nanos);
+        }
+    }
 
     class Adapter implements PanelEventListener {
         @Override
-        public void onPanelEvent(DCPCCPPanel.Event event) {
+        public void onPanelEvent(DCPCCPPanel.Event event, long nanos) {
+            // ignored by default
+        }
+
+        @Override
+        public void onRepeatedPanelEvent(DCPCCPPanel.Event event, int count, long nanos) {
             // ignored by default
         }
     }
@@ -1,9 +1,8 @@
 package de.energiequant.limamf.connector.simulator.xpudp;
 
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
@@ -14,6 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.auto.service.AutoService;
 
+import de.energiequant.limamf.connector.InputLatency;
 import de.energiequant.limamf.connector.panels.DCPCCPPanel;
 import de.energiequant.limamf.connector.panels.PanelEventListener;
 import de.energiequant.limamf.connector.simulator.SimulatorClient;
@@ -29,7 +29,8 @@ public class XPlaneUDPClient implements SimulatorClient, PanelEventListener {
 
     private XPlane xplane;
 
-    private static final Map<DCPCCPPanel.Event, Set<String>> COMMAND_NAMES;
+    // indexed by DCPCCPPanel.Event#getIndex(), null if unmapped
+    private static final String[][] COMMAND_NAMES;
 
     static {
         Map<DCPCCPPanel.Event, Set<String>> out = new HashMap<>();
@@ -112,7 +113,12 @@ public class XPlaneUDPClient implements SimulatorClient, PanelEventListener {
         defineCL650Command(out, DCPCCPPanel.Source.CCP5_DME_H, DCPCCPPanel.Action.PUSH, "dme_h");
         defineCL650Command(out, DCPCCPPanel.Source.CCP5_IDENT, DCPCCPPanel.Action.PUSH, "ident");
         defineCL650Command(out, DCPCCPPanel.Source.CCP5_ATC, DCPCCPPanel.Action.PUSH, "atc");
-        COMMAND_NAMES = Collections.unmodifiableMap(out); // TODO: sets should also be unmodifiable
+
+        String[][] commandNames = new String[DCPCCPPanel.Event.NUM_EVENTS][];
+        for (Map.Entry<DCPCCPPanel.Event, Set<String>> entry : out.entrySet()) {
+            commandNames[entry.getKey().getIndex()] = entry.getValue().toArray(new String[0]);
+        }
+        COMMAND_NAMES = commandNames;
     }
 
     private static void defineCL650Command(Map<DCPCCPPanel.Event, Set<String>> map, DCPCCPPanel.Source source, DCPCCPPanel.Action action, String partialCommandName) {
@@ -133,10 +139,21 @@ public class XPlaneUDPClient implements SimulatorClient, PanelEventListener {
     }
 
     private static void defineCommand(Map<DCPCCPPanel.Event, Set<String>> map, DCPCCPPanel.Side side, DCPCCPPanel.Source source, DCPCCPPanel.Action action, String... commandNames) {
-        map.computeIfAbsent(new DCPCCPPanel.Event(side, source, action).withoutTimestamp(), x -> new HashSet<>())
+        map.computeIfAbsent(DCPCCPPanel.Event.of(side, source, action), x -> new LinkedHashSet<>())
            .addAll(Arrays.asList(commandNames));
     }
 
+    /**
+     * Returns the names of all commands to send to X-Plane for the given event.
+     * The returned array is shared and must not be modified.
+     *
+     * @param event event to look up
+     * @return names of commands to send; null if unmapped
+     */
+    static String[] getCommandNames(DCPCCPPanel.Event event) {
+        return COMMAND_NAMES[event.getIndex()];
+    }
+
     private XPlaneUDPClient(Properties config, SimulatorEventListener listener) {
         this.listener = listener;
 
@@ -157,26 +174,44 @@ public class XPlaneUDPClient implements SimulatorClient, PanelEventListener {
     }
 
     @Override
-    public void onPanelEvent(DCPCCPPanel.Event event) {
+    public void onPanelEvent(DCPCCPPanel.Event event, long nanos) {
+        sendCommands(event, 1);
+    }
+
+    /**
+     * Sends the commands for all repetitions at once. X-Plane does not support repeating a command through a single
+     * request, so each repetition still needs to be sent individually.
+     */
+    @Override
+    public void onRepeatedPanelEvent(DCPCCPPanel.Event event, int count, long nanos) {
+        sendCommands(event, count);
+    }
+
+    private void sendCommands(DCPCCPPanel.Event event, int count) {
         synchronized (this) {
             if (xplane == null) {
                 LOGGER.debug("not connected; ignoring {}", event);
                 return;
             }
 
-            Set<String> commands = COMMAND_NAMES.get(event.withoutTimestamp());
-            if (commands == null || commands.isEmpty()) {
+            String[] commands = getCommandNames(event);
+            if (commands == null || commands.length == 0) {
                 LOGGER.debug("ignoring unmapped event {}", event);
                 return;
             }
 
-            if (commands.size() > 1) {
-                LOGGER.warn("sending multiple commands to X-Plane at once; this may cause issues: {}", commands);
+            if (commands.length > 1) {
+                LOGGER.warn("sending multiple commands to X-Plane at once; this may cause issues: {}", Arrays.asList(commands));
             } else {
-                LOGGER.debug("sending command to X-Plane: {}", commands);
+                LOGGER.debug("sending command to X-Plane {} times: {}", count, commands[0]);
             }
 
-            commands.forEach(xplane::sendCommand);
+            for (int i = 0; i < count; i++) {
+                for (String command : commands) {
+                    xplane.sendCommand(command);
+                }
+            }
+            InputLatency.mark(InputLatency.Stage.COMMAND_SENT);
         }
     }
 
@@ -0,0 +1,154 @@
+package de.energiequant.limamf.connector.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for multiple producers and a single consumer.
+ * <p>
+ * Elements are held in a ring buffer whose slots carry a sequence number telling producers and the consumer whether
+ * a slot is currently free or filled (see Dmitry Vyukov's bounded MPMC queue). Producers only compete for a slot by
+ * a single CAS on the enqueue position, they never block each other on a monitor. Only one thread must ever call
+ * {@link #poll()}.
+ * </p>
+ * <p>
+ * The queue does not handle waiting for elements; callers are expected to combine it with
+ * {@link java.util.concurrent.locks.LockSupport} parking as needed.
+ * </p>
+ *
+ * @param <T> element type
+ */
+public class BoundedMpscQueue<T> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private volatile long dequeuePosition = 0;
+
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    /**
+     * Creates a new queue. The actual capacity gets rounded up to the next power of 2.
+     *
+     * @param minimumCapacity minimum number of elements the queue needs to be able to hold
+     */
+    public BoundedMpscQueue(int minimumCapacity) {
+        if (minimumCapacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, got " + minimumCapacity);
+        }
+
+        if (minimumCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity too large: " + minimumCapacity);
+        }
+
+        capacity = (minimumCapacity == 1) ? 1 : Integer.highestOneBit(minimumCapacity - 1) << 1;
+        mask = capacity - 1;
+
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element to the queue if there is space left. May be called by any thread.
+     *
+     * @param element element to add; must not be null
+     * @return true if the element was added, false if the queue is full
+     */
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new IllegalArgumentException("null elements are not supported");
+        }
+
+        long position = enqueuePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                // slot is free; try to claim it
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    break;
+                }
+
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                // slot has not been consumed yet: queue is full
+                return false;
+            } else {
+                // another producer claimed the slot; retry with current position
+                position = enqueuePosition.get();
+            }
+        }
+
+        updateHighWaterMark((int) Math.min(position + 1 - dequeuePosition, capacity));
+
+        return true;
+    }
+
+    /**
+     * Removes the oldest element from the queue. Must only be called by the single consumer thread.
+     *
+     * @return oldest element; null if the queue is empty
+     */
+    public T poll() {
+        long position = dequeuePosition;
+        int index = (int) position & mask;
+
+        if (sequences.get(index) != position + 1) {
+            // empty or the producer claiming the slot has not finished writing yet
+            return null;
+        }
+
+        T element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.set(index, position + capacity);
+        dequeuePosition = position + 1;
+
+        return element;
+    }
+
+    /**
+     * @return true if no elements are queued; may be outdated by the time the result is being evaluated
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return number of elements currently queued; may be outdated by the time the result is being evaluated
+     */
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return maximum number of elements that have been queued at the same time
+     */
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    private void updateHighWaterMark(int size) {
+        int previous = highWaterMark.get();
+        while (size > previous) {
+            if (highWaterMark.compareAndSet(previous, size)) {
+                return;
+            }
+            previous = highWaterMark.get();
+        }
+    }
+}
@@ -121,7 +121,9 @@ public class ExternalCommand {
             throw new IllegalArgumentException("Failed to spawn command: " + String.join(" ", command), ex);
         }
 
-        new Thread(
+        // output is read for the whole lifetime of the process, blocking in system calls while waiting for a new line
+        Threads.newPlatformThread(
+            "ExternalCommand " + String.join(" ", command),
             () -> {
                 Throwable innerException = null;
                 try (
@@ -147,8 +149,7 @@ public class ExternalCommand {
                 if (innerException != null) {
                     process.destroyForcibly();
                 }
-            },
-            "ExternalCommand " + String.join(" ", command)
+            }
         ).start();
 
         return process;
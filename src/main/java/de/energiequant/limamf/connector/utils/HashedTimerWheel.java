@@ -0,0 +1,315 @@
+package de.energiequant.limamf.connector.utils;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs short tasks after a delay on a single background thread, with a coarse resolution of one tick.
+ * <p>
+ * Timeouts are kept in a ring of buckets (hashed timing wheel, see Varghese and Lauck), each bucket holding all
+ * timeouts due within one tick, so scheduling and cancelling take constant time no matter how many timeouts are
+ * pending. Timeouts further away than one revolution of the wheel remain in their bucket for the required number of
+ * rounds. Cancelled timeouts are only removed from their bucket once it is due.
+ * </p>
+ * <p>
+ * Tasks are run on the timer thread, so they must return quickly. They are never run before their deadline but may
+ * be delayed by up to one tick. The thread is only started when the first timeout is scheduled and parks while no
+ * timeouts are pending, so an idle wheel does not cause any wake-ups.
+ * </p>
+ * <p>
+ * An instance to be shared by the whole application is provided by {@link #getShared()}.
+ * </p>
+ */
+public class HashedTimerWheel {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedTimerWheel.class);
+
+    public static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(5);
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private static final HashedTimerWheel SHARED = new HashedTimerWheel("HashedTimerWheel", DEFAULT_TICK_DURATION, DEFAULT_TICKS_PER_WHEEL);
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+
+    private final Queue<Timeout> scheduledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingTimeouts = new AtomicInteger();
+
+    private volatile boolean stopped = false;
+    private volatile Thread thread;
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public final class Timeout {
+        private static final int STATE_PENDING = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+        // only accessed by timer thread
+        private long remainingRounds;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task unless it has already been run.
+         *
+         * @return true if cancelled, false if already run or cancelled before
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+
+            pendingTimeouts.decrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        private boolean isPending() {
+            return state.get() == STATE_PENDING;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+                return;
+            }
+
+            pendingTimeouts.decrementAndGet();
+
+            // errors must not terminate the timer thread, all other timeouts would be lost
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                LOGGER.warn("[{}] task failed: {}", name, task, ex);
+            }
+        }
+    }
+
+    /**
+     * Doubly-linked list of timeouts, only accessed by the timer thread.
+     */
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.previous = tail;
+            timeout.next = null;
+
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+
+    /**
+     * Creates a new timer wheel. The timer thread is started when the first timeout is scheduled.
+     *
+     * @param name          name of the timer thread
+     * @param tickDuration  resolution of timeouts
+     * @param ticksPerWheel number of buckets; must be a power of 2
+     */
+    public HashedTimerWheel(String name, Duration tickDuration, int ticksPerWheel) {
+        if (tickDuration.isNegative() || tickDuration.isZero()) {
+            throw new IllegalArgumentException("tick duration must be positive, got " + tickDuration);
+        }
+
+        if (ticksPerWheel < 1 || Integer.bitCount(ticksPerWheel) != 1) {
+            throw new IllegalArgumentException("ticks per wheel must be a positive power of 2, got " + ticksPerWheel);
+        }
+
+        this.name = name;
+        this.tickNanos = tickDuration.toNanos();
+        this.mask = ticksPerWheel - 1;
+
+        this.buckets = new Bucket[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Returns the timer wheel shared by the whole application. The shared instance must not be stopped.
+     *
+     * @return shared timer wheel
+     */
+    public static HashedTimerWheel getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules the given task to be run once after the given delay.
+     *
+     * @param task  task to run; must return quickly
+     * @param delay delay until task should be run
+     * @param unit  unit of delay
+     * @return handle to cancel the task
+     * @throws IllegalStateException if the wheel has been stopped
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("timer wheel " + name + " has been stopped");
+        }
+
+        ensureStarted();
+
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+
+        boolean wasIdle = pendingTimeouts.getAndIncrement() == 0;
+        scheduledTimeouts.add(timeout);
+
+        if (wasIdle) {
+            LockSupport.unpark(thread);
+        }
+
+        return timeout;
+    }
+
+    private void ensureStarted() {
+        if (thread != null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (thread == null) {
+                Thread newThread = Threads.newThread(name, this::run);
+                newThread.setDaemon(true);
+                newThread.start();
+                thread = newThread;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of timeouts which have neither been run nor cancelled yet.
+     *
+     * @return number of pending timeouts
+     */
+    public int getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Stops the timer thread; pending tasks will not be run.
+     */
+    public void stop() {
+        stopped = true;
+
+        Thread thread = this.thread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        LOGGER.debug("[{}] started", name);
+
+        long startNanos = System.nanoTime();
+        long tick = 0;
+
+        while (!stopped) {
+            if (pendingTimeouts.get() == 0) {
+                LockSupport.park(this);
+
+                if (stopped || pendingTimeouts.get() == 0) {
+                    continue;
+                }
+
+                // buckets hold at most cancelled timeouts at this point, so ticks can be counted from now on
+                startNanos = System.nanoTime();
+                tick = 0;
+            }
+
+            long tickEndNanos = startNanos + (tick + 1) * tickNanos;
+            long remainingNanos;
+            while ((remainingNanos = tickEndNanos - System.nanoTime()) > 0 && !stopped) {
+                LockSupport.parkNanos(this, remainingNanos);
+            }
+
+            transferScheduledTimeouts(startNanos, tick);
+            expire(buckets[(int) (tick & mask)]);
+
+            tick++;
+        }
+
+        LOGGER.debug("[{}] stopped", name);
+    }
+
+    private void transferScheduledTimeouts(long startNanos, long currentTick) {
+        Timeout timeout;
+        while ((timeout = scheduledTimeouts.poll()) != null) {
+            if (!timeout.isPending()) {
+                continue;
+            }
+
+            // bucket of tick n is processed at end of that tick, so it holds deadlines within the tick
+            long deadlineTick = Math.max(currentTick, (timeout.deadlineNanos - startNanos) / tickNanos);
+
+            timeout.remainingRounds = (deadlineTick - currentTick) / buckets.length;
+            buckets[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+
+            if (!timeout.isPending()) {
+                bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+            }
+
+            timeout = next;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package de.energiequant.limamf.connector.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations with bounded relative error, similar to HdrHistogram.
+ * <p>
+ * Values are counted in buckets of logarithmically increasing width: each power of 2 is split into 32 linear
+ * sub-buckets, so reported values are at most about 3% higher than the recorded ones, regardless of magnitude. Values
+ * below 32 are counted exactly. The maximum is tracked separately and always exact.
+ * </p>
+ * <p>
+ * Recording is lock-free and does not allocate, so it can be used on hot paths from multiple threads. Snapshots taken
+ * while recording may be slightly inconsistent.
+ * </p>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // values are positive longs, so the highest exponent is 62
+    private static final int NUM_BUCKETS = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single duration.
+     *
+     * @param nanos duration in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        counts.incrementAndGet(indexOf(value));
+
+        long previousMax;
+        while (value > (previousMax = max.get())) {
+            if (max.compareAndSet(previousMax, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+
+        return new Snapshot(copy, total, max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the highest value counted in the given bucket.
+     *
+     * @param index bucket index
+     * @return highest value of bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long lowest = (SUB_BUCKET_COUNT + subBucket) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Recorded values at a single point in time, see {@link #snapshot()}.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the value below or at which the given percentage of recorded values are.
+         *
+         * @param percentile percentage of values, 0..100
+         * @return value at percentile in nanoseconds; 0 if nothing has been recorded
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be within 0..100, got " + percentile);
+            }
+
+            if (count == 0) {
+                return 0;
+            }
+
+            long threshold = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= threshold) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+
+            return max;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "n=" + count
+                + ", p50=" + formatMicros(getPercentile(50))
+                + ", p99=" + formatMicros(getPercentile(99))
+                + ", max=" + formatMicros(max);
+        }
+
+        private static String formatMicros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package de.energiequant.limamf.connector.utils;
+
+import java.io.IOException;
+
+/**
+ * Waits for data on multiple {@link NativeSerialPort}s at once using {@code epoll(7)}, so a single thread can serve
+ * any number of devices while only handling those that actually became ready.
+ * <p>
+ * Native calls require the Foreign Function &amp; Memory API which is only available on Java 22 or later. This
+ * implementation is used on older Java versions and is never available; the actual implementation is provided as a
+ * multi-release variant in {@code src/main/java22}. Callers need to check {@link #isAvailable()} first.
+ * </p>
+ */
+public class NativeSelector {
+    private NativeSelector() {
+        // never instantiated in this variant
+    }
+
+    /**
+     * Checks if native selectors are supported on the current platform.
+     *
+     * @return true if available, false if not
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Creates a new selector.
+     *
+     * @return selector
+     * @throws IOException if the selector could not be created
+     * @throws UnsupportedOperationException if not available, see {@link #isAvailable()}
+     */
+    public static NativeSelector open() throws IOException {
+        throw new UnsupportedOperationException("native selectors require Java 22 or later");
+    }
+
+    /**
+     * Registers the given port to be reported with the given key whenever it has data to be read or it has been
+     * released or closed (see {@link NativeSerialPort#release()}). The port's file descriptors are kept open until
+     * the port is unregistered again.
+     *
+     * @param port port to register
+     * @param key  key to report the port with; must not be negative
+     * @throws IOException if the port could not be registered, including if it has already been closed
+     */
+    public void register(NativeSerialPort port, int key) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Unregisters a port previously registered by {@link #register(NativeSerialPort, int)}. Must be called exactly
+     * once per successful registration, otherwise the port's file descriptors will never be closed.
+     *
+     * @param port port to unregister
+     */
+    public void unregister(NativeSerialPort port) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Waits for registered ports to become ready. Keys of ready ports are written to the given array; the same key
+     * may be reported more than once. Only one thread may wait at a time.
+     *
+     * @param readyKeys     array to store keys of ready ports in; limits the number of ports reported per call
+     * @param timeoutMillis maximum time to wait; 0 does not wait, negative values wait indefinitely
+     * @return number of keys stored in the array; 0 on timeout or if woken up, see {@link #wakeup()}
+     * @throws IOException if waiting failed
+     */
+    public int select(int[] readyKeys, int timeoutMillis) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Causes a current or the next call to {@link #select(int[], int)} to return immediately. Can be called from any
+     * thread.
+     */
+    public void wakeup() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,83 @@
+package de.energiequant.limamf.connector.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Direct access to a serial device through native file descriptors, avoiding the limitations of Java streams and
+ * channels: reads wait for data using {@code poll(2)} so they can block with a timeout, wake up immediately when data
+ * arrives and can be released at any time without closing the device first.
+ * <p>
+ * Native calls require the Foreign Function &amp; Memory API which is only available on Java 22 or later. This
+ * implementation is used on older Java versions and is never available; the actual implementation is provided as a
+ * multi-release variant in {@code src/main/java22}. Callers need to check {@link #isAvailable()} first.
+ * </p>
+ */
+public class NativeSerialPort {
+    private NativeSerialPort() {
+        // never instantiated in this variant
+    }
+
+    /**
+     * Checks if native serial ports are supported on the current platform.
+     *
+     * @return true if available, false if not
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Opens the given serial device for reading and writing.
+     *
+     * @param deviceNode serial device to open
+     * @return opened port
+     * @throws IOException if the device could not be opened
+     * @throws UnsupportedOperationException if not available, see {@link #isAvailable()}
+     */
+    public static NativeSerialPort open(File deviceNode) throws IOException {
+        throw new UnsupportedOperationException("native serial ports require Java 22 or later");
+    }
+
+    /**
+     * Reads available bytes into the remaining space of the given buffer, waiting up to the given time for data to
+     * arrive. The buffer's position is advanced by the number of bytes read.
+     *
+     * @param buffer        buffer to read into; must have space remaining
+     * @param timeoutMillis maximum time to wait for data; 0 does not wait, negative values wait indefinitely
+     * @return number of bytes read; 0 on timeout, -1 if the port has been released, closed or hung up
+     * @throws IOException if reading failed
+     */
+    public int read(ByteBuffer buffer, int timeoutMillis) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Writes all remaining bytes of the given buffer, blocking until written.
+     *
+     * @param buffer bytes to write; will be fully consumed
+     * @throws IOException if writing failed
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Permanently releases all current and future reads, which will return -1. Can be called from any thread.
+     */
+    public void release() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Releases all reads and closes the port. The file descriptors are closed as soon as all operations still in
+     * progress have completed, so this can safely be called while other threads are using the port.
+     *
+     * @return true if reads have been released and the device has been closed or will be closed once all pending
+     *     operations complete; false if releasing reads or closing the device failed
+     */
+    public boolean close() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -8,13 +8,23 @@ import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import de.energiequant.limamf.connector.MissingTool;
 
 public class OperatingSystem {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OperatingSystem.class);
+
     private static final String FILE_SEPARATOR = System.getProperty("file.separator");
     private static final String PATH_SEPARATOR = System.getProperty("path.separator");
     private static final String HOME_DIRECTORY = System.getProperty("user.home");
 
+    /**
+     * Location of {@code stty}; only resolved once as searching all paths for every device being opened adds up.
+     */
+    private static volatile File sttyPath;
+
     private OperatingSystem() {
         // utility class; hide constructor
     }
@@ -72,21 +82,60 @@ public class OperatingSystem {
         return Optional.empty();
     }
 
-    public static void disableSerialEcho(File deviceNode) {
-        File stty = locateFromPaths("stty", x -> x.canExecute()).orElseThrow(() -> new MissingTool("stty could not be found"));
+    /**
+     * Configures the given serial line for communication with devices. Echo needs to be disabled, otherwise Linux
+     * sends everything it received back to the device.
+     * <p>
+     * If possible, the line is configured in-process (see {@link Termios}), otherwise {@code stty} is run. On Linux
+     * the line is put into raw mode where reads block until at least one byte is available. On other operating
+     * systems only echo is disabled, other line settings remain unchanged.
+     * </p>
+     *
+     * @param deviceNode serial device to configure
+     */
+    public static void configureSerialLine(File deviceNode) {
+        if (Termios.isAvailable()) {
+            try {
+                Termios.makeRaw(deviceNode);
+                return;
+            } catch (Exception ex) {
+                LOGGER.warn("failed to configure {} in-process, falling back to stty", deviceNode, ex);
+            }
+        }
+
+        File stty = getSttyPath();
 
         int exitCode;
         try {
             exitCode = Runtime.getRuntime()
-                              .exec(new String[]{stty.getAbsolutePath(), isMacOS() ? "-f" : "-F", deviceNode.getAbsolutePath(), "-echo"})
+                              .exec(getSttyCommand(stty, deviceNode))
                               .waitFor();
         } catch (InterruptedException | IOException ex) {
-            throw new CommandFailed("failed to disable echo on " + deviceNode, ex);
+            throw new CommandFailed("failed to configure " + deviceNode, ex);
         }
 
         if (exitCode != 0) {
-            throw new CommandFailed("failed to disable echo on " + deviceNode + ", exit code " + exitCode);
+            throw new CommandFailed("failed to configure " + deviceNode + ", exit code " + exitCode);
+        }
+    }
+
+    private static String[] getSttyCommand(File stty, File deviceNode) {
+        if (isLinux()) {
+            // same settings as applied in-process by Termios
+            return new String[]{stty.getAbsolutePath(), "-F", deviceNode.getAbsolutePath(), "raw", "-echo", "min", "1", "time", "0"};
         }
+
+        return new String[]{stty.getAbsolutePath(), isMacOS() ? "-f" : "-F", deviceNode.getAbsolutePath(), "-echo"};
+    }
+
+    private static File getSttyPath() {
+        File stty = sttyPath;
+        if (stty == null || !stty.canExecute()) {
+            stty = locateFromPaths("stty", x -> x.canExecute()).orElseThrow(() -> new MissingTool("stty could not be found"));
+            sttyPath = stty;
+        }
+
+        return stty;
     }
 
     private static class CommandFailed extends RuntimeException {
@@ -0,0 +1,38 @@
+package de.energiequant.limamf.connector.utils;
+
+import java.io.File;
+
+/**
+ * Configures serial lines in-process through termios, avoiding to spawn {@code stty}.
+ * <p>
+ * Native calls require the Foreign Function &amp; Memory API which is only available on Java 22 or later. This
+ * implementation is used on older Java versions and is never available; the actual implementation is provided as a
+ * multi-release variant in {@code src/main/java22}. Callers need to check {@link #isAvailable()} and fall back to
+ * {@code stty} otherwise, see {@link OperatingSystem#configureSerialLine(File)}.
+ * </p>
+ */
+public class Termios {
+    private Termios() {
+        // utility class; hide constructor
+    }
+
+    /**
+     * Checks if serial lines can be configured in-process on the current platform.
+     *
+     * @return true if available, false if not
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Puts the given serial line into raw mode without echo; reads block until at least one byte is available
+     * ({@code VMIN=1}, {@code VTIME=0}).
+     *
+     * @param deviceNode serial device to configure
+     * @throws UnsupportedOperationException if not available, see {@link #isAvailable()}
+     */
+    public static void makeRaw(File deviceNode) {
+        throw new UnsupportedOperationException("in-process termios requires Java 22 or later");
+    }
+}
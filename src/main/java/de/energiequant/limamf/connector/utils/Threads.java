@@ -0,0 +1,73 @@
+package de.energiequant.limamf.connector.utils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates threads for tasks which spend most of their time waiting (device communication, monitoring processes).
+ * <p>
+ * Virtual threads are much cheaper for such tasks but require Java 21 or later. This implementation is used on older
+ * Java versions and creates platform threads; the virtual thread implementation is provided as a multi-release
+ * variant in {@code src/main/java21}.
+ * </p>
+ * <p>
+ * Virtual threads are always daemon threads, so callers must not rely on created threads to keep the application
+ * running. Virtual threads also must not be used for tasks which block in system calls for a long time, such as
+ * waiting for data to be read from a device: not only native calls but also blocking file I/O (streams and
+ * {@link java.nio.channels.FileChannel}s on device nodes) occupy the underlying carrier thread, which the scheduler
+ * can at best compensate for by temporarily adding further carrier threads. Such tasks need to run on platform
+ * threads created by {@link #newPlatformThread(String, Runnable)}.
+ * </p>
+ */
+public class Threads {
+    private Threads() {
+        // utility class; hide constructor
+    }
+
+    /**
+     * Checks if virtual threads are being created.
+     *
+     * @return true if threads are virtual, false if platform threads are used
+     */
+    public static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * Creates a new thread for the given task. The thread still needs to be started.
+     *
+     * @param name name of the thread
+     * @param task task to run
+     * @return unstarted thread
+     */
+    public static Thread newThread(String name, Runnable task) {
+        return new Thread(task, name);
+    }
+
+    /**
+     * Creates a new platform thread for the given task, regardless of virtual threads being available. Used for tasks
+     * blocking in system calls for a long time. The thread still needs to be started.
+     *
+     * @param name name of the thread
+     * @param task task to run
+     * @return unstarted platform thread
+     */
+    public static Thread newPlatformThread(String name, Runnable task) {
+        return new Thread(task, name);
+    }
+
+    /**
+     * Creates a factory for daemon threads, named by the given prefix and a counter starting at 1.
+     *
+     * @param namePrefix prefix of thread names
+     * @return thread factory
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
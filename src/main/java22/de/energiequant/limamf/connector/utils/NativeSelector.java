@@ -0,0 +1,324 @@
+package de.energiequant.limamf.connector.utils;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits for data on multiple {@link NativeSerialPort}s at once using {@code epoll(7)}, so a single thread can serve
+ * any number of devices while only handling those that actually became ready.
+ * <p>
+ * This is the Java 22 variant using the Foreign Function &amp; Memory API to call libc directly. Each port is
+ * registered with both its device and its release pipe, so ports are also reported once they get released or closed.
+ * Wakeups are implemented through an {@code eventfd(2)}.
+ * </p>
+ */
+public class NativeSelector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeSelector.class);
+
+    /**
+     * 64-bit architectures using the generic Linux ABI, same as supported by {@link NativeSerialPort}.
+     * {@code struct epoll_event} is only packed on x86-64.
+     */
+    private static final List<String> PACKED_ARCHITECTURES = Arrays.asList("amd64", "x86_64");
+    private static final List<String> UNPACKED_ARCHITECTURES = Arrays.asList("aarch64");
+
+    // generic Linux ABI constants
+    private static final int EPOLL_CLOEXEC = 02000000;
+    private static final int EFD_CLOEXEC = 02000000;
+    private static final int EFD_NONBLOCK = 04000;
+    private static final int EPOLL_CTL_ADD = 1;
+    private static final int EPOLL_CTL_DEL = 2;
+    private static final int EPOLLIN = 0x001;
+    private static final int EINTR = 4;
+
+    private static final int WAKEUP_KEY = -1;
+
+    /**
+     * Event data is not 8-byte aligned if the struct is packed.
+     */
+    private static final ValueLayout.OfLong JAVA_LONG_UNALIGNED = JAVA_LONG.withByteAlignment(1);
+
+    private static final Native NATIVE = Native.tryLoad();
+
+    private final int epollFd;
+    private final int wakeupFd;
+    private final Arena arena = Arena.ofShared();
+
+    // only used by the selecting thread
+    private final MemorySegment events;
+    private final int maxEvents;
+    private final MemorySegment selectCallState;
+    private final MemorySegment wakeupBuffer;
+
+    private NativeSelector(int epollFd, int wakeupFd, int maxEvents) {
+        this.epollFd = epollFd;
+        this.wakeupFd = wakeupFd;
+        this.maxEvents = maxEvents;
+
+        events = arena.allocate(NATIVE.eventSize * maxEvents);
+        selectCallState = arena.allocate(NATIVE.callStateLayout);
+        wakeupBuffer = arena.allocate(JAVA_LONG);
+    }
+
+    /**
+     * Checks if native selectors are supported on the current platform.
+     *
+     * @return true if available, false if not
+     */
+    public static boolean isAvailable() {
+        return NATIVE != null && NativeSerialPort.isAvailable();
+    }
+
+    /**
+     * Creates a new selector.
+     *
+     * @return selector
+     * @throws IOException if the selector could not be created
+     * @throws UnsupportedOperationException if not available, see {@link #isAvailable()}
+     */
+    public static NativeSelector open() throws IOException {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("native selectors are not available on this platform");
+        }
+
+        try (Arena tmp = Arena.ofConfined()) {
+            MemorySegment callState = tmp.allocate(NATIVE.callStateLayout);
+
+            int epollFd = (int) NATIVE.epollCreate1.invokeExact(callState, EPOLL_CLOEXEC);
+            if (epollFd < 0) {
+                throw new IOException("failed to create epoll instance, errno " + NATIVE.errno(callState));
+            }
+
+            int wakeupFd = (int) NATIVE.eventfd.invokeExact(callState, 0, EFD_CLOEXEC | EFD_NONBLOCK);
+            if (wakeupFd < 0) {
+                int errno = NATIVE.errno(callState);
+                int res = (int) NATIVE.close.invokeExact(epollFd);
+                throw new IOException("failed to create eventfd, errno " + errno);
+            }
+
+            NativeSelector selector = new NativeSelector(epollFd, wakeupFd, 64);
+            selector.control(EPOLL_CTL_ADD, wakeupFd, WAKEUP_KEY);
+            return selector;
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IOException("failed to create selector", ex);
+        }
+    }
+
+    /**
+     * Registers the given port to be reported with the given key whenever it has data to be read or it has been
+     * released or closed (see {@link NativeSerialPort#release()}). The port's file descriptors are kept open until
+     * the port is unregistered again.
+     *
+     * @param port port to register
+     * @param key  key to report the port with; must not be negative
+     * @throws IOException if the port could not be registered, including if it has already been closed
+     */
+    public void register(NativeSerialPort port, int key) throws IOException {
+        if (key < 0) {
+            throw new IllegalArgumentException("key must not be negative, got " + key);
+        }
+
+        if (!port.acquire()) {
+            throw new IOException("port has already been closed");
+        }
+
+        boolean success = false;
+        try {
+            control(EPOLL_CTL_ADD, port.getFileDescriptor(), key);
+            try {
+                control(EPOLL_CTL_ADD, port.getReleaseFileDescriptor(), key);
+            } catch (IOException ex) {
+                tryRemove(port.getFileDescriptor());
+                throw ex;
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                port.releaseUsage();
+            }
+        }
+    }
+
+    /**
+     * Unregisters a port previously registered by {@link #register(NativeSerialPort, int)}. Must be called exactly
+     * once per successful registration, otherwise the port's file descriptors will never be closed.
+     *
+     * @param port port to unregister
+     */
+    public void unregister(NativeSerialPort port) {
+        tryRemove(port.getFileDescriptor());
+        tryRemove(port.getReleaseFileDescriptor());
+        port.releaseUsage();
+    }
+
+    /**
+     * Waits for registered ports to become ready. Keys of ready ports are written to the given array; the same key
+     * may be reported more than once. Only one thread may wait at a time.
+     *
+     * @param readyKeys     array to store keys of ready ports in; limits the number of ports reported per call
+     * @param timeoutMillis maximum time to wait; 0 does not wait, negative values wait indefinitely
+     * @return number of keys stored in the array; 0 on timeout or if woken up, see {@link #wakeup()}
+     * @throws IOException if waiting failed
+     */
+    public int select(int[] readyKeys, int timeoutMillis) throws IOException {
+        int max = Math.min(readyKeys.length, maxEvents);
+
+        int ready;
+        try {
+            ready = (int) NATIVE.epollWait.invokeExact(selectCallState, epollFd, events, max, timeoutMillis < 0 ? -1 : timeoutMillis);
+        } catch (Throwable ex) {
+            throw new IOException("epoll_wait failed", ex);
+        }
+
+        if (ready < 0) {
+            int errno = NATIVE.errno(selectCallState);
+            if (errno == EINTR) {
+                return 0;
+            }
+            throw new IOException("epoll_wait failed, errno " + errno);
+        }
+
+        int numKeys = 0;
+        for (int i = 0; i < ready; i++) {
+            int key = (int) events.get(JAVA_LONG_UNALIGNED, (i * NATIVE.eventSize) + NATIVE.eventDataOffset);
+            if (key == WAKEUP_KEY) {
+                drainWakeup();
+            } else {
+                readyKeys[numKeys++] = key;
+            }
+        }
+
+        return numKeys;
+    }
+
+    /**
+     * Causes a current or the next call to {@link #select(int[], int)} to return immediately. Can be called from any
+     * thread.
+     */
+    public void wakeup() {
+        try (Arena tmp = Arena.ofConfined()) {
+            MemorySegment value = tmp.allocate(JAVA_LONG);
+            value.set(JAVA_LONG, 0, 1L);
+            long res = (long) NATIVE.write.invokeExact(wakeupFd, value, 8L);
+        } catch (Throwable ex) {
+            LOGGER.warn("failed to wake up selector", ex);
+        }
+    }
+
+    private void drainWakeup() {
+        try {
+            // eventfd is reset by a single read
+            long res = (long) NATIVE.read.invokeExact(wakeupFd, wakeupBuffer, 8L);
+        } catch (Throwable ex) {
+            LOGGER.warn("failed to reset selector wakeup", ex);
+        }
+    }
+
+    private void control(int operation, int fd, int key) throws IOException {
+        try (Arena tmp = Arena.ofConfined()) {
+            MemorySegment callState = tmp.allocate(NATIVE.callStateLayout);
+            MemorySegment event = tmp.allocate(NATIVE.eventSize);
+            event.set(JAVA_INT, 0, EPOLLIN);
+            event.set(JAVA_LONG_UNALIGNED, NATIVE.eventDataOffset, key);
+
+            int res = (int) NATIVE.epollCtl.invokeExact(callState, epollFd, operation, fd, event);
+            if (res != 0) {
+                throw new IOException("epoll_ctl failed for fd " + fd + ", errno " + NATIVE.errno(callState));
+            }
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IOException("epoll_ctl failed for fd " + fd, ex);
+        }
+    }
+
+    private void tryRemove(int fd) {
+        try {
+            control(EPOLL_CTL_DEL, fd, 0);
+        } catch (IOException ex) {
+            LOGGER.warn("failed to unregister fd {} from selector", fd, ex);
+        }
+    }
+
+    private static class Native {
+        private final MethodHandle epollCreate1;
+        private final MethodHandle epollCtl;
+        private final MethodHandle epollWait;
+        private final MethodHandle eventfd;
+        private final MethodHandle read;
+        private final MethodHandle write;
+        private final MethodHandle close;
+
+        private final long eventSize;
+        private final long eventDataOffset;
+
+        private final StructLayout callStateLayout = Linker.Option.captureStateLayout();
+        private final VarHandle errno = callStateLayout.varHandle(StructLayout.PathElement.groupElement("errno"));
+
+        private Native(boolean packed) {
+            // struct epoll_event: uint32_t events, uint64_t data
+            eventSize = packed ? 12 : 16;
+            eventDataOffset = packed ? 4 : 8;
+
+            Linker linker = Linker.nativeLinker();
+            SymbolLookup libc = linker.defaultLookup();
+            Linker.Option captureErrno = Linker.Option.captureCallState("errno");
+
+            epollCreate1 = linker.downcallHandle(find(libc, "epoll_create1"), FunctionDescriptor.of(JAVA_INT, JAVA_INT), captureErrno);
+            epollCtl = linker.downcallHandle(find(libc, "epoll_ctl"), FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS), captureErrno);
+            epollWait = linker.downcallHandle(find(libc, "epoll_wait"), FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT), captureErrno);
+            eventfd = linker.downcallHandle(find(libc, "eventfd"), FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT), captureErrno);
+            read = linker.downcallHandle(find(libc, "read"), FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+            write = linker.downcallHandle(find(libc, "write"), FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+            close = linker.downcallHandle(find(libc, "close"), FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+        }
+
+        static Native tryLoad() {
+            if (!OperatingSystem.isLinux()) {
+                return null;
+            }
+
+            String arch = System.getProperty("os.arch");
+            boolean packed = PACKED_ARCHITECTURES.contains(arch);
+            if (!packed && !UNPACKED_ARCHITECTURES.contains(arch)) {
+                LOGGER.debug("native selectors are not supported on architecture {}", arch);
+                return null;
+            }
+
+            try {
+                return new Native(packed);
+            } catch (Throwable ex) {
+                // also covers native access being restricted
+                LOGGER.debug("native selectors are not available", ex);
+                return null;
+            }
+        }
+
+        private static MemorySegment find(SymbolLookup lookup, String name) {
+            return lookup.find(name).orElseThrow(() -> new IllegalStateException("symbol not found: " + name));
+        }
+
+        int errno(MemorySegment callState) {
+            return (int) errno.get(callState, 0L);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package de.energiequant.limamf.connector.utils;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Direct access to a serial device through native file descriptors, avoiding the limitations of Java streams and
+ * channels: reads wait for data using {@code poll(2)} so they can block with a timeout, wake up immediately when data
+ * arrives and can be released at any time without closing the device first.
+ * <p>
+ * This is the Java 22 variant using the Foreign Function &amp; Memory API to call libc directly. Releasing reads is
+ * implemented through a pipe which is polled together with the device.
+ * </p>
+ */
+public class NativeSerialPort {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeSerialPort.class);
+
+    /**
+     * 64-bit architectures using the generic Linux {@code open} flags and {@code errno} values. 32-bit architectures
+     * are not supported as {@code size_t}, {@code ssize_t} and {@code nfds_t} are bound as {@code long}.
+     */
+    private static final List<String> SUPPORTED_ARCHITECTURES = Arrays.asList("amd64", "x86_64", "aarch64");
+
+    // generic Linux ABI constants
+    private static final int O_RDWR = 02;
+    private static final int O_NOCTTY = 0400;
+    private static final int O_NONBLOCK = 04000;
+    private static final int O_CLOEXEC = 02000000;
+    private static final int F_SETFL = 4;
+    private static final short POLLIN = 0x001;
+    private static final short POLLERR = 0x008;
+    private static final short POLLHUP = 0x010;
+    private static final short POLLNVAL = 0x020;
+    private static final int EINTR = 4;
+    private static final int EAGAIN = 11;
+
+    // struct pollfd: int fd, short events, short revents
+    private static final long POLLFD_SIZE = 8;
+    private static final long POLLFD_EVENTS = 4;
+    private static final long POLLFD_REVENTS = 6;
+
+    private static final int SCRATCH_SIZE = 4096;
+
+    private static final Native NATIVE = Native.tryLoad();
+
+    private final String logPrefix;
+    private final int fd;
+    private final int releaseReadFd;
+    private final int releaseWriteFd;
+    private final Arena arena = Arena.ofShared();
+
+    // only used while holding the respective side; callers serialize reads and writes
+    private final MemorySegment pollFds;
+    private final MemorySegment readCallState;
+    private final MemorySegment writeCallState;
+    private final MemorySegment readScratch;
+    private final MemorySegment writeScratch;
+
+    /**
+     * Number of operations in progress; {@link #CLOSE_REQUESTED} is set once closing has been requested.
+     */
+    private final AtomicInteger usage = new AtomicInteger();
+    private static final int CLOSE_REQUESTED = 1 << 30;
+    private static final int CLOSED = 1 << 29;
+
+    private NativeSerialPort(File deviceNode, int fd, int releaseReadFd, int releaseWriteFd) {
+        this.logPrefix = "[" + deviceNode.getAbsolutePath() + "] ";
+        this.fd = fd;
+        this.releaseReadFd = releaseReadFd;
+        this.releaseWriteFd = releaseWriteFd;
+
+        pollFds = arena.allocate(POLLFD_SIZE * 2);
+        pollFds.set(JAVA_INT, 0, fd);
+        pollFds.set(JAVA_SHORT, POLLFD_EVENTS, POLLIN);
+        pollFds.set(JAVA_INT, POLLFD_SIZE, releaseReadFd);
+        pollFds.set(JAVA_SHORT, POLLFD_SIZE + POLLFD_EVENTS, POLLIN);
+
+        readCallState = arena.allocate(NATIVE.callStateLayout);
+        writeCallState = arena.allocate(NATIVE.callStateLayout);
+        readScratch = arena.allocate(SCRATCH_SIZE);
+        writeScratch = arena.allocate(SCRATCH_SIZE);
+    }
+
+    /**
+     * Checks if native serial ports are supported on the current platform.
+     *
+     * @return true if available, false if not
+     */
+    public static boolean isAvailable() {
+        return NATIVE != null;
+    }
+
+    /**
+     * Opens the given serial device for reading and writing.
+     *
+     * @param deviceNode serial device to open
+     * @return opened port
+     * @throws IOException if the device could not be opened
+     * @throws UnsupportedOperationException if not available, see {@link #isAvailable()}
+     */
+    public static NativeSerialPort open(File deviceNode) throws IOException {
+        if (NATIVE == null) {
+            throw new UnsupportedOperationException("native serial ports are not available on this platform");
+        }
+
+        try (Arena tmp = Arena.ofConfined()) {
+            MemorySegment callState = tmp.allocate(NATIVE.callStateLayout);
+
+            // opened non-blocking so we do not hang waiting for carrier detect, reads are blocking afterwards
+            int fd = (int) NATIVE.open.invokeExact(callState, tmp.allocateFrom(deviceNode.getAbsolutePath()), O_RDWR | O_NOCTTY | O_NONBLOCK | O_CLOEXEC);
+            if (fd < 0) {
+                throw new IOException("failed to open " + deviceNode + ", errno " + NATIVE.errno(callState));
+            }
+
+            MemorySegment pipeFds = tmp.allocate(JAVA_INT, 2);
+            try {
+                if ((int) NATIVE.fcntl.invokeExact(callState, fd, F_SETFL, 0) != 0) {
+                    throw new IOException("failed to configure " + deviceNode + ", errno " + NATIVE.errno(callState));
+                }
+
+                if ((int) NATIVE.pipe2.invokeExact(callState, pipeFds, O_CLOEXEC | O_NONBLOCK) != 0) {
+                    throw new IOException("failed to create pipe for " + deviceNode + ", errno " + NATIVE.errno(callState));
+                }
+            } catch (IOException ex) {
+                int res = (int) NATIVE.close.invokeExact(fd);
+                throw ex;
+            }
+
+            return new NativeSerialPort(deviceNode, fd, pipeFds.getAtIndex(JAVA_INT, 0), pipeFds.getAtIndex(JAVA_INT, 1));
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IOException("failed to open " + deviceNode, ex);
+        }
+    }
+
+    /**
+     * Reads available bytes into the remaining space of the given buffer, waiting up to the given time for data to
+     * arrive. The buffer's position is advanced by the number of bytes read.
+     *
+     * @param buffer        buffer to read into; must have space remaining
+     * @param timeoutMillis maximum time to wait for data; 0 does not wait, negative values wait indefinitely
+     * @return number of bytes read; 0 on timeout, -1 if the port has been released, closed or hung up
+     * @throws IOException if reading failed
+     */
+    public int read(ByteBuffer buffer, int timeoutMillis) throws IOException {
+        if (!acquire()) {
+            return -1;
+        }
+
+        try {
+            int res = (int) NATIVE.poll.invokeExact(readCallState, pollFds, 2L, timeoutMillis < 0 ? -1 : timeoutMillis);
+            if (res < 0) {
+                int errno = NATIVE.errno(readCallState);
+                if (errno == EINTR) {
+                    return 0;
+                }
+                throw new IOException(logPrefix + "poll failed, errno " + errno);
+            }
+
+            if (res == 0) {
+                return 0;
+            }
+
+            if (pollFds.get(JAVA_SHORT, POLLFD_SIZE + POLLFD_REVENTS) != 0) {
+                // released
+                return -1;
+            }
+
+            short revents = pollFds.get(JAVA_SHORT, POLLFD_REVENTS);
+            if ((revents & POLLIN) == 0 && (revents & (POLLERR | POLLHUP | POLLNVAL)) != 0) {
+                LOGGER.debug("{}device hung up (revents {})", logPrefix, revents);
+                return -1;
+            }
+
+            boolean direct = buffer.isDirect();
+            int maxLength = direct ? buffer.remaining() : Math.min(buffer.remaining(), SCRATCH_SIZE);
+            MemorySegment target = direct ? MemorySegment.ofBuffer(buffer) : readScratch;
+
+            long read = (long) NATIVE.read.invokeExact(readCallState, fd, target, (long) maxLength);
+            if (read < 0) {
+                int errno = NATIVE.errno(readCallState);
+                if (errno == EINTR || errno == EAGAIN) {
+                    return 0;
+                }
+                throw new IOException(logPrefix + "read failed, errno " + errno);
+            }
+
+            if (read == 0) {
+                // end of file
+                return -1;
+            }
+
+            if (direct) {
+                buffer.position(buffer.position() + (int) read);
+            } else {
+                buffer.put(readScratch.asSlice(0, read).asByteBuffer());
+            }
+
+            return (int) read;
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IOException(logPrefix + "read failed", ex);
+        } finally {
+            releaseUsage();
+        }
+    }
+
+    /**
+     * Writes all remaining bytes of the given buffer, blocking until written.
+     *
+     * @param buffer bytes to write; will be fully consumed
+     * @throws IOException if writing failed
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        if (!acquire()) {
+            throw new IOException(logPrefix + "port has been closed");
+        }
+
+        try {
+            while (buffer.hasRemaining()) {
+                MemorySegment source;
+                int length;
+                if (buffer.isDirect()) {
+                    source = MemorySegment.ofBuffer(buffer);
+                    length = buffer.remaining();
+                } else {
+                    length = Math.min(buffer.remaining(), SCRATCH_SIZE);
+                    source = writeScratch;
+                    MemorySegment.copy(MemorySegment.ofBuffer(buffer), 0, writeScratch, 0, length);
+                }
+
+                long written = (long) NATIVE.write.invokeExact(writeCallState, fd, source, (long) length);
+                if (written < 0) {
+                    int errno = NATIVE.errno(writeCallState);
+                    if (errno == EINTR) {
+                        continue;
+                    }
+                    throw new IOException(logPrefix + "write failed, errno " + errno);
+                }
+
+                buffer.position(buffer.position() + (int) written);
+            }
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IOException(logPrefix + "write failed", ex);
+        } finally {
+            releaseUsage();
+        }
+    }
+
+    /**
+     * Permanently releases all current and future reads, which will return -1. Can be called from any thread.
+     */
+    public void release() {
+        releaseReads();
+    }
+
+    private boolean releaseReads() {
+        if (!acquire()) {
+            // already closed
+            return true;
+        }
+
+        try (Arena tmp = Arena.ofConfined()) {
+            // pipe is never drained, so poll keeps returning immediately from now on
+            long res = (long) NATIVE.writeWithoutState.invokeExact(releaseWriteFd, tmp.allocate(JAVA_BYTE), 1L);
+            if (res < 0) {
+                LOGGER.warn("{}failed to release reads", logPrefix);
+                return false;
+            }
+            return true;
+        } catch (Throwable ex) {
+            LOGGER.warn("{}failed to release reads", logPrefix, ex);
+            return false;
+        } finally {
+            releaseUsage();
+        }
+    }
+
+    /**
+     * Releases all reads and closes the port. The file descriptors are closed as soon as all operations still in
+     * progress have completed, so this can safely be called while other threads are using the port.
+     *
+     * @return true if reads have been released and the device has been closed or will be closed once all pending
+     *     operations complete; false if releasing reads or closing the device failed
+     */
+    public boolean close() {
+        boolean released = releaseReads();
+
+        int previous = usage.getAndUpdate(x -> x | CLOSE_REQUESTED);
+        if (previous == 0) {
+            return closeNow() && released;
+        }
+
+        return released;
+    }
+
+    int getFileDescriptor() {
+        return fd;
+    }
+
+    int getReleaseFileDescriptor() {
+        return releaseReadFd;
+    }
+
+    /**
+     * Marks an operation to be in progress, preventing the file descriptors from being closed until
+     * {@link #releaseUsage()} is called. Also used by {@link NativeSelector} to keep descriptors open while registered.
+     *
+     * @return true if acquired, false if the port has already been closed
+     */
+    boolean acquire() {
+        while (true) {
+            int current = usage.get();
+            if ((current & CLOSE_REQUESTED) != 0) {
+                return false;
+            }
+
+            if (usage.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseUsage() {
+        int remaining = usage.decrementAndGet();
+        if (remaining == CLOSE_REQUESTED) {
+            // last operation completed after close had been requested
+            closeNow();
+        }
+    }
+
+    private boolean closeNow() {
+        if (!usage.compareAndSet(CLOSE_REQUESTED, CLOSE_REQUESTED | CLOSED)) {
+            // already closed
+            return true;
+        }
+
+        LOGGER.debug("{}closing file descriptors", logPrefix);
+        boolean success = true;
+        try {
+            int res = (int) NATIVE.close.invokeExact(fd);
+            if (res != 0) {
+                LOGGER.warn("{}failed to close device", logPrefix);
+                success = false;
+            }
+
+            res = (int) NATIVE.close.invokeExact(releaseReadFd);
+            res = (int) NATIVE.close.invokeExact(releaseWriteFd);
+        } catch (Throwable ex) {
+            LOGGER.warn("{}failed to close file descriptors", logPrefix, ex);
+            success = false;
+        }
+
+        arena.close();
+
+        return success;
+    }
+
+    private static class Native {
+        private final MethodHandle open;
+        private final MethodHandle fcntl;
+        private final MethodHandle pipe2;
+        private final MethodHandle poll;
+        private final MethodHandle read;
+        private final MethodHandle write;
+        private final MethodHandle writeWithoutState;
+        private final MethodHandle close;
+
+        private final StructLayout callStateLayout = Linker.Option.captureStateLayout();
+        private final VarHandle errno = callStateLayout.varHandle(StructLayout.PathElement.groupElement("errno"));
+
+        private Native() {
+            Linker linker = Linker.nativeLinker();
+            SymbolLookup libc = linker.defaultLookup();
+            Linker.Option captureErrno = Linker.Option.captureCallState("errno");
+
+            open = linker.downcallHandle(find(libc, "open"), FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT), captureErrno);
+            fcntl = linker.downcallHandle(find(libc, "fcntl"), FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT), captureErrno, Linker.Option.firstVariadicArg(2));
+            pipe2 = linker.downcallHandle(find(libc, "pipe2"), FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT), captureErrno);
+            poll = linker.downcallHandle(find(libc, "poll"), FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT), captureErrno);
+            read = linker.downcallHandle(find(libc, "read"), FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG), captureErrno);
+            write = linker.downcallHandle(find(libc, "write"), FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG), captureErrno);
+            writeWithoutState = linker.downcallHandle(find(libc, "write"), FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+            close = linker.downcallHandle(find(libc, "close"), FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+        }
+
+        static Native tryLoad() {
+            if (!OperatingSystem.isLinux()) {
+                return null;
+            }
+
+            String arch = System.getProperty("os.arch");
+            if (!SUPPORTED_ARCHITECTURES.contains(arch)) {
+                LOGGER.debug("native serial ports are not supported on architecture {}", arch);
+                return null;
+            }
+
+            try {
+                return new Native();
+            } catch (Throwable ex) {
+                // also covers native access being restricted
+                LOGGER.debug("native serial ports are not available", ex);
+                return null;
+            }
+        }
+
+        private static MemorySegment find(SymbolLookup lookup, String name) {
+            return lookup.find(name).orElseThrow(() -> new IllegalStateException("symbol not found: " + name));
+        }
+
+        int errno(MemorySegment callState) {
+            return (int) errno.get(callState, 0L);
+        }
+    }
+}
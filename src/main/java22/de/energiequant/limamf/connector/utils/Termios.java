@@ -0,0 +1,177 @@
+package de.energiequant.limamf.connector.utils;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+import java.io.File;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configures serial lines in-process through termios, avoiding to spawn {@code stty}.
+ * <p>
+ * This is the Java 22 variant using the Foreign Function &amp; Memory API to call libc directly. It is only available
+ * on Linux architectures sharing the generic {@code struct termios} layout; all other platforms need to fall back to
+ * {@code stty}, see {@link OperatingSystem#configureSerialLine(File)}.
+ * </p>
+ */
+public class Termios {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Termios.class);
+
+    /**
+     * Architectures using the generic Linux {@code struct termios} layout and {@code open} flags.
+     */
+    private static final List<String> SUPPORTED_ARCHITECTURES = Arrays.asList("amd64", "x86_64", "aarch64", "arm");
+
+    // generic Linux ABI constants
+    private static final int O_RDWR = 02;
+    private static final int O_NOCTTY = 0400;
+    private static final int O_NONBLOCK = 04000;
+    private static final int TCSANOW = 0;
+
+    // struct termios: 4x tcflag_t (uint32), c_line, c_cc[32], c_ispeed, c_ospeed
+    private static final int TERMIOS_SIZE = 60;
+    private static final int OFFSET_C_CC = 17;
+    private static final int VTIME = 5;
+    private static final int VMIN = 6;
+
+    private static final Native NATIVE = Native.tryLoad();
+
+    private Termios() {
+        // utility class; hide constructor
+    }
+
+    /**
+     * Checks if serial lines can be configured in-process on the current platform.
+     *
+     * @return true if available, false if not
+     */
+    public static boolean isAvailable() {
+        return NATIVE != null;
+    }
+
+    /**
+     * Puts the given serial line into raw mode without echo; reads block until at least one byte is available
+     * ({@code VMIN=1}, {@code VTIME=0}).
+     *
+     * @param deviceNode serial device to configure
+     * @throws UnsupportedOperationException if not available, see {@link #isAvailable()}
+     */
+    public static void makeRaw(File deviceNode) {
+        if (NATIVE == null) {
+            throw new UnsupportedOperationException("in-process termios is not available on this platform");
+        }
+
+        NATIVE.makeRaw(deviceNode);
+    }
+
+    private static class Native {
+        private final MethodHandle open;
+        private final MethodHandle close;
+        private final MethodHandle tcgetattr;
+        private final MethodHandle tcsetattr;
+        private final MethodHandle cfmakeraw;
+
+        private final StructLayout callStateLayout = Linker.Option.captureStateLayout();
+        private final VarHandle errno = callStateLayout.varHandle(StructLayout.PathElement.groupElement("errno"));
+
+        private Native() {
+            Linker linker = Linker.nativeLinker();
+            SymbolLookup libc = linker.defaultLookup();
+            Linker.Option captureErrno = Linker.Option.captureCallState("errno");
+
+            open = linker.downcallHandle(find(libc, "open"), FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT), captureErrno);
+            close = linker.downcallHandle(find(libc, "close"), FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+            tcgetattr = linker.downcallHandle(find(libc, "tcgetattr"), FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS), captureErrno);
+            tcsetattr = linker.downcallHandle(find(libc, "tcsetattr"), FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS), captureErrno);
+            cfmakeraw = linker.downcallHandle(find(libc, "cfmakeraw"), FunctionDescriptor.ofVoid(ADDRESS));
+        }
+
+        static Native tryLoad() {
+            if (!OperatingSystem.isLinux()) {
+                return null;
+            }
+
+            String arch = System.getProperty("os.arch");
+            if (!SUPPORTED_ARCHITECTURES.contains(arch)) {
+                LOGGER.debug("in-process termios is not supported on architecture {}", arch);
+                return null;
+            }
+
+            try {
+                return new Native();
+            } catch (Throwable ex) {
+                // also covers native access being restricted
+                LOGGER.debug("in-process termios is not available", ex);
+                return null;
+            }
+        }
+
+        private static MemorySegment find(SymbolLookup lookup, String name) {
+            return lookup.find(name).orElseThrow(() -> new IllegalStateException("symbol not found: " + name));
+        }
+
+        void makeRaw(File deviceNode) {
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment callState = arena.allocate(callStateLayout);
+                MemorySegment path = arena.allocateFrom(deviceNode.getAbsolutePath());
+
+                int fd = (int) open.invokeExact(callState, path, O_RDWR | O_NOCTTY | O_NONBLOCK);
+                if (fd < 0) {
+                    throw new TermiosFailed("failed to open " + deviceNode + ", errno " + errno(callState));
+                }
+
+                try {
+                    MemorySegment termios = arena.allocate(TERMIOS_SIZE);
+
+                    if ((int) tcgetattr.invokeExact(callState, fd, termios) != 0) {
+                        throw new TermiosFailed("tcgetattr failed on " + deviceNode + ", errno " + errno(callState));
+                    }
+
+                    cfmakeraw.invokeExact(termios);
+                    termios.set(JAVA_BYTE, OFFSET_C_CC + VMIN, (byte) 1);
+                    termios.set(JAVA_BYTE, OFFSET_C_CC + VTIME, (byte) 0);
+
+                    if ((int) tcsetattr.invokeExact(callState, fd, TCSANOW, termios) != 0) {
+                        throw new TermiosFailed("tcsetattr failed on " + deviceNode + ", errno " + errno(callState));
+                    }
+                } finally {
+                    int res = (int) close.invokeExact(fd);
+                    if (res != 0) {
+                        LOGGER.debug("failed to close {} after configuration", deviceNode);
+                    }
+                }
+            } catch (TermiosFailed ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new TermiosFailed("failed to configure " + deviceNode, ex);
+            }
+        }
+
+        private int errno(MemorySegment callState) {
+            return (int) errno.get(callState, 0L);
+        }
+    }
+
+    private static class TermiosFailed extends RuntimeException {
+        TermiosFailed(String msg) {
+            super(msg);
+        }
+
+        TermiosFailed(String msg, Throwable cause) {
+            super(msg, cause);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs {@link ChannelDeviceIO} on a named pipe instead of a serial device. Opening a FIFO for reading and writing at
+ * once does not block on Linux, so the test holds such a handle as the remote end before the device gets opened.
+ */
+@EnabledOnOs(OS.LINUX)
+class ChannelDeviceIOTest {
+    private static final int NUM_WAKEUPS = 50;
+
+    @TempDir
+    Path tempDir;
+
+    private RandomAccessFile remote;
+    private ChannelDeviceIO io;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        File fifo = tempDir.resolve("device").toFile();
+        Process mkfifo = new ProcessBuilder("mkfifo", fifo.getAbsolutePath()).start();
+        assertThat(mkfifo.waitFor(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(mkfifo.exitValue()).isZero();
+
+        remote = new RandomAccessFile(fifo, "rw");
+        io = new ChannelDeviceIO(fifo);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        io.tryClose();
+        remote.close();
+    }
+
+    @Test
+    void testReadAtLeastOneInto_blockedReader_medianWakeupBelowOneMillisecond() throws Exception {
+        // arrange
+        BlockingQueue<Long> readNanos = new ArrayBlockingQueue<>(NUM_WAKEUPS);
+        Thread reader = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            while (true) {
+                buffer.clear();
+                if (io.readAtLeastOneInto(buffer) < 0) {
+                    return;
+                }
+                readNanos.add(System.nanoTime());
+            }
+        });
+        reader.start();
+
+        long[] wakeupNanos = new long[NUM_WAKEUPS];
+
+        // act
+        for (int i = 0; i < NUM_WAKEUPS; i++) {
+            // give the reader time to block again
+            Thread.sleep(2);
+
+            long writtenNanos = System.nanoTime();
+            remote.write(i);
+
+            Long read = readNanos.poll(5, TimeUnit.SECONDS);
+            assertThat(read).isNotNull();
+            wakeupNanos[i] = read - writtenNanos;
+        }
+
+        io.tryClose();
+        reader.join(5000);
+
+        // assert
+        Arrays.sort(wakeupNanos);
+        assertThat(wakeupNanos[NUM_WAKEUPS / 2]).isLessThan(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(reader.isAlive()).describedAs("reader released by close").isFalse();
+    }
+}
@@ -6,14 +6,48 @@ import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import de.energiequant.apputils.misc.DisclaimerState;
 
 class ConfigurationTest {
+    private static final USBDeviceId USB_WITH_SERIAL = USBDeviceId.builder()
+                                                                  .setVendor(0x2341)
+                                                                  .setProduct(0x0042)
+                                                                  .setSerial("75833353035351D0E1D1")
+                                                                  .build();
+
+    private static final USBDeviceId USB_WITHOUT_SERIAL = USBDeviceId.builder()
+                                                                     .setVendor(0x1A86)
+                                                                     .setProduct(0x7523)
+                                                                     .build();
+
+    private static final Configuration.KnownIdentity IDENTITY = new Configuration.KnownIdentity(
+        ModuleId.builder()
+                .setType("MobiFlight Mega")
+                .setName("DCP")
+                .setSerial("SN-1234567890")
+                .build(),
+        "2.5.1"
+    );
+
+    @TempDir
+    Path tempDir;
+
     @Test
     void testCreateFromDefaults_always_doesNotFail() {
         // arrange
@@ -44,4 +78,215 @@ class ConfigurationTest {
         when(disclaimerState.getDisclaimerHash()).thenReturn("1234");
         return disclaimerState;
     }
+
+    private Configuration saveAndLoad(Configuration config) {
+        File file = tempDir.resolve("config.properties").toFile();
+        config.setSaveLocation(file);
+        assertThat(config.trySave()).isTrue();
+        return Configuration.loadProperties(file, mockDisclaimerState());
+    }
+
+    private Properties saveAndReadProperties(Configuration config) throws Exception {
+        File file = tempDir.resolve("config.properties").toFile();
+        config.setSaveLocation(file);
+        assertThat(config.trySave()).isTrue();
+
+        Properties properties = new Properties();
+        try (FileInputStream fis = new FileInputStream(file)) {
+            properties.load(fis);
+        }
+        return properties;
+    }
+
+    @Test
+    void testPutKnownIdentity_usbSerial_survivesSaveAndLoad() {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+        config.putKnownIdentity(USB_WITH_SERIAL, IDENTITY);
+
+        // act
+        Configuration result = saveAndLoad(config);
+
+        // assert
+        assertThat(result.getKnownIdentity(USB_WITH_SERIAL)).contains(IDENTITY);
+    }
+
+    @Test
+    void testPutKnownIdentity_usbSerial_isSavedAsIdentityProperties() throws Exception {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+        config.putKnownIdentity(USB_WITH_SERIAL, IDENTITY);
+
+        // act
+        Properties result = saveAndReadProperties(config);
+
+        // assert
+        assertThat(result).containsEntry("identities.usb.0.vendorId", "2341")
+                          .containsEntry("identities.usb.0.productId", "0042")
+                          .containsEntry("identities.usb.0.serialId", "75833353035351D0E1D1")
+                          .containsEntry("identities.usb.0.type", "MobiFlight Mega")
+                          .containsEntry("identities.usb.0.name", "DCP")
+                          .containsEntry("identities.usb.0.serial", "SN-1234567890")
+                          .containsEntry("identities.usb.0.version", "2.5.1");
+    }
+
+    @Test
+    void testPutKnownIdentity_noUsbSerial_returnsFalse() {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+
+        // act
+        boolean result = config.putKnownIdentity(USB_WITHOUT_SERIAL, IDENTITY);
+
+        // assert
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    void testGetKnownIdentity_noUsbSerial_returnsEmpty() {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+        config.putKnownIdentity(USB_WITHOUT_SERIAL, IDENTITY);
+
+        // act
+        Optional<Configuration.KnownIdentity> result = config.getKnownIdentity(USB_WITHOUT_SERIAL);
+
+        // assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void testPutKnownIdentity_concurrentlySavedByMultipleThreads_savesAllIdentities() throws Exception {
+        // arrange
+        int numThreads = 8;
+        int numIdentitiesPerThread = 20;
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+        File file = tempDir.resolve("config.properties").toFile();
+        config.setSaveLocation(file);
+
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            int threadIndex = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    startSignal.await();
+                    for (int j = 0; j < numIdentitiesPerThread; j++) {
+                        config.putKnownIdentity(usbWithSerial("T" + threadIndex + "-" + j), IDENTITY);
+                        assertThat(config.trySave()).isTrue();
+                    }
+                } catch (Throwable ex) {
+                    failures.add(ex);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // act
+        startSignal.countDown();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        // assert
+        assertThat(failures).isEmpty();
+        Configuration result = Configuration.loadProperties(file, mockDisclaimerState());
+        for (int i = 0; i < numThreads; i++) {
+            for (int j = 0; j < numIdentitiesPerThread; j++) {
+                assertThat(result.getKnownIdentity(usbWithSerial("T" + i + "-" + j))).contains(IDENTITY);
+            }
+        }
+    }
+
+    private static USBDeviceId usbWithSerial(String serial) {
+        return USBDeviceId.builder()
+                          .setVendor(0x2341)
+                          .setProduct(0x0042)
+                          .setSerial(serial)
+                          .build();
+    }
+
+    @Test
+    void testCommunicationSettings_defaults_doNotUseKnownIdentities() {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+
+        // act
+        boolean result = config.getCommunicationSettings().shouldUseKnownIdentities();
+
+        // assert
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    void testCommunicationSettings_defaults_areNotSaved() throws Exception {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+
+        // act
+        Properties result = saveAndReadProperties(config);
+
+        // assert
+        assertThat(result.stringPropertyNames()).noneMatch(x -> x.startsWith("communication."));
+    }
+
+    @Test
+    void testCommunicationSettings_allDeviating_surviveSaveAndLoad() {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+        CommunicationSettings settings = CommunicationSettings.builder()
+                                                              .setDeviceIOImplementation(DeviceIO.Implementation.STREAM)
+                                                              .setExecutionMode(DeviceCommunicator.ExecutionMode.SHARED_REACTOR)
+                                                              .setSendQueueCapacity(64)
+                                                              .setWriteCoalescingWindow(Duration.ofMillis(2))
+                                                              .setOutputBytesPerSecond(2000)
+                                                              .setOutputBurstBytes(32)
+                                                              .setOutputMessagesPerSecond(100)
+                                                              .setOutputBurstMessages(4)
+                                                              .setKeepProbeConnection(true)
+                                                              .setUseKnownIdentities(true)
+                                                              .setTrafficCaptureDirectory(tempDir.resolve("captures").toFile())
+                                                              .build();
+        config.setCommunicationSettings(settings);
+
+        // act
+        Configuration result = saveAndLoad(config);
+
+        // assert
+        assertThat(result.getCommunicationSettings()).isEqualTo(settings);
+    }
+
+    @Test
+    void testInputProperties_set_surviveSaveAndLoad() {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+        Properties inputProperties = new Properties();
+        inputProperties.setProperty("encoder.aggregationMillis", "50");
+        inputProperties.setProperty("encoder.acceleration", "15:2, 30:4");
+        inputProperties.setProperty("autoRepeat", "CCP3_ZOOM");
+        config.setInputProperties(inputProperties);
+
+        // act
+        Configuration result = saveAndLoad(config);
+
+        // assert
+        assertThat(result.getInputProperties()).isEqualTo(inputProperties);
+    }
+
+    @Test
+    void testInputProperties_set_areSavedWithPrefix() throws Exception {
+        // arrange
+        Configuration config = Configuration.createFromDefaults(mockDisclaimerState());
+        Properties inputProperties = new Properties();
+        inputProperties.setProperty("encoder.aggregationMillis", "50");
+        config.setInputProperties(inputProperties);
+
+        // act
+        Properties result = saveAndReadProperties(config);
+
+        // assert
+        assertThat(result.getProperty("input.encoder.aggregationMillis")).isEqualTo("50");
+    }
 }
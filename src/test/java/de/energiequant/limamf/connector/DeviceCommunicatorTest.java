@@ -0,0 +1,635 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.DigitalInputMultiplexerChangeMessage;
+import de.energiequant.limamf.compat.protocol.GetInfoMessage;
+import de.energiequant.limamf.compat.protocol.SetPinMessage;
+
+class DeviceCommunicatorTest {
+    private static final String PROTOCOL_VERSION = "2.5.1";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final FakeDeviceIO io = new FakeDeviceIO();
+    private final List<CommandMessage> received = new CopyOnWriteArrayList<>();
+    private DeviceCommunicator communicator;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        io.unblockWrites();
+        if (communicator != null) {
+            communicator.shutdownAsync();
+            communicator.waitForShutdown(Duration.ofSeconds(5));
+        }
+    }
+
+    private DeviceCommunicator start(CommunicationSettings.Builder settings) {
+        communicator = new DeviceCommunicator(io, PROTOCOL_VERSION, settings.build(), (c, msg) -> {
+        });
+        return communicator;
+    }
+
+    private static CommunicationSettings.Builder settings() {
+        return CommunicationSettings.builder().setWriteCoalescingWindow(Duration.ZERO);
+    }
+
+    @Test
+    void testSend_queueFull_dropsMessageWithoutThrowing() throws Exception {
+        // arrange
+        start(settings().setSendQueueCapacity(4));
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+        for (int i = 0; i < 4; i++) {
+            communicator.send(new GetInfoMessage());
+        }
+
+        // act
+        assertThatCode(() -> communicator.send(new GetInfoMessage())).doesNotThrowAnyException();
+
+        // assert
+        assertThat(communicator.getStatistics().getDroppedMessageCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSendTracked_queueFull_failsFuture() throws Exception {
+        // arrange
+        start(settings().setSendQueueCapacity(4));
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+        for (int i = 0; i < 4; i++) {
+            communicator.send(new GetInfoMessage());
+        }
+
+        // act
+        CompletableFuture<Void> result = communicator.sendTracked(new GetInfoMessage());
+
+        // assert
+        assertThat(result).isCompletedExceptionally();
+        assertThat(communicator.getStatistics().getDroppedMessageCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSend_queueDrainedAfterOverflow_sendsAllQueuedMessages() throws Exception {
+        // arrange
+        start(settings().setSendQueueCapacity(4));
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+        for (int i = 0; i < 5; i++) {
+            communicator.send(new GetInfoMessage());
+        }
+
+        // act
+        io.unblockWrites();
+        List<String> writes = io.awaitWrites(2, TIMEOUT_MILLIS);
+
+        // assert
+        assertThat(writes).containsExactly("9;", "9;9;9;9;");
+    }
+
+    private static SetPinMessage setPin(int pin, int value) {
+        return SetPinMessage.builder().manipulatingPin(pin).setPwmDutyCycleValue(value).build();
+    }
+
+    @Test
+    void testSendReplacing_pendingMessageForSameKey_sendsReplacementAtEndOfQueue() throws Exception {
+        // arrange
+        start(settings());
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+
+        communicator.sendReplacing(13, setPin(13, 10));
+        communicator.sendReplacing(7, setPin(7, 20));
+
+        // act
+        communicator.sendReplacing(13, setPin(13, 30));
+
+        // assert
+        io.unblockWrites();
+        assertThat(io.awaitWrites(2, TIMEOUT_MILLIS)).containsExactly("9;", "2,7,20;2,13,30;");
+        assertThat(communicator.getStatistics().getReplacedMessageCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSendReplacingTracked_replaced_completesWithReplacement() throws Exception {
+        // arrange
+        start(settings());
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+
+        CompletableFuture<Void> replaced = communicator.sendReplacingTracked(13, setPin(13, 10));
+        CompletableFuture<Void> replacement = communicator.sendReplacingTracked(13, setPin(13, 30));
+
+        // act
+        io.unblockWrites();
+
+        // assert
+        replaced.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        replacement.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(io.getWrites()).containsExactly("9;", "2,13,30;");
+    }
+
+    @Test
+    void testSendReplacing_previousMessageAlreadyBeingWritten_sendsBoth() throws Exception {
+        // arrange
+        start(settings());
+        io.blockWrites();
+        communicator.sendReplacing(13, setPin(13, 10));
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+
+        // act
+        communicator.sendReplacing(13, setPin(13, 30));
+
+        // assert
+        io.unblockWrites();
+        assertThat(io.awaitWrites(2, TIMEOUT_MILLIS)).containsExactly("2,13,10;", "2,13,30;");
+        assertThat(communicator.getStatistics().getReplacedMessageCount()).isZero();
+    }
+
+    @Test
+    void testSendReplacingTracked_concurrentProducers_sendsValuesInOrderEndingWithLatest() throws Exception {
+        // arrange
+        int numProducers = 4;
+        int numValues = 256;
+        start(settings().setSendQueueCapacity(numProducers * numValues));
+
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < numProducers; i++) {
+            int pin = i;
+            Thread producer = new Thread(() -> {
+                try {
+                    startSignal.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                for (int value = 0; value < numValues; value++) {
+                    CompletableFuture<Void> future = communicator.sendReplacingTracked(pin, setPin(pin, value));
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        // act
+        startSignal.countDown();
+        for (Thread producer : producers) {
+            producer.join(TIMEOUT_MILLIS);
+        }
+
+        // assert
+        synchronized (futures) {
+            assertThat(futures).hasSize(numProducers * numValues);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        int[] lastValues = new int[numProducers];
+        Arrays.fill(lastValues, -1);
+        Matcher matcher = Pattern.compile("2,(\\d+),(\\d+);").matcher(String.join("", io.getWrites()));
+        while (matcher.find()) {
+            int pin = Integer.parseInt(matcher.group(1));
+            int value = Integer.parseInt(matcher.group(2));
+            assertThat(value).describedAs("value sent for pin %d", pin).isGreaterThan(lastValues[pin]);
+            lastValues[pin] = value;
+        }
+        assertThat(lastValues).containsOnly(numValues - 1);
+    }
+
+    @Test
+    void testSend_withinCoalescingWindow_writesAllMessagesAtOnce() throws Exception {
+        // arrange
+        start(settings().setWriteCoalescingWindow(Duration.ofMillis(100)));
+
+        // act
+        communicator.send(new GetInfoMessage());
+        communicator.send(new GetInfoMessage());
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(io.getWrites()).containsExactly("9;9;9;");
+        assertThat(communicator.getStatistics().getMaxMessagesPerFlush()).isEqualTo(3);
+    }
+
+    @Test
+    void testSend_coalescingWindow_delaysWriteByWindow() throws Exception {
+        // arrange
+        start(settings().setWriteCoalescingWindow(Duration.ofMillis(100)));
+        long startNanos = System.nanoTime();
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(System.nanoTime() - startNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void testSend_defaultSettings_writesWithoutWaitingForFurtherMessages() throws Exception {
+        // arrange
+        start(CommunicationSettings.builder());
+        long startNanos = System.nanoTime();
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(System.nanoTime() - startNanos).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(io.getWrites()).containsExactly("9;");
+    }
+
+    @Test
+    void testSendTracked_written_completesAfterWrite() throws Exception {
+        // arrange
+        start(settings());
+
+        // act
+        CompletableFuture<Void> result = communicator.sendTracked(new GetInfoMessage());
+
+        // assert
+        result.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(io.getWrites()).containsExactly("9;");
+    }
+
+    @Test
+    void testSendTracked_writeFails_completesExceptionally() throws Exception {
+        // arrange
+        start(settings());
+        io.failWrites();
+
+        // act
+        CompletableFuture<Void> result = communicator.sendTracked(new GetInfoMessage());
+
+        // assert
+        assertThatThrownBy(() -> result.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+    }
+
+    @Test
+    void testWaitForShutdown_readFails_returnsTrue() throws Exception {
+        // arrange
+        start(settings());
+
+        // act
+        io.failReads();
+
+        // assert
+        assertThat(communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        assertThat(communicator.isShutdown()).isTrue();
+    }
+
+    @Test
+    void testSendTracked_shutdownWhileQueued_completesExceptionally() throws Exception {
+        // arrange
+        start(settings());
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+        CompletableFuture<Void> result = communicator.sendTracked(new GetInfoMessage());
+
+        // act
+        communicator.shutdownAsync();
+        io.unblockWrites();
+
+        // assert
+        assertThatThrownBy(() -> result.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void testFlush_messagesWritten_returnsTrue() throws Exception {
+        // arrange
+        start(settings());
+        communicator.send(new GetInfoMessage());
+        communicator.send(new GetInfoMessage());
+
+        // act
+        boolean result = communicator.flush(Duration.ofMillis(TIMEOUT_MILLIS));
+
+        // assert
+        assertThat(result).isTrue();
+        assertThat(String.join("", io.getWrites())).isEqualTo("9;9;");
+    }
+
+    @Test
+    void testFlush_writeBlocked_returnsFalseAfterTimeout() throws Exception {
+        // arrange
+        start(settings());
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+        long startNanos = System.nanoTime();
+
+        // act
+        boolean result = communicator.flush(Duration.ofMillis(50));
+
+        // assert
+        assertThat(result).isFalse();
+        assertThat(System.nanoTime() - startNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void testFlush_writeFails_returnsFalse() throws Exception {
+        // arrange
+        start(settings());
+        io.blockWrites();
+        communicator.send(new GetInfoMessage());
+        assertThat(io.awaitBlockedWrite(TIMEOUT_MILLIS)).isTrue();
+        io.failWrites();
+        communicator.send(new GetInfoMessage());
+        CompletableFuture<Boolean> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return communicator.flush(Duration.ofMillis(TIMEOUT_MILLIS));
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        // act
+        io.unblockWrites();
+
+        // assert
+        assertThat(result.get(TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    void testFlush_afterShutdown_returnsFalse() throws Exception {
+        // arrange
+        start(settings());
+        communicator.shutdownAsync();
+        communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+
+        // act
+        boolean result = communicator.flush(Duration.ofMillis(TIMEOUT_MILLIS));
+
+        // assert
+        assertThat(result).isFalse();
+    }
+
+    private DeviceCommunicator stepped(CommunicationSettings.Builder settings) {
+        return DeviceCommunicator.createStepped(io, PROTOCOL_VERSION, settings.build(), (c, msg) -> received.add(msg));
+    }
+
+    @Test
+    void testSendStep_nothingQueued_returnsIdle() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(System.nanoTime());
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.IDLE);
+        assertThat(io.getWrites()).isEmpty();
+    }
+
+    @Test
+    void testSendStep_messageQueued_writesAndReturnsIdle() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        stepped.send(new GetInfoMessage());
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(System.nanoTime());
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.IDLE);
+        assertThat(io.getWrites()).containsExactly("9;");
+    }
+
+    @Test
+    void testSendStep_withinCoalescingWindow_returnsScheduledUntilEndOfWindow() {
+        // arrange
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        DeviceCommunicator stepped = stepped(settings().setWriteCoalescingWindow(Duration.ofNanos(windowNanos)));
+        long now = System.nanoTime();
+        stepped.send(new GetInfoMessage());
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(now);
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.SCHEDULED);
+        assertThat(stepped.getSendWakeupNanos()).isEqualTo(now + windowNanos);
+        assertThat(io.getWrites()).isEmpty();
+    }
+
+    @Test
+    void testSendStep_endOfCoalescingWindow_writesAllQueuedMessages() {
+        // arrange
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        DeviceCommunicator stepped = stepped(settings().setWriteCoalescingWindow(Duration.ofNanos(windowNanos)));
+        long now = System.nanoTime();
+        stepped.send(new GetInfoMessage());
+        stepped.sendStep(now);
+        stepped.send(new GetInfoMessage());
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(now + windowNanos);
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.IDLE);
+        assertThat(io.getWrites()).containsExactly("9;9;");
+    }
+
+    @Test
+    void testSendStep_outputRateExceeded_writesBurstAndReturnsScheduled() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings().setOutputBytesPerSecond(1000).setOutputBurstBytes(4));
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            stepped.send(new GetInfoMessage());
+        }
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(now);
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.SCHEDULED);
+        assertThat(stepped.getSendWakeupNanos()).isGreaterThan(now);
+        assertThat(io.getWrites()).containsExactly("9;9;");
+        assertThat(stepped.getStatistics().getThrottleCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSendStep_throttleDelayPassed_writesHeldBackMessage() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings().setOutputBytesPerSecond(1000).setOutputBurstBytes(4));
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            stepped.send(new GetInfoMessage());
+        }
+        stepped.sendStep(now);
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(stepped.getSendWakeupNanos());
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.IDLE);
+        assertThat(io.getWrites()).containsExactly("9;9;", "9;");
+    }
+
+    @Test
+    void testSendReplacing_replacementDroppedOnFullQueue_previousMessageCanStillBeReplaced() {
+        // arrange
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        DeviceCommunicator stepped = stepped(settings().setSendQueueCapacity(4).setWriteCoalescingWindow(Duration.ofNanos(windowNanos)));
+        long now = System.nanoTime();
+        stepped.send(new GetInfoMessage());
+        stepped.sendReplacing(13, setPin(13, 10));
+        stepped.send(new GetInfoMessage());
+        stepped.send(new GetInfoMessage());
+        stepped.sendReplacing(13, setPin(13, 20));
+
+        // first message is taken from queue to start coalescing, making room for another message
+        stepped.sendStep(now);
+
+        // act
+        stepped.sendReplacing(13, setPin(13, 30));
+
+        // assert
+        stepped.sendStep(now + windowNanos);
+        assertThat(io.getWrites()).containsExactly("9;9;9;2,13,30;");
+        assertThat(stepped.getStatistics().getDroppedMessageCount()).isEqualTo(1);
+        assertThat(stepped.getStatistics().getReplacedMessageCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSendStep_shutdown_returnsTerminatedAndFailsQueuedMessages() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        CompletableFuture<Void> future = stepped.sendTracked(new GetInfoMessage());
+        stepped.shutdownAsync();
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(System.nanoTime());
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.TERMINATED);
+        assertThat(future).isCompletedExceptionally();
+        assertThat(stepped.sendStep(System.nanoTime())).isEqualTo(DeviceCommunicator.SendStepResult.TERMINATED);
+        assertThat(io.getWrites()).isEmpty();
+    }
+
+    @Test
+    void testSendStep_writeFails_returnsTerminated() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        CompletableFuture<Void> future = stepped.sendTracked(new GetInfoMessage());
+        io.failWrites();
+
+        // act
+        DeviceCommunicator.SendStepResult result = stepped.sendStep(System.nanoTime());
+
+        // assert
+        assertThat(result).isEqualTo(DeviceCommunicator.SendStepResult.TERMINATED);
+        assertThat(future).isCompletedExceptionally();
+        assertThat(stepped.isShutdown()).isTrue();
+    }
+
+    @Test
+    void testReceiveStep_noData_returnsZero() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        // act
+        int result = stepped.receiveStep(buffer);
+
+        // assert
+        assertThat(result).isZero();
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void testReceiveStep_incompleteFrame_waitsForRemainder() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        io.receive("30,Mux,3");
+
+        // act
+        int result = stepped.receiveStep(buffer);
+
+        // assert
+        assertThat(result).isEqualTo(8);
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void testReceiveStep_frameCompleted_handsMessageToCallback() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        io.receive("30,Mux,3");
+        stepped.receiveStep(buffer);
+        io.receive(",0;");
+
+        // act
+        int result = stepped.receiveStep(buffer);
+
+        // assert
+        assertThat(result).isEqualTo(3);
+        assertThat(received).singleElement().isInstanceOf(DigitalInputMultiplexerChangeMessage.class);
+    }
+
+    @Test
+    void testReceiveStep_deviceClosed_returnsMinusOneAndShutsDown() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        io.tryClose();
+
+        // act
+        int result = stepped.receiveStep(buffer);
+
+        // assert
+        assertThat(result).isEqualTo(-1);
+        assertThat(stepped.isShutdown()).isTrue();
+        assertThat(stepped.receiveStep(buffer)).isEqualTo(-1);
+        assertThat(stepped.sendStep(System.nanoTime())).isEqualTo(DeviceCommunicator.SendStepResult.TERMINATED);
+    }
+
+    @Test
+    void testReceiveStep_shutdownRequested_returnsMinusOne() {
+        // arrange
+        DeviceCommunicator stepped = stepped(settings());
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        io.receive("30,Mux,3,0;");
+        stepped.shutdownAsync();
+
+        // act
+        int result = stepped.receiveStep(buffer);
+
+        // assert
+        assertThat(result).isEqualTo(-1);
+        assertThat(received).isEmpty();
+    }
+}
@@ -0,0 +1,218 @@
+package de.energiequant.limamf.connector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link DeviceIO} for tests, recording each write call separately and reading whatever has been queued by
+ * {@link #receive(String)}. Writes can be held back or made to fail and reads can be made to fail to simulate a slow or
+ * broken device.
+ */
+class FakeDeviceIO extends DeviceIO {
+    private static final byte[] CLOSED = new byte[0];
+
+    private final LinkedBlockingQueue<byte[]> input = new LinkedBlockingQueue<>();
+    private final Object inputLock = new Object();
+    private byte[] partialInput;
+    private int partialInputOffset;
+
+    private final List<String> writes = new ArrayList<>();
+    private final StringBuilder pendingStringOutput = new StringBuilder();
+    private boolean writesBlocked = false;
+    private final AtomicBoolean writesFailing = new AtomicBoolean();
+    private final AtomicBoolean readsFailing = new AtomicBoolean();
+    private boolean writeWaiting = false;
+
+    FakeDeviceIO() {
+        super("fake");
+    }
+
+    void receive(String s) {
+        input.add(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    synchronized void blockWrites() {
+        writesBlocked = true;
+    }
+
+    synchronized void unblockWrites() {
+        writesBlocked = false;
+        notifyAll();
+    }
+
+    void failWrites() {
+        writesFailing.set(true);
+    }
+
+    /**
+     * Makes all further reads fail, including a read currently waiting for input.
+     */
+    void failReads() {
+        readsFailing.set(true);
+        input.add(CLOSED);
+    }
+
+    /**
+     * Waits until a write call is being held back by {@link #blockWrites()}.
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true if a write is waiting, false if timed out
+     */
+    synchronized boolean awaitBlockedWrite(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!writeWaiting) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until at least the given number of write calls have completed.
+     *
+     * @param numWrites     number of write calls to wait for
+     * @param timeoutMillis maximum time to wait
+     * @return all writes recorded so far, each entry holding the data of one write call
+     */
+    synchronized List<String> awaitWrites(int numWrites, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (writes.size() < numWrites) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+        return getWrites();
+    }
+
+    synchronized List<String> getWrites() {
+        return new ArrayList<>(writes);
+    }
+
+    @Override
+    public boolean tryClose() {
+        closing.set(true);
+        input.add(CLOSED);
+        synchronized (this) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void write(String s) {
+        pendingStringOutput.append(s);
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        if (writesFailing.get()) {
+            throw new UncheckedIOException(new IOException("simulated write failure"));
+        }
+
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        synchronized (this) {
+            writeWaiting = true;
+            notifyAll();
+            try {
+                while (writesBlocked && !closing.get()) {
+                    wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new IOException("interrupted"));
+            } finally {
+                writeWaiting = false;
+            }
+
+            if (closing.get()) {
+                throw new UncheckedIOException(new IOException("closed"));
+            }
+
+            writes.add(new String(bytes, StandardCharsets.ISO_8859_1));
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (pendingStringOutput.length() > 0) {
+            writes.add(pendingStringOutput.toString());
+            pendingStringOutput.setLength(0);
+            notifyAll();
+        }
+    }
+
+    @Override
+    public int readAvailableInto(char[] buffer) {
+        throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public int readAtLeastOneInto(char[] buffer) {
+        throw new UnsupportedOperationException("not implemented");
+    }
+
+    @Override
+    public int readAtLeastOneInto(ByteBuffer buffer) {
+        return read(buffer, true);
+    }
+
+    @Override
+    public int readAvailableInto(ByteBuffer buffer) {
+        return read(buffer, false);
+    }
+
+    private int read(ByteBuffer buffer, boolean block) {
+        synchronized (inputLock) {
+            return readLocked(buffer, block);
+        }
+    }
+
+    private int readLocked(ByteBuffer buffer, boolean block) {
+        if (partialInput == null) {
+            try {
+                partialInput = block ? input.take() : input.poll(0, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+            partialInputOffset = 0;
+
+            if (partialInput == null) {
+                return 0;
+            }
+        }
+
+        if (readsFailing.get()) {
+            throw new UncheckedIOException(new IOException("simulated read failure"));
+        }
+
+        if (partialInput == CLOSED) {
+            // keep reporting the end of stream
+            return -1;
+        }
+
+        int length = Math.min(buffer.remaining(), partialInput.length - partialInputOffset);
+        buffer.put(partialInput, partialInputOffset, length);
+        partialInputOffset += length;
+        if (partialInputOffset >= partialInput.length) {
+            partialInput = null;
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,108 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+
+class FrameDecoderTest {
+    private static final String SEPARATOR = Character.toString(CommandMessage.COMMAND_SEPARATOR);
+    private static final String ESCAPE = Character.toString(CommandMessage.ESCAPE_CHARACTER);
+
+    @Test
+    void testDecode_multipleFrames_handlesAllFramesInOrder() {
+        // arrange
+        List<String> frames = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder(frames::add);
+
+        // act
+        decoder.decode(bytes("1,a" + SEPARATOR + "2,b" + SEPARATOR + "3,c" + SEPARATOR));
+
+        // assert
+        assertThat(frames).containsExactly("1,a", "2,b", "3,c");
+    }
+
+    @Test
+    void testDecode_frameSplitAcrossCalls_handlesFrameOnceComplete() {
+        // arrange
+        List<String> frames = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder(frames::add);
+        decoder.decode(bytes("10,abc"));
+
+        // act
+        decoder.decode(bytes("def" + SEPARATOR));
+
+        // assert
+        assertThat(frames).containsExactly("10,abcdef");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"\r\n", "\n", "\r", "\n\r\n"})
+    void testDecode_leadingLineBreaks_areOmitted(String lineBreaks) {
+        // arrange
+        List<String> frames = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder(frames::add);
+
+        // act
+        decoder.decode(bytes(lineBreaks + "1,a" + SEPARATOR));
+
+        // assert
+        assertThat(frames).containsExactly("1,a");
+    }
+
+    @Test
+    void testDecode_escapedSeparator_isRetainedInFrame() {
+        // arrange
+        List<String> frames = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder(frames::add);
+
+        // act
+        decoder.decode(bytes("1,a" + ESCAPE + SEPARATOR + "b" + SEPARATOR));
+
+        // assert
+        assertThat(frames).containsExactly("1,a" + ESCAPE + SEPARATOR + "b");
+    }
+
+    @Test
+    void testDecode_repeatedFrame_returnsSameInstance() {
+        // arrange
+        List<String> frames = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder(frames::add);
+
+        // act
+        decoder.decode(bytes("6,enc,2" + SEPARATOR + "6,enc,2" + SEPARATOR));
+
+        // assert
+        assertThat(frames.get(1)).isSameAs(frames.get(0));
+    }
+
+    @Test
+    void testDecode_handlerRejects_discardsRemainingInput() {
+        // arrange
+        List<String> frames = new ArrayList<>();
+        FrameDecoder decoder = new FrameDecoder(frame -> {
+            frames.add(frame);
+            return false;
+        });
+        ByteBuffer input = bytes("1,a" + SEPARATOR + "2,b" + SEPARATOR);
+
+        // act
+        decoder.decode(input);
+
+        // assert
+        assertThat(frames).containsExactly("1,a");
+        assertThat(input.hasRemaining()).isFalse();
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
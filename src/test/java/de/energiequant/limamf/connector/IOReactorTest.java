@@ -0,0 +1,102 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.GetInfoMessage;
+
+class IOReactorTest {
+    private static final String PROTOCOL_VERSION = "2.5.1";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final CommunicationSettings SETTINGS = CommunicationSettings.builder()
+                                                                               .setExecutionMode(DeviceCommunicator.ExecutionMode.SHARED_REACTOR)
+                                                                               .build();
+
+    private final List<DeviceCommunicator> communicators = new CopyOnWriteArrayList<>();
+    private final List<CommandMessage> received = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (DeviceCommunicator communicator : communicators) {
+            communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+        }
+    }
+
+    private DeviceCommunicator register(FakeDeviceIO io) {
+        DeviceCommunicator communicator = new DeviceCommunicator(io, PROTOCOL_VERSION, SETTINGS, (c, msg) -> received.add(msg));
+        communicators.add(communicator);
+        return communicator;
+    }
+
+    private static boolean awaitThreadsTerminated(IOReactor reactor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (reactor.hasThreads()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Test
+    void testRegister_communicator_sendsAndReceives() throws Exception {
+        // arrange
+        FakeDeviceIO io = new FakeDeviceIO();
+        DeviceCommunicator communicator = register(io);
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        io.receive("30,Mux,3,0;");
+
+        // assert
+        assertThat(io.getWrites()).containsExactly("9;");
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (received.isEmpty() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        assertThat(received).hasSize(1);
+    }
+
+    @Test
+    void testShutdown_lastCommunicator_terminatesThreads() throws Exception {
+        // arrange
+        DeviceCommunicator first = register(new FakeDeviceIO());
+        DeviceCommunicator second = register(new FakeDeviceIO());
+        assertThat(IOReactor.shared().hasThreads()).isTrue();
+
+        // act
+        assertThat(first.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        boolean stillRunning = IOReactor.shared().hasThreads();
+        assertThat(second.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+
+        // assert
+        assertThat(stillRunning).describedAs("threads running while a communicator is left").isTrue();
+        assertThat(awaitThreadsTerminated(IOReactor.shared())).isTrue();
+    }
+
+    @Test
+    void testRegister_afterThreadsTerminated_restartsThreads() throws Exception {
+        // arrange
+        DeviceCommunicator first = register(new FakeDeviceIO());
+        assertThat(first.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        assertThat(awaitThreadsTerminated(IOReactor.shared())).isTrue();
+        FakeDeviceIO io = new FakeDeviceIO();
+
+        // act
+        DeviceCommunicator second = register(io);
+
+        // assert
+        second.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertThat(io.getWrites()).containsExactly("9;");
+    }
+}
@@ -0,0 +1,84 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class OutputPacerTest {
+    private static final long START = 1_000_000_000L;
+
+    @Test
+    void testReserve_withinBurst_returnsNoDelay() {
+        // arrange
+        OutputPacer pacer = new OutputPacer(settings(1000, 64, 0, 1), START);
+
+        // act
+        long result = pacer.reserve(64, START);
+
+        // assert
+        assertThat(result).isLessThanOrEqualTo(0);
+    }
+
+    @Test
+    void testReserve_exceedingBurst_returnsDelayForExcess() {
+        // arrange
+        OutputPacer pacer = new OutputPacer(settings(1000, 64, 0, 1), START);
+        pacer.reserve(60, START);
+
+        // act
+        long result = pacer.reserve(10, START);
+
+        // assert
+        assertThat(result).isEqualTo(TimeUnit.MILLISECONDS.toNanos(6));
+    }
+
+    @Test
+    void testReserve_afterRefill_returnsNoDelay() {
+        // arrange
+        OutputPacer pacer = new OutputPacer(settings(1000, 64, 0, 1), START);
+        pacer.reserve(64, START);
+
+        // act
+        long result = pacer.reserve(10, START + TimeUnit.MILLISECONDS.toNanos(10));
+
+        // assert
+        assertThat(result).isLessThanOrEqualTo(0);
+    }
+
+    @Test
+    void testReserve_messageRateExceeded_returnsMessageDelay() {
+        // arrange
+        OutputPacer pacer = new OutputPacer(settings(0, 1, 100, 2), START);
+        pacer.reserve(1, START);
+        pacer.reserve(1, START);
+
+        // act
+        long result = pacer.reserve(1, START);
+
+        // assert
+        assertThat(result).isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    void testIsEnabled_unlimited_returnsFalse() {
+        // arrange
+        OutputPacer pacer = new OutputPacer(settings(0, 1, 0, 1), START);
+
+        // act
+        boolean result = pacer.isEnabled();
+
+        // assert
+        assertThat(result).isFalse();
+    }
+
+    private static CommunicationSettings settings(int bytesPerSecond, int burstBytes, int messagesPerSecond, int burstMessages) {
+        return CommunicationSettings.builder()
+                                    .setOutputBytesPerSecond(bytesPerSecond)
+                                    .setOutputBurstBytes(burstBytes)
+                                    .setOutputMessagesPerSecond(messagesPerSecond)
+                                    .setOutputBurstMessages(burstMessages)
+                                    .build();
+    }
+}
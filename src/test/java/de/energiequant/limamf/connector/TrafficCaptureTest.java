@@ -0,0 +1,252 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.energiequant.limamf.compat.protocol.GetInfoMessage;
+import de.energiequant.limamf.compat.protocol.SetPinMessage;
+
+class TrafficCaptureTest {
+    private static final String PROTOCOL_VERSION = "2.5.1";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @TempDir
+    File directory;
+
+    private DeviceCommunicator communicator;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (communicator != null) {
+            communicator.shutdownAsync();
+            communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+        }
+    }
+
+    @Test
+    void testNextRecord_recorded_returnsRecordsInOrder() throws Exception {
+        // arrange
+        File file;
+        try (TrafficRecorder recorder = TrafficRecorder.create(directory, "/dev/ttyACM0", "")) {
+            file = recorder.getFile();
+            recorder.record(TrafficCapture.Direction.SENT, "9;");
+            recorder.record(TrafficCapture.Direction.RECEIVED, "10,Info;".toCharArray(), 0, 8);
+            recorder.record(TrafficCapture.Direction.RECEIVED, ByteBuffer.wrap(bytes("xx6,ENC,2;xx")), 2, 10);
+        }
+
+        TrafficCapture capture = TrafficCapture.open(file);
+
+        // act
+        List<TrafficCapture.Record> records = readAll(capture);
+
+        // assert
+        assertThat(records).extracting(TrafficCapture.Record::getDirection)
+                           .containsExactly(TrafficCapture.Direction.SENT, TrafficCapture.Direction.RECEIVED, TrafficCapture.Direction.RECEIVED);
+        assertThat(records).extracting(x -> new String(x.getData(), StandardCharsets.ISO_8859_1))
+                           .containsExactly("9;", "10,Info;", "6,ENC,2;");
+        assertThat(records).extracting(TrafficCapture.Record::getNanos)
+                           .isSorted();
+    }
+
+    @Test
+    void testRecord_exceedingRegion_recordsAllData() throws Exception {
+        // arrange
+        byte[] data = new byte[300 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        File file;
+        try (TrafficRecorder recorder = TrafficRecorder.create(directory, "device", "")) {
+            file = recorder.getFile();
+
+            // act
+            for (int i = 0; i < 8; i++) {
+                recorder.record(TrafficCapture.Direction.RECEIVED, ByteBuffer.wrap(data), 0, data.length);
+            }
+        }
+
+        // assert
+        List<TrafficCapture.Record> records = readAll(TrafficCapture.open(file));
+        assertThat(records).hasSize(8)
+                           .allSatisfy(x -> assertThat(x.getData()).isEqualTo(data));
+    }
+
+    @Test
+    void testNextRecord_zeroFilledRemainder_endsCapture() throws Exception {
+        // arrange
+        File file;
+        try (TrafficRecorder recorder = TrafficRecorder.create(directory, "device", "")) {
+            file = recorder.getFile();
+            recorder.record(TrafficCapture.Direction.RECEIVED, "6,ENC,2;");
+        }
+
+        // simulates a capture that has not been closed properly
+        appendZeros(file, 4096);
+
+        TrafficCapture capture = TrafficCapture.open(file);
+        capture.nextRecord();
+
+        // act
+        Optional<TrafficCapture.Record> result = capture.nextRecord();
+
+        // assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void testRecord_concurrentThreads_recordsAllDataIntact() throws Exception {
+        // arrange
+        int numThreads = 4;
+        int recordsPerThread = 20000;
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        File file;
+        try (TrafficRecorder recorder = TrafficRecorder.create(directory, "device", "")) {
+            file = recorder.getFile();
+
+            for (int i = 0; i < numThreads; i++) {
+                String data = "thread-" + i + ";";
+                Thread thread = new Thread(() -> {
+                    try {
+                        startSignal.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    for (int j = 0; j < recordsPerThread; j++) {
+                        recorder.record(TrafficCapture.Direction.RECEIVED, data);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+
+            // act
+            startSignal.countDown();
+            for (Thread thread : threads) {
+                thread.join(TIMEOUT_MILLIS);
+            }
+        }
+
+        // assert
+        List<TrafficCapture.Record> records = readAll(TrafficCapture.open(file));
+        assertThat(records).hasSize(numThreads * recordsPerThread);
+        for (int i = 0; i < numThreads; i++) {
+            String expected = "thread-" + i + ";";
+            assertThat(records).filteredOn(x -> new String(x.getData(), StandardCharsets.ISO_8859_1).equals(expected))
+                               .hasSize(recordsPerThread);
+        }
+    }
+
+    @Test
+    void testRecord_afterClose_isDiscarded() throws Exception {
+        // arrange
+        TrafficRecorder recorder = TrafficRecorder.create(directory, "device", "");
+        recorder.record(TrafficCapture.Direction.SENT, "9;");
+        recorder.close();
+
+        // act
+        recorder.record(TrafficCapture.Direction.SENT, "12;");
+
+        // assert
+        assertThat(readAll(TrafficCapture.open(recorder.getFile()))).extracting(x -> new String(x.getData(), StandardCharsets.ISO_8859_1))
+                                                                     .containsExactly("9;");
+    }
+
+    @Test
+    void testDeviceCommunicator_probing_doesNotRecord() throws Exception {
+        // arrange
+        communicator = new DeviceCommunicator(new FakeDeviceIO(), null, captureSettings(), (c, msg) -> {
+        });
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(directory.listFiles()).isEmpty();
+    }
+
+    @Test
+    void testDeviceCommunicator_upgraded_recordsTrafficAfterUpgrade() throws Exception {
+        // arrange
+        communicator = new DeviceCommunicator(new FakeDeviceIO(), null, captureSettings(), (c, msg) -> {
+        });
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // act
+        communicator.upgrade(PROTOCOL_VERSION, (c, msg) -> {
+        });
+        communicator.sendTracked(SetPinMessage.builder().manipulatingPin(5).setPwmDutyCycleValue(100).build())
+                    .get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        File[] files = directory.listFiles();
+        assertThat(files).hasSize(1);
+        assertThat(readAll(TrafficCapture.open(files[0]))).extracting(x -> new String(x.getData(), StandardCharsets.ISO_8859_1))
+                                                         .containsExactly("2,5,100;");
+    }
+
+    @Test
+    void testDeviceCommunicator_protocolVersionKnown_recordsFromStart() throws Exception {
+        // arrange
+        communicator = new DeviceCommunicator(new FakeDeviceIO(), PROTOCOL_VERSION, captureSettings(), (c, msg) -> {
+        });
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        File[] files = directory.listFiles();
+        assertThat(files).hasSize(1);
+        assertThat(readAll(TrafficCapture.open(files[0]))).extracting(x -> new String(x.getData(), StandardCharsets.ISO_8859_1))
+                                                         .containsExactly("9;");
+    }
+
+    private CommunicationSettings captureSettings() {
+        return CommunicationSettings.builder()
+                                    .setWriteCoalescingWindow(Duration.ZERO)
+                                    .setTrafficCaptureDirectory(directory)
+                                    .build();
+    }
+
+    private static List<TrafficCapture.Record> readAll(TrafficCapture capture) throws IOException {
+        List<TrafficCapture.Record> out = new ArrayList<>();
+
+        Optional<TrafficCapture.Record> record;
+        while ((record = capture.nextRecord()).isPresent()) {
+            out.add(record.get());
+        }
+
+        return out;
+    }
+
+    private static void appendZeros(File file, int length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() + length);
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
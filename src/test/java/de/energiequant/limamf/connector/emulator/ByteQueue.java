@@ -0,0 +1,158 @@
+package de.energiequant.limamf.connector.emulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Unbounded in-memory byte stream from one thread to another, used to connect an {@link EmulatedDevice} to its
+ * {@link InMemoryDeviceIO}. Writes never block; reads block until data is available or the stream has been closed.
+ * <p>
+ * {@link java.io.PipedInputStream} is not used as it polls once per second and fails if the writing thread
+ * terminates.
+ * </p>
+ */
+class ByteQueue {
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+    private volatile boolean closed = false;
+
+    private final ReentrantLock readLock = new ReentrantLock();
+    private byte[] current;
+    private int offset;
+
+    /**
+     * Queues a copy of the given bytes.
+     *
+     * @param bytes  bytes to write
+     * @param offset offset of first byte to write
+     * @param length number of bytes to write
+     * @throws IOException if the stream has been closed
+     */
+    void write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("stream has been closed");
+        }
+
+        if (length > 0) {
+            chunks.offer(Arrays.copyOfRange(bytes, offset, offset + length));
+        }
+    }
+
+    /**
+     * Closes the stream; all data already written can still be read. Blocked and further reads return -1 afterwards.
+     */
+    void close() {
+        closed = true;
+        chunks.offer(END);
+    }
+
+    /**
+     * Reads up to the remaining space of the given buffer.
+     *
+     * @param buffer buffer to read into
+     * @param block  true to wait for data, false to return immediately
+     * @return number of bytes read; 0 if nothing is available without blocking; -1 if the stream has been closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    int read(ByteBuffer buffer, boolean block) throws InterruptedException {
+        readLock.lock();
+        try {
+            if (!nextChunk(block)) {
+                return 0;
+            }
+
+            if (current == END) {
+                return -1;
+            }
+
+            int length = Math.min(buffer.remaining(), current.length - offset);
+            buffer.put(current, offset, length);
+            offset += length;
+
+            return length;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to the given number of bytes into an array.
+     *
+     * @param bytes     array to read into
+     * @param offset    offset to start writing to the array at
+     * @param maxLength maximum number of bytes to read
+     * @param block     true to wait for data, false to return immediately
+     * @return number of bytes read; 0 if nothing is available without blocking; -1 if the stream has been closed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    int read(byte[] bytes, int offset, int maxLength, boolean block) throws InterruptedException {
+        return read(ByteBuffer.wrap(bytes, offset, maxLength), block);
+    }
+
+    private boolean nextChunk(boolean block) throws InterruptedException {
+        if (current == END || (current != null && offset < current.length)) {
+            return true;
+        }
+
+        current = block ? chunks.take() : chunks.poll();
+        offset = 0;
+
+        return current != null;
+    }
+
+    InputStream asInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                int read = read(b, 0, 1);
+                return (read < 0) ? -1 : (b[0] & 0xFF);
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+
+                try {
+                    return ByteQueue.this.read(b, off, len, true);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while reading", ex);
+                }
+            }
+
+            @Override
+            public void close() {
+                ByteQueue.this.close();
+            }
+        };
+    }
+
+    OutputStream asOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteQueue.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                ByteQueue.this.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,616 @@
+package de.energiequant.limamf.connector.emulator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.connector.DeviceCommunicator;
+import de.energiequant.limamf.connector.DeviceIO;
+import de.energiequant.limamf.connector.utils.Threads;
+
+/**
+ * Emulates a MobiFlight device on the wire protocol level, so that communication can be tested and measured without
+ * real hardware.
+ * <p>
+ * The device answers identification ({@code GetInfoMessage}) and configuration ({@code GetConfigMessage}) requests,
+ * records all pin changes ({@code SetPinMessage}) and emits input events either on demand or scripted, see
+ * {@link #play(EventScript)}. All other commands are ignored.
+ * </p>
+ * <p>
+ * Devices can either be connected in memory using {@link #connect()}, returning a {@link DeviceIO} to be used with
+ * {@link DeviceCommunicator#DeviceCommunicator(DeviceIO, String, de.energiequant.limamf.connector.CommunicationSettings, java.util.function.BiConsumer)},
+ * or attached to one end of a pseudo-terminal pair using {@link #attach(File)}, in which case the other end can be
+ * opened like a real device. Such a pair can be created using {@code socat}:
+ * </p>
+ * <pre>socat pty,raw,echo=0,link=/tmp/mf-host pty,raw,echo=0,link=/tmp/mf-device</pre>
+ * <p>
+ * Each device can only be connected once.
+ * </p>
+ */
+public class EmulatedDevice {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmulatedDevice.class);
+
+    // command IDs as defined by the MobiFlight firmware
+    private static final int COMMAND_SET_PIN = 2;
+    private static final int COMMAND_ENCODER_CHANGE = 6;
+    private static final int COMMAND_GET_INFO = 9;
+    private static final int COMMAND_INFO = 10;
+    private static final int COMMAND_GET_CONFIG = 12;
+    private static final int COMMAND_INPUT_MULTIPLEXER_CHANGE = 30;
+
+    private static final char ARGUMENT_SEPARATOR = ',';
+
+    /**
+     * The firmware terminates each command by a line break in addition to the command separator.
+     */
+    private static final String FRAME_TERMINATOR = CommandMessage.COMMAND_SEPARATOR + "\r\n";
+
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final String type;
+    private final String name;
+    private final String serial;
+    private final String firmwareVersion;
+    private final String coreVersion;
+    private final String configuration;
+    private final EmissionListener emissionListener;
+    private final String logPrefix;
+
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+    private volatile boolean shutdown = false;
+    private final Object outputLock = new Object();
+    private OutputStream output;
+    private InputStream input;
+
+    private final Map<Integer, Integer> pinStates = new ConcurrentHashMap<>();
+    private final AtomicLong setPinCount = new AtomicLong();
+    private final AtomicLong emittedEvents = new AtomicLong();
+
+    /**
+     * Encoder events as encoded by the firmware.
+     */
+    public enum EncoderEvent {
+        LEFT(0),
+        LEFT_FAST(1),
+        RIGHT(2),
+        RIGHT_FAST(3);
+
+        private final int code;
+
+        EncoderEvent(int code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * Gets notified about every input event written to the host, see {@link #builder()}.
+     */
+    @FunctionalInterface
+    public interface EmissionListener {
+        /**
+         * Called after an event has been written.
+         *
+         * @param frame        serialized message of the event, without command separator
+         * @param emittedNanos {@link System#nanoTime()} at time of writing
+         */
+        void onEmitted(String frame, long emittedNanos);
+    }
+
+    private EmulatedDevice(Builder builder) {
+        this.type = builder.type;
+        this.name = builder.name;
+        this.serial = builder.serial;
+        this.firmwareVersion = builder.firmwareVersion;
+        this.coreVersion = builder.coreVersion;
+        this.configuration = builder.configuration;
+        this.emissionListener = builder.emissionListener;
+
+        this.logPrefix = "[emulator " + serial + "] ";
+    }
+
+    /**
+     * Connects the device in memory. The returned {@link DeviceIO} is closed when the device is shut down.
+     *
+     * @return {@link DeviceIO} to communicate with the device
+     * @throws IllegalStateException if the device has already been connected
+     */
+    public DeviceIO connect() {
+        markConnected();
+
+        ByteQueue fromDevice = new ByteQueue();
+        ByteQueue toDevice = new ByteQueue();
+
+        startServing(toDevice.asInputStream(), fromDevice.asOutputStream());
+
+        return new InMemoryDeviceIO("emulator " + serial, fromDevice, toDevice);
+    }
+
+    /**
+     * Attaches the device to the given device node, usually one end of a pseudo-terminal pair.
+     *
+     * @param deviceNode device node to communicate through
+     * @throws IOException if the device node could not be opened
+     * @throws IllegalStateException if the device has already been connected
+     */
+    public void attach(File deviceNode) throws IOException {
+        markConnected();
+
+        FileInputStream fis = new FileInputStream(deviceNode);
+        FileOutputStream fos;
+        try {
+            fos = new FileOutputStream(deviceNode);
+        } catch (IOException ex) {
+            fis.close();
+            throw ex;
+        }
+
+        startServing(fis, fos);
+    }
+
+    private void markConnected() {
+        if (!connected.compareAndSet(false, true)) {
+            throw new IllegalStateException("device has already been connected");
+        }
+    }
+
+    private void startServing(InputStream input, OutputStream output) {
+        synchronized (outputLock) {
+            this.input = input;
+            this.output = output;
+        }
+
+        Threads.newThread("EmulatedDevice " + serial, this::serveLoop).start();
+    }
+
+    private void serveLoop() {
+        LOGGER.debug("{}serving", logPrefix);
+
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        StringBuilder frame = new StringBuilder();
+        boolean escaped = false;
+
+        try {
+            while (!shutdown) {
+                int read = input.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+
+                for (int i = 0; i < read; i++) {
+                    char ch = (char) (buffer[i] & 0xFF);
+                    if (escaped) {
+                        frame.append(ch);
+                        escaped = false;
+                    } else if (ch == CommandMessage.ESCAPE_CHARACTER) {
+                        frame.append(ch);
+                        escaped = true;
+                    } else if (ch == CommandMessage.COMMAND_SEPARATOR) {
+                        handleFrame(frame.toString());
+                        frame.setLength(0);
+                    } else {
+                        frame.append(ch);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            if (!shutdown) {
+                LOGGER.warn("{}failed to read from host", logPrefix, ex);
+            }
+        }
+
+        LOGGER.debug("{}disconnected", logPrefix);
+        shutdown();
+    }
+
+    private void handleFrame(String frame) {
+        List<String> arguments = splitArguments(frame.trim());
+
+        int command;
+        try {
+            command = Integer.parseInt(arguments.get(0));
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("{}received invalid frame: \"{}\"", logPrefix, frame);
+            return;
+        }
+
+        switch (command) {
+            case COMMAND_GET_INFO:
+                write(serialize(COMMAND_INFO, type, name, serial, firmwareVersion, coreVersion));
+                break;
+
+            case COMMAND_GET_CONFIG:
+                write(serialize(COMMAND_INFO, configuration));
+                break;
+
+            case COMMAND_SET_PIN:
+                handleSetPin(frame, arguments);
+                break;
+
+            default:
+                LOGGER.debug("{}ignoring unsupported command: \"{}\"", logPrefix, frame);
+        }
+    }
+
+    private void handleSetPin(String frame, List<String> arguments) {
+        if (arguments.size() < 3) {
+            LOGGER.warn("{}received incomplete set pin command: \"{}\"", logPrefix, frame);
+            return;
+        }
+
+        try {
+            pinStates.put(Integer.parseInt(arguments.get(1)), Integer.parseInt(arguments.get(2)));
+            setPinCount.incrementAndGet();
+        } catch (NumberFormatException ex) {
+            LOGGER.warn("{}received invalid set pin command: \"{}\"", logPrefix, frame);
+        }
+    }
+
+    /**
+     * Emits a single encoder rotation.
+     *
+     * @param encoderName name of the encoder as configured on the device
+     * @param event       direction of rotation
+     */
+    public void emitEncoderChange(String encoderName, EncoderEvent event) {
+        emit(serializeEncoderChange(encoderName, event));
+    }
+
+    /**
+     * Emits a single button press or release on an input multiplexer.
+     *
+     * @param multiplexerName name of the multiplexer as configured on the device
+     * @param channel         channel of the multiplexer the button is connected to
+     * @param pressed         true if pressed, false if released
+     */
+    public void emitInputMultiplexerChange(String multiplexerName, int channel, boolean pressed) {
+        emit(serializeInputMultiplexerChange(multiplexerName, channel, pressed));
+    }
+
+    private void emit(String frame) {
+        byte[] bytes = encodeFrame(frame);
+        synchronized (outputLock) {
+            writeLocked(bytes, bytes.length);
+            onEmitted(frame, System.nanoTime());
+        }
+    }
+
+    private void onEmitted(String frame, long nanos) {
+        emittedEvents.incrementAndGet();
+
+        if (emissionListener != null) {
+            emissionListener.onEmitted(frame, nanos);
+        }
+    }
+
+    private void write(String frame) {
+        byte[] bytes = encodeFrame(frame);
+        synchronized (outputLock) {
+            writeLocked(bytes, bytes.length);
+        }
+    }
+
+    private void writeLocked(byte[] bytes, int length) {
+        if (output == null) {
+            throw new IllegalStateException("device has not been connected");
+        }
+
+        if (shutdown) {
+            return;
+        }
+
+        try {
+            output.write(bytes, 0, length);
+            output.flush();
+        } catch (IOException ex) {
+            if (!shutdown) {
+                LOGGER.warn("{}failed to write to host", logPrefix, ex);
+                shutdown();
+            }
+        }
+    }
+
+    /**
+     * Starts playing the given script in background.
+     *
+     * @param script script to play
+     * @return handle to control playback
+     */
+    public Playback play(EventScript script) {
+        Playback playback = new Playback(script);
+        Threads.newThread("EmulatedDevice " + serial + " playback", playback::run).start();
+        return playback;
+    }
+
+    /**
+     * Returns the last value set per pin.
+     *
+     * @return pin numbers mapped to their last values
+     */
+    public Map<Integer, Integer> getPinStates() {
+        return Collections.unmodifiableMap(new HashMap<>(pinStates));
+    }
+
+    /**
+     * Returns the number of pin changes received.
+     *
+     * @return number of set pin commands received
+     */
+    public long getSetPinCount() {
+        return setPinCount.get();
+    }
+
+    /**
+     * Returns the number of input events written to the host.
+     *
+     * @return number of emitted events
+     */
+    public long getEmittedEvents() {
+        return emittedEvents.get();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Disconnects the device and stops all playbacks.
+     */
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+
+        LOGGER.debug("{}shutting down", logPrefix);
+        shutdown = true;
+
+        synchronized (outputLock) {
+            closeQuietly(output);
+            closeQuietly(input);
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            LOGGER.debug("{}failed to close", logPrefix, ex);
+        }
+    }
+
+    static String serializeEncoderChange(String encoderName, EncoderEvent event) {
+        return serialize(COMMAND_ENCODER_CHANGE, encoderName, Integer.toString(event.code));
+    }
+
+    static String serializeInputMultiplexerChange(String multiplexerName, int channel, boolean pressed) {
+        // firmware reports 0 for press and 1 for release
+        return serialize(COMMAND_INPUT_MULTIPLEXER_CHANGE, multiplexerName, Integer.toString(channel), pressed ? "0" : "1");
+    }
+
+    private static String serialize(int command, String... arguments) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(command);
+
+        for (String argument : arguments) {
+            sb.append(ARGUMENT_SEPARATOR);
+            for (int i = 0; i < argument.length(); i++) {
+                char ch = argument.charAt(i);
+                if (ch == ARGUMENT_SEPARATOR || ch == CommandMessage.COMMAND_SEPARATOR || ch == CommandMessage.ESCAPE_CHARACTER) {
+                    sb.append(CommandMessage.ESCAPE_CHARACTER);
+                }
+                sb.append(ch);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    static byte[] encodeFrame(String frame) {
+        return (frame + FRAME_TERMINATOR).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static List<String> splitArguments(String frame) {
+        List<String> out = new ArrayList<>();
+
+        StringBuilder sb = new StringBuilder();
+        boolean escaped = false;
+        for (int i = 0; i < frame.length(); i++) {
+            char ch = frame.charAt(i);
+            if (escaped) {
+                sb.append(ch);
+                escaped = false;
+            } else if (ch == CommandMessage.ESCAPE_CHARACTER) {
+                escaped = true;
+            } else if (ch == ARGUMENT_SEPARATOR) {
+                out.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(ch);
+            }
+        }
+        out.add(sb.toString());
+
+        return out;
+    }
+
+    /**
+     * Controls playback of an {@link EventScript}, see {@link #play(EventScript)}.
+     */
+    public class Playback {
+        private final EventScript script;
+        private final AtomicBoolean stopped = new AtomicBoolean(false);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private Playback(EventScript script) {
+            this.script = script;
+        }
+
+        private void run() {
+            try {
+                play();
+            } catch (Exception ex) {
+                LOGGER.warn("{}playback failed", logPrefix, ex);
+            } finally {
+                completed.countDown();
+            }
+        }
+
+        private void play() {
+            List<byte[]> encodedFrames = script.getEncodedFrames();
+            List<String> frames = script.getFrames();
+            int burstSize = script.getBurstSize();
+            long burstIntervalNanos = (script.getEventsPerSecond() == 0)
+                ? 0
+                : TimeUnit.SECONDS.toNanos(burstSize) / script.getEventsPerSecond();
+
+            // bursts are written at once, so all frames need to be concatenated; the buffer is reused for every burst
+            int maxFrameLength = 0;
+            for (byte[] encoded : encodedFrames) {
+                maxFrameLength = Math.max(maxFrameLength, encoded.length);
+            }
+            byte[] burst = new byte[maxFrameLength * burstSize];
+
+            int index = 0;
+            long nextBurstNanos = System.nanoTime();
+            for (int i = 0; script.getNumBursts() == 0 || i < script.getNumBursts(); i++) {
+                if (stopped.get() || shutdown) {
+                    break;
+                }
+
+                int burstStartIndex = index;
+                int length = 0;
+                for (int j = 0; j < burstSize; j++) {
+                    byte[] encoded = encodedFrames.get(index);
+                    System.arraycopy(encoded, 0, burst, length, encoded.length);
+                    length += encoded.length;
+                    index = (index + 1) % encodedFrames.size();
+                }
+
+                synchronized (outputLock) {
+                    writeLocked(burst, length);
+
+                    long now = System.nanoTime();
+                    for (int j = 0; j < burstSize; j++) {
+                        onEmitted(frames.get((burstStartIndex + j) % frames.size()), now);
+                    }
+                }
+
+                // scheduled relative to the start to avoid drift
+                nextBurstNanos += burstIntervalNanos;
+                long waitNanos;
+                while ((waitNanos = nextBurstNanos - System.nanoTime()) > 0 && !stopped.get()) {
+                    LockSupport.parkNanos(this, waitNanos);
+                }
+            }
+        }
+
+        /**
+         * Stops playback; returns immediately.
+         */
+        public void stop() {
+            stopped.set(true);
+        }
+
+        /**
+         * Waits for playback to complete.
+         *
+         * @param timeout maximum time to wait
+         * @return true if completed, false if still playing
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public boolean awaitCompletion(Duration timeout) throws InterruptedException {
+            return completed.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String type = "MobiFlight Mega";
+        private String name = "Emulated Device";
+        private String serial = "SN-EMULATED";
+        private String firmwareVersion = "2.5.1";
+        private String coreVersion = "1.0.0";
+        private String configuration = "";
+        private EmissionListener emissionListener;
+
+        public Builder setType(String type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder setSerial(String serial) {
+            this.serial = serial;
+            return this;
+        }
+
+        public Builder setFirmwareVersion(String firmwareVersion) {
+            this.firmwareVersion = firmwareVersion;
+            return this;
+        }
+
+        public Builder setCoreVersion(String coreVersion) {
+            this.coreVersion = coreVersion;
+            return this;
+        }
+
+        /**
+         * Sets the raw configuration as returned in response to {@code GetConfigMessage}.
+         *
+         * @param configuration raw configuration string as stored by the firmware
+         * @return this builder for method-chaining
+         */
+        public Builder setConfiguration(String configuration) {
+            this.configuration = configuration;
+            return this;
+        }
+
+        public Builder setEmissionListener(EmissionListener emissionListener) {
+            this.emissionListener = emissionListener;
+            return this;
+        }
+
+        public EmulatedDevice build() {
+            if (type == null || name == null || serial == null || firmwareVersion == null || coreVersion == null) {
+                throw new IllegalArgumentException("identification must be complete");
+            }
+
+            if (configuration == null) {
+                throw new IllegalArgumentException("configuration must not be null");
+            }
+
+            return new EmulatedDevice(this);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package de.energiequant.limamf.connector.emulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.GetInfoMessage;
+import de.energiequant.limamf.compat.protocol.IdentificationInfoMessage;
+import de.energiequant.limamf.compat.protocol.SetPinMessage;
+import de.energiequant.limamf.connector.CommunicationSettings;
+import de.energiequant.limamf.connector.DeviceCommunicator;
+import de.energiequant.limamf.connector.DeviceIO;
+
+class EmulatedDeviceTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private EmulatedDevice device;
+    private DeviceIO io;
+    private DeviceCommunicator communicator;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (communicator != null) {
+            communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+        }
+        if (device != null) {
+            device.shutdown();
+        }
+    }
+
+    @Test
+    void testConnect_getInfo_respondsWithIdentification() {
+        // arrange
+        device = EmulatedDevice.builder()
+                               .setType("MobiFlight Mega")
+                               .setName("Test Panel")
+                               .setSerial("SN-123")
+                               .setFirmwareVersion("2.5.1")
+                               .setCoreVersion("1.0.0")
+                               .build();
+        io = device.connect();
+
+        // act
+        send("9;");
+
+        // assert
+        assertThat(receiveFrames(1)).containsExactly("10,MobiFlight Mega,Test Panel,SN-123,2.5.1,1.0.0");
+    }
+
+    @Test
+    void testConnect_getConfig_respondsWithConfiguration() {
+        // arrange
+        device = EmulatedDevice.builder().setConfiguration("1.2.Button:").build();
+        io = device.connect();
+
+        // act
+        send("12;");
+
+        // assert
+        assertThat(receiveFrames(1)).containsExactly("10,1.2.Button:");
+    }
+
+    @Test
+    void testConnect_setPin_recordsPinState() {
+        // arrange
+        device = EmulatedDevice.builder().build();
+        io = device.connect();
+
+        // act
+        send("2,13,1;2,7,200;2,13,0;");
+
+        // assert (requesting info ensures all previous commands have been handled)
+        send("9;");
+        receiveFrames(1);
+        assertThat(device.getPinStates()).containsOnlyKeys(13, 7)
+                                         .containsEntry(13, 0)
+                                         .containsEntry(7, 200);
+        assertThat(device.getSetPinCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testPlay_script_emitsEventsInOrderRepeatingScript() throws Exception {
+        // arrange
+        List<String> emitted = new CopyOnWriteArrayList<>();
+        device = EmulatedDevice.builder()
+                               .setEmissionListener((frame, nanos) -> emitted.add(frame))
+                               .build();
+        io = device.connect();
+
+        EventScript script = EventScript.builder()
+                                        .addEncoderChange("enc,1", EmulatedDevice.EncoderEvent.RIGHT_FAST)
+                                        .addInputMultiplexerChange("mux", 3, true)
+                                        .addInputMultiplexerChange("mux", 3, false)
+                                        .setBurstSize(2)
+                                        .setNumBursts(2)
+                                        .build();
+
+        // act
+        boolean completed = device.play(script).awaitCompletion(Duration.ofSeconds(5));
+
+        // assert
+        List<String> expected = Arrays.asList("6,enc/,1,3", "30,mux,3,0", "30,mux,3,1", "6,enc/,1,3");
+        assertThat(completed).isTrue();
+        assertThat(receiveFrames(4)).containsExactlyElementsOf(expected);
+        assertThat(emitted).containsExactlyElementsOf(expected);
+        assertThat(device.getEmittedEvents()).isEqualTo(4);
+    }
+
+    @Test
+    void testShutdown_connected_closesDeviceIO() {
+        // arrange
+        device = EmulatedDevice.builder().build();
+        io = device.connect();
+
+        // act
+        device.shutdown();
+
+        // assert
+        assertThat(io.readAtLeastOneInto(ByteBuffer.allocate(16))).isEqualTo(-1);
+    }
+
+    @Test
+    void testConnect_communicatorRequestingInfo_receivesIdentification() throws Exception {
+        // arrange
+        List<CommandMessage> received = new CopyOnWriteArrayList<>();
+        device = EmulatedDevice.builder().setSerial("SN-123").setFirmwareVersion("2.5.1").build();
+        communicator = new DeviceCommunicator(device.connect(), "2.5.1", CommunicationSettings.builder().build(), (c, msg) -> received.add(msg));
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (received.isEmpty() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        assertThat(received).hasSize(1)
+                            .first()
+                            .isInstanceOfSatisfying(IdentificationInfoMessage.class, msg -> assertThat(msg.getSerial()).isEqualTo("SN-123"));
+    }
+
+    @Test
+    void testConnect_communicatorSettingPins_recordsPinStates() throws Exception {
+        // arrange
+        device = EmulatedDevice.builder().build();
+        communicator = new DeviceCommunicator(device.connect(), "2.5.1", CommunicationSettings.builder().build(), (c, msg) -> {
+        });
+
+        // act
+        communicator.send(SetPinMessage.builder().manipulatingPin(13).setPwmDutyCycleValue(1).build());
+        communicator.sendTracked(SetPinMessage.builder().manipulatingPin(7).setPwmDutyCycleValue(200).build())
+                    .get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (device.getSetPinCount() < 2 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        assertThat(device.getPinStates()).containsOnlyKeys(13, 7)
+                                         .containsEntry(13, 1)
+                                         .containsEntry(7, 200);
+    }
+
+    @Test
+    void testShutdown_communicator_shutsDownDeviceConnection() throws Exception {
+        // arrange
+        device = EmulatedDevice.builder().build();
+        io = device.connect();
+        communicator = new DeviceCommunicator(io, "2.5.1", CommunicationSettings.builder().build(), (c, msg) -> {
+        });
+
+        // act
+        boolean result = communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+
+        // assert
+        assertThat(result).isTrue();
+        assertThat(io.readAtLeastOneInto(ByteBuffer.allocate(16))).isEqualTo(-1);
+    }
+
+    private void send(String s) {
+        io.write(ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    private List<String> receiveFrames(int numFrames) {
+        StringBuilder sb = new StringBuilder();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (sb.chars().filter(ch -> ch == ';').count() < numFrames) {
+            buffer.clear();
+            int read = io.readAtLeastOneInto(buffer);
+            assertThat(read).isPositive();
+            sb.append(new String(buffer.array(), 0, read, StandardCharsets.ISO_8859_1));
+        }
+
+        return Arrays.stream(sb.toString().split(";"))
+                     .map(String::trim)
+                     .filter(s -> !s.isEmpty())
+                     .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,146 @@
+package de.energiequant.limamf.connector.emulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sequence of input events to be played by an {@link EmulatedDevice}, see {@link EmulatedDevice#play(EventScript)}.
+ * <p>
+ * Events are emitted in bursts of {@link #getBurstSize()} events which are written to the host at once, as would
+ * happen if multiple inputs change between two loop iterations of the device firmware. Bursts are paced to reach
+ * the configured average number of events per second. The script repeats from the start until the configured number
+ * of bursts has been emitted.
+ * </p>
+ */
+public class EventScript {
+    private final List<String> frames;
+    private final List<byte[]> encodedFrames;
+    private final int eventsPerSecond;
+    private final int burstSize;
+    private final int numBursts;
+
+    private EventScript(Builder builder) {
+        this.frames = Collections.unmodifiableList(new ArrayList<>(builder.frames));
+        this.eventsPerSecond = builder.eventsPerSecond;
+        this.burstSize = builder.burstSize;
+        this.numBursts = builder.numBursts;
+
+        List<byte[]> encodedFrames = new ArrayList<>();
+        for (String frame : frames) {
+            encodedFrames.add(EmulatedDevice.encodeFrame(frame));
+        }
+        this.encodedFrames = Collections.unmodifiableList(encodedFrames);
+    }
+
+    /**
+     * Returns the serialized messages of all events, in order of emission.
+     *
+     * @return serialized messages, without command separator
+     */
+    public List<String> getFrames() {
+        return frames;
+    }
+
+    List<byte[]> getEncodedFrames() {
+        return encodedFrames;
+    }
+
+    /**
+     * Returns the average number of events emitted per second.
+     *
+     * @return events per second; 0 if events should be emitted as fast as possible
+     */
+    public int getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * Returns the number of events written at once.
+     *
+     * @return events per burst
+     */
+    public int getBurstSize() {
+        return burstSize;
+    }
+
+    /**
+     * Returns the number of bursts to emit before the script ends.
+     *
+     * @return number of bursts; 0 if the script repeats until stopped
+     */
+    public int getNumBursts() {
+        return numBursts;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final List<String> frames = new ArrayList<>();
+        private int eventsPerSecond = 0;
+        private int burstSize = 1;
+        private int numBursts = 1;
+
+        /**
+         * Adds an encoder rotation.
+         *
+         * @param name  name of the encoder as configured on the device
+         * @param event direction of rotation
+         * @return this builder for method-chaining
+         */
+        public Builder addEncoderChange(String name, EmulatedDevice.EncoderEvent event) {
+            frames.add(EmulatedDevice.serializeEncoderChange(name, event));
+            return this;
+        }
+
+        /**
+         * Adds a button press or release on an input multiplexer.
+         *
+         * @param name    name of the multiplexer as configured on the device
+         * @param channel channel of the multiplexer the button is connected to
+         * @param pressed true if pressed, false if released
+         * @return this builder for method-chaining
+         */
+        public Builder addInputMultiplexerChange(String name, int channel, boolean pressed) {
+            frames.add(EmulatedDevice.serializeInputMultiplexerChange(name, channel, pressed));
+            return this;
+        }
+
+        public Builder setEventsPerSecond(int eventsPerSecond) {
+            this.eventsPerSecond = eventsPerSecond;
+            return this;
+        }
+
+        public Builder setBurstSize(int burstSize) {
+            this.burstSize = burstSize;
+            return this;
+        }
+
+        public Builder setNumBursts(int numBursts) {
+            this.numBursts = numBursts;
+            return this;
+        }
+
+        public EventScript build() {
+            if (frames.isEmpty()) {
+                throw new IllegalArgumentException("script must contain at least one event");
+            }
+
+            if (eventsPerSecond < 0) {
+                throw new IllegalArgumentException("events per second must not be negative, got " + eventsPerSecond);
+            }
+
+            if (burstSize < 1) {
+                throw new IllegalArgumentException("burst size must be positive, got " + burstSize);
+            }
+
+            if (numBursts < 0) {
+                throw new IllegalArgumentException("number of bursts must not be negative, got " + numBursts);
+            }
+
+            return new EventScript(this);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package de.energiequant.limamf.connector.emulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.connector.DeviceIO;
+
+/**
+ * {@link DeviceIO} connected to an {@link EmulatedDevice} in memory, without involving any operating system
+ * resources.
+ * <p>
+ * Characters are mapped 1:1 to bytes, so only single-byte ISO-8859-1 encoding is supported (which is what the
+ * protocol uses).
+ * </p>
+ */
+class InMemoryDeviceIO extends DeviceIO {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryDeviceIO.class);
+
+    private final ByteQueue fromDevice;
+    private final ByteQueue toDevice;
+
+    private final ReentrantLock inputLock = new ReentrantLock();
+    private byte[] inputBytes = new byte[0];
+
+    private final ReentrantLock outputLock = new ReentrantLock();
+    private final StringBuilder outputBuffer = new StringBuilder();
+
+    InMemoryDeviceIO(String name, ByteQueue fromDevice, ByteQueue toDevice) {
+        super(name);
+
+        this.fromDevice = fromDevice;
+        this.toDevice = toDevice;
+    }
+
+    @Override
+    public boolean tryClose() {
+        closing.set(true);
+
+        // closing the input releases blocked reads, closing the output signals the device to disconnect
+        fromDevice.close();
+        toDevice.close();
+
+        return true;
+    }
+
+    @Override
+    public void write(String s) {
+        outputLock.lock();
+        try {
+            outputBuffer.append(s);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer buffer) {
+        outputLock.lock();
+        try {
+            flushOutputBuffer();
+
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            toDevice.write(bytes, 0, bytes.length);
+        } catch (IOException ex) {
+            handleWriteFailure(ex);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        outputLock.lock();
+        try {
+            flushOutputBuffer();
+        } catch (IOException ex) {
+            handleWriteFailure(ex);
+        } finally {
+            outputLock.unlock();
+        }
+    }
+
+    private void flushOutputBuffer() throws IOException {
+        if (outputBuffer.length() == 0) {
+            return;
+        }
+
+        int length = outputBuffer.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            // ISO-8859-1 maps the first 256 characters directly to bytes
+            char ch = outputBuffer.charAt(i);
+            bytes[i] = (ch <= 0xFF) ? (byte) ch : (byte) '?';
+        }
+        outputBuffer.setLength(0);
+
+        toDevice.write(bytes, 0, length);
+    }
+
+    private void handleWriteFailure(IOException ex) {
+        if (closing.get()) {
+            LOGGER.debug("{}failed writing to device, closing (expected due to marked as closing already)", logPrefix, ex);
+        } else {
+            LOGGER.warn("{}unexpectedly failed writing to device, closing", logPrefix, ex);
+        }
+        tryClose();
+        throw new UncheckedIOException(ex);
+    }
+
+    @Override
+    public int readAvailableInto(char[] buffer) {
+        return readInto(buffer, false);
+    }
+
+    @Override
+    public int readAtLeastOneInto(char[] buffer) {
+        return readInto(buffer, true);
+    }
+
+    private int readInto(char[] buffer, boolean block) {
+        if (buffer.length == 0) {
+            throw new IllegalArgumentException("attempted to read into zero buffer");
+        }
+
+        inputLock.lock();
+        try {
+            if (inputBytes.length < buffer.length) {
+                inputBytes = new byte[buffer.length];
+            }
+
+            int read = read(ByteBuffer.wrap(inputBytes, 0, buffer.length), block);
+
+            // ISO-8859-1 maps all bytes directly to the first 256 characters
+            for (int i = 0; i < read; i++) {
+                buffer[i] = (char) (inputBytes[i] & 0xFF);
+            }
+
+            return read;
+        } finally {
+            inputLock.unlock();
+        }
+    }
+
+    @Override
+    public int readAtLeastOneInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        return read(buffer, true);
+    }
+
+    @Override
+    public int readAvailableInto(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("attempted to read into full buffer");
+        }
+
+        return read(buffer, false);
+    }
+
+    private int read(ByteBuffer buffer, boolean block) {
+        try {
+            return fromDevice.read(buffer, block);
+        } catch (InterruptedException ex) {
+            LOGGER.warn("{}interrupted while reading, closing", logPrefix, ex);
+            Thread.currentThread().interrupt();
+            tryClose();
+            return -1;
+        }
+    }
+}
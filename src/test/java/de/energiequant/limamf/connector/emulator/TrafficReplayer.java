@@ -0,0 +1,290 @@
+package de.energiequant.limamf.connector.emulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.energiequant.limamf.connector.CommunicationSettings;
+import de.energiequant.limamf.connector.DeviceCommunicator;
+import de.energiequant.limamf.connector.DeviceIO;
+import de.energiequant.limamf.connector.TrafficCapture;
+import de.energiequant.limamf.connector.utils.Threads;
+
+/**
+ * Replays data received from a device during a recorded session (see
+ * {@link CommunicationSettings#getTrafficCaptureDirectory()}) to a {@link DeviceCommunicator}, either at original or
+ * accelerated speed. This allows real sessions to be used as repeatable input for performance measurements.
+ * <p>
+ * Replay is open-loop: data is fed in with the recorded timing, regardless of what the host sends. Data written by
+ * the host is discarded and only counted. The connection remains open after the capture has been replayed
+ * completely, until {@link #shutdown()} is called.
+ * </p>
+ * <p>
+ * Each replayer can only be connected and started once, as reading the capture consumes it.
+ * </p>
+ */
+public class TrafficReplayer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplayer.class);
+
+    /**
+     * Speed factor to replay all data without any delay.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final TrafficCapture capture;
+    private final double speedFactor;
+    private final String name;
+    private final String logPrefix;
+
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile boolean shutdown = false;
+
+    private volatile ByteQueue fromDevice;
+    private volatile ByteQueue toDevice;
+
+    private final AtomicLong replayedBytes = new AtomicLong();
+    private final AtomicLong discardedBytes = new AtomicLong();
+
+    private TrafficReplayer(Builder builder) {
+        this.capture = builder.capture;
+        this.speedFactor = builder.speedFactor;
+        this.name = builder.name;
+
+        this.logPrefix = "[" + name + "] ";
+    }
+
+    /**
+     * Connects the replayer in memory. The returned {@link DeviceIO} is closed when the replayer is shut down.
+     * Replay needs to be started separately using {@link #start()}.
+     *
+     * @return {@link DeviceIO} to communicate with the replayed device
+     * @throws IllegalStateException if the replayer has already been connected
+     */
+    public DeviceIO connect() {
+        if (!connected.compareAndSet(false, true)) {
+            throw new IllegalStateException("replayer has already been connected");
+        }
+
+        fromDevice = new ByteQueue();
+        toDevice = new ByteQueue();
+
+        Threads.newThread("TrafficReplayer " + name, this::discardLoop).start();
+
+        return new InMemoryDeviceIO(name, fromDevice, toDevice);
+    }
+
+    /**
+     * Starts replaying in background. Recorded timing is relative to the time of this call.
+     *
+     * @throws IllegalStateException if the replayer has not been connected or has already been started
+     */
+    public void start() {
+        if (!connected.get()) {
+            throw new IllegalStateException("replayer has not been connected");
+        }
+
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("replayer has already been started");
+        }
+
+        Threads.newThread("TrafficReplayer " + name + " playback", this::run).start();
+    }
+
+    private void discardLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        try {
+            while (!shutdown) {
+                buffer.clear();
+                int read = toDevice.read(buffer, true);
+                if (read < 0) {
+                    break;
+                }
+
+                discardedBytes.addAndGet(read);
+            }
+        } catch (InterruptedException ex) {
+            LOGGER.warn("{}interrupted while discarding host output", logPrefix, ex);
+            Thread.currentThread().interrupt();
+        }
+
+        LOGGER.debug("{}disconnected", logPrefix);
+        shutdown();
+    }
+
+    private void run() {
+        try {
+            replay();
+        } catch (Exception ex) {
+            if (!shutdown) {
+                LOGGER.warn("{}replay failed", logPrefix, ex);
+            }
+        } finally {
+            completed.countDown();
+        }
+    }
+
+    private void replay() throws IOException {
+        LOGGER.debug("{}replaying capture started at {} with speed factor {}", logPrefix, capture.getStartTime(), speedFactor);
+
+        long startNanos = System.nanoTime();
+        while (!stopped.get() && !shutdown) {
+            Optional<TrafficCapture.Record> record = capture.nextRecord();
+            if (!record.isPresent()) {
+                LOGGER.debug("{}end of capture", logPrefix);
+                break;
+            }
+
+            if (record.get().getDirection() != TrafficCapture.Direction.RECEIVED) {
+                continue;
+            }
+
+            if (speedFactor != AS_FAST_AS_POSSIBLE) {
+                // scheduled relative to the start to avoid drift
+                long dueNanos = startNanos + (long) (record.get().getNanos() / speedFactor);
+                long waitNanos;
+                while ((waitNanos = dueNanos - System.nanoTime()) > 0 && !stopped.get()) {
+                    LockSupport.parkNanos(this, waitNanos);
+                }
+            }
+
+            byte[] data = record.get().getData();
+            fromDevice.write(data, 0, data.length);
+            replayedBytes.addAndGet(data.length);
+        }
+    }
+
+    /**
+     * Stops replay; returns immediately. The connection remains open.
+     */
+    public void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Waits for replay to complete.
+     *
+     * @param timeout maximum time to wait
+     * @return true if completed, false if still replaying
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitCompletion(Duration timeout) throws InterruptedException {
+        return completed.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of bytes replayed to the host so far.
+     *
+     * @return number of replayed bytes
+     */
+    public long getReplayedBytes() {
+        return replayedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes written by the host, which are discarded.
+     *
+     * @return number of bytes written by the host
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes.get();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Stops replay and disconnects.
+     */
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+
+        LOGGER.debug("{}shutting down", logPrefix);
+        shutdown = true;
+        stop();
+
+        if (fromDevice != null) {
+            fromDevice.close();
+        }
+
+        if (toDevice != null) {
+            toDevice.close();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private TrafficCapture capture;
+        private double speedFactor = 1.0;
+        private String name = "replay";
+
+        /**
+         * Sets the capture to replay. Reading the capture is consumed by replay, so it must not be used otherwise.
+         *
+         * @param capture capture to replay
+         * @return this builder for method-chaining
+         */
+        public Builder setCapture(TrafficCapture capture) {
+            this.capture = capture;
+            return this;
+        }
+
+        /**
+         * Sets how much faster than recorded the capture should be replayed; 1.0 replays at original speed.
+         *
+         * @param speedFactor speed relative to recording; {@link #AS_FAST_AS_POSSIBLE} to replay without any delay
+         * @return this builder for method-chaining
+         */
+        public Builder setSpeedFactor(double speedFactor) {
+            this.speedFactor = speedFactor;
+            return this;
+        }
+
+        /**
+         * Sets the name to identify the replayed device by in logs.
+         *
+         * @param name name of replayed device
+         * @return this builder for method-chaining
+         */
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public TrafficReplayer build() {
+            if (capture == null) {
+                throw new IllegalArgumentException("capture must be set");
+            }
+
+            if (speedFactor < 0 || Double.isNaN(speedFactor) || Double.isInfinite(speedFactor)) {
+                throw new IllegalArgumentException("speed factor must be zero or a positive finite number, got " + speedFactor);
+            }
+
+            if (name == null) {
+                throw new IllegalArgumentException("name must not be null");
+            }
+
+            return new TrafficReplayer(this);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package de.energiequant.limamf.connector.emulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.DigitalInputMultiplexerChangeMessage;
+import de.energiequant.limamf.compat.protocol.GetInfoMessage;
+import de.energiequant.limamf.connector.CommunicationSettings;
+import de.energiequant.limamf.connector.DeviceCommunicator;
+import de.energiequant.limamf.connector.TrafficCapture;
+
+class TrafficReplayerTest {
+    private static final String PROTOCOL_VERSION = "2.5.1";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final byte DIRECTION_RECEIVED = 1;
+    private static final byte DIRECTION_SENT = 2;
+
+    @TempDir
+    File directory;
+
+    private TrafficReplayer replayer;
+    private DeviceCommunicator communicator;
+    private final List<CommandMessage> received = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (communicator != null) {
+            communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+        }
+        if (replayer != null) {
+            replayer.shutdown();
+        }
+    }
+
+    private TrafficCapture capture(CaptureWriter writer) throws IOException {
+        File file = new File(directory, "test" + System.nanoTime() + ".lmfcap");
+        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(file))) {
+            dos.writeInt(0x4C4D4643);
+            dos.writeShort(1);
+            dos.writeShort(0);
+            dos.writeLong(System.currentTimeMillis());
+            writer.write(dos);
+        }
+
+        return TrafficCapture.open(file);
+    }
+
+    private static void record(DataOutputStream dos, long millis, byte direction, String data) throws IOException {
+        byte[] bytes = data.getBytes(StandardCharsets.ISO_8859_1);
+        dos.writeLong(TimeUnit.MILLISECONDS.toNanos(millis));
+        dos.writeByte(direction);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    @FunctionalInterface
+    private interface CaptureWriter {
+        void write(DataOutputStream dos) throws IOException;
+    }
+
+    private void connect(TrafficReplayer replayer) {
+        this.replayer = replayer;
+        CommunicationSettings settings = CommunicationSettings.builder()
+                                                              .setWriteCoalescingWindow(Duration.ZERO)
+                                                              .build();
+        communicator = new DeviceCommunicator(replayer.connect(), PROTOCOL_VERSION, settings, (c, msg) -> received.add(msg));
+    }
+
+    private void awaitReceived(int numMessages) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (received.size() < numMessages && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void testStart_asFastAsPossible_replaysOnlyReceivedData() throws Exception {
+        // arrange
+        TrafficCapture capture = capture(dos -> {
+            record(dos, 0, DIRECTION_RECEIVED, "30,Mux,3,0;");
+            record(dos, 10, DIRECTION_SENT, "9;");
+            record(dos, 20, DIRECTION_RECEIVED, "30,Mux,3,1;");
+        });
+        connect(TrafficReplayer.builder()
+                               .setCapture(capture)
+                               .setSpeedFactor(TrafficReplayer.AS_FAST_AS_POSSIBLE)
+                               .build());
+
+        // act
+        replayer.start();
+
+        // assert
+        assertThat(replayer.awaitCompletion(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        awaitReceived(2);
+        assertThat(received).hasSize(2)
+                            .allSatisfy(x -> assertThat(x).isInstanceOf(DigitalInputMultiplexerChangeMessage.class));
+        assertThat(replayer.getReplayedBytes()).isEqualTo(22);
+    }
+
+    @Test
+    void testStart_originalSpeed_replaysNotBeforeRecordedTime() throws Exception {
+        // arrange
+        TrafficCapture capture = capture(dos -> record(dos, 200, DIRECTION_RECEIVED, "30,Mux,3,0;"));
+        connect(TrafficReplayer.builder()
+                               .setCapture(capture)
+                               .setSpeedFactor(1.0)
+                               .build());
+        long startNanos = System.nanoTime();
+
+        // act
+        replayer.start();
+
+        // assert
+        assertThat(replayer.awaitCompletion(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(195);
+    }
+
+    @Test
+    void testStart_accelerated_scalesRecordedTime() throws Exception {
+        // arrange
+        TrafficCapture capture = capture(dos -> record(dos, 400, DIRECTION_RECEIVED, "30,Mux,3,0;"));
+        connect(TrafficReplayer.builder()
+                               .setCapture(capture)
+                               .setSpeedFactor(4.0)
+                               .build());
+        long startNanos = System.nanoTime();
+
+        // act
+        replayer.start();
+
+        // assert
+        assertThat(replayer.awaitCompletion(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(95);
+    }
+
+    @Test
+    void testStop_waitingForRecordedTime_completesWithoutReplaying() throws Exception {
+        // arrange
+        TrafficCapture capture = capture(dos -> record(dos, 60000, DIRECTION_RECEIVED, "30,Mux,3,0;"));
+        connect(TrafficReplayer.builder()
+                               .setCapture(capture)
+                               .setSpeedFactor(1.0)
+                               .build());
+        replayer.start();
+
+        // act
+        replayer.stop();
+
+        // assert
+        assertThat(replayer.awaitCompletion(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+        assertThat(replayer.isShutdown()).isFalse();
+    }
+
+    @Test
+    void testConnect_hostWrites_discardsAndCountsBytes() throws Exception {
+        // arrange
+        TrafficCapture capture = capture(dos -> {
+        });
+        connect(TrafficReplayer.builder().setCapture(capture).build());
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (replayer.getDiscardedBytes() < 2 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        assertThat(replayer.getDiscardedBytes()).isEqualTo(2);
+    }
+
+    @Test
+    void testShutdown_communicator_shutsDownReplayer() throws Exception {
+        // arrange
+        TrafficCapture capture = capture(dos -> {
+        });
+        connect(TrafficReplayer.builder().setCapture(capture).build());
+
+        // act
+        assertThat(communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS))).isTrue();
+
+        // assert
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!replayer.isShutdown() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        assertThat(replayer.isShutdown()).isTrue();
+    }
+
+    @Test
+    void testConnect_alreadyConnected_throwsIllegalStateException() throws Exception {
+        // arrange
+        replayer = TrafficReplayer.builder().setCapture(capture(dos -> {
+        })).build();
+        replayer.connect();
+
+        // act
+        ThrowingCallable action = () -> replayer.connect();
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testStart_notConnected_throwsIllegalStateException() throws Exception {
+        // arrange
+        replayer = TrafficReplayer.builder().setCapture(capture(dos -> {
+        })).build();
+
+        // act
+        ThrowingCallable action = () -> replayer.start();
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testBuild_negativeSpeedFactor_throwsIllegalArgumentException() throws Exception {
+        // arrange
+        TrafficReplayer.Builder builder = TrafficReplayer.builder()
+                                                         .setCapture(capture(dos -> {
+                                                         }))
+                                                         .setSpeedFactor(-1.0);
+
+        // act
+        ThrowingCallable action = builder::build;
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalArgumentException.class);
+    }
+}
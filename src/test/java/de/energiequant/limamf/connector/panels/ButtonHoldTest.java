@@ -0,0 +1,194 @@
+package de.energiequant.limamf.connector.panels;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.energiequant.limamf.connector.utils.HashedTimerWheel;
+
+class ButtonHoldTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final long LONG_PRESS_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long REPEAT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+    private static final long REPEAT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final HashedTimerWheel wheel = new HashedTimerWheel("test", Duration.ofMillis(1), 64);
+    private final ButtonHold button = new ButtonHold(wheel);
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void testPress_always_isHeld() {
+        // act
+        button.press(LONG_PRESS_NANOS, null);
+
+        // assert
+        assertThat(button.isHeld()).isTrue();
+    }
+
+    @Test
+    void testRelease_held_isNotHeld() {
+        // arrange
+        button.press(LONG_PRESS_NANOS, null);
+
+        // act
+        button.release();
+
+        // assert
+        assertThat(button.isHeld()).isFalse();
+    }
+
+    @Test
+    void testRelease_notHeld_returnsFalse() {
+        // act
+        boolean result = button.release();
+
+        // assert
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    void testPress_heldBeyondThreshold_runsActionWhileHeld() throws Exception {
+        // arrange
+        CountDownLatch longPress = new CountDownLatch(1);
+        long pressedAtNanos = System.nanoTime();
+
+        // act
+        button.press(LONG_PRESS_NANOS, longPress::countDown);
+
+        // assert
+        assertThat(longPress.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(System.nanoTime() - pressedAtNanos).isGreaterThanOrEqualTo(LONG_PRESS_NANOS);
+        assertThat(button.isHeld()).isTrue();
+    }
+
+    @Test
+    void testRelease_afterThreshold_returnsTrue() throws Exception {
+        // arrange
+        CountDownLatch longPress = new CountDownLatch(1);
+        button.press(LONG_PRESS_NANOS, longPress::countDown);
+        assertThat(longPress.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+
+        // act
+        boolean result = button.release();
+
+        // assert
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    void testRelease_beforeThreshold_returnsFalseAndDoesNotRunAction() throws Exception {
+        // arrange
+        AtomicInteger calls = new AtomicInteger();
+        button.press(LONG_PRESS_NANOS, calls::incrementAndGet);
+
+        // act
+        boolean result = button.release();
+
+        // assert
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(LONG_PRESS_NANOS) * 3);
+        assertThat(result).isFalse();
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void testPress_withoutAction_detectsLongPress() throws Exception {
+        // arrange
+        button.press(LONG_PRESS_NANOS, null);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(LONG_PRESS_NANOS) * 3);
+
+        // act
+        boolean result = button.release();
+
+        // assert
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    void testPress_pressedAgain_restartsThreshold() throws Exception {
+        // arrange
+        AtomicInteger calls = new AtomicInteger();
+        button.press(LONG_PRESS_NANOS, calls::incrementAndGet);
+
+        // act
+        button.press(LONG_PRESS_NANOS, null);
+
+        // assert
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(LONG_PRESS_NANOS) * 3);
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void testPressRepeating_held_repeatsActionAfterDelay() throws Exception {
+        // arrange
+        CountDownLatch repetitions = new CountDownLatch(3);
+        long pressedAtNanos = System.nanoTime();
+
+        // act
+        button.pressRepeating(REPEAT_DELAY_NANOS, REPEAT_INTERVAL_NANOS, repetitions::countDown);
+
+        // assert
+        assertThat(repetitions.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(System.nanoTime() - pressedAtNanos).isGreaterThanOrEqualTo(REPEAT_DELAY_NANOS + 2 * REPEAT_INTERVAL_NANOS);
+    }
+
+    @Test
+    void testRelease_repeating_stopsRepetition() throws Exception {
+        // arrange
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch firstRepetition = new CountDownLatch(1);
+        button.pressRepeating(REPEAT_DELAY_NANOS, REPEAT_INTERVAL_NANOS, () -> {
+            calls.incrementAndGet();
+            firstRepetition.countDown();
+        });
+        assertThat(firstRepetition.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+
+        // act
+        boolean result = button.release();
+
+        // assert
+        // a repetition already in progress while releasing may still complete
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(REPEAT_INTERVAL_NANOS));
+        int callsAfterRelease = calls.get();
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(REPEAT_INTERVAL_NANOS) * 5);
+        assertThat(result).isTrue();
+        assertThat(calls).hasValue(callsAfterRelease);
+    }
+
+    @Test
+    void testRelease_repeatingBeforeDelay_returnsFalseAndDoesNotRunAction() throws Exception {
+        // arrange
+        AtomicInteger calls = new AtomicInteger();
+        button.pressRepeating(REPEAT_DELAY_NANOS, REPEAT_INTERVAL_NANOS, calls::incrementAndGet);
+
+        // act
+        boolean result = button.release();
+
+        // assert
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(REPEAT_DELAY_NANOS) * 3);
+        assertThat(result).isFalse();
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void testPressRepeating_nonPositiveInterval_throwsIllegalArgumentException() {
+        // act
+        ThrowingCallable action = () -> button.pressRepeating(REPEAT_DELAY_NANOS, 0, () -> {
+        });
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalArgumentException.class);
+    }
+}
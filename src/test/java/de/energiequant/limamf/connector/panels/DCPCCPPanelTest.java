@@ -0,0 +1,499 @@
+package de.energiequant.limamf.connector.panels;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.energiequant.limamf.compat.protocol.CommandMessageDecoder;
+import de.energiequant.limamf.connector.CommunicationSettings;
+import de.energiequant.limamf.connector.DeviceCommunicator;
+import de.energiequant.limamf.connector.emulator.EmulatedDevice;
+import de.energiequant.limamf.connector.panels.DCPCCPPanel.Action;
+import de.energiequant.limamf.connector.panels.DCPCCPPanel.Event;
+import de.energiequant.limamf.connector.panels.DCPCCPPanel.Side;
+import de.energiequant.limamf.connector.panels.DCPCCPPanel.Source;
+
+class DCPCCPPanelTest {
+    private static final String PROTOCOL_VERSION = "2.5.1";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final long LONG_PRESS_MILLIS = 250;
+    private static final long BEYOND_LONG_PRESS_MILLIS = LONG_PRESS_MILLIS + 150;
+
+    private static final String MULTIPLEXER = "Mux";
+    private static final String ENCODER = "Enc";
+
+    private final CommandMessageDecoder decoder = new CommandMessageDecoder();
+    private final List<Event> events = new CopyOnWriteArrayList<>();
+
+    private EmulatedDevice device;
+    private DeviceCommunicator communicator;
+    private DCPCCPPanel panel;
+
+    @BeforeEach
+    void setUp() {
+        device = EmulatedDevice.builder().build();
+        communicator = new DeviceCommunicator(device.connect(), PROTOCOL_VERSION, CommunicationSettings.DEFAULT, (c, msg) -> {
+        });
+        panel = new DCPCCPPanel((event, nanos) -> events.add(event), communicator, PROTOCOL_VERSION);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+        device.shutdown();
+    }
+
+    private void receive(String frame) {
+        panel.onCommandMessage(communicator, decoder.deserialize(frame));
+    }
+
+    private void press(int channel) {
+        receive("30," + MULTIPLEXER + "," + channel + ",0");
+    }
+
+    private void release(int channel) {
+        receive("30," + MULTIPLEXER + "," + channel + ",1");
+    }
+
+    @Test
+    void testOnCommandMessage_sideSpecificInputs_emitsEventOfSelectedSide() {
+        // arrange
+        panel.indexInputMultiplexer("L_DCP_MENU", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("R_DCP_MENU", MULTIPLEXER, 0);
+        panel.compileInputTable();
+
+        // act
+        press(0);
+        panel.selectSide(Side.RIGHT);
+        press(0);
+
+        // assert
+        assertThat(events).containsExactly(
+            Event.of(Side.LEFT, Source.DCP1_MENU, Action.PUSH),
+            Event.of(Side.RIGHT, Source.DCP1_MENU, Action.PUSH)
+        );
+    }
+
+    @Test
+    void testOnCommandMessage_inputOfOtherSideOnly_emitsNothing() {
+        // arrange
+        panel.indexInputMultiplexer("R_DCP_MENU", MULTIPLEXER, 0);
+        panel.compileInputTable();
+
+        // act
+        press(0);
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testOnCommandMessage_inputWithoutSide_emitsEventWithoutSideForAnySelectedSide() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 3);
+        panel.compileInputTable();
+
+        // act
+        press(3);
+        release(3);
+        panel.selectSide(Side.RIGHT);
+        press(3);
+
+        // assert
+        assertThat(events).containsExactly(
+            Event.of(Source.CCP4_SUMRY, Action.PUSH),
+            Event.of(Source.CCP4_SUMRY, Action.NEUTRAL),
+            Event.of(Source.CCP4_SUMRY, Action.PUSH)
+        );
+    }
+
+    @Test
+    void testOnCommandMessage_cursor_emitsDirectionAsAction() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_JSTK_UP", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("CCP_ZOOM-", MULTIPLEXER, 1);
+        panel.compileInputTable();
+
+        // act
+        press(0);
+        press(1);
+
+        // assert
+        assertThat(events).containsExactly(
+            Event.of(Source.CCP3_CURSOR, Action.UP),
+            Event.of(Source.CCP3_ZOOM, Action.DECREMENT)
+        );
+    }
+
+    @Test
+    void testOnCommandMessage_ambiguousInput_emitsNothing() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 1);
+        panel.indexInputMultiplexer("CCP_CAS", MULTIPLEXER, 1);
+        panel.compileInputTable();
+
+        // act
+        press(1);
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testOnCommandMessage_ambiguousForSelectedSideOnly_emitsEventOnOtherSide() {
+        // arrange
+        panel.indexInputMultiplexer("L_DCP_MENU", MULTIPLEXER, 1);
+        panel.indexInputMultiplexer("DCP_ESC", MULTIPLEXER, 1);
+        panel.compileInputTable();
+
+        // act
+        press(1);
+        panel.selectSide(Side.RIGHT);
+        press(1);
+
+        // assert
+        assertThat(events).containsExactly(Event.of(Source.DCP1_ESC, Action.PUSH));
+    }
+
+    @Test
+    void testOnCommandMessage_unmappedChannel_emitsNothing() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("CCP_CAS", MULTIPLEXER, 2);
+        panel.compileInputTable();
+
+        // act
+        press(1);
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testOnCommandMessage_unknownDescription_emitsNothing() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_JSTK_PUSH", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer(null, MULTIPLEXER, 1);
+        panel.compileInputTable();
+
+        // act
+        press(0);
+        press(1);
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testOnCommandMessage_unknownMultiplexer_emitsNothing() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 0);
+        panel.compileInputTable();
+
+        // act
+        receive("30,Other,0,0");
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testOnCommandMessage_channelOutOfRange_emitsNothing() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 2);
+        panel.compileInputTable();
+
+        // act
+        press(3);
+        press(100);
+        press(-1);
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testCompileInputTable_negativeChannelIndexed_ignoresOnlyThatChannel() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_CAS", MULTIPLEXER, -1);
+        panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 0);
+
+        // act
+        panel.compileInputTable();
+
+        // assert
+        press(-1);
+        press(0);
+        assertThat(events).containsExactly(Event.of(Source.CCP4_SUMRY, Action.PUSH));
+    }
+
+    @Test
+    void testOnCommandMessage_encoder_emitsIncrementAndDecrementOfSelectedSide() {
+        // arrange
+        panel.indexEncoder("L_DCP_MENU-DATA_INNER", ENCODER);
+        panel.indexEncoder("R_DCP_MENU-DATA_OUTER", ENCODER);
+        panel.compileInputTable();
+
+        // act
+        receive("6," + ENCODER + ",2");
+        receive("6," + ENCODER + ",0");
+        panel.selectSide(Side.RIGHT);
+        receive("6," + ENCODER + ",2");
+
+        // assert
+        assertThat(events).containsExactly(
+            Event.of(Side.LEFT, Source.DCP1_ROTARY_DATA, Action.INCREMENT),
+            Event.of(Side.LEFT, Source.DCP1_ROTARY_DATA, Action.DECREMENT),
+            Event.of(Side.RIGHT, Source.DCP1_ROTARY_MENU, Action.INCREMENT)
+        );
+    }
+
+    @Test
+    void testOnCommandMessage_ambiguousEncoder_emitsNothing() {
+        // arrange
+        panel.indexEncoder("CCP_MENU-DATA_INNER", ENCODER);
+        panel.indexEncoder("CCP_MENU-DATA_OUTER", ENCODER);
+        panel.compileInputTable();
+
+        // act
+        receive("6," + ENCODER + ",2");
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testOnCommandMessage_unknownEncoder_emitsNothing() {
+        // arrange
+        panel.indexEncoder("CCP_MENU-DATA_INNER", ENCODER);
+        panel.compileInputTable();
+
+        // act
+        receive("6,Other,2");
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testOnCommandMessage_rightButtonShortPress_selectsRightSide() {
+        // arrange
+        panel.indexInputMultiplexer("RIGHT_BUTTON", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("L_DCP_MENU", MULTIPLEXER, 1);
+        panel.indexInputMultiplexer("R_DCP_MENU", MULTIPLEXER, 1);
+        panel.compileInputTable();
+
+        // act
+        press(0);
+        release(0);
+        press(1);
+
+        // assert
+        assertThat(events).containsExactly(Event.of(Side.RIGHT, Source.DCP1_MENU, Action.PUSH));
+    }
+
+    @Test
+    void testOnCommandMessage_leftButtonShortPress_selectsLeftSide() {
+        // arrange
+        panel.indexInputMultiplexer("LEFT_BUTTON", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("L_DCP_MENU", MULTIPLEXER, 1);
+        panel.indexInputMultiplexer("R_DCP_MENU", MULTIPLEXER, 1);
+        panel.compileInputTable();
+        panel.selectSide(Side.RIGHT);
+
+        // act
+        press(0);
+        release(0);
+        press(1);
+
+        // assert
+        assertThat(events).containsExactly(Event.of(Side.LEFT, Source.DCP1_MENU, Action.PUSH));
+    }
+
+    @Test
+    void testOnCommandMessage_rightButtonLongPress_keepsSideSelection() throws Exception {
+        // arrange
+        panel.indexInputMultiplexer("RIGHT_BUTTON", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("L_DCP_MENU", MULTIPLEXER, 1);
+        panel.indexInputMultiplexer("R_DCP_MENU", MULTIPLEXER, 1);
+        panel.compileInputTable();
+
+        // act
+        press(0);
+        Thread.sleep(BEYOND_LONG_PRESS_MILLIS);
+        release(0);
+        press(1);
+
+        // assert
+        assertThat(events).containsExactly(Event.of(Side.LEFT, Source.DCP1_MENU, Action.PUSH));
+    }
+
+    @Test
+    void testOnCommandMessage_leftButtonLongPress_keepsSideSelection() throws Exception {
+        // arrange
+        panel.indexInputMultiplexer("LEFT_BUTTON", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("L_DCP_MENU", MULTIPLEXER, 1);
+        panel.indexInputMultiplexer("R_DCP_MENU", MULTIPLEXER, 1);
+        panel.compileInputTable();
+        panel.selectSide(Side.RIGHT);
+
+        // act
+        press(0);
+        Thread.sleep(BEYOND_LONG_PRESS_MILLIS);
+        release(0);
+        press(1);
+
+        // assert
+        assertThat(events).containsExactly(Event.of(Side.RIGHT, Source.DCP1_MENU, Action.PUSH));
+    }
+
+    @Test
+    void testOnCommandMessage_brightnessEncoderWhileLeftButtonHeld_setsBrightnessManually() {
+        // arrange
+        panel.indexInputMultiplexer("LEFT_BUTTON", MULTIPLEXER, 0);
+        panel.indexEncoder("CCP_RADIO-DATA_OUTER", ENCODER);
+        panel.compileInputTable();
+        panel.setSimulatorBrightness(0.5);
+        int simulatorBrightness = panel.getBrightness();
+
+        // act
+        press(0);
+        receive("6," + ENCODER + ",2");
+        receive("6," + ENCODER + ",2");
+        release(0);
+        panel.setSimulatorBrightness(0.2);
+
+        // assert
+        assertThat(events).describedAs("encoder diverted from simulator").isEmpty();
+        assertThat(panel.getBrightness()).isEqualTo(simulatorBrightness + 10);
+    }
+
+    @Test
+    void testOnCommandMessage_brightnessEncoderWithoutLeftButton_emitsEvent() {
+        // arrange
+        panel.indexInputMultiplexer("LEFT_BUTTON", MULTIPLEXER, 0);
+        panel.indexEncoder("CCP_RADIO-DATA_OUTER", ENCODER);
+        panel.compileInputTable();
+        panel.setSimulatorBrightness(0.5);
+        int simulatorBrightness = panel.getBrightness();
+
+        // act
+        receive("6," + ENCODER + ",2");
+
+        // assert
+        assertThat(events).containsExactly(Event.of(Source.CCP5_ROTARY_RADIO, Action.INCREMENT));
+        assertThat(panel.getBrightness()).isEqualTo(simulatorBrightness);
+    }
+
+    @Test
+    void testOnCommandMessage_rightButtonHeldToThreshold_restoresSimulatorBrightnessBeforeRelease() throws Exception {
+        // arrange
+        panel.indexInputMultiplexer("LEFT_BUTTON", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("RIGHT_BUTTON", MULTIPLEXER, 1);
+        panel.indexEncoder("CCP_RADIO-DATA_OUTER", ENCODER);
+        panel.compileInputTable();
+
+        press(0);
+        receive("6," + ENCODER + ",2");
+        release(0);
+        panel.setSimulatorBrightness(0.2);
+        int manualBrightness = panel.getBrightness();
+        long pressedAtNanos = System.nanoTime();
+
+        // act
+        press(1);
+
+        // assert
+        assertThat(panel.getBrightness()).describedAs("brightness right after pressing").isEqualTo(manualBrightness);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (panel.getBrightness() == manualBrightness && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        long restoredAfterNanos = System.nanoTime() - pressedAtNanos;
+
+        assertThat(panel.getBrightness()).isEqualTo(50);
+        assertThat(restoredAfterNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(LONG_PRESS_MILLIS));
+    }
+
+    @Test
+    void testOnCommandMessage_rightButtonShortPress_keepsManualBrightness() throws Exception {
+        // arrange
+        panel.indexInputMultiplexer("LEFT_BUTTON", MULTIPLEXER, 0);
+        panel.indexInputMultiplexer("RIGHT_BUTTON", MULTIPLEXER, 1);
+        panel.indexEncoder("CCP_RADIO-DATA_OUTER", ENCODER);
+        panel.compileInputTable();
+
+        press(0);
+        receive("6," + ENCODER + ",2");
+        release(0);
+        panel.setSimulatorBrightness(0.2);
+        int manualBrightness = panel.getBrightness();
+
+        // act
+        press(1);
+        release(1);
+
+        // assert
+        Thread.sleep(BEYOND_LONG_PRESS_MILLIS);
+        assertThat(panel.getBrightness()).isEqualTo(manualBrightness);
+    }
+
+    @Test
+    void testOnCommandMessage_beforeCompile_emitsNothing() {
+        // arrange
+        panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 0);
+
+        // act
+        press(0);
+
+        // assert
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void testIndexInputMultiplexer_afterCompile_throwsIllegalStateException() {
+        // arrange
+        panel.compileInputTable();
+
+        // act
+        ThrowingCallable action = () -> panel.indexInputMultiplexer("CCP_SUMRY", MULTIPLEXER, 0);
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testIndexEncoder_afterCompile_throwsIllegalStateException() {
+        // arrange
+        panel.compileInputTable();
+
+        // act
+        ThrowingCallable action = () -> panel.indexEncoder("CCP_MENU-DATA_INNER", ENCODER);
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testCompileInputTable_alreadyCompiled_throwsIllegalStateException() {
+        // arrange
+        panel.compileInputTable();
+
+        // act
+        ThrowingCallable action = panel::compileInputTable;
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalStateException.class);
+    }
+}
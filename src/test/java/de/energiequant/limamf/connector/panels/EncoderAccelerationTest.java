@@ -0,0 +1,71 @@
+package de.energiequant.limamf.connector.panels;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class EncoderAccelerationTest {
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @ParameterizedTest
+    @CsvSource({
+        "1, 1",
+        "14, 14",
+        "15, 30",
+        "29, 58",
+        "30, 120",
+        "100, 400",
+    })
+    void testApply_detentsPerSecond_returnsScaledDetents(int detents, int expectedResult) {
+        // arrange
+        EncoderAcceleration acceleration = EncoderAcceleration.parse("15:2, 30:4");
+
+        // act
+        int result = acceleration.apply(detents, ONE_SECOND);
+
+        // assert
+        assertThat(result).isEqualTo(expectedResult);
+    }
+
+    @Test
+    void testApply_none_returnsUnscaledDetents() {
+        // arrange
+        EncoderAcceleration acceleration = EncoderAcceleration.NONE;
+
+        // act
+        int result = acceleration.apply(1000, 1);
+
+        // assert
+        assertThat(result).isEqualTo(1000);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"15:2, 30:4", "10:1.5", ""})
+    void testParse_toString_returnsEqualAcceleration(String s) {
+        // arrange
+        EncoderAcceleration acceleration = EncoderAcceleration.parse(s);
+
+        // act
+        EncoderAcceleration result = EncoderAcceleration.parse(acceleration.toString());
+
+        // assert
+        assertThat(result).isEqualTo(acceleration);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"15", "15:2:3", "abc:2", "15:0.5", "0:2", "30:2, 15:4", "15:2, 15:4"})
+    void testParse_invalid_throwsIllegalArgumentException(String s) {
+        // act
+        ThrowingCallable action = () -> EncoderAcceleration.parse(s);
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,189 @@
+package de.energiequant.limamf.connector.panels;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.energiequant.limamf.connector.panels.DCPCCPPanel.Action;
+import de.energiequant.limamf.connector.panels.DCPCCPPanel.Event;
+import de.energiequant.limamf.connector.panels.DCPCCPPanel.Source;
+import de.energiequant.limamf.connector.utils.HashedTimerWheel;
+
+class EncoderAggregatorTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final Duration WINDOW = Duration.ofMillis(50);
+
+    /**
+     * Rates are far below the acceleration threshold, so aggregated detents remain unscaled.
+     */
+    private static final EncoderAcceleration UNREACHED_ACCELERATION = EncoderAcceleration.parse("100000:2");
+
+    private static final Event INCREMENT = Event.of(Source.DCP1_ROTARY_DATA, Action.INCREMENT);
+    private static final Event DECREMENT = Event.of(Source.DCP1_ROTARY_DATA, Action.DECREMENT);
+
+    private final HashedTimerWheel wheel = new HashedTimerWheel("test", Duration.ofMillis(1), 64);
+    private final List<String> forwarded = new CopyOnWriteArrayList<>();
+
+    private final PanelEventListener recipient = new PanelEventListener() {
+        @Override
+        public void onPanelEvent(Event event, long nanos) {
+            forwarded.add(event.getAction().name());
+        }
+
+        @Override
+        public void onRepeatedPanelEvent(Event event, int count, long nanos) {
+            forwarded.add(event.getAction() + "x" + count);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    private void detent(EncoderAggregator aggregator, Event event) {
+        Event reverse = (event == INCREMENT) ? DECREMENT : INCREMENT;
+        aggregator.onDetent(event, reverse, System.nanoTime());
+    }
+
+    private List<String> awaitForwarded(int numCalls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (forwarded.size() < numCalls && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        return forwarded;
+    }
+
+    @Test
+    void testOnDetent_first_forwardsImmediately() {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, UNREACHED_ACCELERATION);
+
+        // act
+        detent(aggregator, INCREMENT);
+
+        // assert
+        assertThat(forwarded).containsExactly("INCREMENT");
+    }
+
+    @Test
+    void testOnDetent_furtherDetentsWithinWindow_forwardsThemAtOnceWhenWindowEnds() throws Exception {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, UNREACHED_ACCELERATION);
+
+        // act
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+
+        // assert
+        assertThat(forwarded).describedAs("held back during window").containsExactly("INCREMENT");
+        assertThat(awaitForwarded(2)).containsExactly("INCREMENT", "INCREMENTx2");
+    }
+
+    @Test
+    void testOnDetent_afterQuietWindow_forwardsImmediatelyAgain() throws Exception {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, UNREACHED_ACCELERATION);
+        detent(aggregator, INCREMENT);
+        Thread.sleep(WINDOW.toMillis() * 3);
+
+        // act
+        detent(aggregator, INCREMENT);
+
+        // assert
+        assertThat(forwarded).containsExactly("INCREMENT", "INCREMENT");
+    }
+
+    @Test
+    void testOnDetent_reverseDirection_forwardsCountedDetentsFirst() {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, UNREACHED_ACCELERATION);
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+
+        // act
+        detent(aggregator, DECREMENT);
+
+        // assert
+        assertThat(forwarded).containsExactly("INCREMENT", "INCREMENTx2", "DECREMENT");
+    }
+
+    @Test
+    void testOnDetent_reverseDirectionWithoutCountedDetents_forwardsOnlyReverse() {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, UNREACHED_ACCELERATION);
+        detent(aggregator, INCREMENT);
+
+        // act
+        detent(aggregator, DECREMENT);
+
+        // assert
+        assertThat(forwarded).containsExactly("INCREMENT", "DECREMENT");
+    }
+
+    @Test
+    void testOnDetent_rateExceedsAcceleration_forwardsScaledDetents() throws Exception {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, EncoderAcceleration.parse("1:4"));
+
+        // act
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+
+        // assert
+        assertThat(awaitForwarded(2)).containsExactly("INCREMENT", "INCREMENTx8");
+    }
+
+    @Test
+    void testOnDetent_noAcceleration_forwardsAllImmediately() {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, EncoderAcceleration.NONE);
+
+        // act
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+
+        // assert
+        assertThat(forwarded).containsExactly("INCREMENT", "INCREMENT", "INCREMENT");
+        assertThat(wheel.getPendingTimeouts()).isZero();
+    }
+
+    @Test
+    void testOnDetent_zeroWindow_forwardsAllImmediately() {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, Duration.ZERO, EncoderAcceleration.parse("1:4"));
+
+        // act
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+
+        // assert
+        assertThat(forwarded).containsExactly("INCREMENT", "INCREMENT");
+    }
+
+    @Test
+    void testShutdown_detentsCounted_discardsThem() throws Exception {
+        // arrange
+        EncoderAggregator aggregator = new EncoderAggregator(recipient, wheel, WINDOW, UNREACHED_ACCELERATION);
+        detent(aggregator, INCREMENT);
+        detent(aggregator, INCREMENT);
+
+        // act
+        aggregator.shutdown();
+
+        // assert
+        Thread.sleep(WINDOW.toMillis() * 3);
+        assertThat(forwarded).containsExactly("INCREMENT");
+    }
+}
@@ -0,0 +1,89 @@
+package de.energiequant.limamf.connector.panels;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Properties;
+
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class InputSettingsTest {
+    @Test
+    void testFromProperties_empty_returnsDefaults() {
+        // arrange
+        Properties properties = new Properties();
+
+        // act
+        InputSettings result = InputSettings.fromProperties(properties);
+
+        // assert
+        assertThat(result).isEqualTo(InputSettings.DEFAULT);
+    }
+
+    @Test
+    void testFromProperties_encoderSettings_returnsParsedSettings() {
+        // arrange
+        Properties properties = new Properties();
+        properties.setProperty("encoder.aggregationMillis", "50");
+        properties.setProperty("encoder.acceleration", "15:2, 30:4");
+
+        // act
+        InputSettings result = InputSettings.fromProperties(properties);
+
+        // assert
+        assertThat(result).isEqualTo(
+            InputSettings.builder()
+                         .setEncoderAggregationWindow(Duration.ofMillis(50))
+                         .setEncoderAcceleration(EncoderAcceleration.parse("15:2, 30:4"))
+                         .build()
+        );
+    }
+
+    @Test
+    void testFromProperties_autoRepeatSettings_returnsParsedSettings() {
+        // arrange
+        Properties properties = new Properties();
+        properties.setProperty("autoRepeat", "ccp3_zoom, DCP1_MENU");
+        properties.setProperty("autoRepeatDelayMillis", "300");
+        properties.setProperty("autoRepeatIntervalMillis", "50");
+
+        // act
+        InputSettings result = InputSettings.fromProperties(properties);
+
+        // assert
+        assertThat(result).isEqualTo(
+            InputSettings.builder()
+                         .setAutoRepeatSources(EnumSet.of(DCPCCPPanel.Source.CCP3_ZOOM, DCPCCPPanel.Source.DCP1_MENU))
+                         .setAutoRepeatDelay(Duration.ofMillis(300))
+                         .setAutoRepeatInterval(Duration.ofMillis(50))
+                         .build()
+        );
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "encoder.aggregationMillis, abc",
+        "encoder.aggregationMillis, -1",
+        "encoder.aggregationMillis, 501",
+        "encoder.acceleration, 15",
+        "autoRepeat, UNKNOWN",
+        "autoRepeatDelayMillis, -1",
+        "autoRepeatIntervalMillis, 19",
+    })
+    void testFromProperties_invalidValue_throwsIllegalArgumentException(String key, String value) {
+        // arrange
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+
+        // act
+        ThrowingCallable action = () -> InputSettings.fromProperties(properties);
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,100 @@
+package de.energiequant.limamf.connector.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class BoundedMpscQueueTest {
+    @ParameterizedTest
+    @CsvSource({
+        "1, 1",
+        "2, 2",
+        "3, 4",
+        "256, 256",
+        "257, 512",
+    })
+    void testGetCapacity_always_returnsNextPowerOfTwo(int minimumCapacity, int expectedCapacity) {
+        // arrange
+        BoundedMpscQueue<String> queue = new BoundedMpscQueue<>(minimumCapacity);
+
+        // act
+        int result = queue.getCapacity();
+
+        // assert
+        assertThat(result).isEqualTo(expectedCapacity);
+    }
+
+    @Test
+    void testPoll_afterOffers_returnsElementsInOrder() {
+        // arrange
+        BoundedMpscQueue<String> queue = new BoundedMpscQueue<>(4);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+
+        // act
+        String first = queue.poll();
+        String second = queue.poll();
+        String third = queue.poll();
+        String fourth = queue.poll();
+
+        // assert
+        assertThat(first).isEqualTo("a");
+        assertThat(second).isEqualTo("b");
+        assertThat(third).isEqualTo("c");
+        assertThat(fourth).isNull();
+    }
+
+    @Test
+    void testOffer_full_returnsFalse() {
+        // arrange
+        BoundedMpscQueue<String> queue = new BoundedMpscQueue<>(2);
+        queue.offer("a");
+        queue.offer("b");
+
+        // act
+        boolean result = queue.offer("c");
+
+        // assert
+        assertThat(result).isFalse();
+    }
+
+    @Test
+    void testOffer_afterWrapAround_succeeds() {
+        // arrange
+        BoundedMpscQueue<String> queue = new BoundedMpscQueue<>(2);
+        queue.offer("a");
+        queue.offer("b");
+        queue.poll();
+
+        // act
+        boolean result = queue.offer("c");
+
+        // assert
+        assertThat(result).isTrue();
+        assertThat(queue.poll()).isEqualTo("b");
+        assertThat(queue.poll()).isEqualTo("c");
+    }
+
+    @Test
+    void testGetHighWaterMark_afterDraining_retainsMaximumSize() {
+        // arrange
+        BoundedMpscQueue<String> queue = new BoundedMpscQueue<>(8);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+        queue.poll();
+        queue.poll();
+        queue.poll();
+        queue.offer("d");
+
+        // act
+        int result = queue.getHighWaterMark();
+
+        // assert
+        assertThat(result).isEqualTo(3);
+        assertThat(queue.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,108 @@
+package de.energiequant.limamf.connector.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HashedTimerWheelTest {
+    // one revolution takes 8ms
+    private final HashedTimerWheel wheel = new HashedTimerWheel("HashedTimerWheelTest", Duration.ofMillis(1), 8);
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void testSchedule_always_runsTaskNotBeforeDelay() throws Exception {
+        // arrange
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong ranAtNanos = new AtomicLong();
+        long scheduledAtNanos = System.nanoTime();
+
+        // act
+        wheel.schedule(() -> {
+            ranAtNanos.set(System.nanoTime());
+            latch.countDown();
+        }, 5, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ranAtNanos.get() - scheduledAtNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    void testSchedule_delayBeyondOneRevolution_runsTaskNotBeforeDelay() throws Exception {
+        // arrange
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong ranAtNanos = new AtomicLong();
+        long scheduledAtNanos = System.nanoTime();
+
+        // act
+        wheel.schedule(() -> {
+            ranAtNanos.set(System.nanoTime());
+            latch.countDown();
+        }, 30, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ranAtNanos.get() - scheduledAtNanos).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    void testCancel_beforeDeadline_taskIsNotRun() throws Exception {
+        // arrange
+        AtomicBoolean ran = new AtomicBoolean();
+        HashedTimerWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 20, TimeUnit.MILLISECONDS);
+
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, 50, TimeUnit.MILLISECONDS);
+
+        // act
+        boolean result = timeout.cancel();
+
+        // assert
+        assertThat(result).isTrue();
+        assertThat(later.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ran).isFalse();
+        assertThat(timeout.isCancelled()).isTrue();
+    }
+
+    @Test
+    void testSchedule_taskThrowsError_keepsRunningOtherTasks() throws Exception {
+        // arrange
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(() -> {
+            throw new AssertionError("simulated failure");
+        }, 1, TimeUnit.MILLISECONDS);
+
+        // act
+        wheel.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void testSchedule_manyTimeouts_runsAllTasks() throws Exception {
+        // arrange
+        int numTimeouts = 1000;
+        CountDownLatch latch = new CountDownLatch(numTimeouts);
+
+        // act
+        for (int i = 0; i < numTimeouts; i++) {
+            wheel.schedule(latch::countDown, i % 50, TimeUnit.MILLISECONDS);
+        }
+
+        // assert
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(wheel.getPendingTimeouts()).isZero();
+    }
+}
@@ -0,0 +1,67 @@
+package de.energiequant.limamf.connector.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class LatencyHistogramTest {
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 31, 32, 33, 1000, 123_456, 987_654_321, 1L << 62})
+    void testHighestValueOf_indexOfValue_isWithinRelativeError(long value) {
+        // arrange
+        int index = LatencyHistogram.indexOf(value);
+
+        // act
+        long result = LatencyHistogram.highestValueOf(index);
+
+        // assert
+        assertThat(result).isGreaterThanOrEqualTo(value)
+                          .isLessThanOrEqualTo(value + value / 32);
+    }
+
+    @Test
+    void testGetPercentile_uniformValues_returnsValueWithinRelativeError() {
+        // arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        // act
+        long result = snapshot.getPercentile(50);
+
+        // assert
+        assertThat((double) result).isCloseTo(5_000_000, within(5_000_000 / 32.0));
+    }
+
+    @Test
+    void testGetMax_recorded_returnsExactMaximum() {
+        // arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(12_345_678);
+        histogram.record(1_000);
+
+        // act
+        long result = histogram.snapshot().getMax();
+
+        // assert
+        assertThat(result).isEqualTo(12_345_678);
+    }
+
+    @Test
+    void testGetPercentile_nothingRecorded_returnsZero() {
+        // arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // act
+        long result = histogram.snapshot().getPercentile(99);
+
+        // assert
+        assertThat(result).isZero();
+    }
+}
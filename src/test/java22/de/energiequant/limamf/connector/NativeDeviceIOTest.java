@@ -0,0 +1,87 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import de.energiequant.limamf.connector.utils.NativeSerialPort;
+import de.energiequant.limamf.connector.utils.PseudoTerminal;
+
+/**
+ * Runs {@link NativeDeviceIO} on a {@link PseudoTerminal}. Skipped unless the Java 22 implementation of
+ * {@link NativeSerialPort} is in use.
+ */
+@EnabledOnOs(OS.LINUX)
+@Timeout(10)
+class NativeDeviceIOTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private PseudoTerminal remote;
+    private NativeDeviceIO io;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(NativeSerialPort.isAvailable(), "native serial ports are not available");
+
+        remote = PseudoTerminal.open();
+        io = new NativeDeviceIO(remote.getSlave());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (io != null) {
+            io.tryClose();
+        }
+        if (remote != null) {
+            remote.close();
+        }
+    }
+
+    @Test
+    void testReadAtLeastOneInto_dataReceived_returnsCharacters() {
+        // arrange
+        char[] buffer = new char[64];
+        remote.write("30,Mux,3,0;");
+
+        // act
+        int result = io.readAtLeastOneInto(buffer);
+
+        // assert
+        assertThat(new String(buffer, 0, result)).isEqualTo("30,Mux,3,0;");
+    }
+
+    @Test
+    void testFlush_afterWrite_sendsToDevice() {
+        // arrange
+        io.write("9;");
+
+        // act
+        io.flush();
+
+        // assert
+        assertThat(remote.read(2)).isEqualTo("9;");
+    }
+
+    @Test
+    void testTryClose_blockedRead_releasesReadAndReturnsTrue() throws Exception {
+        // arrange
+        CompletableFuture<Integer> blockedRead = CompletableFuture.supplyAsync(() -> io.readAtLeastOneInto(new char[64]));
+        Thread.sleep(50);
+
+        // act
+        boolean result = io.tryClose();
+
+        // assert
+        assertThat(result).isTrue();
+        assertThat(blockedRead.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isEqualTo(-1);
+    }
+}
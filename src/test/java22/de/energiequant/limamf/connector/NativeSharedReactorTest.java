@@ -0,0 +1,133 @@
+package de.energiequant.limamf.connector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import de.energiequant.limamf.compat.protocol.CommandMessage;
+import de.energiequant.limamf.compat.protocol.DigitalInputMultiplexerChangeMessage;
+import de.energiequant.limamf.compat.protocol.GetInfoMessage;
+import de.energiequant.limamf.connector.utils.NativeSelector;
+import de.energiequant.limamf.connector.utils.PseudoTerminal;
+
+/**
+ * Runs {@link DeviceCommunicator.ExecutionMode#SHARED_REACTOR} with {@link NativeDeviceIO} on
+ * {@link PseudoTerminal}s, so received data is waited for through a {@link NativeSelector}. Skipped unless the Java 22
+ * implementation is in use.
+ */
+@EnabledOnOs(OS.LINUX)
+@Timeout(10)
+class NativeSharedReactorTest {
+    private static final String PROTOCOL_VERSION = "2.5.1";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final CommunicationSettings SETTINGS = CommunicationSettings.builder()
+                                                                               .setExecutionMode(DeviceCommunicator.ExecutionMode.SHARED_REACTOR)
+                                                                               .build();
+
+    private final List<PseudoTerminal> remotes = new ArrayList<>();
+    private final List<DeviceCommunicator> communicators = new ArrayList<>();
+    private final List<CommandMessage> received = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (DeviceCommunicator communicator : communicators) {
+            communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+        }
+        for (PseudoTerminal remote : remotes) {
+            remote.close();
+        }
+    }
+
+    private DeviceCommunicator register(PseudoTerminal remote) {
+        DeviceCommunicator communicator = new DeviceCommunicator(new NativeDeviceIO(remote.getSlave()), PROTOCOL_VERSION, SETTINGS, (c, msg) -> received.add(msg));
+        communicators.add(communicator);
+        return communicator;
+    }
+
+    private PseudoTerminal openRemote() throws Exception {
+        assumeTrue(NativeSelector.isAvailable(), "native selectors are not available");
+
+        PseudoTerminal remote = PseudoTerminal.open();
+        remotes.add(remote);
+        return remote;
+    }
+
+    private void awaitReceived(int numMessages) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (received.size() < numMessages && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void testRegister_nativeDevice_waitsThroughSelector() throws Exception {
+        // arrange
+        PseudoTerminal remote = openRemote();
+
+        // act
+        DeviceCommunicator communicator = register(remote);
+
+        // assert
+        assertThat(IOReactor.shared().isSelected(communicator)).isTrue();
+    }
+
+    @Test
+    void testReceive_multipleDevices_handsMessagesToCallback() throws Exception {
+        // arrange
+        PseudoTerminal first = openRemote();
+        PseudoTerminal second = openRemote();
+        register(first);
+        register(second);
+
+        // act
+        first.write("30,Mux,3,0;");
+        second.write("30,Mux,5,1;");
+        awaitReceived(2);
+
+        // assert
+        assertThat(received).hasSize(2)
+                            .allMatch(DigitalInputMultiplexerChangeMessage.class::isInstance);
+    }
+
+    @Test
+    void testSend_nativeDevice_writesToDevice() throws Exception {
+        // arrange
+        PseudoTerminal remote = openRemote();
+        DeviceCommunicator communicator = register(remote);
+
+        // act
+        communicator.sendTracked(new GetInfoMessage()).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // assert
+        assertThat(remote.read(2)).isEqualTo("9;");
+    }
+
+    @Test
+    void testShutdown_lastNativeDevice_terminatesThreads() throws Exception {
+        // arrange
+        DeviceCommunicator communicator = register(openRemote());
+
+        // act
+        boolean result = communicator.waitForShutdown(Duration.ofMillis(TIMEOUT_MILLIS));
+
+        // assert
+        assertThat(result).isTrue();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (IOReactor.shared().hasThreads() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        assertThat(IOReactor.shared().hasThreads()).isFalse();
+    }
+}
@@ -0,0 +1,85 @@
+package de.energiequant.limamf.connector.emulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import de.energiequant.limamf.connector.utils.PseudoTerminal;
+import de.energiequant.limamf.connector.utils.Termios;
+
+/**
+ * Attaches an {@link EmulatedDevice} to the slave side of a {@link PseudoTerminal} while the test acts as the host on
+ * the master side. Skipped unless the Java 22 implementation of {@link Termios} is in use.
+ */
+@EnabledOnOs(OS.LINUX)
+@Timeout(10)
+class EmulatedDevicePtyTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private PseudoTerminal host;
+    private EmulatedDevice device;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(Termios.isAvailable(), "in-process termios is not available");
+
+        host = PseudoTerminal.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (device != null) {
+            device.shutdown();
+        }
+        if (host != null) {
+            host.close();
+        }
+    }
+
+    @Test
+    void testAttach_getInfo_respondsWithIdentification() throws Exception {
+        // arrange
+        device = EmulatedDevice.builder()
+                               .setType("MobiFlight Mega")
+                               .setName("Test Panel")
+                               .setSerial("SN-123")
+                               .setFirmwareVersion("2.5.1")
+                               .setCoreVersion("1.0.0")
+                               .build();
+        device.attach(host.getSlave());
+
+        // act
+        host.write("9;");
+
+        // assert
+        String expected = "10,MobiFlight Mega,Test Panel,SN-123,2.5.1,1.0.0;\r\n";
+        assertThat(host.read(expected.length())).isEqualTo(expected);
+    }
+
+    @Test
+    void testAttach_setPin_recordsPinState() throws Exception {
+        // arrange
+        device = EmulatedDevice.builder().build();
+        device.attach(host.getSlave());
+
+        // act
+        host.write("2,13,1;2,7,200;");
+
+        // assert
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (device.getSetPinCount() < 2 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        assertThat(device.getPinStates()).containsOnlyKeys(13, 7)
+                                         .containsEntry(13, 1)
+                                         .containsEntry(7, 200);
+    }
+}
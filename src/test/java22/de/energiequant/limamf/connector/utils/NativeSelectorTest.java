@@ -0,0 +1,173 @@
+package de.energiequant.limamf.connector.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Runs {@link NativeSelector} on {@link PseudoTerminal}s. Skipped unless the Java 22 implementation is in use.
+ */
+@EnabledOnOs(OS.LINUX)
+@Timeout(10)
+class NativeSelectorTest {
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final List<PseudoTerminal> remotes = new ArrayList<>();
+    private final List<NativeSerialPort> ports = new ArrayList<>();
+    private NativeSelector selector;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(NativeSelector.isAvailable(), "native selectors are not available");
+
+        selector = NativeSelector.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (NativeSerialPort port : ports) {
+            port.close();
+        }
+        for (PseudoTerminal remote : remotes) {
+            remote.close();
+        }
+    }
+
+    private PseudoTerminal register(int key) throws IOException {
+        PseudoTerminal remote = PseudoTerminal.open();
+        remotes.add(remote);
+
+        NativeSerialPort port = NativeSerialPort.open(remote.getSlave());
+        ports.add(port);
+
+        selector.register(port, key);
+
+        return remote;
+    }
+
+    private static int[] select(NativeSelector selector, int timeoutMillis) throws IOException {
+        int[] readyKeys = new int[8];
+        int numKeys = selector.select(readyKeys, timeoutMillis);
+        return Arrays.copyOf(readyKeys, numKeys);
+    }
+
+    @Test
+    void testSelect_dataReceivedOnOnePort_returnsOnlyItsKey() throws Exception {
+        // arrange
+        register(1);
+        PseudoTerminal remote = register(2);
+        register(3);
+        remote.write("30,Mux,3,0;");
+
+        // act
+        int[] result = select(selector, TIMEOUT_MILLIS);
+
+        // assert
+        assertThat(result).containsOnly(2);
+    }
+
+    @Test
+    void testSelect_noData_returnsNothingAfterTimeout() throws Exception {
+        // arrange
+        register(1);
+        long startNanos = System.nanoTime();
+
+        // act
+        int[] result = select(selector, 50);
+
+        // assert
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(result).isEmpty();
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(45);
+    }
+
+    @Test
+    void testWakeup_blockedSelect_returnsNothing() throws Exception {
+        // arrange
+        register(1);
+        CompletableFuture<int[]> blockedSelect = CompletableFuture.supplyAsync(() -> {
+            try {
+                return select(selector, -1);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        Thread.sleep(50);
+
+        // act
+        selector.wakeup();
+
+        // assert
+        assertThat(blockedSelect.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isEmpty();
+    }
+
+    @Test
+    void testWakeup_beforeSelect_doesNotWakeUpFollowingSelect() throws Exception {
+        // arrange
+        register(1);
+        selector.wakeup();
+        select(selector, TIMEOUT_MILLIS);
+
+        // act
+        int[] result = select(selector, 50);
+
+        // assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void testSelect_portReleased_returnsItsKey() throws Exception {
+        // arrange
+        register(1);
+        register(2);
+        ports.get(1).release();
+
+        // act
+        int[] result = select(selector, TIMEOUT_MILLIS);
+
+        // assert
+        assertThat(result).containsOnly(2);
+    }
+
+    @Test
+    void testSelect_afterUnregister_doesNotReturnKey() throws Exception {
+        // arrange
+        PseudoTerminal remote = register(1);
+        selector.unregister(ports.get(0));
+        remote.write("9;");
+
+        // act
+        int[] result = select(selector, 50);
+
+        // assert
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void testUnregister_closedPort_allowsReadToReportClosed() throws Exception {
+        // arrange
+        register(1);
+        NativeSerialPort port = ports.get(0);
+        assertThat(port.close()).isTrue();
+
+        // act
+        selector.unregister(port);
+
+        // assert
+        assertThat(port.read(ByteBuffer.allocate(8), 0)).isEqualTo(-1);
+    }
+}
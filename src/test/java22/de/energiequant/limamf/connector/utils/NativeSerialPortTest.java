@@ -0,0 +1,201 @@
+package de.energiequant.limamf.connector.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * Runs {@link NativeSerialPort} on a {@link PseudoTerminal}. Skipped unless the Java 22 implementation is in use,
+ * which requires running on Java 22 or later with the multi-release classes on the class path.
+ */
+@EnabledOnOs(OS.LINUX)
+@Timeout(10)
+class NativeSerialPortTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private PseudoTerminal remote;
+    private NativeSerialPort port;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(NativeSerialPort.isAvailable(), "native serial ports are not available");
+
+        remote = PseudoTerminal.open();
+        port = NativeSerialPort.open(remote.getSlave());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (port != null) {
+            port.close();
+        }
+        if (remote != null) {
+            remote.close();
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void testRead_heapBuffer_returnsReceivedData() throws Exception {
+        // arrange
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        remote.write("30,Mux,3,0;");
+
+        // act
+        int result = port.read(buffer, (int) TIMEOUT_MILLIS);
+
+        // assert
+        assertThat(result).isEqualTo(11);
+        assertThat(readString(buffer)).isEqualTo("30,Mux,3,0;");
+    }
+
+    @Test
+    void testRead_directBuffer_returnsReceivedData() throws Exception {
+        // arrange
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        remote.write("30,Mux,3,0;");
+
+        // act
+        int result = port.read(buffer, (int) TIMEOUT_MILLIS);
+
+        // assert
+        assertThat(result).isEqualTo(11);
+        assertThat(readString(buffer)).isEqualTo("30,Mux,3,0;");
+    }
+
+    @Test
+    void testRead_noData_returnsZeroAfterTimeout() throws Exception {
+        // arrange
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long startNanos = System.nanoTime();
+
+        // act
+        int result = port.read(buffer, 50);
+
+        // assert
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        assertThat(result).isZero();
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(45);
+    }
+
+    @Test
+    void testWrite_data_receivedByRemote() throws Exception {
+        // arrange
+        ByteBuffer buffer = ByteBuffer.wrap("9;".getBytes(StandardCharsets.ISO_8859_1));
+
+        // act
+        port.write(buffer);
+
+        // assert
+        assertThat(buffer.hasRemaining()).isFalse();
+        assertThat(remote.read(2)).isEqualTo("9;");
+    }
+
+    @Test
+    void testRelease_blockedRead_returnsMinusOne() throws Exception {
+        // arrange
+        CompletableFuture<Integer> blockedRead = CompletableFuture.supplyAsync(() -> {
+            try {
+                return port.read(ByteBuffer.allocate(64), -1);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        Thread.sleep(50);
+
+        // act
+        port.release();
+
+        // assert
+        assertThat(blockedRead.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isEqualTo(-1);
+    }
+
+    @Test
+    void testRelease_always_releasesFollowingReadsEvenIfDataIsAvailable() throws Exception {
+        // arrange
+        port.release();
+        remote.write("9;");
+
+        // act
+        int result = port.read(ByteBuffer.allocate(64), (int) TIMEOUT_MILLIS);
+
+        // assert
+        assertThat(result).isEqualTo(-1);
+    }
+
+    @Test
+    void testRelease_always_keepsPortWritable() throws Exception {
+        // arrange
+        port.release();
+
+        // act
+        port.write(ByteBuffer.wrap("9;".getBytes(StandardCharsets.ISO_8859_1)));
+
+        // assert
+        assertThat(remote.read(2)).isEqualTo("9;");
+    }
+
+    @Test
+    void testClose_blockedRead_releasesReadAndReturnsTrue() throws Exception {
+        // arrange
+        CompletableFuture<Integer> blockedRead = CompletableFuture.supplyAsync(() -> {
+            try {
+                return port.read(ByteBuffer.allocate(64), -1);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        Thread.sleep(50);
+
+        // act
+        boolean result = port.close();
+
+        // assert
+        assertThat(result).isTrue();
+        assertThat(blockedRead.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isEqualTo(-1);
+    }
+
+    @Test
+    void testClose_repeated_returnsTrue() {
+        // arrange
+        port.close();
+
+        // act
+        boolean result = port.close();
+
+        // assert
+        assertThat(result).isTrue();
+    }
+
+    @Test
+    void testWrite_afterClose_throwsIOException() {
+        // arrange
+        port.close();
+
+        // act
+        ThrowingCallable action = () -> port.write(ByteBuffer.wrap(new byte[]{'9', ';'}));
+
+        // assert
+        assertThatThrownBy(action).isInstanceOf(IOException.class);
+    }
+}
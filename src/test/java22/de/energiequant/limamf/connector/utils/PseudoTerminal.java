@@ -0,0 +1,151 @@
+package de.energiequant.limamf.connector.utils;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Linux pseudo terminal for tests standing in for a serial device. The slave side is put into raw mode (see
+ * {@link Termios}) and opened by the code under test, the master side is used by the test as the remote device.
+ */
+public class PseudoTerminal implements AutoCloseable {
+    private static final int O_RDWR = 02;
+    private static final int O_NOCTTY = 0400;
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final SymbolLookup LIBC = LINKER.defaultLookup();
+
+    private static final MethodHandle POSIX_OPENPT = downcall("posix_openpt", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle GRANTPT = downcall("grantpt", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle UNLOCKPT = downcall("unlockpt", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle PTSNAME = downcall("ptsname", FunctionDescriptor.of(ADDRESS, JAVA_INT));
+    private static final MethodHandle READ = downcall("read", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+    private static final MethodHandle WRITE = downcall("write", FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+    private static final MethodHandle CLOSE = downcall("close", FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+
+    private static final int MAX_PATH_LENGTH = 4096;
+
+    private final int masterFd;
+    private final File slave;
+
+    private PseudoTerminal(int masterFd, File slave) {
+        this.masterFd = masterFd;
+        this.slave = slave;
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor) {
+        return LINKER.downcallHandle(
+            LIBC.find(name).orElseThrow(() -> new IllegalStateException("symbol not found: " + name)),
+            descriptor
+        );
+    }
+
+    /**
+     * Opens a new pseudo terminal with its slave side in raw mode.
+     *
+     * @return opened pseudo terminal
+     * @throws IOException if the pseudo terminal could not be set up
+     */
+    public static PseudoTerminal open() throws IOException {
+        try {
+            int masterFd = (int) POSIX_OPENPT.invokeExact(O_RDWR | O_NOCTTY);
+            if (masterFd < 0) {
+                throw new IOException("posix_openpt failed");
+            }
+
+            if (((int) GRANTPT.invokeExact(masterFd) != 0) || ((int) UNLOCKPT.invokeExact(masterFd) != 0)) {
+                int res = (int) CLOSE.invokeExact(masterFd);
+                throw new IOException("failed to unlock pseudo terminal");
+            }
+
+            MemorySegment name = (MemorySegment) PTSNAME.invokeExact(masterFd);
+            File slave = new File(name.reinterpret(MAX_PATH_LENGTH).getString(0));
+
+            Termios.makeRaw(slave);
+
+            return new PseudoTerminal(masterFd, slave);
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IOException("failed to open pseudo terminal", ex);
+        }
+    }
+
+    /**
+     * @return slave side to be opened as a serial device
+     */
+    public File getSlave() {
+        return slave;
+    }
+
+    /**
+     * Writes the given string as ISO-8859-1 to the master side, to be read from the slave side.
+     *
+     * @param s string to write
+     */
+    public void write(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment segment = arena.allocate(bytes.length);
+            MemorySegment.copy(bytes, 0, segment, JAVA_BYTE, 0, bytes.length);
+            long offset = 0;
+            while (offset < bytes.length) {
+                long written = (long) WRITE.invokeExact(masterFd, segment.asSlice(offset), bytes.length - offset);
+                if (written < 0) {
+                    throw new IllegalStateException("write failed");
+                }
+                offset += written;
+            }
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException("write failed", ex);
+        }
+    }
+
+    /**
+     * Reads from the master side until the given number of bytes written to the slave side has been received,
+     * blocking until then.
+     *
+     * @param length number of bytes to read
+     * @return received bytes as ISO-8859-1 string
+     */
+    public String read(int length) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment segment = arena.allocate(length);
+            long offset = 0;
+            while (offset < length) {
+                long read = (long) READ.invokeExact(masterFd, segment.asSlice(offset), length - offset);
+                if (read <= 0) {
+                    throw new IllegalStateException("read failed");
+                }
+                offset += read;
+            }
+            return new String(segment.toArray(JAVA_BYTE), StandardCharsets.ISO_8859_1);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException("read failed", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            int res = (int) CLOSE.invokeExact(masterFd);
+        } catch (Throwable ex) {
+            throw new IllegalStateException("close failed", ex);
+        }
+    }
+}